@@ -21,6 +21,7 @@ package org.wisdom.configuration;
 
 import org.apache.commons.configuration.ConfigurationConverter;
 import org.apache.commons.configuration.MapConfiguration;
+import org.wisdom.api.configuration.ConfigKey;
 import org.wisdom.api.configuration.Configuration;
 import org.wisdom.api.content.ParameterConverters;
 
@@ -41,7 +42,10 @@ public class ConfigurationImpl implements Configuration {
      */
     protected ParameterConverters converters;
 
-    private org.apache.commons.configuration.Configuration configuration;
+    /**
+     * The current snapshot of the configuration, replaced as a whole when the configuration changes.
+     */
+    private volatile ConfigurationSnapshot snapshot;
 
     /**
      * Creates an instance of {@link org.wisdom.configuration.ConfigurationImpl}.
@@ -51,7 +55,7 @@ public class ConfigurationImpl implements Configuration {
     public ConfigurationImpl(ParameterConverters converters, org.apache.commons.configuration.Configuration
             configuration) {
         this(converters);
-        this.configuration = configuration;
+        setConfiguration(configuration);
     }
 
     protected ConfigurationImpl(ParameterConverters converters) {
@@ -59,12 +63,18 @@ public class ConfigurationImpl implements Configuration {
         // This constructor requires an invocation of setConfiguration.
     }
 
+    /**
+     * Sets the underlying configuration. A new snapshot is built and published atomically, so readers see either the
+     * previous or the new configuration.
+     *
+     * @param configuration the configuration
+     */
     protected void setConfiguration(org.apache.commons.configuration.Configuration configuration) {
-        this.configuration = configuration;
+        this.snapshot = new ConfigurationSnapshot(configuration, System.getProperties());
     }
 
     protected org.apache.commons.configuration.Configuration getConfiguration() {
-        return configuration;
+        return snapshot.configuration();
     }
 
 
@@ -76,12 +86,7 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public String get(String key) {
-        String v = System.getProperty(key);
-        if (v == null) {
-            return configuration.getString(key);
-        } else {
-            return v;
-        }
+        return snapshot.getString(key);
     }
 
     /**
@@ -95,9 +100,9 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public String getWithDefault(String key, String defaultValue) {
-        String v = System.getProperty(key);
+        String v = snapshot.getString(key);
         if (v == null) {
-            return configuration.getString(key, defaultValue);
+            return defaultValue;
         }
         return v;
     }
@@ -110,16 +115,7 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public Integer getInteger(String key) {
-        Integer v = Integer.getInteger(key);
-        if (v == null) {
-            try {
-                return configuration.getInt(key);
-            } catch (NoSuchElementException e) { //NOSONAR
-                return null;
-            }
-        } else {
-            return v;
-        }
+        return snapshot.getInteger(key);
     }
 
     /**
@@ -133,9 +129,9 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public Integer getIntegerWithDefault(String key, Integer defaultValue) {
-        Integer v = Integer.getInteger(key);
+        Integer v = snapshot.getInteger(key);
         if (v == null) {
-            return configuration.getInt(key, defaultValue);
+            return defaultValue;
         }
         return v;
     }
@@ -146,15 +142,7 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public Boolean getBoolean(String key) {
-        if (System.getProperty(key) != null) {
-            return Boolean.getBoolean(key);
-        } else {
-            try {
-                return configuration.getBoolean(key);
-            } catch (NoSuchElementException e) { //NOSONAR
-                return null;
-            }
-        }
+        return snapshot.getBoolean(key);
     }
 
     /**
@@ -168,39 +156,30 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public Boolean getBooleanWithDefault(String key, Boolean defaultValue) {
-        if (System.getProperty(key) != null) {
-            return Boolean.getBoolean(key);
-        } else {
-            return configuration.getBoolean(key, defaultValue);
+        Boolean v = snapshot.getBoolean(key);
+        if (v == null) {
+            return defaultValue;
         }
+        return v;
     }
 
     @Override
     public Long getLong(String key) {
-        Long v = Long.getLong(key);
-        if (v == null) {
-            try {
-                return configuration.getLong(key);
-            } catch (NoSuchElementException e) { //NOSONAR
-                return null;
-            }
-        } else {
-            return v;
-        }
+        return snapshot.getLong(key);
     }
 
     @Override
     public Long getLongWithDefault(String key, Long defaultValue) {
-        Long value = Long.getLong(key);
+        Long value = snapshot.getLong(key);
         if (value == null) {
-            return configuration.getLong(key, defaultValue);
+            return defaultValue;
         }
         return value;
     }
 
     @Override
     public Long getLongOrDie(String key) {
-        Long value = Long.getLong(key);
+        Long value = getLong(key);
         if (value == null) {
             throw new IllegalArgumentException(String.format(ERROR_KEYNOTFOUND, key));
         } else {
@@ -271,7 +250,7 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public String[] getStringArray(String key) {
-        return configuration.getStringArray(key);
+        return getConfiguration().getStringArray(key);
     }
 
     /**
@@ -285,7 +264,7 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public List<String> getList(String key) {
-        List<Object> objects = configuration.getList(key);
+        List<Object> objects = getConfiguration().getList(key);
         if (objects != null) {
             List<String> results = new ArrayList<>(objects.size());
             for (Object o : objects) {
@@ -303,7 +282,7 @@ public class ConfigurationImpl implements Configuration {
      */
     @Override
     public Properties asProperties() {
-        return ConfigurationConverter.getProperties(configuration);
+        return ConfigurationConverter.getProperties(getConfiguration());
     }
 
     /**
@@ -313,6 +292,7 @@ public class ConfigurationImpl implements Configuration {
     @Override
     public Map<String, Object> asMap() {
         Map<String, Object> map = new LinkedHashMap<>();
+        org.apache.commons.configuration.Configuration configuration = getConfiguration();
         Iterator<String> keys = configuration.getKeys();
         while (keys.hasNext()) {
             String key = keys.next();
@@ -391,4 +371,42 @@ public class ConfigurationImpl implements Configuration {
         String value = get(key);
         return converters.convertValue(value, clazz, clazz, defaultValueAsString);
     }
+
+    /**
+     * Gets the value of a typed key. The value is resolved from the current snapshot and memoized in the handle, so
+     * the next reads (until the configuration changes) just check that the snapshot has not been replaced.
+     *
+     * @param key the key handle
+     * @return the value, or the default value of the handle if not there
+     */
+    @Override
+    public <T> T get(ConfigKey<T> key) {
+        ConfigurationSnapshot current = snapshot;
+        ConfigKey.Resolved<T> resolved = key.resolved(current);
+        if (resolved != null) {
+            return resolved.value();
+        }
+        return key.resolve(current, resolve(current, key));
+    }
+
+    private <T> T resolve(ConfigurationSnapshot snapshot, ConfigKey<T> key) {
+        Class<T> type = key.type();
+        Object value;
+        if (type == String.class) {
+            value = snapshot.getString(key.name());
+        } else if (type == Integer.class) {
+            value = snapshot.getInteger(key.name());
+        } else if (type == Long.class) {
+            value = snapshot.getLong(key.name());
+        } else if (type == Boolean.class) {
+            value = snapshot.getBoolean(key.name());
+        } else {
+            String raw = snapshot.getString(key.name());
+            value = raw == null ? null : converters.convertValue(raw, type, type, null);
+        }
+        if (value == null) {
+            return key.defaultValue();
+        }
+        return type.cast(value);
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.configuration;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable view of a configuration, overlaid by the system properties. The set of keys (from the configuration
+ * and from the system properties) is flattened into a hash map when the snapshot is created. The values are
+ * resolved from the underlying configuration the first time they are read (as the underlying configuration
+ * interpolates and converts them), and then memoized per key and type. So, once a value has been read, reading it
+ * again does not hit the (synchronized) underlying configuration nor the system properties.
+ * <p>
+ * Snapshots are never modified, a new snapshot is created when the configuration is reloaded. As a consequence,
+ * system properties set after the creation of the snapshot are not seen.
+ */
+final class ConfigurationSnapshot {
+
+    /**
+     * Marker for the values not yet resolved.
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    private final Configuration configuration;
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates a snapshot of the given configuration.
+     *
+     * @param configuration the configuration
+     * @param system        the system properties
+     */
+    ConfigurationSnapshot(Configuration configuration, Properties system) {
+        this.configuration = configuration;
+        Map<String, Entry> map = new HashMap<>();
+        Iterator<String> keys = configuration.getKeys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, new Entry(system.getProperty(key), true));
+        }
+        for (String key : system.stringPropertyNames()) {
+            if (!map.containsKey(key)) {
+                map.put(key, new Entry(system.getProperty(key), false));
+            }
+        }
+        this.entries = map;
+    }
+
+    /**
+     * @return the underlying configuration
+     */
+    Configuration configuration() {
+        return configuration;
+    }
+
+    /**
+     * @param key the key
+     * @return the value as String, {@literal null} if not there
+     */
+    String getString(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Object value = entry.string;
+        if (value == UNRESOLVED) {
+            if (entry.system != null) {
+                value = entry.system;
+            } else {
+                value = configuration.getString(key);
+            }
+            entry.string = value;
+        }
+        return (String) value;
+    }
+
+    /**
+     * @param key the key
+     * @return the value as Integer, {@literal null} if not there
+     */
+    Integer getInteger(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Object value = entry.integer;
+        if (value == UNRESOLVED) {
+            value = null;
+            if (entry.system != null) {
+                // Same semantic as Integer.getInteger.
+                try {
+                    value = Integer.decode(entry.system);
+                } catch (NumberFormatException e) { //NOSONAR
+                    // Use the value from the configuration.
+                }
+            }
+            if (value == null && entry.inConfiguration) {
+                value = configuration.getInteger(key, null);
+            }
+            entry.integer = value;
+        }
+        return (Integer) value;
+    }
+
+    /**
+     * @param key the key
+     * @return the value as Long, {@literal null} if not there
+     */
+    Long getLong(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Object value = entry.longValue;
+        if (value == UNRESOLVED) {
+            value = null;
+            if (entry.system != null) {
+                // Same semantic as Long.getLong.
+                try {
+                    value = Long.decode(entry.system);
+                } catch (NumberFormatException e) { //NOSONAR
+                    // Use the value from the configuration.
+                }
+            }
+            if (value == null && entry.inConfiguration) {
+                value = configuration.getLong(key, null);
+            }
+            entry.longValue = value;
+        }
+        return (Long) value;
+    }
+
+    /**
+     * @param key the key
+     * @return the value as Boolean, {@literal null} if not there
+     */
+    Boolean getBoolean(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Object value = entry.bool;
+        if (value == UNRESOLVED) {
+            if (entry.system != null) {
+                // Same semantic as Boolean.getBoolean.
+                value = Boolean.parseBoolean(entry.system);
+            } else {
+                value = configuration.getBoolean(key, null);
+            }
+            entry.bool = value;
+        }
+        return (Boolean) value;
+    }
+
+    /**
+     * A key of the snapshot. The resolved values are published through volatile fields, a value may be resolved
+     * several times concurrently, but always to the same result.
+     */
+    private static final class Entry {
+        final String system;
+        final boolean inConfiguration;
+
+        volatile Object string = UNRESOLVED;
+        volatile Object integer = UNRESOLVED;
+        volatile Object longValue = UNRESOLVED;
+        volatile Object bool = UNRESOLVED;
+
+        Entry(String system, boolean inConfiguration) {
+            this.system = system;
+            this.inConfiguration = inConfiguration;
+        }
+    }
+}
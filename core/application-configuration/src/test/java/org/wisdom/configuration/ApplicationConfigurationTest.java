@@ -29,13 +29,16 @@ import java.io.File;
 import java.util.Collections;
 import java.util.Dictionary;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
 import org.ow2.chameleon.core.services.Deployer;
 import org.ow2.chameleon.core.services.Watcher;
 import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.configuration.ConfigKey;
 import org.wisdom.api.configuration.Configuration;
 import org.wisdom.api.content.ParameterConverter;
 import org.wisdom.content.converters.ParamConverterEngine;
@@ -319,4 +322,66 @@ public class ApplicationConfigurationTest {
         assertThat(configuration.get("application.title")).isEqualTo("Killer App 1.6.2");
 
     }
+
+    @Test
+    public void testConfigKeys() {
+        System.setProperty(ApplicationConfigurationImpl.APPLICATION_CONFIGURATION, "target/test-classes/conf/regular.conf");
+        System.setProperty("sys", "5");
+        ApplicationConfigurationImpl configuration = new ApplicationConfigurationImpl(new ParamConverterEngine
+                (Collections.<ParameterConverter>emptyList()), null, null);
+
+        ConfigKey<String> string = ConfigKey.of("key", String.class);
+        ConfigKey<Integer> integer = ConfigKey.of("key.int", Integer.class, 0);
+        ConfigKey<Long> lg = ConfigKey.of("key.long", Long.class);
+        ConfigKey<Boolean> bool = ConfigKey.of("key.bool.4", Boolean.class, false);
+        ConfigKey<Integer> sys = ConfigKey.of("sys", Integer.class);
+        ConfigKey<Integer> missing = ConfigKey.of("missing", Integer.class, 42);
+        ConfigKey<Mode> mode = ConfigKey.of("key.mode", Mode.class, Mode.DEV);
+
+        for (int i = 0; i < 2; i++) {
+            // The second iteration reads the memoized values.
+            assertThat(configuration.get(string)).isEqualTo("value");
+            assertThat(configuration.get(integer)).isEqualTo(1);
+            assertThat(configuration.get(lg)).isEqualTo(9999999999999L);
+            assertThat(configuration.get(bool)).isTrue();
+            assertThat(configuration.get(sys)).isEqualTo(5);
+            assertThat(configuration.get(missing)).isEqualTo(42);
+            assertThat(configuration.get(mode)).isEqualTo(Mode.DEV);
+        }
+
+        // The same handle used on another configuration.
+        Configuration conf = configuration.getConfiguration("key");
+        assertThat(conf.get(integer)).isEqualTo(0);
+        assertThat(conf.get(ConfigKey.of("int", Integer.class))).isEqualTo(1);
+        assertThat(configuration.get(integer)).isEqualTo(1);
+    }
+
+    @Test
+    public void testThatValuesAreUpdatedWhenTheFileChanges() throws Exception {
+        File conf = new File("target/reload/conf/application.conf");
+        FileUtils.write(conf, "key=value\nkey.int=1\n");
+        System.setProperty(ApplicationConfigurationImpl.APPLICATION_CONFIGURATION, conf.getAbsolutePath());
+        System.setProperty("application.configuration.watch", "true");
+        try {
+            BundleContext context = mock(BundleContext.class);
+            ArgumentCaptor<Deployer> deployer = ArgumentCaptor.forClass(Deployer.class);
+            when(context.registerService(any(Class.class), deployer.capture(), any(Dictionary.class)))
+                    .thenReturn(mock(ServiceRegistration.class));
+            ApplicationConfigurationImpl configuration = new ApplicationConfigurationImpl(null, context,
+                    mock(Watcher.class));
+            ConfigKey<Integer> key = ConfigKey.of("key.int", Integer.class);
+            assertThat(configuration.get("key")).isEqualTo("value");
+            assertThat(configuration.get(key)).isEqualTo(1);
+
+            FileUtils.write(conf, "key=value2\nkey.int=2\n");
+            assertThat(deployer.getValue().accept(conf)).isTrue();
+            deployer.getValue().onFileChange(conf);
+
+            assertThat(configuration.get("key")).isEqualTo("value2");
+            assertThat(configuration.getIntegerWithDefault("key.int", 0)).isEqualTo(2);
+            assertThat(configuration.get(key)).isEqualTo(2);
+        } finally {
+            System.clearProperty("application.configuration.watch");
+        }
+    }
 }
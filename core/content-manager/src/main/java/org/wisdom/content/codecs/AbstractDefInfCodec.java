@@ -19,11 +19,13 @@
  */
 package org.wisdom.content.codecs;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.LoggerFactory;
 import org.wisdom.api.content.ContentCodec;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
@@ -41,45 +43,95 @@ import java.util.zip.InflaterInputStream;
  */
 public abstract class AbstractDefInfCodec implements ContentCodec {
 
+    private volatile Constructor<? extends DeflaterOutputStream> encoderConstructor;
+
+    private volatile Constructor<? extends InflaterInputStream> decoderConstructor;
+
+    /**
+     * Encodes the given stream. The returned stream encodes the content while it is read,
+     * so the content is never entirely loaded in memory. Errors raised while reading the returned stream are
+     * reported as {@link IOException}.
+     *
+     * @param toEncode Data to encode
+     * @return the encoded stream, or the given stream if the encoder cannot be created
+     * @throws IOException not thrown by this implementation, the errors are reported when the stream is read
+     */
     @Override
     public InputStream encode(InputStream toEncode) throws IOException {
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-
-        OutputStream encoderout;
         try {
-            encoderout = getEncoderClass().getConstructor(OutputStream.class).newInstance(bout);
-            encoderout.write(IOUtils.toByteArray(toEncode));
-            encoderout.flush();
-            encoderout.close();
-        } catch (InstantiationException | IllegalAccessException
-                | IllegalArgumentException | InvocationTargetException
-                | NoSuchMethodException | SecurityException e) {
+            return new EncodingInputStream(toEncode, this);
+        } catch (IOException e) {
             LoggerFactory.getLogger(AbstractDefInfCodec.class).error("Error while encoding", e);
             //TODO notify encoding has not been done
             return toEncode;
         }
-
-        toEncode.close();
-
-        bout.flush();
-        InputStream encoded = new ByteArrayInputStream(bout.toByteArray());
-        bout.close();
-        return encoded;
     }
 
+    /**
+     * Decodes the given stream.
+     *
+     * @param toDecode the encoded data
+     * @return the decoded stream, or the given stream if the decoder cannot be created
+     * @throws IOException not thrown by this implementation
+     */
     @Override
     public InputStream decode(InputStream toDecode) throws IOException {
-        InputStream decoderin;
         try {
-            decoderin = getDecoderClass().getConstructor(InputStream.class).newInstance(toDecode);
-        } catch (InstantiationException | IllegalAccessException
-                | IllegalArgumentException | InvocationTargetException
-                | NoSuchMethodException | SecurityException e) {
+            return createDecoder(toDecode);
+        } catch (IOException e) {
             LoggerFactory.getLogger(AbstractDefInfCodec.class).error("Error while decoding", e);
-            //TODO notify encoding has not been done
+            //TODO notify decoding has not been done
             return toDecode;
         }
-        return decoderin;
+    }
+
+    /**
+     * Creates the encoder writing to the given stream. This default implementation instantiates the class returned
+     * by {@link #getEncoderClass()}, the constructor is looked up only once. Subclasses should override this method
+     * to avoid the reflective call.
+     *
+     * @param out the stream receiving the encoded data
+     * @return the encoder
+     * @throws IOException if the encoder cannot be created
+     */
+    protected DeflaterOutputStream createEncoder(OutputStream out) throws IOException {
+        if (encoderConstructor == null) {
+            encoderConstructor = getConstructor(getEncoderClass(), OutputStream.class);
+        }
+        return newInstance(encoderConstructor, out);
+    }
+
+    /**
+     * Creates the decoder reading the given stream. This default implementation instantiates the class returned
+     * by {@link #getDecoderClass()}, the constructor is looked up only once. Subclasses should override this method
+     * to avoid the reflective call.
+     *
+     * @param in the encoded data
+     * @return the decoder
+     * @throws IOException if the decoder cannot be created
+     */
+    protected InflaterInputStream createDecoder(InputStream in) throws IOException {
+        if (decoderConstructor == null) {
+            decoderConstructor = getConstructor(getDecoderClass(), InputStream.class);
+        }
+        return newInstance(decoderConstructor, in);
+    }
+
+    private static <T> Constructor<? extends T> getConstructor(Class<? extends T> clazz, Class<?> parameter)
+            throws IOException {
+        try {
+            return clazz.getConstructor(parameter);
+        } catch (NoSuchMethodException | SecurityException e) {
+            throw new IOException("Cannot find the constructor of " + clazz.getName(), e);
+        }
+    }
+
+    private static <T> T newInstance(Constructor<? extends T> constructor, Object stream) throws IOException {
+        try {
+            return constructor.newInstance(stream);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IOException("Cannot instantiate " + constructor.getDeclaringClass().getName(), e);
+        }
     }
 
     @Override
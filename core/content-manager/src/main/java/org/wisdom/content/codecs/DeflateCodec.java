@@ -24,6 +24,9 @@ import org.apache.felix.ipojo.annotations.Instantiate;
 import org.apache.felix.ipojo.annotations.Provides;
 import org.wisdom.api.http.EncodingNames;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -51,4 +54,14 @@ public class DeflateCodec extends AbstractDefInfCodec {
     public Class<? extends InflaterInputStream> getDecoderClass() {
         return InflaterInputStream.class;
     }
+
+    @Override
+    protected DeflaterOutputStream createEncoder(OutputStream out) throws IOException {
+        return new DeflaterOutputStream(out);
+    }
+
+    @Override
+    protected InflaterInputStream createDecoder(InputStream in) throws IOException {
+        return new InflaterInputStream(in);
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.content.codecs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An input stream encoding the content of another stream while it is read. The source is read chunk by chunk,
+ * and each chunk is pushed to the encoder. So, only the current chunk and its encoded form are held in memory.
+ */
+class EncodingInputStream extends InputStream {
+
+    /**
+     * The size of the chunks read from the source.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private final InputStream source;
+
+    private final Buffer encoded = new Buffer();
+
+    private final OutputStream encoder;
+
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    /**
+     * The position of the next byte to return in the encoded buffer.
+     */
+    private int position;
+
+    private boolean finished;
+
+    /**
+     * Creates a new encoding stream.
+     *
+     * @param source the stream to encode
+     * @param codec  the codec creating the encoder
+     * @throws IOException if the encoder cannot be created
+     */
+    EncodingInputStream(InputStream source, AbstractDefInfCodec codec) throws IOException {
+        this.source = source;
+        this.encoder = codec.createEncoder(encoded);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return encoded.byteAt(position++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int read = Math.min(len, encoded.size() - position);
+        System.arraycopy(encoded.array(), position, b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return encoded.size() - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) {
+                finished = true;
+                encoder.close();
+            }
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Makes sure encoded bytes are available, encoding the next chunks of the source if required.
+     *
+     * @return {@literal false} if the whole content has been encoded and read
+     * @throws IOException if the source cannot be read or encoded
+     */
+    private boolean fill() throws IOException {
+        while (position == encoded.size()) {
+            if (finished) {
+                return false;
+            }
+            encoded.reset();
+            position = 0;
+            int read = source.read(chunk);
+            if (read == -1) {
+                finished = true;
+                // Write the remaining encoded data and the trailer if any.
+                encoder.close();
+            } else {
+                encoder.write(chunk, 0, read);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A byte array output stream giving access to its internal array.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(CHUNK_SIZE);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        byte byteAt(int index) {
+            return buf[index];
+        }
+    }
+}
@@ -24,6 +24,8 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
@@ -66,19 +68,15 @@ import java.util.Set;
 public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
 
     /**
-     * An object used as lock.
+     * An object used as lock when the set of modules is modified.
      */
     private final Object lock = new Object();
 
     /**
-     * The current object mapper.
+     * The current mappers. They are rebuilt every time the set of modules changes and published atomically,
+     * so readers never lock.
      */
-    private ObjectMapper mapper;
-
-    /**
-     * The current object mapper.
-     */
-    private XmlMapper xml;
+    private volatile Mappers mappers = Mappers.NONE;
 
     /**
      * The document builder factory used to create new document.
@@ -101,9 +99,7 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      * @return the mapper.
      */
     public ObjectMapper mapper() {
-        synchronized (lock) {
-            return mapper;
-        }
+        return mappers.json;
     }
 
     /**
@@ -114,12 +110,10 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      * @throws java.lang.RuntimeException if the JSON Node cannot be created
      */
     public JsonNode toJson(final Object data) {
-        synchronized (lock) {
-            try {
-                return mapper.valueToTree(data);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+        try {
+            return mappers.json.valueToTree(data);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -130,12 +124,10 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      * @return the String built as follows: "callback(json(data))"
      */
     public String toJsonP(final String callback, final Object data) {
-        synchronized (lock) {
-            try {
-                return callback + "(" + stringify(mapper.valueToTree(data)) + ");";
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+        try {
+            return callback + "(" + mappers.writer(data).writeValueAsString(data) + ");";
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -148,12 +140,13 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      * @throws java.lang.RuntimeException if the object cannot be created
      */
     public <A> A fromJson(JsonNode json, Class<A> clazz) {
-        synchronized (lock) {
-            try {
-                return mapper.treeToValue(json, clazz);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+        if (clazz.isInstance(json)) {
+            return clazz.cast(json);
+        }
+        try {
+            return mappers.reader(clazz).readValue(json);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -166,13 +159,10 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      * @throws java.lang.RuntimeException if the object cannot be created
      */
     public <A> A fromJson(String json, Class<A> clazz) {
-        synchronized (lock) {
-            try {
-                JsonNode node = mapper.readTree(json);
-                return mapper.treeToValue(node, clazz);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+        try {
+            return mappers.reader(clazz).readValue(json);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -186,7 +176,7 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      */
     public String stringify(JsonNode json) {
         try {
-            return mapper().writerWithDefaultPrettyPrinter().writeValueAsString(json);
+            return mappers.pretty.writeValueAsString(json);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Cannot stringify the input json node", e);
         }
@@ -200,12 +190,10 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      * @throws java.lang.RuntimeException if the given string is not a valid JSON String
      */
     public JsonNode parse(String src) {
-        synchronized (lock) {
-            try {
-                return mapper.readValue(src, JsonNode.class);
-            } catch (Exception t) {
-                throw new RuntimeException(t);
-            }
+        try {
+            return mappers.reader(JsonNode.class).readValue(src);
+        } catch (Exception t) {
+            throw new RuntimeException(t);
         }
     }
 
@@ -218,12 +206,10 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      * @throws java.lang.RuntimeException if the given stream is not a valid JSON String
      */
     public JsonNode parse(InputStream stream) {
-        synchronized (lock) {
-            try {
-                return mapper.readValue(stream, JsonNode.class);
-            } catch (Exception t) {
-                throw new RuntimeException(t);
-            }
+        try {
+            return mappers.reader(JsonNode.class).readValue(stream);
+        } catch (Exception t) {
+            throw new RuntimeException(t);
         }
     }
 
@@ -249,29 +235,13 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
 
     /**
      * Starts the JSON and XML support.
-     * An empty mapper is created.
+     * The mappers are created with the modules already registered.
      */
     @Validate
     public void validate() {
         LOGGER.info("Starting JSON and XML support services");
-        setMappers(new ObjectMapper(), new XmlMapper());
-    }
-
-    /**
-     * Sets the object mapper.
-     *
-     * @param mapper the object mapper to use
-     */
-    private void setMappers(ObjectMapper mapper, XmlMapper xml) {
         synchronized (lock) {
-            this.mapper = mapper;
-            this.xml = xml;
-            if (mapper != null) {
-                this.mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
-            }
-            if (xml != null) {
-                this.xml.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
-            }
+            rebuildMappers();
         }
     }
 
@@ -281,7 +251,7 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      */
     @Invalidate
     public void invalidate() {
-        setMappers(null, null);
+        mappers = Mappers.NONE;
     }
 
     /**
@@ -298,18 +268,23 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
         }
     }
 
+    /**
+     * Builds a new pair of mappers with the current set of modules and publishes it. Must be called while holding
+     * the lock.
+     */
     private void rebuildMappers() {
-        mapper = new ObjectMapper();
+        ObjectMapper mapper = new ObjectMapper();
         mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
         for (Module module : modules) {
             mapper.registerModule(module);
         }
 
-        xml = new XmlMapper();
+        XmlMapper xml = new XmlMapper();
         xml.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
         for (Module module : modules) {
             xml.registerModule(module);
         }
+        mappers = new Mappers(mapper, xml);
     }
 
     /**
@@ -335,9 +310,7 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
      */
     @Override
     public XmlMapper xmlMapper() {
-        synchronized (lock) {
-            return xml;
-        }
+        return mappers.xml;
     }
 
     /**
@@ -419,7 +392,7 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
     @Override
     public <A> A fromXML(String xml, Class<A> clazz) {
         try {
-            return xmlMapper().readValue(xml, clazz);
+            return mappers.xmlReader(clazz).readValue(xml);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -472,4 +445,88 @@ public class JacksonSingleton implements JacksonModuleRepository, Json, Xml {
         unregister(module);
     }
 
+    /**
+     * An immutable set of mappers built for a given set of modules, with the readers and writers created from
+     * these mappers. Readers and writers are immutable and thread-safe, so they are cached per class.
+     * <p/>
+     * The caches are {@link ClassValue}s, so they do not prevent the classes of the application bundles (and their
+     * class loaders) from being collected when the bundles are uninstalled or refreshed. A map with weak class keys
+     * would not work, as readers and writers reference their class.
+     */
+    private static final class Mappers {
+
+        /**
+         * The mappers used when the component is not started.
+         */
+        static final Mappers NONE = new Mappers(null, null);
+
+        final ObjectMapper json;
+        final XmlMapper xml;
+        final ObjectWriter pretty;
+
+        private final ClassValue<ObjectReader> readers = new ClassValue<ObjectReader>() {
+            @Override
+            protected ObjectReader computeValue(Class<?> clazz) {
+                return json.reader(clazz);
+            }
+        };
+
+        private final ClassValue<ObjectReader> xmlReaders = new ClassValue<ObjectReader>() {
+            @Override
+            protected ObjectReader computeValue(Class<?> clazz) {
+                return xml.reader(clazz);
+            }
+        };
+
+        private final ClassValue<ObjectWriter> writers = new ClassValue<ObjectWriter>() {
+            @Override
+            protected ObjectWriter computeValue(Class<?> clazz) {
+                return json.writerWithType(clazz).withDefaultPrettyPrinter();
+            }
+        };
+
+        Mappers(ObjectMapper json, XmlMapper xml) {
+            this.json = json;
+            this.xml = xml;
+            if (json != null) {
+                this.pretty = json.writerWithDefaultPrettyPrinter();
+            } else {
+                this.pretty = null;
+            }
+        }
+
+        /**
+         * Gets the JSON reader for the given class.
+         *
+         * @param clazz the class
+         * @return the reader
+         */
+        ObjectReader reader(Class<?> clazz) {
+            return readers.get(clazz);
+        }
+
+        /**
+         * Gets the XML reader for the given class.
+         *
+         * @param clazz the class
+         * @return the reader
+         */
+        ObjectReader xmlReader(Class<?> clazz) {
+            return xmlReaders.get(clazz);
+        }
+
+        /**
+         * Gets the JSON writer (using the pretty printer) for the class of the given object.
+         *
+         * @param data the object to write, may be {@literal null}
+         * @return the writer
+         */
+        ObjectWriter writer(Object data) {
+            if (data == null) {
+                return pretty;
+            }
+            return writers.get(data.getClass());
+        }
+    }
+
 }
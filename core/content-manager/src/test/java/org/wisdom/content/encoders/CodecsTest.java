@@ -22,13 +22,20 @@ package org.wisdom.content.encoders;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.wisdom.api.content.ContentCodec;
 import org.wisdom.api.http.EncodingNames;
+import org.wisdom.content.codecs.AbstractDefInfCodec;
 import org.wisdom.content.codecs.DeflateCodec;
 import org.wisdom.content.codecs.GzipCodec;
 import org.wisdom.content.codecs.IdentityCodec;
@@ -65,6 +72,31 @@ public class CodecsTest {
 		assertThat(codec.getEncodingType()).isEqualTo(EncodingNames.IDENTITY);
 	}
 	
+	@Test
+	public void testLargeContentIsStreamed() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			builder.append(i).append(',');
+		}
+		String data = builder.toString();
+		for (ContentCodec codec : new ContentCodec[] {new GzipCodec(), new DeflateCodec()}) {
+			InputStream encoded = codec.encode(IOUtils.toInputStream(data));
+			// Nothing but the header is encoded before the stream is read.
+			assertThat(encoded.available()).isLessThan(100);
+			byte[] bytes = IOUtils.toByteArray(encoded);
+			assertThat(bytes.length).isLessThan(data.length());
+			assertThat(IOUtils.toString(codec.decode(new ByteArrayInputStream(bytes)))).isEqualTo(data);
+		}
+	}
+
+	@Test
+	public void testContentIsNotEncodedWhenTheEncoderCannotBeCreated() throws IOException {
+		ContentCodec codec = new BrokenCodec();
+		InputStream data = IOUtils.toInputStream("data");
+		assertThat(codec.encode(data)).isSameAs(data);
+		assertThat(codec.decode(data)).isSameAs(data);
+	}
+
 	private ContentCodec testCodec(Class<? extends ContentCodec> codecClass) {
 		String data = "abcdefghijklmonpqrstuvwxyz";
 		
@@ -95,4 +127,42 @@ public class CodecsTest {
 		
 		return codec;
 	}
+
+	/**
+	 * A codec using streams without the expected constructors.
+	 */
+	private static class BrokenCodec extends AbstractDefInfCodec {
+
+		@Override
+		public String getEncodingType() {
+			return "broken";
+		}
+
+		@Override
+		public String getContentEncodingHeaderValue() {
+			return "broken";
+		}
+
+		@Override
+		public Class<? extends DeflaterOutputStream> getEncoderClass() {
+			return BrokenOutputStream.class;
+		}
+
+		@Override
+		public Class<? extends InflaterInputStream> getDecoderClass() {
+			return BrokenInputStream.class;
+		}
+	}
+
+	private static class BrokenOutputStream extends DeflaterOutputStream {
+		BrokenOutputStream(OutputStream out, Deflater deflater) {
+			super(out, deflater);
+		}
+	}
+
+	private static class BrokenInputStream extends InflaterInputStream {
+		BrokenInputStream(InputStream in, Inflater inflater) {
+			super(in, inflater);
+		}
+	}
 }
@@ -19,13 +19,17 @@
  */
 package org.wisdom.content.json;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.wisdom.content.jackson.JacksonSingleton;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 
@@ -151,4 +155,49 @@ public class JsonSingletonTest {
     public void testNewArray() throws Exception {
         assertThat(json.newArray()).isNotNull();
     }
+
+    @Test
+    public void testToJsonP() throws Exception {
+        Data data = new Data();
+        data.age = 32;
+        data.name = "clement";
+        String jsonp = json.toJsonP("callback", data);
+        assertThat(jsonp).startsWith("callback(").endsWith(");");
+        JsonNode node = json.parse(jsonp.substring("callback(".length(), jsonp.length() - 2));
+        assertThat(node.get("age").asInt()).isEqualTo(32);
+        assertThat(json.toJsonP("callback", null)).isEqualTo("callback(null);");
+    }
+
+    @Test
+    public void testThatMappersAreRebuiltWhenModulesArriveAndLeave() throws Exception {
+        Data data = new Data();
+        data.age = 32;
+        // Populate the reader and writer caches.
+        assertThat(json.toJsonP("callback", data)).contains("age");
+        assertThat(json.fromJson("{\"age\":32}", Data.class).age).isEqualTo(32);
+
+        SimpleModule module = new SimpleModule("data-module");
+        module.addSerializer(Data.class, new JsonSerializer<Data>() {
+            @Override
+            public void serialize(Data value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+                gen.writeString("data-" + value.age);
+            }
+        });
+        module.addDeserializer(Data.class, new JsonDeserializer<Data>() {
+            @Override
+            public Data deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+                Data data = new Data();
+                data.age = Integer.parseInt(parser.getText().substring("data-".length()));
+                return data;
+            }
+        });
+        ObjectMapper previous = json.mapper();
+        json.register(module);
+        assertThat(json.mapper()).isNotSameAs(previous);
+        assertThat(json.toJsonP("callback", data)).isEqualTo("callback(\"data-32\");");
+        assertThat(json.fromJson("\"data-42\"", Data.class).age).isEqualTo(42);
+
+        json.unregister(module);
+        assertThat(json.toJsonP("callback", data)).contains("age");
+    }
 }
@@ -65,6 +65,7 @@ public class CryptoServiceSingleton implements Crypto {
     private static final Charset UTF_8 = Charsets.UTF_8;
     public static final String HMAC_SHA_1 = "HmacSHA1";
     public static final String PBKDF_2_WITH_HMAC_SHA_1 = "PBKDF2WithHmacSHA1";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     private int keySize;
     private int iterationCount;
@@ -72,6 +73,17 @@ public class CryptoServiceSingleton implements Crypto {
 
     private final String secret;
 
+    /**
+     * The {@link Mac} instances initialized with the application secret, one per thread as they are not
+     * thread-safe. Creating and initializing a {@link Mac} is much more expensive than using it.
+     */
+    private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            return createMac(secret.getBytes(UTF_8));
+        }
+    };
+
     @SuppressWarnings("UnusedDeclaration")
     public CryptoServiceSingleton(@Requires ApplicationConfiguration configuration) {
         this(
@@ -202,7 +214,10 @@ public class CryptoServiceSingleton implements Crypto {
      */
     @Override
     public String sign(String message) {
-        return sign(message, secret.getBytes(Charsets.UTF_8));
+        Preconditions.checkNotNull(message);
+        Mac mac = macs.get();
+        // doFinal resets the mac, so it can be reused for the next message.
+        return toHex(mac.doFinal(message.getBytes(UTF_8)));
     }
 
     /**
@@ -216,6 +231,17 @@ public class CryptoServiceSingleton implements Crypto {
     public String sign(String message, byte[] key) {
         Preconditions.checkNotNull(message);
         Preconditions.checkNotNull(key);
+        // Compute the hmac on input data bytes and convert raw bytes to Hex
+        return toHex(createMac(key).doFinal(message.getBytes(UTF_8)));
+    }
+
+    /**
+     * Creates a hmac_sha1 {@link Mac} instance initialized with the given key.
+     *
+     * @param key the raw key bytes
+     * @return the initialized mac
+     */
+    private static Mac createMac(byte[] key) {
         try {
             // Get an hmac_sha1 key from the raw key bytes
             SecretKeySpec signingKey = new SecretKeySpec(key, HMAC_SHA_1);
@@ -223,20 +249,27 @@ public class CryptoServiceSingleton implements Crypto {
             // Get an hmac_sha1 Mac instance and initialize with the signing key
             Mac mac = Mac.getInstance(HMAC_SHA_1);
             mac.init(signingKey);
-
-            // Compute the hmac on input data bytes
-            byte[] rawHmac = mac.doFinal(message.getBytes(Charsets.UTF_8));
-
-            // Convert raw bytes to Hex
-            byte[] hexBytes = new Hex().encode(rawHmac);
-
-            // Covert array of Hex bytes to a String
-            return new String(hexBytes, UTF_8);
+            return mac;
         } catch (Exception e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    /**
+     * Encodes the given bytes to a lower case hexadecimal String.
+     *
+     * @param bytes the bytes
+     * @return the hexadecimal String
+     */
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] & 0xF0) >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
     /**
      * Create a hash using the default hashing algorithm.
      *
@@ -19,10 +19,18 @@
  */
 package org.wisdom.crypto;
 
+import com.google.common.base.Charsets;
 import org.junit.Test;
 import org.wisdom.api.crypto.Crypto;
 import org.wisdom.api.crypto.Hash;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 
@@ -63,6 +71,31 @@ public class CryptoServiceSingletonTest {
     public void testSign() {
         String s = crypto.sign("hello");
         assertThat(s).isEqualTo("64f2c3cbb5bf009e47c97bdc12973324b8a271d7");
+        // The mac is reused, check it has been reset.
+        assertThat(crypto.sign("hello")).isEqualTo(s);
+        assertThat(crypto.sign("hello", SECRET.getBytes(Charsets.UTF_8))).isEqualTo(s);
+    }
+
+    @Test
+    public void testSignFromSeveralThreads() throws Exception {
+        final String expected = crypto.sign("hello");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return expected.equals(crypto.sign("hello"));
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Test
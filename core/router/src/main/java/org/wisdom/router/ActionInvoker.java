@@ -0,0 +1,42 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router;
+
+import org.wisdom.api.http.Result;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Calls the action method of a route. Invokers are created once per route, when the route is registered, using
+ * {@link ActionInvokers#create(Object, java.lang.reflect.Method)}.
+ */
+public interface ActionInvoker {
+
+    /**
+     * Invokes the action method.
+     *
+     * @param parameters the parameters, must match the action method parameters
+     * @return the result returned by the action method
+     * @throws InvocationTargetException if the action method throws an exception, the exception is wrapped into an
+     *                                   {@link InvocationTargetException} as with {@link java.lang.reflect.Method#invoke(Object, Object...)}
+     * @throws IllegalAccessException    if the action method cannot be called
+     */
+    Result invoke(Object[] parameters) throws InvocationTargetException, IllegalAccessException;
+}
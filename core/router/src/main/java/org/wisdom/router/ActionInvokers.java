@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisdom.api.http.Result;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Creates {@link ActionInvoker} objects.
+ * <p>
+ * The created invokers use a {@link MethodHandle} bound to the controller object, so the access checks and the
+ * argument type checks are done once when the route is registered and not on every invocation. If the method
+ * handle cannot be created, a reflective invoker is used.
+ * <p>
+ * As with {@link Method#invoke(Object, Object...)}, the exceptions thrown by the action method are wrapped in an
+ * {@link InvocationTargetException}, while parameters that do not match the method signature are reported as
+ * {@link IllegalArgumentException}.
+ */
+public final class ActionInvokers {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionInvokers.class);
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    /**
+     * Creates the {@link InvocationTargetException} wrapping a throwable raised by the action method.
+     */
+    private static final MethodHandle WRAP;
+
+    static {
+        try {
+            WRAP = MethodHandles.lookup().findConstructor(InvocationTargetException.class,
+                    MethodType.methodType(void.class, Throwable.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ActionInvokers() {
+        // Avoid direct instantiation.
+    }
+
+    /**
+     * Creates the invoker calling the given method on the given object.
+     *
+     * @param controller the controller object
+     * @param method     the action method
+     * @return the invoker
+     */
+    public static ActionInvoker create(Object controller, Method method) {
+        try {
+            MethodHandle target = MethodHandles.lookup().unreflect(method).bindTo(controller);
+            // Only the throwables raised by the method are wrapped, the argument conversions are done outside.
+            MethodHandle rethrow = MethodHandles.filterArguments(
+                    MethodHandles.throwException(target.type().returnType(), InvocationTargetException.class),
+                    0, WRAP);
+            MethodHandle handle = MethodHandles.catchException(target, Throwable.class, rethrow)
+                    .asSpreader(Object[].class, method.getParameterTypes().length)
+                    .asType(INVOKER_TYPE);
+            return new MethodHandleInvoker(handle);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            LOGGER.debug("Cannot create a method handle for {}, using reflection", method, e);
+            return reflective(controller, method);
+        }
+    }
+
+    /**
+     * Creates an invoker calling the given method using reflection.
+     *
+     * @param controller the controller object
+     * @param method     the action method
+     * @return the invoker
+     */
+    public static ActionInvoker reflective(Object controller, Method method) {
+        return new ReflectiveInvoker(controller, method);
+    }
+
+    /**
+     * An invoker using a method handle bound to the controller object.
+     */
+    private static final class MethodHandleInvoker implements ActionInvoker {
+        private final MethodHandle handle;
+
+        private MethodHandleInvoker(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Result invoke(Object[] parameters) throws InvocationTargetException {
+            try {
+                return (Result) (Object) handle.invokeExact(parameters);
+            } catch (InvocationTargetException e) {
+                // Thrown by the action method.
+                throw e;
+            } catch (ClassCastException | WrongMethodTypeException | NullPointerException e) {
+                // The parameters do not match the method signature, keep the same semantic as the reflective call.
+                throw new IllegalArgumentException("argument type mismatch", e);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) { //NOSONAR
+                // Cannot happen, checked exceptions are only thrown by the action method.
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+    }
+
+    /**
+     * An invoker using {@link Method#invoke(Object, Object...)}.
+     */
+    private static final class ReflectiveInvoker implements ActionInvoker {
+        private final Object controller;
+        private final Method method;
+
+        private ReflectiveInvoker(Object controller, Method method) {
+            this.controller = controller;
+            this.method = method;
+        }
+
+        @Override
+        public Result invoke(Object[] parameters) throws InvocationTargetException, IllegalAccessException {
+            return (Result) method.invoke(controller, parameters);
+        }
+    }
+}
@@ -44,6 +44,7 @@ public class DefaultWebSocketCallback {
 
     private final Controller controller;
     private final Method method;
+    private final String uri;
     private final Pattern regex;
     private final ImmutableList<String> parameterNames;
     protected final WebSocketRouter router;
@@ -62,6 +63,7 @@ public class DefaultWebSocketCallback {
         this.router = router;
         this.controller = controller;
         this.method = method;
+        this.uri = uri;
         this.regex = Pattern.compile(RouteUtils.convertRawUriToRegex(uri));
         this.parameterNames = ImmutableList.copyOf(RouteUtils.extractParameters(uri));
     }
@@ -80,6 +82,13 @@ public class DefaultWebSocketCallback {
         return method;
     }
 
+    /**
+     * @return the listened uri, using the Wisdom's URI syntax.
+     */
+    public String getUri() {
+        return uri;
+    }
+
     /**
      * @return the computed URI regular expression.
      */
@@ -187,7 +196,21 @@ public class DefaultWebSocketCallback {
     public void invoke(String uri, String client, byte[] content) throws
             InvocationTargetException,
             IllegalAccessException {
-        Map<String, String> values = getPathParametersEncoded(uri);
+        invoke(getPathParametersEncoded(uri), client, content);
+    }
+
+    /**
+     * Invokes the callback with already extracted path parameters.
+     *
+     * @param values  the path parameters (name - value)
+     * @param client  the client identifier (the one having sent the message)
+     * @param content the payload of the message
+     * @throws InvocationTargetException when the callback throws an exception
+     * @throws IllegalAccessException    when the callback cannot be called
+     */
+    public void invoke(Map<String, String> values, String client, byte[] content) throws
+            InvocationTargetException,
+            IllegalAccessException {
         Object[] parameters = new Object[arguments.size()];
         for (int i = 0; i < arguments.size(); i++) {
             ActionParameter argument = arguments.get(i);
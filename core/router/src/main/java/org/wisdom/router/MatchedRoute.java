@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router;
+
+import org.wisdom.api.Controller;
+import org.wisdom.api.http.HttpMethod;
+import org.wisdom.api.http.Result;
+import org.wisdom.api.router.Route;
+import org.wisdom.api.router.parameters.ActionParameter;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A route returned by the router for a specific request. It holds the path parameters extracted while looking
+ * up the route, so they are not computed again when the context reads them.
+ */
+public class MatchedRoute extends Route {
+
+    private final RouteDelegate route;
+    private final String path;
+    private final Map<String, String> parameters;
+
+    /**
+     * Creates a new matched route.
+     *
+     * @param route      the route
+     * @param path       the path of the request
+     * @param parameters the path parameters (encoded) extracted from the path
+     */
+    public MatchedRoute(RouteDelegate route, String path, Map<String, String> parameters) {
+        this.route = route;
+        this.path = path;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return the route delegate.
+     */
+    public RouteDelegate getDelegate() {
+        return route;
+    }
+
+    @Override
+    public Route getCanonicalRoute() {
+        return route;
+    }
+
+    @Override
+    public String getUrl() {
+        return route.getUrl();
+    }
+
+    @Override
+    public HttpMethod getHttpMethod() {
+        return route.getHttpMethod();
+    }
+
+    @Override
+    public Class<? extends Controller> getControllerClass() {
+        return route.getControllerClass();
+    }
+
+    @Override
+    public Method getControllerMethod() {
+        return route.getControllerMethod();
+    }
+
+    @Override
+    public boolean matches(HttpMethod method, String uri) {
+        return route.matches(method, uri);
+    }
+
+    @Override
+    public boolean matches(String method, String uri) {
+        return route.matches(method, uri);
+    }
+
+    /**
+     * Gets the path parameters. If the given uri is the one used to find the route, the parameters extracted
+     * during the lookup are returned.
+     *
+     * @param uri The whole encoded uri.
+     * @return the map of parameters
+     */
+    @Override
+    public Map<String, String> getPathParametersEncoded(String uri) {
+        if (path.equals(uri)) {
+            return parameters;
+        }
+        return route.getPathParametersEncoded(uri);
+    }
+
+    @Override
+    public Controller getControllerObject() {
+        return route.getControllerObject();
+    }
+
+    @Override
+    public List<ActionParameter> getArguments() {
+        return route.getArguments();
+    }
+
+    @Override
+    public Result invoke() throws Exception {
+        return route.invoke();
+    }
+
+    @Override
+    public boolean isUnbound() {
+        return route.isUnbound();
+    }
+
+    @Override
+    public String toString() {
+        return route.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatchedRoute) {
+            RouteDelegate other = ((MatchedRoute) o).route;
+            return route == other || route.equals(other);
+        }
+        return route.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return route.hashCode();
+    }
+}
@@ -25,9 +25,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wisdom.api.Controller;
 import org.wisdom.api.content.ParameterConverters;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.http.HttpMethod;
 import org.wisdom.api.interception.Filter;
 import org.wisdom.api.interception.Interceptor;
+import org.wisdom.api.interception.UriMatcher;
 import org.wisdom.api.router.AbstractRouter;
 import org.wisdom.api.router.Route;
 import org.wisdom.api.router.RouteUtils;
@@ -37,6 +39,7 @@ import javax.validation.Validator;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The request router responsible for handling request and invoke the action methods.
@@ -76,10 +79,21 @@ public class RequestRouter extends AbstractRouter {
     /**
      * The comparator used to sort filters.
      */
-    private Set<Filter> filters = new FilterSet();
+    private FilterSet filters = new FilterSet();
 
-    @Requires(optional = true, specification = Interceptor.class)
-    private List<Interceptor<?>> interceptors;
+    /**
+     * The matchers of the bound filters, computed once when the filter is bound. Keys are the instances stored in
+     * {@link #filters}.
+     */
+    private final Map<Filter, UriMatcher> matchers = new IdentityHashMap<>();
+
+    private List<Interceptor<?>> interceptors = new ArrayList<>();
+
+    /**
+     * Incremented every time a filter or an interceptor arrives or leaves. Route delegates compare it with the
+     * generation of their cached chain to know when the chain must be rebuilt.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
 
     @Requires(optional = true, proxy = false)
     private Validator validator;
@@ -87,8 +101,20 @@ public class RequestRouter extends AbstractRouter {
     @Requires(optional = true)
     private ParameterConverters engine;
 
+    /**
+     * Receives the duration of the binding, validation and action phases, {@literal null} if not available.
+     */
+    @Requires(optional = true, nullable = false, proxy = false)
+    private RequestRecorder recorder;
+
     private Set<RouteDelegate> routes = new LinkedHashSet<>();
 
+    /**
+     * The routing index built from {@link #routes}. It is rebuilt when controllers arrive or leave,
+     * so lookups do not require any lock.
+     */
+    private volatile RouteIndex index = RouteIndex.EMPTY;
+
     /**
      * Binds a new controller.
      *
@@ -118,6 +144,8 @@ public class RequestRouter extends AbstractRouter {
                     "the controller is ignored, reason: {}", controller, e.getMessage(), e);
             // remove all new routes as one has failed
             routes.removeAll(newRoutes);
+        } finally {
+            index = new RouteIndex(routes);
         }
     }
 
@@ -135,6 +163,7 @@ public class RequestRouter extends AbstractRouter {
                 routes.remove(r);
             }
         }
+        index = new RouteIndex(routes);
     }
 
     private void ensureNoConflicts(List<Route> newRoutes) {
@@ -167,12 +196,13 @@ public class RequestRouter extends AbstractRouter {
      * Stopping the router. All routes are cleared.
      */
     @Invalidate
-    public void stop() {
+    public synchronized void stop() {
         routes.clear();
+        index = RouteIndex.EMPTY;
     }
 
-    private synchronized Set<Route> copy() {
-        return new LinkedHashSet<Route>(routes);
+    private Set<Route> copy() {
+        return new LinkedHashSet<Route>(index.routes());
     }
 
     /**
@@ -184,10 +214,9 @@ public class RequestRouter extends AbstractRouter {
      */
     @Override
     public Route getRouteFor(HttpMethod method, String uri) {
-        for (Route route : copy()) {
-            if (route.matches(method, uri)) {
-                return route;
-            }
+        Route route = index.lookup(method, uri);
+        if (route != null) {
+            return route;
         }
         // Creates an unbound route.
         return new RouteDelegate(this, new Route(method, uri, null, null));
@@ -203,7 +232,7 @@ public class RequestRouter extends AbstractRouter {
      */
     @Override
     public String getReverseRouteFor(String className, String method, Map<String, Object> params) {
-        for (Route route : copy()) {
+        for (Route route : index.routes()) {
             if (route.getControllerClass().getName().equals(className)
                     && route.getControllerMethod().getName().equals(method)) {
                 return computeUrlForRoute(route, params);
@@ -316,12 +345,50 @@ public class RequestRouter extends AbstractRouter {
         this.validator = validator;
     }
 
+    /**
+     * @return the recorder receiving the duration of the request phases, {@literal null} if none.
+     */
+    public RequestRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * For testing purpose only.
+     *
+     * @param recorder the recorder to use
+     */
+    public void setRecorder(RequestRecorder recorder) {
+        this.recorder = recorder;
+    }
+
     protected Set<Filter> getFilters() {
         return filters;
     }
 
-    protected List<Interceptor<?>> getInterceptors() {
-        return interceptors;
+    /**
+     * @return a copy of the current filters associated with their matcher, sorted by priority. The matcher is
+     * {@literal null} for filters not handling any URI.
+     */
+    protected synchronized Map<Filter, UriMatcher> getFilterMatchers() {
+        Map<Filter, UriMatcher> copy = new LinkedHashMap<>();
+        for (Filter filter : filters) {
+            copy.put(filter, matchers.get(filter));
+        }
+        return copy;
+    }
+
+    /**
+     * @return a copy of the current list of interceptors.
+     */
+    protected synchronized List<Interceptor<?>> getInterceptors() {
+        return new ArrayList<>(interceptors);
+    }
+
+    /**
+     * @return the current generation of the filter and interceptor sets.
+     */
+    protected int getGeneration() {
+        return generation.get();
     }
 
     protected ParameterConverters getParameterConverterEngine() {
@@ -334,8 +401,12 @@ public class RequestRouter extends AbstractRouter {
      * @param filter the filter
      */
     @Bind(aggregate = true, optional = true)
-    public void bindFilter(Filter filter) {
-        filters.add(filter);
+    public synchronized void bindFilter(Filter filter) {
+        if (filters.add(filter)) {
+            // Patterns are compiled (and analyzed) once, instead of every time a chain is built.
+            matchers.put(filter, getMatcher(filter));
+            generation.incrementAndGet();
+        }
     }
 
     /**
@@ -344,8 +415,49 @@ public class RequestRouter extends AbstractRouter {
      * @param filter the filter
      */
     @Unbind
-    public void unbindFilter(Filter filter) {
-        filters.remove(filter);
+    public synchronized void unbindFilter(Filter filter) {
+        int index = filters.indexOf(filter);
+        if (index != -1) {
+            // The given object may be another proxy on the same filter.
+            matchers.remove(filters.remove(index));
+            generation.incrementAndGet();
+        }
+    }
+
+    private static UriMatcher getMatcher(Filter filter) {
+        if (filter instanceof Interceptor) {
+            // Interceptors are attached to actions, not to URIs.
+            return null;
+        }
+        try {
+            return UriMatcher.of(filter);
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot compute the URIs handled by the filter {}, the filter is ignored", filter, e);
+            return null;
+        }
+    }
+
+    /**
+     * Binds an interceptor.
+     *
+     * @param interceptor the interceptor
+     */
+    @Bind(aggregate = true, optional = true, specification = Interceptor.class)
+    public synchronized void bindInterceptor(Interceptor<?> interceptor) {
+        interceptors.add(interceptor);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Unbinds an interceptor.
+     *
+     * @param interceptor the interceptor
+     */
+    @Unbind(specification = Interceptor.class)
+    public synchronized void unbindInterceptor(Interceptor<?> interceptor) {
+        if (interceptors.remove(interceptor)) {
+            generation.incrementAndGet();
+        }
     }
 
     /**
@@ -22,6 +22,9 @@ package org.wisdom.router;
 import com.google.common.base.Preconditions;
 import org.wisdom.api.Controller;
 import org.wisdom.api.annotations.Interception;
+import org.wisdom.api.engine.RequestPhase;
+import org.wisdom.api.engine.RequestRecorder;
+import org.wisdom.api.http.AsyncResult;
 import org.wisdom.api.http.Context;
 import org.wisdom.api.http.HttpMethod;
 import org.wisdom.api.http.Result;
@@ -29,9 +32,10 @@ import org.wisdom.api.http.Results;
 import org.wisdom.api.interception.Filter;
 import org.wisdom.api.interception.Interceptor;
 import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.interception.UriMatcher;
 import org.wisdom.api.router.Route;
 import org.wisdom.api.router.parameters.ActionParameter;
-import org.wisdom.router.parameter.Bindings;
+import org.wisdom.router.parameter.ParameterBinder;
 
 import javax.validation.Constraint;
 import javax.validation.ConstraintViolation;
@@ -48,10 +52,20 @@ import java.util.regex.Pattern;
  */
 public class RouteDelegate extends Route {
 
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
     private final Route route;
     private final RequestRouter router;
     private final boolean mustValidate;
     private final Map<String, Object> interceptors;
+    private final Filter endOfChain = new EndOfChainInvoker();
+    private final ParameterBinder binder;
+    private final ActionInvoker invoker;
+
+    /**
+     * The cached filter chain, {@literal null} until the first invocation.
+     */
+    private volatile Chain chain;
 
     public RouteDelegate(RequestRouter router, Route route) {
         this.route = route;
@@ -59,9 +73,13 @@ public class RouteDelegate extends Route {
         if (!route.isUnbound()) {
             this.mustValidate = detectValidationRequirement(route.getControllerMethod());
             this.interceptors = extractInterceptors();
+            this.binder = new ParameterBinder(route.getArguments());
+            this.invoker = ActionInvokers.create(route.getControllerObject(), route.getControllerMethod());
         } else {
             this.mustValidate = false;
             this.interceptors = Collections.emptyMap();
+            this.binder = null;
+            this.invoker = null;
         }
 
     }
@@ -161,19 +179,21 @@ public class RouteDelegate extends Route {
     public Result invoke() throws Exception {
         Context context = Context.CONTEXT.get();
         Preconditions.checkNotNull(context);
-        List<ActionParameter> arguments = route.getArguments();
-        Object[] parameters = new Object[arguments.size()];
-        for (int i = 0; i < arguments.size(); i++) {
-            ActionParameter argument = arguments.get(i);
-            parameters[i] = Bindings.create(argument, context, router.getParameterConverterEngine());
-        }
 
+        // The parameters are computed here only if they need to be validated, otherwise they are computed once at
+        // the end of the chain.
+        Object[] parameters = null;
         if (mustValidate) {
             Validator validator = router.getValidator();
             if (validator != null) {
+                RequestRecorder recorder = router.getRecorder();
+                long start = now(recorder);
+                parameters = binder.bind(context, router.getParameterConverterEngine());
+                start = record(recorder, RequestPhase.BINDING, start);
                 Set<ConstraintViolation<Controller>> violations =
                         validator.forExecutables().validateParameters(getControllerObject(), getControllerMethod(),
                                 parameters);
+                record(recorder, RequestPhase.VALIDATION, start);
 
                 if (!violations.isEmpty()) {
                     return Results.badRequest(violations).json();
@@ -182,42 +202,56 @@ public class RouteDelegate extends Route {
         }
 
 
-        // Build chain if needed.
-        Set<Filter> filters = router.getFilters();
-        List<Filter> chain = new ArrayList<>();
-        for (Filter filter : filters) {
-            if (!(filter instanceof Interceptor)) {
-                // Interceptors will be handled after filters.
-                if (filter.uri().matcher(route.getUrl()).matches()) {
-                    chain.add(filter);
-                }
-            }
-        }
-
-        Map<Interceptor<?>, Object> itcpConfiguration = new LinkedHashMap<>();
-        if (!interceptors.isEmpty()) {
-            for (Map.Entry<String, Object> entry : interceptors.entrySet()) {
-                final Interceptor<?> interceptor = getInterceptorForAnnotation(entry.getKey());
-                if (interceptor == null) {
-                    return Results.badRequest("Missing interceptor handling " + entry.getKey());
-                }
-                itcpConfiguration.put(interceptor, entry.getValue());
-                chain.add(interceptor);
-            }
+        Chain current = getChain();
+        if (current.missing != null) {
+            return Results.badRequest("Missing interceptor handling " + current.missing);
         }
 
         // Ready to call the action.
-        Filter endOfChain = new EndOfChainInvoker();
-        RequestContext ctx = new RequestContext(this, chain, itcpConfiguration, parameters, endOfChain);
+        RequestContext ctx = new InvocationContext(this, current, parameters);
         return ctx.proceed();
     }
 
-    private Interceptor<?> getInterceptorForAnnotation(String className) {
-        List<Interceptor<?>> localInterceptors = router.getInterceptors();
-        if (localInterceptors == null) {
-            return null;
+    /**
+     * Gets the filter chain to use for the current request. The chain is computed on the first invocation and
+     * recomputed only when a filter or an interceptor has arrived or left since it was built.
+     *
+     * @return the chain
+     */
+    private Chain getChain() {
+        // Read the generation before building the chain, so a concurrent modification triggers a new computation.
+        int generation = router.getGeneration();
+        Chain current = chain;
+        if (current == null || current.generation != generation) {
+            current = new Chain(generation);
+            chain = current;
         }
-        for (Interceptor<?> interceptor : localInterceptors) {
+        return current;
+    }
+
+    private static long now(RequestRecorder recorder) {
+        return recorder == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a phase, if a recorder is available.
+     *
+     * @param recorder the recorder, may be {@literal null}
+     * @param phase    the phase
+     * @param start    the start time of the phase
+     * @return the end time of the phase, so it can be used as start time of the next phase
+     */
+    private long record(RequestRecorder recorder, RequestPhase phase, long start) {
+        if (recorder == null) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        recorder.record(this, phase, now - start);
+        return now;
+    }
+
+    private static Interceptor<?> getInterceptorForAnnotation(List<Interceptor<?>> interceptors, String className) {
+        for (Interceptor<?> interceptor : interceptors) {
             if (interceptor.annotation().getName().equals(className)) {
                 return interceptor;
             }
@@ -267,17 +301,24 @@ public class RouteDelegate extends Route {
             if (isUnbound()) {
                 return Results.notFound();
             } else {
-                // The interceptor and filter may have change some values, recompute the parameters.
-                final List<ActionParameter> arguments = getArguments();
-                Object[] parameters = new Object[arguments.size()];
-                for (int i = 0; i < arguments.size(); i++) {
-                    ActionParameter argument = arguments.get(i);
-                    parameters[i] = Bindings.create(argument, context.context(),
-                            router.getParameterConverterEngine());
+                Object[] parameters = null;
+                if (context instanceof InvocationContext) {
+                    parameters = ((InvocationContext) context).reusableParameters();
                 }
-                return (Result) getControllerMethod().invoke(
-                        getControllerObject(), parameters);
-
+                RequestRecorder recorder = router.getRecorder();
+                if (parameters == null) {
+                    // Not computed yet, or the interceptors and filters may have changed some values.
+                    long start = now(recorder);
+                    parameters = binder.bind(context.context(), router.getParameterConverterEngine());
+                    record(recorder, RequestPhase.BINDING, start);
+                }
+                long start = now(recorder);
+                Result result = invoker.invoke(parameters);
+                if (!(result instanceof AsyncResult)) {
+                    // The engine records the computation of asynchronous results.
+                    record(recorder, RequestPhase.ACTION, start);
+                }
+                return result;
             }
         }
 
@@ -299,5 +340,73 @@ public class RouteDelegate extends Route {
             return -1;
         }
     }
-}
 
+    /**
+     * An immutable filter chain computed for the current route.
+     */
+    private final class Chain {
+        private final int generation;
+        private final Filter[] filters;
+        private final Map<Interceptor<?>, Object> configurations;
+        /**
+         * The name of the annotation without interceptor, {@literal null} if all interceptors are available.
+         */
+        private final String missing;
+
+        private Chain(int generation) {
+            this.generation = generation;
+            List<Filter> list = new ArrayList<>();
+            for (Map.Entry<Filter, UriMatcher> entry : router.getFilterMatchers().entrySet()) {
+                // Interceptors will be handled after filters, they do not have a matcher.
+                UriMatcher matcher = entry.getValue();
+                if (matcher != null && matcher.matches(route.getUrl())) {
+                    list.add(entry.getKey());
+                }
+            }
+
+            Map<Interceptor<?>, Object> itcpConfiguration = new LinkedHashMap<>();
+            String missingInterceptor = null;
+            if (!interceptors.isEmpty()) {
+                List<Interceptor<?>> available = router.getInterceptors();
+                for (Map.Entry<String, Object> entry : interceptors.entrySet()) {
+                    final Interceptor<?> interceptor = getInterceptorForAnnotation(available, entry.getKey());
+                    if (interceptor == null) {
+                        missingInterceptor = entry.getKey();
+                        break;
+                    }
+                    itcpConfiguration.put(interceptor, entry.getValue());
+                    list.add(interceptor);
+                }
+            }
+            list.add(endOfChain);
+
+            this.filters = list.toArray(new Filter[list.size()]);
+            this.configurations = Collections.unmodifiableMap(itcpConfiguration);
+            this.missing = missingInterceptor;
+        }
+    }
+
+    /**
+     * The request context created by the route delegate. It holds the parameters computed before calling the chain,
+     * if any.
+     */
+    private static final class InvocationContext extends RequestContext {
+        private final Object[] parameters;
+        private final boolean reusable;
+
+        private InvocationContext(Route route, Chain chain, Object[] parameters) {
+            super(route, chain.filters, chain.configurations, parameters == null ? NO_PARAMETERS : parameters);
+            this.parameters = parameters;
+            // Only the end of chain, no one can have changed the context.
+            this.reusable = chain.filters.length == 1;
+        }
+
+        /**
+         * @return the parameters computed before the chain if they can be used to invoke the action,
+         * {@literal null} otherwise
+         */
+        private Object[] reusableParameters() {
+            return reusable ? parameters : null;
+        }
+    }
+}
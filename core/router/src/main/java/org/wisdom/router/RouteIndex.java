@@ -0,0 +1,404 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router;
+
+import com.google.common.collect.ImmutableList;
+import org.wisdom.api.http.HttpMethod;
+import org.wisdom.api.router.Route;
+import org.wisdom.api.router.RouteUtils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable index of routes used to find the route handling a request without iterating over all the routes.
+ * <p>
+ * For each HTTP method, the route uris are organized in a tree of path segments. Static segments are edges
+ * matched using plain string comparisons, {@code {name}} placeholders are edges matching a whole segment,
+ * and trailing {@code {name+}}, {@code {name*}} and {@code *} are matched against the rest of the path. Regular
+ * expressions are only used from the first segment that really needs it (for instance {@code {id<[0-9]+>}}).
+ * <p>
+ * When several routes match the same request, the route registered first wins, as in a sequential lookup.
+ * Instances are never modified once built, so they can be shared between threads and replaced atomically.
+ */
+final class RouteIndex {
+
+    /**
+     * An empty index.
+     */
+    static final RouteIndex EMPTY = new RouteIndex(Collections.<RouteDelegate>emptyList());
+
+    /**
+     * Characters requiring a segment to be matched using a regular expression. The dot is deliberately omitted, so
+     * segments such as {@code favicon.ico} are considered as static.
+     */
+    private static final String REGEX_CHARACTERS = "{}<>*+?()[]\\|^$";
+
+    private final List<RouteDelegate> routes;
+
+    private final Map<HttpMethod, Node> trees = new EnumMap<>(HttpMethod.class);
+
+    /**
+     * Builds the index.
+     *
+     * @param delegates the routes, in registration order
+     */
+    RouteIndex(Collection<RouteDelegate> delegates) {
+        this.routes = ImmutableList.copyOf(delegates);
+        int order = 0;
+        for (RouteDelegate delegate : routes) {
+            Node root = trees.get(delegate.getHttpMethod());
+            if (root == null) {
+                root = new Node();
+                trees.put(delegate.getHttpMethod(), root);
+            }
+            insert(root, delegate, order++);
+        }
+    }
+
+    /**
+     * @return the indexed routes in registration order.
+     */
+    List<RouteDelegate> routes() {
+        return routes;
+    }
+
+    /**
+     * Finds the route handling the given request.
+     *
+     * @param method the HTTP method
+     * @param uri    the path of the request
+     * @return the route, {@literal null} if none matches. If the route declares path parameters,
+     * the returned route holds the parameter values extracted during the lookup.
+     */
+    Route lookup(HttpMethod method, String uri) {
+        Node root = trees.get(method);
+        if (root == null || uri == null) {
+            return null;
+        }
+        Leaf leaf = root.find(uri, 0);
+        if (leaf == null) {
+            return null;
+        }
+        if (!leaf.hasParameters) {
+            return leaf.route;
+        }
+        return new MatchedRoute(leaf.route, uri, leaf.extract(uri));
+    }
+
+    private static void insert(Node root, RouteDelegate delegate, int order) {
+        String uri = delegate.getUrl();
+        if (!uri.startsWith("/")) {
+            // Unusual uri, use the regex for the whole uri.
+            root.tails.add(Leaf.regex(delegate, order, new String[0], new String[0], uri));
+            return;
+        }
+
+        List<String> pieces = split(uri);
+        List<String> labels = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Node current = root;
+        for (int i = 0; i < pieces.size(); i++) {
+            String piece = pieces.get(i);
+            String segment = piece.substring(1);
+            boolean last = i == pieces.size() - 1;
+
+            if (last && isPlaceholder(segment, '+')) {
+                current.tails.add(Leaf.tail(delegate, order, toArray(labels), toArray(names), Leaf.ONE_OR_MORE,
+                        segment.substring(1, segment.length() - 2)));
+                return;
+            } else if (last && (isPlaceholder(segment, '*') || "*".equals(segment))) {
+                String name = "*".equals(segment) ? null : segment.substring(1, segment.length() - 2);
+                current.tails.add(Leaf.tail(delegate, order, toArray(labels), toArray(names), Leaf.ZERO_OR_MORE,
+                        name));
+                return;
+            } else if (isPlaceholder(segment, (char) 0)) {
+                if (current.parameter == null) {
+                    current.parameter = new Node();
+                }
+                current = current.parameter;
+                labels.add(null);
+                names.add(segment.substring(1, segment.length() - 1));
+            } else if (isStatic(segment)) {
+                current = current.child(piece);
+                labels.add(piece);
+                names.add(null);
+            } else {
+                // From here, we need a regex.
+                StringBuilder remaining = new StringBuilder();
+                for (int j = i; j < pieces.size(); j++) {
+                    remaining.append(pieces.get(j));
+                }
+                current.tails.add(Leaf.regex(delegate, order, toArray(labels), toArray(names),
+                        remaining.toString()));
+                return;
+            }
+        }
+
+        if (current.terminal == null) {
+            current.terminal = new Leaf(delegate, order, toArray(labels), toArray(names), Leaf.NONE, null, null,
+                    Collections.<String>emptyList());
+        }
+    }
+
+    /**
+     * Splits the given uri into pieces starting with '/'. '/' characters contained in placeholders are ignored.
+     *
+     * @param uri the uri, must start with '/'
+     * @return the list of pieces
+     */
+    private static List<String> split(String uri) {
+        List<String> pieces = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 1; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            } else if (c == '/' && depth == 0) {
+                pieces.add(uri.substring(start, i));
+                start = i;
+            }
+        }
+        pieces.add(uri.substring(start));
+        return pieces;
+    }
+
+    /**
+     * Checks whether the given segment is a placeholder such as {@code {name}}, {@code {name+}} or {@code {name*}}.
+     *
+     * @param segment the segment
+     * @param suffix  the expected character before the closing brace, {@literal 0} for simple placeholders
+     * @return {@literal true} if the segment is a placeholder of the given kind
+     */
+    private static boolean isPlaceholder(String segment, char suffix) {
+        int end = suffix == 0 ? segment.length() - 1 : segment.length() - 2;
+        if (end < 2 || segment.charAt(0) != '{' || segment.charAt(segment.length() - 1) != '}'
+                || (suffix != 0 && segment.charAt(end) != suffix)) {
+            return false;
+        }
+        for (int i = 1; i < end; i++) {
+            if (REGEX_CHARACTERS.indexOf(segment.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the given uri or segment can be matched using a plain string comparison.
+     *
+     * @param segment the uri or segment
+     * @return {@literal true} if the segment does not contain characters having a meaning in regular expressions
+     * (except the dot)
+     */
+    static boolean isStatic(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (REGEX_CHARACTERS.indexOf(segment.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] toArray(List<String> list) {
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Returns the leaf with the lowest registration order.
+     */
+    private static Leaf first(Leaf a, Leaf b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.order <= b.order ? a : b;
+    }
+
+    /**
+     * A node of the tree.
+     */
+    private static final class Node {
+
+        private String[] labels = new String[0];
+        private Node[] children = new Node[0];
+        private Node parameter;
+        private Leaf terminal;
+        private final List<Leaf> tails = new ArrayList<>();
+
+        private Node child(String label) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].equals(label)) {
+                    return children[i];
+                }
+            }
+            Node node = new Node();
+            labels = Arrays.copyOf(labels, labels.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            labels[labels.length - 1] = label;
+            children[children.length - 1] = node;
+            return node;
+        }
+
+        private Leaf find(String uri, int position) {
+            int length = uri.length();
+            Leaf best = null;
+            if (position == length) {
+                best = terminal;
+            } else {
+                for (int i = 0; i < labels.length; i++) {
+                    String label = labels[i];
+                    int end = position + label.length();
+                    if (end <= length
+                            && (end == length || uri.charAt(end) == '/')
+                            && uri.regionMatches(position, label, 0, label.length())) {
+                        best = first(best, children[i].find(uri, end));
+                    }
+                }
+                if (parameter != null && uri.charAt(position) == '/') {
+                    int end = uri.indexOf('/', position + 1);
+                    if (end == -1) {
+                        end = length;
+                    }
+                    if (end > position + 1) {
+                        best = first(best, parameter.find(uri, end));
+                    }
+                }
+            }
+            for (Leaf tail : tails) {
+                if (best != null && best.order < tail.order) {
+                    continue;
+                }
+                if (tail.matches(uri, position)) {
+                    best = tail;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * The end of a path in the tree, i.e. a route.
+     */
+    private static final class Leaf {
+        static final int NONE = 0;
+        static final int ONE_OR_MORE = 1;
+        static final int ZERO_OR_MORE = 2;
+        static final int REGEX = 3;
+
+        private final RouteDelegate route;
+        private final int order;
+        /**
+         * For each segment consumed in the tree, the static piece, or {@literal null} for placeholders.
+         */
+        private final String[] labels;
+        /**
+         * For each segment consumed in the tree, the parameter name, or {@literal null} for static pieces.
+         */
+        private final String[] names;
+        private final int tail;
+        private final String tailName;
+        private final Pattern tailRegex;
+        private final List<String> tailNames;
+        private final boolean hasParameters;
+
+        private Leaf(RouteDelegate route, int order, String[] labels, String[] names, int tail,
+                     String tailName, Pattern tailRegex, List<String> tailNames) {
+            this.route = route;
+            this.order = order;
+            this.labels = labels;
+            this.names = names;
+            this.tail = tail;
+            this.tailName = tailName;
+            this.tailRegex = tailRegex;
+            this.tailNames = tailNames;
+            boolean parameters = tailName != null || !tailNames.isEmpty();
+            for (String name : names) {
+                parameters = parameters || name != null;
+            }
+            this.hasParameters = parameters;
+        }
+
+        static Leaf tail(RouteDelegate route, int order, String[] labels, String[] names, int kind, String name) {
+            return new Leaf(route, order, labels, names, kind, name, null, Collections.<String>emptyList());
+        }
+
+        static Leaf regex(RouteDelegate route, int order, String[] labels, String[] names, String remaining) {
+            return new Leaf(route, order, labels, names, REGEX, null,
+                    Pattern.compile(RouteUtils.convertRawUriToRegex(remaining)),
+                    RouteUtils.extractParameters(remaining));
+        }
+
+        private boolean matches(String uri, int position) {
+            int length = uri.length();
+            switch (tail) {
+                case ONE_OR_MORE:
+                    return position + 1 < length && uri.charAt(position) == '/';
+                case ZERO_OR_MORE:
+                    return position < length && uri.charAt(position) == '/';
+                case REGEX:
+                    return tailRegex.matcher(uri).region(position, length).matches();
+                default:
+                    return position == length;
+            }
+        }
+
+        /**
+         * Extracts the path parameters from the given uri. This method must only be called on uri matched by the
+         * current leaf.
+         *
+         * @param uri the uri
+         * @return the map name -> encoded value
+         */
+        private Map<String, String> extract(String uri) {
+            Map<String, String> map = new HashMap<>();
+            int position = 0;
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] != null) {
+                    position += labels[i].length();
+                } else {
+                    int end = uri.indexOf('/', position + 1);
+                    if (end == -1) {
+                        end = uri.length();
+                    }
+                    map.put(names[i], uri.substring(position + 1, end));
+                    position = end;
+                }
+            }
+            if (tailName != null) {
+                map.put(tailName, uri.substring(position + 1));
+            } else if (tail == REGEX) {
+                Matcher matcher = tailRegex.matcher(uri).region(position, uri.length());
+                if (matcher.matches()) {
+                    for (int i = 1; i <= matcher.groupCount() && i <= tailNames.size(); i++) {
+                        map.put(tailNames.get(i - 1), matcher.group(i));
+                    }
+                }
+            }
+            return map;
+        }
+    }
+}
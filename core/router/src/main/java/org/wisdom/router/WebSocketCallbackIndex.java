@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import java.util.*;
+
+/**
+ * An immutable index of web socket callbacks used to find the callbacks to call for a web socket uri without
+ * matching the uri against the regular expression of every callback.
+ * <p>
+ * As in the {@link RouteIndex}, static uris are matched using plain string comparisons: the callbacks matching each
+ * static uri are computed when the index is built. Other uris are matched against the callbacks using path
+ * parameters only, and the result is kept in a bounded cache, as the uri of a web socket never changes while
+ * frames are received. The path parameters are extracted once, when the uri is matched.
+ * <p>
+ * Callbacks are kept in registration order. Instances are never modified once built (except for the cache), so
+ * they can be shared between threads and replaced atomically.
+ */
+final class WebSocketCallbackIndex {
+
+    /**
+     * An empty index.
+     */
+    static final WebSocketCallbackIndex EMPTY = new WebSocketCallbackIndex(
+            Collections.<DefaultWebSocketCallback>emptyList(),
+            Collections.<DefaultWebSocketCallback>emptyList(),
+            Collections.<OnMessageWebSocketCallback>emptyList());
+
+    /**
+     * The maximum number of cached dynamic uris.
+     */
+    static final int CACHE_SIZE = 1000;
+
+    private final List<DefaultWebSocketCallback> opens;
+    private final List<DefaultWebSocketCallback> closes;
+    private final List<OnMessageWebSocketCallback> listeners;
+
+    /**
+     * The matches of the static uris.
+     */
+    private final Map<String, Matches> statics = new HashMap<>();
+
+    /**
+     * The matches of the other uris.
+     */
+    private final Cache<String, Matches> dynamics = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    /**
+     * Builds the index.
+     *
+     * @param opens     the {@link org.wisdom.api.annotations.Opened} callbacks, in registration order
+     * @param closes    the {@link org.wisdom.api.annotations.Closed} callbacks, in registration order
+     * @param listeners the {@link org.wisdom.api.annotations.OnMessage} callbacks, in registration order
+     */
+    WebSocketCallbackIndex(Collection<DefaultWebSocketCallback> opens, Collection<DefaultWebSocketCallback> closes,
+                           Collection<OnMessageWebSocketCallback> listeners) {
+        this.opens = ImmutableList.copyOf(opens);
+        this.closes = ImmutableList.copyOf(closes);
+        this.listeners = ImmutableList.copyOf(listeners);
+        indexStatics(this.opens);
+        indexStatics(this.closes);
+        indexStatics(this.listeners);
+    }
+
+    private void indexStatics(List<? extends DefaultWebSocketCallback> callbacks) {
+        for (DefaultWebSocketCallback callback : callbacks) {
+            String uri = callback.getUri();
+            if (RouteIndex.isStatic(uri) && !statics.containsKey(uri)) {
+                statics.put(uri, match(uri, false));
+            }
+        }
+    }
+
+    /**
+     * Finds the callbacks to call for the given web socket uri.
+     *
+     * @param uri the uri
+     * @return the matching callbacks, never {@literal null}
+     */
+    Matches lookup(String uri) {
+        Matches matches = statics.get(uri);
+        if (matches != null) {
+            return matches;
+        }
+        matches = dynamics.getIfPresent(uri);
+        if (matches == null) {
+            // Static callbacks only match their own uri, already in the static map.
+            matches = match(uri, true);
+            dynamics.put(uri, matches);
+        }
+        return matches;
+    }
+
+    private Matches match(String uri, boolean dynamicOnly) {
+        return new Matches(uri,
+                bind(opens, uri, dynamicOnly),
+                bind(closes, uri, dynamicOnly),
+                bind(listeners, uri, dynamicOnly));
+    }
+
+    private static List<Binding> bind(List<? extends DefaultWebSocketCallback> callbacks, String uri,
+                                      boolean dynamicOnly) {
+        List<Binding> bindings = new ArrayList<>();
+        for (DefaultWebSocketCallback callback : callbacks) {
+            if (dynamicOnly && RouteIndex.isStatic(callback.getUri())) {
+                continue;
+            }
+            if (callback.matches(uri)) {
+                bindings.add(new Binding(callback,
+                        Collections.unmodifiableMap(callback.getPathParametersEncoded(uri))));
+            }
+        }
+        if (bindings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(bindings);
+    }
+
+    /**
+     * The callbacks matching a web socket uri.
+     */
+    static final class Matches {
+        /**
+         * The uri.
+         */
+        final String uri;
+
+        /**
+         * The matching {@link org.wisdom.api.annotations.Opened} callbacks.
+         */
+        final List<Binding> opens;
+
+        /**
+         * The matching {@link org.wisdom.api.annotations.Closed} callbacks.
+         */
+        final List<Binding> closes;
+
+        /**
+         * The matching {@link org.wisdom.api.annotations.OnMessage} callbacks.
+         */
+        final List<Binding> listeners;
+
+        Matches(String uri, List<Binding> opens, List<Binding> closes, List<Binding> listeners) {
+            this.uri = uri;
+            this.opens = opens;
+            this.closes = closes;
+            this.listeners = listeners;
+        }
+    }
+
+    /**
+     * A callback matching a uri, with the path parameters extracted from this uri.
+     */
+    static final class Binding {
+        /**
+         * The callback.
+         */
+        final DefaultWebSocketCallback callback;
+
+        /**
+         * The path parameters (name - value).
+         */
+        final Map<String, String> parameters;
+
+        Binding(DefaultWebSocketCallback callback, Map<String, String> parameters) {
+            this.callback = callback;
+            this.parameters = parameters;
+        }
+    }
+}
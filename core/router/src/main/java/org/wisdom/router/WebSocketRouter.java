@@ -21,6 +21,8 @@ package org.wisdom.router;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.NullNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.felix.ipojo.annotations.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +31,7 @@ import org.wisdom.api.Controller;
 import org.wisdom.api.annotations.Closed;
 import org.wisdom.api.annotations.OnMessage;
 import org.wisdom.api.annotations.Opened;
+import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.content.ContentEngine;
 import org.wisdom.api.content.ParameterConverters;
 import org.wisdom.api.http.websockets.Publisher;
@@ -40,10 +43,21 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Component handling web socket frame routing.
+ * <p>
+ * Callbacks are found using a {@link WebSocketCallbackIndex}, and the callbacks matching the uri of an opened web
+ * socket are kept until the socket is closed. By default, the {@link OnMessage} callbacks are called asynchronously,
+ * and frames from the same client may be processed concurrently. When {@link #ORDERED_KEY} is set to
+ * {@literal true}, the frames of each client are processed in order, one at a time.
  */
 @Component(immediate = true)
 @Provides(specifications = Publisher.class)
@@ -52,6 +66,21 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketRouter.class);
 
+    /**
+     * The configuration key enabling the in-order processing of the frames received from a client.
+     */
+    public static final String ORDERED_KEY = "wisdom.websocket.ordered";
+
+    /**
+     * The maximum number of frames processed by a serial executor before giving its thread back.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * The maximum number of recently closed clients kept, so their late frames do not register them again.
+     */
+    private static final int CLOSED_CACHE_SIZE = 10000;
+
     @Requires
     WebSocketDispatcher[] dispatchers;
 
@@ -68,6 +97,31 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
     @Requires
     AkkaSystemService akka;
 
+    @Requires(optional = true)
+    ApplicationConfiguration configuration;
+
+    /**
+     * Whether the frames received from a client are processed in order.
+     */
+    boolean ordered;
+
+    /**
+     * The index of the callbacks, rebuilt when a controller arrives or leaves.
+     */
+    private volatile WebSocketCallbackIndex index = WebSocketCallbackIndex.EMPTY;
+
+    /**
+     * The opened web sockets, by client id.
+     */
+    private final ConcurrentMap<String, Connection> connections = new ConcurrentHashMap<>();
+
+    /**
+     * The recently closed clients. Frames dispatched before the socket was closed may be received after, they must
+     * not register the client again. Values are meaningless.
+     */
+    private final Cache<String, Boolean> closed = CacheBuilder.newBuilder()
+            .maximumSize(CLOSED_CACHE_SIZE).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
     /**
      * @return the logger.
      */
@@ -91,11 +145,21 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
         dispatcher.unregister(this);
     }
 
+    /**
+     * Reads the configuration.
+     */
+    @Validate
+    public void start() {
+        ordered = configuration != null && configuration.getBooleanWithDefault(ORDERED_KEY, false);
+    }
+
     @Invalidate
     public void stop() {
         for (WebSocketDispatcher dispatcher : dispatchers) {
             dispatcher.unregister(this);
         }
+        connections.clear();
+        closed.invalidateAll();
     }
 
     /**
@@ -106,6 +170,7 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
     @Bind(aggregate = true)
     public synchronized void bindController(Controller controller) {
         analyze(controller);
+        index = new WebSocketCallbackIndex(opens, closes, listeners);
     }
 
     /**
@@ -190,6 +255,7 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
             }
         }
         listeners.removeAll(toRemove);
+        index = new WebSocketCallbackIndex(opens, closes, listeners);
     }
 
     /**
@@ -201,27 +267,29 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
      */
     @Override
     public void received(final String uri, final String from, final byte[] content) {
-        for (final OnMessageWebSocketCallback listener : listeners) {
-            if (listener.matches(uri)) {
-                akka.dispatch(new Callable<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        try {
-                            listener.invoke(uri, from, content);
-                        } catch (InvocationTargetException e) { //NOSONAR
-                            LOGGER.error("An error occurred in the @OnMessage callback {}#{} : {}",
-                                    listener.getController().getClass().getName(), listener.getMethod().getName
-                                            (), e.getTargetException().getMessage(), e.getTargetException()
-                            );
-                        } catch (Exception e) {
-                            LOGGER.error("An error occurred in the @OnMessage callback {}#{} : {}",
-                                    listener.getController().getClass().getName(), listener.getMethod().getName(), e.getMessage(), e);
-                        }
-                        return null;
+        final List<WebSocketCallbackIndex.Binding> bindings = matches(uri, from).listeners;
+        if (bindings.isEmpty()) {
+            return;
+        }
+        if (ordered) {
+            executor(uri, from).execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (WebSocketCallbackIndex.Binding binding : bindings) {
+                        invoke(binding, from, content, "@OnMessage");
                     }
-                }, akka.fromThread());
-
-            }
+                }
+            });
+            return;
+        }
+        for (final WebSocketCallbackIndex.Binding binding : bindings) {
+            akka.dispatch(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    invoke(binding, from, content, "@OnMessage");
+                    return null;
+                }
+            }, akka.fromThread());
         }
     }
 
@@ -233,20 +301,16 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
      */
     @Override
     public void opened(String uri, String client) {
-        for (DefaultWebSocketCallback open : opens) {
-            if (open.matches(uri)) {
-                try {
-                    open.invoke(uri, client, null);
-                } catch (InvocationTargetException e) { //NOSONAR
-                    LOGGER.error("An error occurred in the @Open callback {}#{} : {}",
-                            open.getController().getClass().getName(), open.getMethod().getName
-                                    (), e.getTargetException().getMessage(), e.getTargetException()
-                    );
-                } catch (Exception e) {
-                    LOGGER.error("An error occurred in the @Open callback {}#{} : {}",
-                            open.getController().getClass().getName(), open.getMethod().getName(), e.getMessage(), e);
-                }
-            }
+        WebSocketCallbackIndex current = index;
+        WebSocketCallbackIndex.Matches matches = current.lookup(uri);
+        closed.invalidate(client);
+        Connection existing = connections.putIfAbsent(client, new Connection(current, matches));
+        if (existing != null) {
+            // Frames were received before the notification, keep their executor so the order is preserved.
+            existing.update(current, matches);
+        }
+        for (WebSocketCallbackIndex.Binding binding : matches.opens) {
+            invoke(binding, client, null, "@Open");
         }
     }
 
@@ -258,21 +322,75 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
      */
     @Override
     public void closed(String uri, String client) {
-        for (DefaultWebSocketCallback close : closes) {
-            if (close.matches(uri)) {
-                try {
-                    close.invoke(uri, client, null);
-                } catch (InvocationTargetException e) { //NOSONAR
-                    LOGGER.error("An error occurred in the @Close callback {}#{} : {}",
-                            close.getController().getClass().getName(), close.getMethod().getName
-                                    (), e.getTargetException().getMessage(), e.getTargetException()
-                    );
-                } catch (Exception e) {
-                    LOGGER.error("An error occurred in the @Close callback {}#{} : {}",
-                            close.getController().getClass().getName(), close.getMethod().getName(), e.getMessage(), e);
-                }
+        WebSocketCallbackIndex.Matches matches = matches(uri, client);
+        // Must be recorded before the removal, see executor(String, String).
+        closed.put(client, Boolean.TRUE);
+        connections.remove(client);
+        for (WebSocketCallbackIndex.Binding binding : matches.closes) {
+            invoke(binding, client, null, "@Close");
+        }
+    }
+
+    /**
+     * Gets the callbacks matching the web socket of the given client. The result computed when the web socket was
+     * opened is reused, unless the callbacks have changed since.
+     */
+    private WebSocketCallbackIndex.Matches matches(String uri, String client) {
+        WebSocketCallbackIndex current = index;
+        Connection connection = connections.get(client);
+        if (connection == null || !connection.matches.uri.equals(uri)) {
+            return current.lookup(uri);
+        }
+        if (connection.index != current) {
+            connection.update(current, current.lookup(uri));
+        }
+        return connection.matches;
+    }
+
+    /**
+     * Gets the serial executor of the given client, creating it if needed. Closed clients are not registered again,
+     * their last frames are processed by a new executor.
+     */
+    private SerialExecutor executor(String uri, String client) {
+        Connection connection = connections.get(client);
+        if (connection == null) {
+            if (closed.getIfPresent(client) != null) {
+                return new SerialExecutor();
+            }
+            // Client not notified as opened (yet).
+            WebSocketCallbackIndex current = index;
+            connection = new Connection(current, current.lookup(uri));
+            Connection existing = connections.putIfAbsent(client, connection);
+            if (existing != null) {
+                return existing.executor;
+            }
+            if (closed.getIfPresent(client) != null) {
+                // Closed concurrently.
+                connections.remove(client, connection);
             }
         }
+        return connection.executor;
+    }
+
+    /**
+     * @return the number of registered clients
+     */
+    int connections() {
+        return connections.size();
+    }
+
+    private void invoke(WebSocketCallbackIndex.Binding binding, String client, byte[] content, String annotation) {
+        DefaultWebSocketCallback callback = binding.callback;
+        try {
+            callback.invoke(binding.parameters, client, content);
+        } catch (InvocationTargetException e) { //NOSONAR
+            LOGGER.error("An error occurred in the {} callback {}#{} : {}", annotation,
+                    callback.getController().getClass().getName(), callback.getMethod().getName(),
+                    e.getTargetException().getMessage(), e.getTargetException());
+        } catch (Exception e) {
+            LOGGER.error("An error occurred in the {} callback {}#{} : {}", annotation,
+                    callback.getController().getClass().getName(), callback.getMethod().getName(), e.getMessage(), e);
+        }
     }
 
     /**
@@ -387,4 +505,64 @@ public class WebSocketRouter implements WebSocketListener, Publisher {
             dispatcher.send(uri, client, message);
         }
     }
+
+    /**
+     * An opened web socket.
+     */
+    private final class Connection {
+        private volatile WebSocketCallbackIndex index;
+        private volatile WebSocketCallbackIndex.Matches matches;
+        private final SerialExecutor executor = new SerialExecutor();
+
+        private Connection(WebSocketCallbackIndex index, WebSocketCallbackIndex.Matches matches) {
+            this.index = index;
+            this.matches = matches;
+        }
+
+        private void update(WebSocketCallbackIndex index, WebSocketCallbackIndex.Matches matches) {
+            this.matches = matches;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Executes the tasks submitted for a client one at a time, in submission order, using the Akka dispatcher.
+     * Only one Akka task is scheduled at a time, and it processes at most {@link #BATCH_SIZE} queued tasks before
+     * scheduling the next one, so a busy client does not monopolize a thread.
+     */
+    private final class SerialExecutor {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                akka.dispatch(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        drain();
+                        return null;
+                    }
+                }, akka.fromThread());
+            }
+        }
+
+        private void drain() {
+            try {
+                Runnable task;
+                for (int i = 0; i < BATCH_SIZE && (task = tasks.poll()) != null; i++) {
+                    task.run();
+                }
+            } finally {
+                scheduled.set(false);
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
 }
@@ -55,6 +55,16 @@ public class Bindings {
         bindings.put(source, handler);
     }
 
+    /**
+     * Gets the handler managing the given source.
+     *
+     * @param source the source
+     * @return the handler, {@literal null} if the source is not supported
+     */
+    public static RouteParameterHandler getHandler(Source source) {
+        return bindings.get(source);
+    }
+
     public static Object create(ActionParameter argument, Context context,
                                 ParameterConverters engine) {
         RouteParameterHandler handler = bindings.get(argument.getSource());
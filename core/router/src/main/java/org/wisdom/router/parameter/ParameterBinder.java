@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router.parameter;
+
+import org.slf4j.LoggerFactory;
+import org.wisdom.api.content.ParameterConverters;
+import org.wisdom.api.http.Context;
+import org.wisdom.api.router.parameters.ActionParameter;
+
+import java.util.List;
+
+/**
+ * Computes the parameters of an action method. Unlike {@link Bindings#create(ActionParameter, Context,
+ * ParameterConverters)}, the handler of each parameter is looked up once, when the binder is created.
+ */
+public class ParameterBinder {
+
+    private final ActionParameter[] arguments;
+    private final RouteParameterHandler[] handlers;
+
+    /**
+     * Creates the binder for the given list of arguments.
+     *
+     * @param arguments the arguments of the action method
+     */
+    public ParameterBinder(List<ActionParameter> arguments) {
+        this.arguments = arguments.toArray(new ActionParameter[arguments.size()]);
+        this.handlers = new RouteParameterHandler[this.arguments.length];
+        for (int i = 0; i < this.arguments.length; i++) {
+            handlers[i] = Bindings.getHandler(this.arguments[i].getSource());
+            if (handlers[i] == null) {
+                LoggerFactory.getLogger(ParameterBinder.class).warn("Unsupported route parameter in method : {}",
+                        this.arguments[i].getSource().name());
+            }
+        }
+    }
+
+    /**
+     * Computes the parameters.
+     *
+     * @param context the current HTTP context
+     * @param engine  the converter engine
+     * @return the parameters, {@literal null} is used for unsupported parameters.
+     */
+    public Object[] bind(Context context, ParameterConverters engine) {
+        Object[] parameters = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            if (handlers[i] != null) {
+                parameters[i] = handlers[i].create(arguments[i], context, engine);
+            }
+        }
+        return parameters;
+    }
+}
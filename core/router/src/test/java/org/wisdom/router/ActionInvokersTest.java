@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router;
+
+import org.junit.Test;
+import org.wisdom.api.DefaultController;
+import org.wisdom.api.http.Result;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the action invokers.
+ */
+public class ActionInvokersTest {
+
+    public static class MyController extends DefaultController {
+        public Result hello(String name, int count) {
+            return ok(name + count);
+        }
+
+        public Result error() {
+            throw new IllegalStateException("bad");
+        }
+
+        private Result hidden() {
+            return ok("hidden");
+        }
+    }
+
+    private final MyController controller = new MyController();
+
+    @Test
+    public void testInvocation() throws Exception {
+        Method method = MyController.class.getMethod("hello", String.class, Integer.TYPE);
+        ActionInvoker invoker = ActionInvokers.create(controller, method);
+        Result result = invoker.invoke(new Object[]{"wisdom", 1});
+        assertThat(result.getRenderable().content()).isEqualTo("wisdom1");
+
+        // Compare with reflection
+        result = ActionInvokers.reflective(controller, method).invoke(new Object[]{"wisdom", 1});
+        assertThat(result.getRenderable().content()).isEqualTo("wisdom1");
+    }
+
+    @Test
+    public void testInvocationOfAPrivateMethod() throws Exception {
+        Method method = MyController.class.getDeclaredMethod("hidden");
+        method.setAccessible(true);
+        Result result = ActionInvokers.create(controller, method).invoke(new Object[0]);
+        assertThat(result.getRenderable().content()).isEqualTo("hidden");
+    }
+
+    @Test
+    public void testThatExceptionsAreWrapped() throws Exception {
+        Method method = MyController.class.getMethod("error");
+        try {
+            ActionInvokers.create(controller, method).invoke(new Object[0]);
+            fail("Exception expected");
+        } catch (InvocationTargetException e) {
+            assertThat(e.getTargetException()).isInstanceOf(IllegalStateException.class).hasMessage("bad");
+        }
+    }
+
+    @Test
+    public void testThatParameterMismatchesAreNotWrapped() throws Exception {
+        Method method = MyController.class.getMethod("hello", String.class, Integer.TYPE);
+        ActionInvoker invoker = ActionInvokers.create(controller, method);
+        try {
+            invoker.invoke(new Object[]{"wisdom", "1"});
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            invoker.invoke(new Object[]{"wisdom", null});
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            invoker.invoke(new Object[]{"wisdom"});
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.wisdom.api.http.HttpMethod;
+import org.wisdom.api.router.Route;
+import org.wisdom.api.router.RouteBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the route index.
+ */
+public class RouteIndexTest {
+
+    RequestRouter router = new RequestRouter();
+    FakeController controller = new FakeController();
+
+    private RouteIndex index(String... uris) {
+        List<RouteDelegate> delegates = new ArrayList<>();
+        for (String uri : uris) {
+            delegates.add(new RouteDelegate(router,
+                    new RouteBuilder().route(HttpMethod.GET).on(uri).to(controller, "foo")));
+        }
+        return new RouteIndex(delegates);
+    }
+
+    @Test
+    public void testStaticRoutes() {
+        RouteIndex index = index("/", "/foo", "/foo/bar", "/foo/", "/favicon.ico");
+        assertThat(index.lookup(HttpMethod.GET, "/").getUrl()).isEqualTo("/");
+        assertThat(index.lookup(HttpMethod.GET, "/foo").getUrl()).isEqualTo("/foo");
+        assertThat(index.lookup(HttpMethod.GET, "/foo/").getUrl()).isEqualTo("/foo/");
+        assertThat(index.lookup(HttpMethod.GET, "/foo/bar").getUrl()).isEqualTo("/foo/bar");
+        assertThat(index.lookup(HttpMethod.GET, "/favicon.ico").getUrl()).isEqualTo("/favicon.ico");
+        assertThat(index.lookup(HttpMethod.GET, "/foo/bar/baz")).isNull();
+        assertThat(index.lookup(HttpMethod.GET, "/foobar")).isNull();
+        assertThat(index.lookup(HttpMethod.POST, "/foo")).isNull();
+    }
+
+    @Test
+    public void testThatStaticRoutesDoNotAllocateMatchedRoutes() {
+        RouteIndex index = index("/foo/bar");
+        assertThat(index.lookup(HttpMethod.GET, "/foo/bar")).isInstanceOf(RouteDelegate.class);
+    }
+
+    @Test
+    public void testParameters() {
+        RouteIndex index = index("/foo/{id}", "/foo/{id}/{email}", "/bar/{path+}", "/baz/{path*}", "/any/*");
+
+        Route route = index.lookup(HttpMethod.GET, "/foo/1234/foo@aol.com");
+        assertThat(route).isInstanceOf(MatchedRoute.class);
+        assertThat(route.getUrl()).isEqualTo("/foo/{id}/{email}");
+        assertThat(route.getPathParametersEncoded("/foo/1234/foo@aol.com")).containsEntry("id", "1234")
+                .containsEntry("email", "foo@aol.com");
+        // Each lookup returns a new object, wrapping the same registered route.
+        Route other = index.lookup(HttpMethod.GET, "/foo/1/bar@aol.com");
+        assertThat(other).isNotSameAs(route);
+        assertThat(other.getCanonicalRoute()).isSameAs(route.getCanonicalRoute())
+                .isSameAs(((MatchedRoute) route).getDelegate());
+
+        assertThat(index.lookup(HttpMethod.GET, "/foo/")).isNull();
+        assertThat(index.lookup(HttpMethod.GET, "/foo/1").getPathParametersEncoded("/foo/1"))
+                .containsEntry("id", "1");
+
+        assertThat(index.lookup(HttpMethod.GET, "/bar/")).isNull();
+        assertThat(index.lookup(HttpMethod.GET, "/bar/a/b").getPathParametersEncoded("/bar/a/b"))
+                .containsEntry("path", "a/b");
+
+        assertThat(index.lookup(HttpMethod.GET, "/baz")).isNull();
+        assertThat(index.lookup(HttpMethod.GET, "/baz/").getPathParametersEncoded("/baz/"))
+                .containsEntry("path", "");
+
+        assertThat(index.lookup(HttpMethod.GET, "/any")).isNull();
+        assertThat(index.lookup(HttpMethod.GET, "/any/x/y").getUrl()).isEqualTo("/any/*");
+    }
+
+    @Test
+    public void testRegex() {
+        RouteIndex index = index("/foo/{id<[0-9]+>}", "/bar/{id}.json", "/files/{path<.+>}");
+
+        assertThat(index.lookup(HttpMethod.GET, "/foo/99").getPathParametersEncoded("/foo/99"))
+                .containsEntry("id", "99");
+        assertThat(index.lookup(HttpMethod.GET, "/foo/xx")).isNull();
+
+        assertThat(index.lookup(HttpMethod.GET, "/bar/1.json").getPathParametersEncoded("/bar/1.json"))
+                .containsEntry("id", "1");
+        assertThat(index.lookup(HttpMethod.GET, "/bar/1.xml")).isNull();
+
+        assertThat(index.lookup(HttpMethod.GET, "/files/a/b.txt").getPathParametersEncoded("/files/a/b.txt"))
+                .containsEntry("path", "a/b.txt");
+    }
+
+    @Test
+    public void testThatTheFirstRegisteredRouteWins() {
+        RouteIndex index = index("/foo/{id}", "/foo/bar", "/x/y", "/x/{path+}");
+        assertThat(index.lookup(HttpMethod.GET, "/foo/bar").getUrl()).isEqualTo("/foo/{id}");
+        assertThat(index.lookup(HttpMethod.GET, "/x/y").getUrl()).isEqualTo("/x/y");
+        assertThat(index.lookup(HttpMethod.GET, "/x/z").getUrl()).isEqualTo("/x/{path+}");
+    }
+
+    @Test
+    public void testRouterUsesTheIndex() {
+        controller.setRoutes(ImmutableList.of(
+                new RouteBuilder().route(HttpMethod.GET).on("/foo/{id}").to(controller, "foo")
+        ));
+        router.bindController(controller);
+        assertThat(router.getRouteFor(HttpMethod.GET, "/foo/1").getPathParametersEncoded("/foo/1"))
+                .containsEntry("id", "1");
+        // Another path must still be supported.
+        assertThat(router.getRouteFor(HttpMethod.GET, "/foo/1").getPathParametersEncoded("/foo/2"))
+                .containsEntry("id", "2");
+        router.unbindController(controller);
+        assertThat(router.getRouteFor(HttpMethod.GET, "/foo/1").isUnbound()).isTrue();
+    }
+}
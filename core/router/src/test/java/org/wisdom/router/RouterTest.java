@@ -23,19 +23,28 @@ import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 import org.wisdom.api.Controller;
 import org.wisdom.api.DefaultController;
+import org.wisdom.api.engine.RequestPhase;
+import org.wisdom.api.engine.RequestRecorder;
+import org.wisdom.api.http.Context;
 import org.wisdom.api.http.HttpMethod;
 import org.wisdom.api.http.Result;
 import org.wisdom.api.interception.Filter;
+import org.wisdom.api.interception.MatchingFilter;
 import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.interception.UriMatcher;
 import org.wisdom.api.router.Route;
 import org.wisdom.api.router.RouteBuilder;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 
 /**
@@ -346,5 +355,144 @@ public class RouterTest {
         assertThat(router.getFilters()).hasSize(0);
     }
 
+    @Test
+    public void testThatTheFilterChainIsUpdatedWhenFiltersArriveAndLeave() throws Exception {
+        FakeController controller = new FakeController();
+        controller.setRoutes(ImmutableList.of(
+                new RouteBuilder().route(HttpMethod.GET).on("/foo").to(controller, "foo")
+        ));
+        router.bindController(controller);
+        Context.CONTEXT.set(mock(Context.class));
+        final AtomicInteger counter = new AtomicInteger();
+        Filter filter = new Filter() {
+            @Override
+            public Result call(Route route, RequestContext context) throws Exception {
+                counter.incrementAndGet();
+                return context.proceed();
+            }
+
+            @Override
+            public Pattern uri() {
+                return Pattern.compile("/foo");
+            }
+
+            @Override
+            public int priority() {
+                return 0;
+            }
+        };
+        try {
+            Route route = router.getRouteFor(HttpMethod.GET, "/foo");
+            route.invoke();
+            assertThat(counter.get()).isEqualTo(0);
+
+            router.bindFilter(filter);
+            route.invoke();
+            route.invoke();
+            assertThat(counter.get()).isEqualTo(2);
+
+            router.unbindFilter(filter);
+            route.invoke();
+            assertThat(counter.get()).isEqualTo(2);
+        } finally {
+            Context.CONTEXT.remove();
+        }
+    }
+
+    @Test
+    public void testThatFilterPatternsAreComputedOnceAndMatchersAreUsed() throws Exception {
+        FakeController controller = new FakeController();
+        controller.setRoutes(ImmutableList.of(
+                new RouteBuilder().route(HttpMethod.GET).on("/foo").to(controller, "foo"),
+                new RouteBuilder().route(HttpMethod.GET).on("/bar").to(controller, "foo")
+        ));
+        router.bindController(controller);
+        Context.CONTEXT.set(mock(Context.class));
+        final AtomicInteger patterns = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        Filter filter = new Filter() {
+            @Override
+            public Result call(Route route, RequestContext context) throws Exception {
+                calls.incrementAndGet();
+                return context.proceed();
+            }
+
+            @Override
+            public Pattern uri() {
+                patterns.incrementAndGet();
+                return Pattern.compile("/fo.*");
+            }
+
+            @Override
+            public int priority() {
+                return 0;
+            }
+        };
+        final AtomicInteger matched = new AtomicInteger();
+        MatchingFilter matching = new MatchingFilter() {
+            @Override
+            public UriMatcher matcher() {
+                return UriMatcher.exact("/bar");
+            }
+
+            @Override
+            public Result call(Route route, RequestContext context) throws Exception {
+                matched.incrementAndGet();
+                return context.proceed();
+            }
+
+            @Override
+            public Pattern uri() {
+                throw new UnsupportedOperationException("The matcher must be used");
+            }
 
+            @Override
+            public int priority() {
+                return 1;
+            }
+        };
+        try {
+            router.bindFilter(filter);
+            router.bindFilter(matching);
+            for (int i = 0; i < 3; i++) {
+                router.getRouteFor(HttpMethod.GET, "/foo").invoke();
+                router.getRouteFor(HttpMethod.GET, "/bar").invoke();
+            }
+            assertThat(patterns.get()).isEqualTo(1);
+            assertThat(calls.get()).isEqualTo(3);
+            assertThat(matched.get()).isEqualTo(3);
+
+            router.unbindFilter(matching);
+            router.getRouteFor(HttpMethod.GET, "/bar").invoke();
+            assertThat(matched.get()).isEqualTo(3);
+            assertThat(patterns.get()).isEqualTo(1);
+        } finally {
+            Context.CONTEXT.remove();
+        }
+    }
+
+    @Test
+    public void testThatTheActionPhasesAreRecorded() throws Exception {
+        FakeController controller = new FakeController();
+        controller.setRoutes(ImmutableList.of(
+                new RouteBuilder().route(HttpMethod.GET).on("/foo").to(controller, "foo")
+        ));
+        router.bindController(controller);
+        final List<RequestPhase> phases = new ArrayList<>();
+        router.setRecorder(new RequestRecorder() {
+            @Override
+            public void record(Route route, RequestPhase phase, long duration) {
+                assertThat(route.getUrl()).isEqualTo("/foo");
+                assertThat(duration).isGreaterThanOrEqualTo(0);
+                phases.add(phase);
+            }
+        });
+        Context.CONTEXT.set(mock(Context.class));
+        try {
+            router.getRouteFor(HttpMethod.GET, "/foo").invoke();
+            assertThat(phases).containsExactly(RequestPhase.BINDING, RequestPhase.ACTION);
+        } finally {
+            Context.CONTEXT.remove();
+        }
+    }
 }
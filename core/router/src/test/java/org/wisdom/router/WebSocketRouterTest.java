@@ -36,9 +36,7 @@ import org.wisdom.content.converters.ParamConverterEngine;
 import scala.concurrent.ExecutionContext;
 
 import java.nio.charset.Charset;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.Callable;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -230,6 +228,99 @@ public class WebSocketRouterTest {
         router.unbindController(controller);
     }
 
+    @Test
+    public void testOrderedProcessingOfFrames() throws Exception {
+        WebSocketRouter router = new WebSocketRouter();
+        router.converter = new ParamConverterEngine(Collections.<ParameterConverter>emptyList());
+        final WebSocketDispatcher dispatcher = mock(WebSocketDispatcher.class);
+        router.dispatchers = new WebSocketDispatcher[]{dispatcher};
+        router.akka = mock(AkkaSystemService.class);
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                tasks.add((Callable<Void>) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(router.akka).dispatch(any(Callable.class), any(ExecutionContext.class));
+        router.ordered = true;
+
+        final List<String> messages = new ArrayList<>();
+        final DefaultController controller = new DefaultController() {
+
+            @OnMessage("/ws/{name}")
+            public void foo(@Parameter("name") String name, @Body String message) {
+                messages.add(name + ":" + message);
+            }
+
+        };
+        router.bindController(controller);
+
+        router.opened("/ws/foo", "client");
+        router.received("/ws/foo", "client", "1".getBytes(Charset.defaultCharset()));
+        router.received("/ws/foo", "client", "2".getBytes(Charset.defaultCharset()));
+        router.received("/ws/foo", "client", "3".getBytes(Charset.defaultCharset()));
+        router.received("/ws/bar", "other", "4".getBytes(Charset.defaultCharset()));
+
+        // One task per client.
+        assertThat(tasks).hasSize(2);
+        tasks.get(0).call();
+        assertThat(messages).containsExactly("foo:1", "foo:2", "foo:3");
+        tasks.get(1).call();
+        assertThat(messages).containsExactly("foo:1", "foo:2", "foo:3", "bar:4");
+
+        // The cached matches are not used once the controller has left.
+        router.unbindController(controller);
+        router.received("/ws/foo", "client", "5".getBytes(Charset.defaultCharset()));
+        assertThat(tasks).hasSize(2);
+        router.closed("/ws/foo", "client");
+    }
+
+    @Test
+    public void testOrderingIsKeptForFramesReceivedAroundTheNotifications() throws Exception {
+        WebSocketRouter router = new WebSocketRouter();
+        router.converter = new ParamConverterEngine(Collections.<ParameterConverter>emptyList());
+        router.dispatchers = new WebSocketDispatcher[]{mock(WebSocketDispatcher.class)};
+        router.akka = mock(AkkaSystemService.class);
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                tasks.add((Callable<Void>) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(router.akka).dispatch(any(Callable.class), any(ExecutionContext.class));
+        router.ordered = true;
+
+        final List<String> messages = new ArrayList<>();
+        final DefaultController controller = new DefaultController() {
+
+            @OnMessage("/ws")
+            public void foo(@Body String message) {
+                messages.add(message);
+            }
+
+        };
+        router.bindController(controller);
+
+        // A frame is received before the open notification, the notification keeps its executor.
+        router.received("/ws", "client", "1".getBytes(Charset.defaultCharset()));
+        router.opened("/ws", "client");
+        router.received("/ws", "client", "2".getBytes(Charset.defaultCharset()));
+        assertThat(tasks).hasSize(1);
+        tasks.get(0).call();
+        assertThat(messages).containsExactly("1", "2");
+
+        // A frame received after the close notification is processed, but does not register the client again.
+        router.closed("/ws", "client");
+        assertThat(router.connections()).isEqualTo(0);
+        router.received("/ws", "client", "3".getBytes(Charset.defaultCharset()));
+        assertThat(router.connections()).isEqualTo(0);
+        assertThat(tasks).hasSize(2);
+        tasks.get(1).call();
+        assertThat(messages).containsExactly("1", "2", "3");
+    }
+
     @Test
     public void testSend() {
         WebSocketRouter router = new WebSocketRouter();
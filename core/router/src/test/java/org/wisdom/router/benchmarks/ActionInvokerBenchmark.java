@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.router.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wisdom.api.DefaultController;
+import org.wisdom.api.http.Result;
+import org.wisdom.router.ActionInvoker;
+import org.wisdom.router.ActionInvokers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of invoking an action method using the generated invokers and using reflection.
+ * <p>
+ * This benchmark is not executed during the build. Launch it using the {@link #main(String[])} method from the
+ * test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActionInvokerBenchmark {
+
+    private ActionInvoker handleWithoutParameter;
+    private ActionInvoker reflectiveWithoutParameter;
+    private ActionInvoker handleWithParameters;
+    private ActionInvoker reflectiveWithParameters;
+
+    private final Object[] none = new Object[0];
+    private final Object[] parameters = new Object[]{"wisdom", 1};
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        BenchmarkController controller = new BenchmarkController();
+        Method index = BenchmarkController.class.getMethod("index");
+        Method hello = BenchmarkController.class.getMethod("hello", String.class, Integer.TYPE);
+        handleWithoutParameter = ActionInvokers.create(controller, index);
+        reflectiveWithoutParameter = ActionInvokers.reflective(controller, index);
+        handleWithParameters = ActionInvokers.create(controller, hello);
+        reflectiveWithParameters = ActionInvokers.reflective(controller, hello);
+    }
+
+    @Benchmark
+    public Result methodHandleWithoutParameter() throws Exception {
+        return handleWithoutParameter.invoke(none);
+    }
+
+    @Benchmark
+    public Result reflectionWithoutParameter() throws Exception {
+        return reflectiveWithoutParameter.invoke(none);
+    }
+
+    @Benchmark
+    public Result methodHandleWithParameters() throws Exception {
+        return handleWithParameters.invoke(parameters);
+    }
+
+    @Benchmark
+    public Result reflectionWithParameters() throws Exception {
+        return reflectiveWithParameters.invoke(parameters);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ActionInvokerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * The controller used by the benchmark.
+     */
+    public static class BenchmarkController extends DefaultController {
+
+        private final Result result = ok();
+
+        public Result index() {
+            return result;
+        }
+
+        public Result hello(String name, int count) {
+            if (name == null || count < 0) {
+                return badRequest();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to select the threads invoking the actions of a controller (when placed on the class) or a
+ * specific action (when placed on the method). The method annotation takes precedence over the class annotation.
+ * <p/>
+ * It is used by the engines processing the requests on a small number of I/O threads (event loops), such as the
+ * Vert.x engine. Actions that may block (I/O, locks, long computations) must be invoked by a worker thread,
+ * otherwise they delay all the requests handled by the same event loop. Actions returning quickly without blocking
+ * can be invoked by the event loop, saving a thread switch. Other engines ignore this annotation.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Dispatch {
+
+    /**
+     * The threads invoking the actions.
+     */
+    Mode value();
+
+    /**
+     * The dispatch modes.
+     */
+    enum Mode {
+        /**
+         * The action is invoked by a thread of a bounded worker pool. The result is also serialized and encoded by
+         * this thread.
+         */
+        WORKER,
+
+        /**
+         * The action is invoked by the event loop that has received the request. The action must not block.
+         */
+        EVENT_LOOP
+    }
+}
@@ -23,11 +23,12 @@ import org.wisdom.api.http.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Empty body.
  */
-public class NoHttpBody implements Renderable<Void> {
+public class NoHttpBody implements Renderable<Void>, DirectRenderable {
 
     /**
      * The singleton instance.
@@ -48,6 +49,16 @@ public class NoHttpBody implements Renderable<Void> {
         return new ByteArrayInputStream(EMPTY);
     }
 
+    /**
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return an empty buffer
+     */
+    @Override
+    public ByteBuffer renderAsBuffer(Context context, Result result) {
+        return ByteBuffer.wrap(EMPTY);
+    }
+
     @Override
     public long length() {
         return 0;
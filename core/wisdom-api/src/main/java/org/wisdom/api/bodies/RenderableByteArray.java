@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.bodies;
+
+import org.wisdom.api.http.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A renderable object holding a byte array. The array is sent as it is, so it must not be modified once the
+ * renderable object is created.
+ */
+public class RenderableByteArray implements Renderable<byte[]>, DirectRenderable {
+
+    private final byte[] bytes;
+
+    private final String mimetype;
+
+    /**
+     * Creates a new instance of {@link org.wisdom.api.bodies.RenderableByteArray}.
+     *
+     * @param bytes    the content
+     * @param mimetype the mime type of the content, {@literal null} if unknown
+     */
+    public RenderableByteArray(byte[] bytes, String mimetype) {
+        this.bytes = bytes;
+        this.mimetype = mimetype;
+    }
+
+    @Override
+    public InputStream render(Context context, Result result) throws RenderableException {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return a buffer wrapping the content
+     */
+    @Override
+    public ByteBuffer renderAsBuffer(Context context, Result result) {
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public long length() {
+        return bytes.length;
+    }
+
+    @Override
+    public String mimetype() {
+        return mimetype;
+    }
+
+    @Override
+    public byte[] content() {
+        return bytes;
+    }
+
+    @Override
+    public boolean requireSerializer() {
+        return false;
+    }
+
+    @Override
+    public void setSerializedForm(String serialized) {
+        // Nothing because serialization is not supported for this renderable class.
+    }
+
+    @Override
+    public boolean mustBeChunked() {
+        return false;
+    }
+
+}
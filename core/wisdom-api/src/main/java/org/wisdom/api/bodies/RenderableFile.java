@@ -29,7 +29,7 @@ import java.io.InputStream;
 /**
  * Render a file.
  */
-public class RenderableFile implements Renderable<File> {
+public class RenderableFile implements Renderable<File>, FileRenderable {
 
 
     private final File file;
@@ -53,6 +53,11 @@ public class RenderableFile implements Renderable<File> {
         }
     }
 
+    @Override
+    public File file() {
+        return file;
+    }
+
     @Override
     public long length() {
         return file.length();
@@ -28,11 +28,12 @@ import org.wisdom.api.http.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A renderable object taking an ObjectNode as parameter.
  */
-public class RenderableJson implements Renderable<JsonNode> {
+public class RenderableJson implements Renderable<JsonNode>, DirectRenderable {
 
     private static ObjectWriter OBJECT_WRITER = new ObjectMapper().writer().withDefaultPrettyPrinter();
 
@@ -51,6 +52,22 @@ public class RenderableJson implements Renderable<JsonNode> {
         return new ByteArrayInputStream(rendered);
     }
 
+    /**
+     * Retrieves the content as a buffer wrapping the rendered form.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return the buffer
+     * @throws RenderableException if the content cannot be rendered
+     */
+    @Override
+    public ByteBuffer renderAsBuffer(Context context, Result result) throws RenderableException {
+        if (rendered == null) {
+            _render();
+        }
+        return ByteBuffer.wrap(rendered);
+    }
+
     private void _render() throws RenderableException {
         try {
             rendered = OBJECT_WRITER.writeValueAsBytes(node);
@@ -29,6 +29,7 @@ import org.wisdom.api.http.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A renderable object providing a JSONP response.
@@ -49,7 +50,7 @@ import java.io.InputStream;
  *   foo({...});
  * </pre>
  */
-public class RenderableJsonP implements Renderable<String> {
+public class RenderableJsonP implements Renderable<String>, DirectRenderable {
 
     private static ObjectWriter OBJECT_WRITER = new ObjectMapper().writer().withDefaultPrettyPrinter();
 
@@ -70,6 +71,22 @@ public class RenderableJsonP implements Renderable<String> {
         return new ByteArrayInputStream(rendered);
     }
 
+    /**
+     * Retrieves the content as a buffer wrapping the rendered form.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return the buffer
+     * @throws RenderableException if the content cannot be rendered
+     */
+    @Override
+    public ByteBuffer renderAsBuffer(Context context, Result result) throws RenderableException {
+        if (rendered == null) {
+            _render();
+        }
+        return ByteBuffer.wrap(rendered);
+    }
+
     private void _render() throws RenderableException {
         try {
             rendered = (padding + "(" + OBJECT_WRITER.writeValueAsString(node) + ");").getBytes(Charsets.UTF_8);
@@ -21,17 +21,19 @@ package org.wisdom.api.bodies;
 
 import com.google.common.base.Charsets;
 import org.wisdom.api.http.Context;
+import org.wisdom.api.http.DirectRenderable;
 import org.wisdom.api.http.Renderable;
 import org.wisdom.api.http.RenderableException;
 import org.wisdom.api.http.Result;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Render any object, but it requires serialization.
  */
-public class RenderableObject implements Renderable<Object> {
+public class RenderableObject implements Renderable<Object>, DirectRenderable {
 
     private final Object object;
     private String serialized;
@@ -48,6 +50,22 @@ public class RenderableObject implements Renderable<Object> {
         return new ByteArrayInputStream(serialized.getBytes(Charsets.UTF_8));
     }
 
+    /**
+     * Retrieves the serialized form as a buffer.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return the buffer
+     * @throws RenderableException if the object was not serialized
+     */
+    @Override
+    public ByteBuffer renderAsBuffer(Context context, Result result) throws RenderableException {
+        if (serialized == null) {
+            throw new RenderableException("Serialization required before rendering");
+        }
+        return ByteBuffer.wrap(serialized.getBytes(Charsets.UTF_8));
+    }
+
     @Override
     public void setSerializedForm(String serialized) {
         this.serialized = serialized;
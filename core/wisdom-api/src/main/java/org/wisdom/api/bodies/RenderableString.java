@@ -25,13 +25,14 @@ import org.wisdom.api.http.*;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 
 /**
  * A renderable object holding a String content. However Strings can be used to store many different content such as
  * HTML, plain text... So the mime-type should be specified. Notice that if the mime-type of the content is not
  * specified, {@literal text/html} is used.
  */
-public class RenderableString implements Renderable<String> {
+public class RenderableString implements Renderable<String>, DirectRenderable {
 
     /**
      * The rendered content.
@@ -126,6 +127,23 @@ public class RenderableString implements Renderable<String> {
      */
     @Override
     public InputStream render(Context context, Result result) throws RenderableException {
+        return new ByteArrayInputStream(encode(result));
+    }
+
+    /**
+     * Retrieves the content as a buffer wrapping the encoded String.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return the buffer
+     * @throws RenderableException should not happen
+     */
+    @Override
+    public ByteBuffer renderAsBuffer(Context context, Result result) throws RenderableException {
+        return ByteBuffer.wrap(encode(result));
+    }
+
+    private byte[] encode(Result result) {
         byte[] bytes;
 
         // We have a result, charset have to be provided
@@ -139,8 +157,7 @@ public class RenderableString implements Renderable<String> {
             //No Result, use the default encoding
             bytes = rendered.getBytes(Charsets.UTF_8);
         }
-
-        return new ByteArrayInputStream(bytes);
+        return bytes;
     }
 
     /**
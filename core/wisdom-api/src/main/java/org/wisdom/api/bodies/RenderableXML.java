@@ -32,12 +32,13 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.io.StringWriter;
 
 /**
  * A renderable object taking an Document as parameter.
  */
-public class RenderableXML implements Renderable<Document> {
+public class RenderableXML implements Renderable<Document>, DirectRenderable {
 
     private final Document document;
     private byte[] rendered;
@@ -58,6 +59,22 @@ public class RenderableXML implements Renderable<Document> {
         return new ByteArrayInputStream(rendered);
     }
 
+    /**
+     * Retrieves the content as a buffer wrapping the rendered form.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return the buffer
+     * @throws RenderableException if the content cannot be rendered
+     */
+    @Override
+    public ByteBuffer renderAsBuffer(Context context, Result result) throws RenderableException {
+        if (rendered == null) {
+            _render();
+        }
+        return ByteBuffer.wrap(rendered);
+    }
+
     private void _render() throws RenderableException {
         try {
             StringWriter sw = new StringWriter();
@@ -0,0 +1,267 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.cache;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.*;
+import org.joda.time.Duration;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A base class for the implementations of the {@link Cache} service. It implements the bulk, asynchronous and
+ * typed operations from the single-key operations. Implementations can override the bulk operations if the
+ * underlying cache supports them natively, and {@link #executor()} to choose where asynchronous operations run.
+ */
+public abstract class AbstractCache implements Cache {
+
+    /**
+     * The computations in progress, by key.
+     */
+    private final ConcurrentMap<String, ListenableFuture<Object>> computations = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the executor running the asynchronous operations. This default implementation runs them in the caller
+     * thread.
+     *
+     * @return the executor
+     */
+    protected Executor executor() {
+        return MoreExecutors.directExecutor();
+    }
+
+    /**
+     * Retrieves several values by calling {@link #get(String)} for each key.
+     *
+     * @param keys Item keys.
+     * @return the cached values by key.
+     */
+    @Override
+    public Map<String, Object> getAll(Collection<String> keys) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String key : keys) {
+            Object value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sets several values by calling {@link #set(String, Object, org.joda.time.Duration)} for each entry.
+     *
+     * @param entries    the items to store, by key.
+     * @param expiration Expiration time, {@literal null} means eternity.
+     */
+    @Override
+    public void setAll(Map<String, ?> entries, Duration expiration) {
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            set(entry.getKey(), entry.getValue(), expiration);
+        }
+    }
+
+    /**
+     * Removes several values by calling {@link #remove(String)} for each key.
+     *
+     * @param keys Item keys.
+     */
+    @Override
+    public void removeAll(Collection<String> keys) {
+        for (String key : keys) {
+            remove(key);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T computeIfAbsent(String key, Callable<? extends T> loader, Duration expiration)
+            throws ExecutionException {
+        Object value = get(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        SettableFuture<Object> computation = SettableFuture.create();
+        ListenableFuture<Object> pending = computations.putIfAbsent(key, computation);
+        if (pending != null) {
+            // Another thread is computing the value.
+            return (T) Uninterruptibles.getUninterruptibly(pending);
+        }
+        try {
+            T computed = loader.call();
+            set(key, computed, expiration);
+            computation.set(computed);
+            return computed;
+        } catch (Exception e) {
+            computation.setException(e);
+            throw new ExecutionException(e);
+        } finally {
+            computations.remove(key, computation);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Object> getAsync(final String key) {
+        return submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return get(key);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<String, Object>> getAllAsync(final Collection<String> keys) {
+        return submit(new Callable<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> call() {
+                return getAll(keys);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> setAsync(final String key, final Object value, final Duration expiration) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                set(key, value, expiration);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> setAllAsync(final Map<String, ?> entries, final Duration expiration) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                setAll(entries, expiration);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public <T> ListenableFuture<T> computeIfAbsentAsync(final String key, final Callable<? extends T> loader,
+                                                       final Duration expiration) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws ExecutionException {
+                return computeIfAbsent(key, loader, expiration);
+            }
+        });
+    }
+
+    @Override
+    public <T> TypedCache<T> view(Class<T> type) {
+        return new View<>(type);
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> task) {
+        ListenableFutureTask<T> future = ListenableFutureTask.create(task);
+        executor().execute(future);
+        return future;
+    }
+
+    /**
+     * The typed view.
+     */
+    private final class View<T> implements TypedCache<T> {
+
+        private final Class<T> type;
+
+        private View(Class<T> type) {
+            this.type = type;
+        }
+
+        @Override
+        public void set(String key, T value, Duration expiration) {
+            AbstractCache.this.set(key, value, expiration);
+        }
+
+        @Override
+        public T get(String key) {
+            return cast(AbstractCache.this.get(key));
+        }
+
+        @Override
+        public Map<String, T> getAll(Collection<String> keys) {
+            Map<String, T> values = new HashMap<>();
+            for (Map.Entry<String, Object> entry : AbstractCache.this.getAll(keys).entrySet()) {
+                T value = cast(entry.getValue());
+                if (value != null) {
+                    values.put(entry.getKey(), value);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public ListenableFuture<T> getAsync(String key) {
+            return Futures.transform(AbstractCache.this.getAsync(key), new Function<Object, T>() {
+                @Override
+                public T apply(Object input) {
+                    return cast(input);
+                }
+            });
+        }
+
+        @Override
+        public T computeIfAbsent(String key, Callable<? extends T> loader, Duration expiration)
+                throws ExecutionException {
+            T value = get(key);
+            if (value != null) {
+                return value;
+            }
+            // Either missing, or of another type.
+            Object computed = AbstractCache.this.computeIfAbsent(key, loader, expiration);
+            if (type.isInstance(computed)) {
+                return type.cast(computed);
+            }
+            // A value of another type was stored concurrently, replace it.
+            try {
+                T replacement = loader.call();
+                set(key, replacement, expiration);
+                return replacement;
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }
+
+        @Override
+        public boolean remove(String key) {
+            return AbstractCache.this.remove(key);
+        }
+
+        private T cast(Object value) {
+            return type.isInstance(value) ? type.cast(value) : null;
+        }
+    }
+}
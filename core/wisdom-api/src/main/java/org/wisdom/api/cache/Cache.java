@@ -19,10 +19,20 @@
  */
 package org.wisdom.api.cache;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.joda.time.Duration;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
 /**
  * Interface of the case service.
+ * <p>
+ * Besides the single-key operations, the service offers bulk operations (to avoid one round trip per key),
+ * asynchronous operations (to overlap the cache accesses with other work) and typed views. Implementations should
+ * extend {@link AbstractCache} that implements most of these operations from the single-key ones.
  */
 public interface Cache {
 
@@ -59,4 +69,99 @@ public interface Cache {
      * @return {@literal true} if the value was effectively removed form the cache, {@literal false} otherwise.
      */
     public boolean remove(String key);
+
+    /**
+     * Retrieves several values from the cache.
+     *
+     * @param keys Item keys.
+     * @return the cached values by key, the keys not cached are not in the returned map.
+     */
+    public Map<String, Object> getAll(Collection<String> keys);
+
+    /**
+     * Sets several values into the cache.
+     *
+     * @param entries    the items to store, by key.
+     * @param expiration Expiration time, {@literal null} means eternity.
+     */
+    public void setAll(Map<String, ?> entries, Duration expiration);
+
+    /**
+     * Removes several values from the cache.
+     *
+     * @param keys Item keys.
+     */
+    public void removeAll(Collection<String> keys);
+
+    /**
+     * Retrieves a value from the cache, computing and storing it if not cached. Concurrent calls for the same key
+     * invoke the loader only once.
+     *
+     * @param key        Item key.
+     * @param loader     the object computing the value, it must not return {@literal null}
+     * @param expiration Expiration time of the computed value, {@literal null} means eternity.
+     * @param <T>        the type of value
+     * @return the cached or computed value
+     * @throws ExecutionException if the loader has thrown an exception
+     */
+    public <T> T computeIfAbsent(String key, Callable<? extends T> loader, Duration expiration)
+            throws ExecutionException;
+
+    /**
+     * Retrieves a value from the cache asynchronously.
+     *
+     * @param key Item key.
+     * @return the future receiving the cached value, or {@literal null} if not cached.
+     */
+    public ListenableFuture<Object> getAsync(String key);
+
+    /**
+     * Retrieves several values from the cache asynchronously.
+     *
+     * @param keys Item keys.
+     * @return the future receiving the cached values by key.
+     */
+    public ListenableFuture<Map<String, Object>> getAllAsync(Collection<String> keys);
+
+    /**
+     * Sets a value into the cache asynchronously.
+     *
+     * @param key        Item key.
+     * @param value      Item value.
+     * @param expiration Expiration time, {@literal null} means eternity.
+     * @return the future completed once the value is stored.
+     */
+    public ListenableFuture<Void> setAsync(String key, Object value, Duration expiration);
+
+    /**
+     * Sets several values into the cache asynchronously.
+     *
+     * @param entries    the items to store, by key.
+     * @param expiration Expiration time, {@literal null} means eternity.
+     * @return the future completed once the values are stored.
+     */
+    public ListenableFuture<Void> setAllAsync(Map<String, ?> entries, Duration expiration);
+
+    /**
+     * Retrieves a value from the cache asynchronously, computing and storing it if not cached. The loader is
+     * invoked asynchronously too.
+     *
+     * @param key        Item key.
+     * @param loader     the object computing the value, it must not return {@literal null}
+     * @param expiration Expiration time of the computed value, {@literal null} means eternity.
+     * @param <T>        the type of value
+     * @return the future receiving the cached or computed value
+     */
+    public <T> ListenableFuture<T> computeIfAbsentAsync(String key, Callable<? extends T> loader,
+                                                        Duration expiration);
+
+    /**
+     * Gets a view of the cache restricted to the values of the given type. Values of other types are considered
+     * as not cached.
+     *
+     * @param type the type of value
+     * @param <T>  the type of value
+     * @return the typed view
+     */
+    public <T> TypedCache<T> view(Class<T> type);
 }
@@ -28,6 +28,9 @@ import java.lang.annotation.Target;
 
 /**
  * Mark an action to be cached on server side using the Cache Service.
+ * <p>
+ * The rendered content of the result is cached, so cache hits do not serialize the result again. Concurrent
+ * requests missing the same key wait for a single invocation of the action.
  */
 @Interception
 @Target({ElementType.TYPE, ElementType.METHOD})
@@ -42,4 +45,24 @@ public @interface Cached {
      * The duration the action should be cached for (in second).  Defaults to 0 corresponding to 365 days.
      */
     int duration() default 0;
+
+    /**
+     * The names of the request headers whose values are part of the cache key, such as {@literal Accept}. By
+     * default, no header is used.
+     */
+    String[] headers() default {};
+
+    /**
+     * The names of the query parameters whose values are part of the cache key. By default, no parameter is used
+     * (however, the default key, i.e. the request's URI, contains the query string).
+     */
+    String[] parameters() default {};
+
+    /**
+     * The duration (in second) during which an expired result is still served while a new result is computed in
+     * background. Defaults to 0, meaning that expired results are never served. The new result is computed with a
+     * copy of the request serving the expired result: the modifications of the session, flash scope and cookies
+     * made while computing it are not sent to any client.
+     */
+    int staleWhileRevalidate() default 0;
 }
\ No newline at end of file
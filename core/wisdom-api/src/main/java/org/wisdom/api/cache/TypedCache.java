@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.cache;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.joda.time.Duration;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A view of the cache service restricted to the values of a given type. Cached values of other types are
+ * considered as not cached. Instances are retrieved using {@link Cache#view(Class)}.
+ *
+ * @param <T> the type of value
+ */
+public interface TypedCache<T> {
+
+    /**
+     * Sets a value into the cache.
+     *
+     * @param key        Item key.
+     * @param value      Item value.
+     * @param expiration Expiration time, {@literal null} means eternity.
+     */
+    public void set(String key, T value, Duration expiration);
+
+    /**
+     * Retrieves a value from the cache.
+     *
+     * @param key Item key.
+     * @return the cached value, {@literal null} if not cached or not of the view type.
+     */
+    public T get(String key);
+
+    /**
+     * Retrieves several values from the cache.
+     *
+     * @param keys Item keys.
+     * @return the cached values of the view type, by key.
+     */
+    public Map<String, T> getAll(Collection<String> keys);
+
+    /**
+     * Retrieves a value from the cache asynchronously.
+     *
+     * @param key Item key.
+     * @return the future receiving the cached value, or {@literal null} if not cached or not of the view type.
+     */
+    public ListenableFuture<T> getAsync(String key);
+
+    /**
+     * Retrieves a value from the cache, computing and storing it if not cached.
+     *
+     * @param key        Item key.
+     * @param loader     the object computing the value, it must not return {@literal null}
+     * @param expiration Expiration time of the computed value, {@literal null} means eternity.
+     * @return the cached or computed value
+     * @throws ExecutionException if the loader has thrown an exception
+     */
+    public T computeIfAbsent(String key, Callable<? extends T> loader, Duration expiration)
+            throws ExecutionException;
+
+    /**
+     * Removes a value from the cache.
+     *
+     * @param key Item key
+     * @return {@literal true} if the value was effectively removed form the cache, {@literal false} otherwise.
+     */
+    public boolean remove(String key);
+}
@@ -84,6 +84,16 @@ public interface ApplicationConfiguration extends Configuration {
 
     boolean DEFAULT_ENCODING_URL = true;
 
+    /**
+     * The compression level (from 0 to 9) used by the gzip and deflate encodings.
+     */
+    String ENCODING_LEVEL = "encoding.level";
+
+    /**
+     * The default compression level.
+     */
+    int DEFAULT_ENCODING_LEVEL = 6;
+
     /**
      * Gets the base directory of the Wisdom application.
      *
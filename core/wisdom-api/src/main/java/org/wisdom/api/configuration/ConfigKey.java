@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.configuration;
+
+/**
+ * A typed handle on a configuration key. Components create the handles they need once (generally as constants), and
+ * read the value using {@link Configuration#get(ConfigKey)}. The value is resolved and converted on the first read
+ * only, and kept in the handle until the configuration changes. So, reading a value from a handle costs neither a
+ * lookup nor a conversion.
+ * <p>
+ * Handles are thread-safe.
+ *
+ * @param <T> the type of the value
+ */
+public final class ConfigKey<T> {
+
+    private final String name;
+    private final Class<T> type;
+    private final T defaultValue;
+
+    /**
+     * The last resolved value.
+     */
+    private volatile Resolved<T> resolved;
+
+    private ConfigKey(String name, Class<T> type, T defaultValue) {
+        if (name == null || type == null) {
+            throw new IllegalArgumentException("The name and the type of a configuration key cannot be null");
+        }
+        this.name = name;
+        this.type = type;
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Creates a handle on a key without default value.
+     *
+     * @param name the key
+     * @param type the type of the value, {@link String}, {@link Integer}, {@link Long}, {@link Boolean} or any type
+     *             supported by the {@link org.wisdom.api.content.ParameterConverters}
+     * @param <T>  the type of the value
+     * @return the handle
+     */
+    public static <T> ConfigKey<T> of(String name, Class<T> type) {
+        return new ConfigKey<>(name, type, null);
+    }
+
+    /**
+     * Creates a handle on a key.
+     *
+     * @param name         the key
+     * @param type         the type of the value, {@link String}, {@link Integer}, {@link Long}, {@link Boolean} or
+     *                     any type supported by the {@link org.wisdom.api.content.ParameterConverters}
+     * @param defaultValue the value returned when the key is not set
+     * @param <T>          the type of the value
+     * @return the handle
+     */
+    public static <T> ConfigKey<T> of(String name, Class<T> type, T defaultValue) {
+        return new ConfigKey<>(name, type, defaultValue);
+    }
+
+    /**
+     * @return the key
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the type of the value
+     */
+    public Class<T> type() {
+        return type;
+    }
+
+    /**
+     * @return the default value, {@literal null} if none
+     */
+    public T defaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Gets the value resolved from the given source. This method is intended to be used by the {@link Configuration}
+     * implementations.
+     *
+     * @param source the object from which the value is resolved, generally an immutable view of the configuration
+     * @return the resolved value, {@literal null} if the value has not been resolved from the given source yet
+     */
+    public Resolved<T> resolved(Object source) {
+        Resolved<T> current = resolved;
+        if (current != null && current.source == source) {
+            return current;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the value resolved from the given source. This method is intended to be used by the
+     * {@link Configuration} implementations.
+     *
+     * @param source the object from which the value has been resolved
+     * @param value  the value, may be {@literal null}
+     * @return the given value
+     */
+    public T resolve(Object source, T value) {
+        resolved = new Resolved<>(source, value);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + type.getName() + ")";
+    }
+
+    /**
+     * A value resolved from a source.
+     *
+     * @param <T> the type of the value
+     */
+    public static final class Resolved<T> {
+        private final Object source;
+        private final T value;
+
+        private Resolved(Object source, T value) {
+            this.source = source;
+            this.value = value;
+        }
+
+        /**
+         * @return the value, may be {@literal null}
+         */
+        public T value() {
+            return value;
+        }
+    }
+}
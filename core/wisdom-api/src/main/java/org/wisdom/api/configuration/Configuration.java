@@ -229,4 +229,14 @@ public interface Configuration {
      * external files.
      */
     Map<String, Object> asMap();
+
+    /**
+     * Gets the value of a typed key. The value is resolved once and kept in the handle until the configuration
+     * changes, so this method is the cheapest way to read a value on a hot path.
+     *
+     * @param key the key handle
+     * @param <T> the type of the value
+     * @return the value, or the default value of the handle if not there
+     */
+    <T> T get(ConfigKey<T> key);
 }
@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.engine;
+
+/**
+ * The phases of the processing of a HTTP request, reported to the {@link RequestRecorder}.
+ */
+public enum RequestPhase {
+
+    /**
+     * The selection of the route handling the request.
+     */
+    ROUTING,
+
+    /**
+     * The computation of the action parameters from the request.
+     */
+    BINDING,
+
+    /**
+     * The validation of the action parameters.
+     */
+    VALIDATION,
+
+    /**
+     * The invocation of the action method. For asynchronous results, it is the computation of the result,
+     * including the time waiting for a thread.
+     */
+    ACTION,
+
+    /**
+     * The serialization of the result content.
+     */
+    SERIALIZATION,
+
+    /**
+     * The encoding (compression) of the content. When the engine compresses the content while writing it, this is
+     * the time spent compressing, also part of the {@link #WRITE} phase. Chunked contents encoded by a
+     * {@link org.wisdom.api.content.ContentCodec} while they are written are only measured by the {@link #WRITE}
+     * phase.
+     */
+    ENCODING,
+
+    /**
+     * The write of the response, until the last byte is handed to the network layer.
+     */
+    WRITE,
+
+    /**
+     * Not a phase, but the whole processing of the request, from the routing to the end of the write.
+     */
+    TOTAL
+}
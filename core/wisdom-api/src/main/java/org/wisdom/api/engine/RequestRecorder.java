@@ -0,0 +1,44 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.engine;
+
+import org.wisdom.api.router.Route;
+
+/**
+ * A service interface receiving the duration of the phases of the HTTP requests, from the engine and the router.
+ * It is typically exposed by monitoring components to build per-route latency histograms.
+ * <p>
+ * This method is called several times for every request, from the threads processing the requests, so
+ * implementations must be thread-safe, should neither lock nor allocate objects, and must not throw exceptions.
+ * The given route may be a per-request object, implementations keeping per-route state must use
+ * {@link Route#getCanonicalRoute()}.
+ */
+public interface RequestRecorder {
+
+    /**
+     * Records the duration of a phase.
+     *
+     * @param route    the route handling the request, may be unbound (no action for the request) or
+     *                 {@literal null} if not known
+     * @param phase    the phase
+     * @param duration the duration in nanoseconds
+     */
+    void record(Route route, RequestPhase phase, long duration);
+}
@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.http;
+
+import java.io.IOException;
+
+/**
+ * The output receiving the content of an {@link AsyncRenderable}. This output never blocks: the producer is told
+ * when the client does not read fast enough, and then waits for the output to be ready before writing again. The
+ * methods can be called from any thread, but not concurrently.
+ */
+public interface AsyncOutput {
+
+    /**
+     * Sends the given bytes to the client. The bytes are copied, so the array can be reused.
+     *
+     * @param bytes  the bytes
+     * @param offset the offset of the first byte to send
+     * @param length the number of bytes to send
+     * @return {@literal true} if more bytes can be written, {@literal false} if the client does not read fast
+     * enough. In the latter case, the producer should stop writing until the callback given to
+     * {@link #whenReady(Runnable)} is called.
+     * @throws IOException if the connection with the client is closed
+     */
+    boolean write(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Registers a callback called once, when the client has received the bytes written so far, or when the
+     * connection is closed (the next write then fails). The callback is called immediately if nothing is pending.
+     *
+     * @param callback the callback
+     */
+    void whenReady(Runnable callback);
+
+    /**
+     * Ends the response.
+     */
+    void end();
+
+    /**
+     * Aborts the response, as the content cannot be produced entirely. The headers are already sent, so the
+     * connection is closed.
+     *
+     * @param cause the failure
+     */
+    void abort(Throwable cause);
+}
@@ -0,0 +1,42 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.http;
+
+/**
+ * An optional interface implemented by {@link org.wisdom.api.http.Renderable} objects receiving their content from
+ * a non-blocking source (such as a non-blocking HTTP client). Engines supporting this interface give the renderable
+ * object an {@link AsyncOutput} once the response headers are written, and the source pushes its content into the
+ * response while it is received, without holding a thread. The renderable object must still support
+ * {@link org.wisdom.api.http.Renderable#render(Context, Result)}, used when the content needs to be transformed
+ * (such as encoded) or by engines not supporting this interface.
+ * <p>
+ * The response headers are written before this method is called, so the result must not be modified.
+ */
+public interface AsyncRenderable {
+
+    /**
+     * Starts sending the content into the given output. This method must not block, and is called at most once.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @param output  the output receiving the content
+     */
+    void subscribe(Context context, Result result, AsyncOutput output);
+}
@@ -19,12 +19,19 @@
  */
 package org.wisdom.api.http;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * An extension of result instructing the engine to render the result asynchronously. That means that the result
  * computation is delegated to another thread (and not the request thread), and is written and sent to the client
  * when the computation is completed.
+ * <p>
+ * The result can also be backed by a future, completed by a component not holding any thread while the result is
+ * computed (such as a non-blocking client). Engines write such results when the future completes, instead of
+ * dispatching the computation to a thread.
  */
 public class AsyncResult extends Result {
 
@@ -33,6 +40,11 @@ public class AsyncResult extends Result {
      */
     private final Callable<Result> callable;
 
+    /**
+     * The future completed with the result, {@literal null} if the result is computed by {@link #callable}.
+     */
+    private final ListenableFuture<Result> future;
+
     /**
      * Creates a new asynchronous result.
      *
@@ -41,12 +53,45 @@ public class AsyncResult extends Result {
      */
     public AsyncResult(Callable<Result> callable) {
         this.callable = callable;
+        this.future = null;
     }
 
     /**
-     * @return the callable.
+     * Creates a new asynchronous result completed by the given future.
+     *
+     * @param future the future completed with the result, or with the failure to report. This future must not be
+     *               {@literal null}.
+     */
+    public AsyncResult(final ListenableFuture<Result> future) {
+        this.future = future;
+        // Lets the code only supporting callables wait for the result.
+        this.callable = new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                try {
+                    return future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the callable. For results backed by a future, the callable waits for the completion of the future.
      */
     public Callable<Result> callable() {
         return callable;
     }
+
+    /**
+     * @return the future completed with the result, {@literal null} if the result is computed by the
+     * {@linkplain #callable() callable}.
+     */
+    public ListenableFuture<Result> future() {
+        return future;
+    }
 }
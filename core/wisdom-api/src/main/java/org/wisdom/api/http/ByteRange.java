@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.http;
+
+/**
+ * A single byte range requested using the {@literal Range} header (RFC 7233). Only single ranges are supported:
+ * requests asking for several ranges are served as if they did not contain the {@literal Range} header, which is
+ * allowed by the specification.
+ */
+public final class ByteRange {
+
+    /**
+     * The range returned when none of the requested bytes are in the content.
+     */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1, -1);
+
+    private static final String BYTES = "bytes=";
+
+    private final long start;
+
+    private final long end;
+
+    private final long length;
+
+    private ByteRange(long start, long end, long length) {
+        this.start = start;
+        this.end = end;
+        this.length = length;
+    }
+
+    /**
+     * Computes the range to send.
+     *
+     * @param range     the value of the {@literal Range} header, may be {@literal null}
+     * @param ifRange   the value of the {@literal If-Range} header, may be {@literal null}
+     * @param validator the etag or last modification date (HTTP format) of the content, may be {@literal null}
+     * @param length    the length of the content
+     * @return the range, {@link #UNSATISFIABLE} if the range cannot be satisfied, or {@literal null} if the whole
+     * content must be sent
+     */
+    public static ByteRange parse(String range, String ifRange, String validator, long length) {
+        if (range == null || !range.startsWith(BYTES) || range.indexOf(',') != -1 || length <= 0) {
+            return null;
+        }
+        if (ifRange != null && !ifRange.equals(validator)) {
+            // The content has changed, send it all.
+            return null;
+        }
+        String spec = range.substring(BYTES.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // Suffix range: the last n bytes.
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+                if (end < start) {
+                    return null;
+                }
+                end = Math.min(end, length - 1);
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(start, end, length);
+        } catch (NumberFormatException e) { //NOSONAR
+            // Invalid range, ignore it.
+            return null;
+        }
+    }
+
+    /**
+     * @return the position of the first byte to send
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * @return the position of the last byte to send (inclusive)
+     */
+    public long end() {
+        return end;
+    }
+
+    /**
+     * @return the number of bytes to send
+     */
+    public long count() {
+        return end - start + 1;
+    }
+
+    /**
+     * @return the value of the {@literal Content-Range} header describing this range
+     */
+    public String toContentRange() {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    /**
+     * Computes the value of the {@literal Content-Range} header sent with a
+     * {@link Status#REQUESTED_RANGE_NOT_SATISFIABLE} response.
+     *
+     * @param length the length of the content
+     * @return the header value
+     */
+    public static String unsatisfiable(long length) {
+        return "bytes */" + length;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An optional interface implemented by {@link org.wisdom.api.http.Renderable} objects having their rendered form in
+ * memory. Engines supporting this interface send the returned buffer as it is, instead of reading the stream
+ * returned by {@link org.wisdom.api.http.Renderable#render(Context, Result)}, avoiding intermediary copies of the
+ * content.
+ */
+public interface DirectRenderable {
+
+    /**
+     * Retrieves the content as a buffer. This method has the same side effects as
+     * {@link org.wisdom.api.http.Renderable#render(Context, Result)} (for instance setting the charset of the
+     * result). The returned buffer must not be modified by the caller.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return the buffer wrapping the content, positioned at the beginning of the content
+     * @throws RenderableException if the content cannot be rendered
+     */
+    ByteBuffer renderAsBuffer(Context context, Result result) throws RenderableException;
+}
@@ -44,5 +44,10 @@ public interface EncodingNames {
      */
     String IDENTITY = "identity";
 
+    /**
+     * BROTLI. Only used to serve content compressed ahead of time.
+     */
+    String BROTLI = "br";
+
     String[] ALL_ENCODINGS = {IDENTITY, COMPRESS, DEFLATE, GZIP};
 }
@@ -0,0 +1,39 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.http;
+
+import java.io.File;
+
+/**
+ * An optional interface implemented by {@link org.wisdom.api.http.Renderable} objects whose content is a file
+ * stored on the file system. Engines supporting this interface send the file directly from the file system to the
+ * socket (using {@literal sendfile} when available), instead of reading the stream returned by
+ * {@link org.wisdom.api.http.Renderable#render(Context, Result)}. It also lets them serve byte ranges of the file.
+ */
+public interface FileRenderable {
+
+    /**
+     * Retrieves the file to send. The file content is sent as it is, so the renderable object must not transform
+     * it during the rendering.
+     *
+     * @return the file
+     */
+    File file();
+}
@@ -0,0 +1,45 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.http;
+
+import java.io.OutputStream;
+
+/**
+ * An optional interface implemented by {@link org.wisdom.api.http.Renderable} objects producing their content
+ * progressively (such as templates). Engines supporting this interface let the renderable object write its content
+ * directly into the response, chunk by chunk, instead of reading the stream returned by
+ * {@link org.wisdom.api.http.Renderable#render(Context, Result)}. So the content is never entirely held in memory,
+ * and the first bytes are sent before the end of the rendering.
+ * <p>
+ * The response headers are written before this method is called, so the result must not be modified. If the
+ * result does not specify a charset, engines set it to UTF-8 before writing the headers.
+ */
+public interface StreamingRenderable {
+
+    /**
+     * Writes the content to the given stream. The stream is closed by the engine.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @param out     the stream receiving the content
+     * @throws RenderableException if the content cannot be rendered
+     */
+    void renderTo(Context context, Result result, OutputStream out) throws RenderableException;
+}
@@ -39,7 +39,10 @@ import java.util.regex.Pattern;
  * Filter must call the {@link org.wisdom.api.interception.RequestContext#proceed()} method to call the next
  * filter. At the end of the filter chain, the interceptor chain is invoked.
  *
- * The route handled by the filter are selected by the {@link org.wisdom.api.interception.Filter#uri()} method.
+ * The route handled by the filter are selected by the {@link org.wisdom.api.interception.Filter#uri()} method,
+ * or by the {@link org.wisdom.api.interception.MatchingFilter#matcher()} method if the filter implements
+ * {@link org.wisdom.api.interception.MatchingFilter}. Patterns denoting a literal path or a literal prefix (such as
+ * {@literal /foo.*}) are checked using string comparisons.
  */
 public interface Filter {
 
@@ -0,0 +1,37 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.interception;
+
+/**
+ * An optional interface implemented by {@link Filter} services describing the URIs they handle with a
+ * {@link UriMatcher} instead of a regular expression. The router uses this matcher instead of the pattern returned
+ * by {@link Filter#uri()}, so filters handling a path prefix do not require any regex matching.
+ * <p>
+ * As for {@link Filter#uri()}, the router caches the matcher when the filter is bound, so it cannot changed.
+ */
+public interface MatchingFilter extends Filter {
+
+    /**
+     * Gets the matcher used to determine whether the route is handled by the filter or not.
+     *
+     * @return the matcher, {@literal null} to use the pattern returned by {@link Filter#uri()}
+     */
+    UriMatcher matcher();
+}
@@ -42,9 +42,9 @@ public class RequestContext {
     private final Route route;
 
     /**
-     * The filter chain.
+     * The filter chain, ending with the filter invoking the action method.
      */
-    private final List<Filter> chain;
+    private final Filter[] chain;
 
     /**
      * The map storing the configuration for interceptors.
@@ -56,7 +56,10 @@ public class RequestContext {
      */
     private final Object[] parameters;
 
-    private ListIterator<Filter> iterator;
+    /**
+     * The position of the next filter to call in the chain.
+     */
+    private int index;
 
     /**
      * Creates a new Interception Context. Instances should only be created by the router.
@@ -71,14 +74,34 @@ public class RequestContext {
         this.route = route;
         this.interceptors = interceptors;
 
-        this.chain = new LinkedList<>(chain);
         this.parameters = Arrays.copyOf(parameters, parameters.length);
 
         // Add the action invocation
+        this.chain = chain.toArray(new Filter[chain.size() + 1]);
         if (endOfChainInvoker == null) {
-            endOfChainInvoker = new ActionInvoker();
+            this.chain[chain.size()] = new ActionInvoker();
+        } else {
+            this.chain[chain.size()] = endOfChainInvoker;
         }
-        this.chain.add(endOfChainInvoker);
+    }
+
+    /**
+     * Creates a new Interception Context from a pre-computed chain. Instances should only be created by the router.
+     * Neither the chain, nor the interceptor configurations, nor the parameters are copied, so they must not be
+     * modified once given to this constructor. This lets the router share the same chain between requests.
+     *
+     * @param route        the intercepted route
+     * @param chain        the ordered interception chain containing filters and interceptors. The last element must
+     *                     be the filter invoking the action method.
+     * @param interceptors the set of interceptors and their configuration
+     * @param parameters   the parameters
+     */
+    public RequestContext(Route route, Filter[] chain, Map<Interceptor<?>, Object> interceptors,
+                          Object[] parameters) {
+        this.route = route;
+        this.interceptors = interceptors;
+        this.chain = chain;
+        this.parameters = parameters;
     }
 
     /**
@@ -98,13 +121,10 @@ public class RequestContext {
      * @throws java.lang.Exception if the invocation fails.
      */
     public Result proceed() throws Exception {
-        if (iterator == null) {
-            iterator = chain.listIterator();
-        }
-        if (!iterator.hasNext()) {
+        if (index >= chain.length) {
             throw new IllegalStateException("Reached the end of the chain without result.");
         }
-        Filter filter = iterator.next();
+        Filter filter = chain[index++];
         return filter.call(route, this);
     }
 
@@ -0,0 +1,259 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.interception;
+
+import java.util.regex.Pattern;
+
+/**
+ * A structured description of the URIs handled by a filter. Unlike the regex returned by {@link Filter#uri()},
+ * exact paths and path prefixes are checked using string comparisons.
+ * <p>
+ * Instances are immutable and can be shared.
+ *
+ * @see MatchingFilter
+ */
+public final class UriMatcher {
+
+    /**
+     * The kinds of matchers.
+     */
+    public enum Kind {
+        /**
+         * The path must be equal to the value.
+         */
+        EXACT,
+        /**
+         * The path must start with the value.
+         */
+        PREFIX,
+        /**
+         * The path must match the regular expression.
+         */
+        REGEX
+    }
+
+    private static final String REGEX_CHARACTERS = "\\[](){}.*+?^$|";
+
+    private static final String ANY = ".*";
+
+    private final Kind kind;
+
+    private final String value;
+
+    private final Pattern pattern;
+
+    private UriMatcher(Kind kind, String value, Pattern pattern) {
+        this.kind = kind;
+        this.value = value;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Creates a matcher accepting only the given path.
+     *
+     * @param path the path
+     * @return the matcher
+     */
+    public static UriMatcher exact(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("The path must not be null");
+        }
+        return new UriMatcher(Kind.EXACT, path, null);
+    }
+
+    /**
+     * Creates a matcher accepting all the paths starting with the given prefix.
+     *
+     * @param prefix the prefix
+     * @return the matcher
+     */
+    public static UriMatcher prefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("The prefix must not be null");
+        }
+        return new UriMatcher(Kind.PREFIX, prefix, null);
+    }
+
+    /**
+     * Creates a matcher from a regular expression. Expressions denoting a literal path ({@literal /foo}) or a
+     * literal prefix ({@literal /foo.*}) are turned into {@link Kind#EXACT} or {@link Kind#PREFIX} matchers.
+     *
+     * @param regex the regular expression
+     * @return the matcher
+     */
+    public static UriMatcher regex(String regex) {
+        return regex(Pattern.compile(regex));
+    }
+
+    /**
+     * Creates a matcher from a compiled regular expression. Expressions denoting a literal path ({@literal /foo}) or a
+     * literal prefix ({@literal /foo.*}) are turned into {@link Kind#EXACT} or {@link Kind#PREFIX} matchers.
+     *
+     * @param pattern the pattern
+     * @return the matcher
+     */
+    public static UriMatcher regex(Pattern pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("The pattern must not be null");
+        }
+        if (pattern.flags() == 0) {
+            String regex = pattern.pattern();
+            if (regex.endsWith(ANY)) {
+                String prefix = literal(regex.substring(0, regex.length() - ANY.length()));
+                if (prefix != null) {
+                    return new UriMatcher(Kind.PREFIX, prefix, pattern);
+                }
+            }
+            String path = literal(regex);
+            if (path != null) {
+                return new UriMatcher(Kind.EXACT, path, pattern);
+            }
+        }
+        return new UriMatcher(Kind.REGEX, null, pattern);
+    }
+
+    /**
+     * Creates a matcher from a glob expression: {@literal **} matches any sequence of characters, {@literal *} any
+     * sequence of characters except {@literal /}, and {@literal ?} a single character except {@literal /}. So,
+     * {@literal /assets/**} is checked as a prefix.
+     *
+     * @param glob the glob expression
+     * @return the matcher
+     */
+    public static UriMatcher glob(String glob) {
+        if (glob == null) {
+            throw new IllegalArgumentException("The glob expression must not be null");
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '?') {
+                    regex.append("[^/]");
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(ANY);
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex(regex.toString());
+    }
+
+    /**
+     * Creates the matcher of the given filter. If the filter implements {@link MatchingFilter}, its matcher is
+     * returned, otherwise the matcher is built from the pattern returned by {@link Filter#uri()}.
+     *
+     * @param filter the filter
+     * @return the matcher, {@literal null} if the filter does not handle any URI
+     */
+    public static UriMatcher of(Filter filter) {
+        if (filter instanceof MatchingFilter) {
+            UriMatcher matcher = ((MatchingFilter) filter).matcher();
+            if (matcher != null) {
+                return matcher;
+            }
+        }
+        Pattern pattern = filter.uri();
+        if (pattern == null) {
+            return null;
+        }
+        return regex(pattern);
+    }
+
+    /**
+     * Gets the literal text denoted by the given regular expression.
+     *
+     * @param regex the expression
+     * @return the text, {@literal null} if the expression contains special characters
+     */
+    private static String literal(String regex) {
+        // Expressions produced by Pattern.quote.
+        if (regex.startsWith("\\Q") && regex.endsWith("\\E") && regex.length() >= 4) {
+            String text = regex.substring(2, regex.length() - 2);
+            return text.contains("\\E") ? null : text;
+        }
+        for (int i = 0; i < regex.length(); i++) {
+            if (REGEX_CHARACTERS.indexOf(regex.charAt(i)) != -1) {
+                return null;
+            }
+        }
+        return regex;
+    }
+
+    /**
+     * @return the kind of matcher
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return the path for {@link Kind#EXACT} matchers, the prefix for {@link Kind#PREFIX} matchers, {@literal
+     * null} for {@link Kind#REGEX} matchers.
+     */
+    public String value() {
+        return value;
+    }
+
+    /**
+     * @return the pattern for {@link Kind#REGEX} matchers and matchers created from a regular expression,
+     * {@literal null} otherwise.
+     */
+    public Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * Checks whether the given path is accepted.
+     *
+     * @param path the path
+     * @return {@literal true} if the path is accepted, {@literal false} otherwise
+     */
+    public boolean matches(String path) {
+        if (path == null) {
+            return false;
+        }
+        switch (kind) {
+            case EXACT:
+                return value.equals(path);
+            case PREFIX:
+                return path.startsWith(value);
+            default:
+                return pattern.matcher(path).matches();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return kind + ":" + (value == null ? pattern.pattern() : value);
+    }
+}
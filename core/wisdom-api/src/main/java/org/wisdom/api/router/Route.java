@@ -132,6 +132,17 @@ public class Route {
         return controllerMethod;
     }
 
+    /**
+     * Gets the canonical route. Routers may return a new route object for each request (holding the request
+     * specific data such as the path parameters), wrapping the route they have registered. This method returns the
+     * registered route, whose identity is stable while the controller is bound.
+     *
+     * @return the canonical route, the current route by default
+     */
+    public Route getCanonicalRoute() {
+        return this;
+    }
+
     /**
      * Matches /index to /index or /me/1 to /person/{id}.
      *
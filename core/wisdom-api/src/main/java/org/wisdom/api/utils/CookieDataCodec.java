@@ -19,9 +19,9 @@
  */
 package org.wisdom.api.utils;
 
+import com.google.common.base.Charsets;
+
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.util.Map;
 
 /**
@@ -40,24 +40,33 @@ import java.util.Map;
  */
 public final class CookieDataCodec {
 
-    private static final String UTF8 = "utf-8";
-    
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     private CookieDataCodec(){
         //Hide implicite constructor
     }
 
     /**
+     * Decodes the given data. The data is parsed in a single pass, keys and values are decoded as
+     * {@link java.net.URLDecoder} does with the UTF-8 encoding.
+     *
      * @param map  the map to decode data into.
      * @param data the data to decode.
      * @throws java.io.UnsupportedEncodingException
      */
     public static void decode(Map<String, String> map, String data) throws UnsupportedEncodingException {
-        String[] keyValues = data.split("&");
-        for (String keyValue : keyValues) {
-            String[] splitted = keyValue.split("=", 2);
-            if (splitted.length == 2) {
-                map.put(URLDecoder.decode(splitted[0], UTF8), URLDecoder.decode(splitted[1], UTF8));
+        int length = data.length();
+        int start = 0;
+        while (start < length) {
+            int end = data.indexOf('&', start);
+            if (end == -1) {
+                end = length;
+            }
+            int separator = data.indexOf('=', start);
+            if (separator != -1 && separator < end) {
+                map.put(decode(data, start, separator), decode(data, separator + 1, end));
             }
+            start = end + 1;
         }
     }
 
@@ -68,19 +77,104 @@ public final class CookieDataCodec {
      */
     public static String encode(Map<String, String> map) throws UnsupportedEncodingException {
         StringBuilder data = new StringBuilder();
-        String separator = "";
+        boolean first = true;
         for (Map.Entry<String, String> entry : map.entrySet()) {
             if (entry.getValue() != null) {
-                data.append(separator)
-                .append(URLEncoder.encode(entry.getKey(), UTF8))
-                .append("=")
-                .append(URLEncoder.encode(entry.getValue(), UTF8));
-                separator = "&";
+                if (!first) {
+                    data.append('&');
+                }
+                encode(data, entry.getKey());
+                data.append('=');
+                encode(data, entry.getValue());
+                first = false;
             }
         }
         return data.toString();
     }
 
+    /**
+     * Decodes a part of the given String, as {@link java.net.URLDecoder#decode(String, String)} does with the UTF-8
+     * encoding.
+     */
+    private static String decode(String data, int from, int to) {
+        int index = from;
+        while (index < to && data.charAt(index) != '%' && data.charAt(index) != '+') {
+            index++;
+        }
+        if (index == to) {
+            // Nothing to decode.
+            return data.substring(from, to);
+        }
+        StringBuilder builder = new StringBuilder(to - from);
+        builder.append(data, from, index);
+        byte[] bytes = null;
+        while (index < to) {
+            char c = data.charAt(index);
+            if (c == '+') {
+                builder.append(' ');
+                index++;
+            } else if (c == '%') {
+                // Decode the sequence of consecutive escaped bytes at once, as they form an UTF-8 sequence.
+                if (bytes == null) {
+                    bytes = new byte[(to - index) / 3];
+                }
+                int count = 0;
+                while (index + 2 < to && data.charAt(index) == '%') {
+                    int high = Character.digit(data.charAt(index + 1), 16);
+                    int low = Character.digit(data.charAt(index + 2), 16);
+                    if (high == -1 || low == -1) {
+                        throw new IllegalArgumentException("Illegal hex characters in escape (%) pattern in "
+                                + data);
+                    }
+                    bytes[count++] = (byte) ((high << 4) + low);
+                    index += 3;
+                }
+                if (index < to && data.charAt(index) == '%') {
+                    throw new IllegalArgumentException("Incomplete trailing escape (%) pattern in " + data);
+                }
+                builder.append(new String(bytes, 0, count, Charsets.UTF_8));
+            } else {
+                builder.append(c);
+                index++;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Appends the given String encoded as {@link java.net.URLEncoder#encode(String, String)} does with the UTF-8
+     * encoding.
+     */
+    private static void encode(StringBuilder builder, String value) {
+        int length = value.length();
+        int index = 0;
+        while (index < length) {
+            char c = value.charAt(index);
+            if (isUnreserved(c)) {
+                builder.append(c);
+                index++;
+            } else if (c == ' ') {
+                builder.append('+');
+                index++;
+            } else {
+                // Encode the run of characters requiring an escape at once, so surrogate pairs are kept together.
+                int end = index + 1;
+                while (end < length && !isUnreserved(value.charAt(end)) && value.charAt(end) != ' ') {
+                    end++;
+                }
+                for (byte b : value.substring(index, end).getBytes(Charsets.UTF_8)) {
+                    builder.append('%').append(HEX_DIGITS[(b >> 4) & 0x0F]).append(HEX_DIGITS[b & 0x0F]);
+                }
+                index = end;
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
     /**
      * Constant time for same length String comparison, to prevent timing attacks.
      */
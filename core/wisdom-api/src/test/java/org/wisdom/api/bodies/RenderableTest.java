@@ -36,6 +36,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -252,4 +253,33 @@ public class RenderableTest {
         assertThat(new String(bytes, Charsets.UTF_8)).isEqualTo("a,b,c");
     }
 
+    @Test
+    public void testRenderAsBuffer() throws Exception {
+        assertThat(NoHttpBody.INSTANCE.renderAsBuffer(null, null).remaining()).isEqualTo(0);
+
+        RenderableString string = new RenderableString("hello");
+        ByteBuffer buffer = string.renderAsBuffer(null, null);
+        assertThat(new String(buffer.array(), buffer.position(), buffer.remaining(), Charsets.UTF_8))
+                .isEqualTo("hello");
+
+        RenderableObject object = new RenderableObject(Arrays.asList("a", "b", "c"));
+        object.setSerializedForm("a,b,c");
+        buffer = object.renderAsBuffer(null, null);
+        assertThat(new String(buffer.array(), buffer.position(), buffer.remaining(), Charsets.UTF_8))
+                .isEqualTo("a,b,c");
+    }
+
+    @Test
+    public void testRenderableByteArray() throws Exception {
+        byte[] content = "hello".getBytes(Charsets.UTF_8);
+        RenderableByteArray body = new RenderableByteArray(content, MimeTypes.TEXT);
+        assertThat(body.length()).isEqualTo(5);
+        assertThat(body.mimetype()).isEqualTo(MimeTypes.TEXT);
+        assertThat(body.content()).isSameAs(content);
+        assertThat(body.mustBeChunked()).isFalse();
+        assertThat(body.requireSerializer()).isFalse();
+        assertThat(IOUtils.toByteArray(body.render(null, null))).isEqualTo(content);
+        assertThat(body.renderAsBuffer(null, null).array()).isSameAs(content);
+    }
+
 }
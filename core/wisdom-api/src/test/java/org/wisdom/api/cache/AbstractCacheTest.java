@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.cache;
+
+import com.google.common.collect.ImmutableMap;
+import org.joda.time.Duration;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the operations implemented by {@link AbstractCache}.
+ */
+public class AbstractCacheTest {
+
+    private final MapCache cache = new MapCache();
+
+    @Test
+    public void testBulkOperations() {
+        cache.setAll(ImmutableMap.of("a", 1, "b", "2"), Duration.standardSeconds(10));
+        Map<String, Object> values = cache.getAll(Arrays.asList("a", "b", "c"));
+        assertThat(values).hasSize(2).containsEntry("a", 1).containsEntry("b", "2");
+
+        cache.removeAll(Arrays.asList("a", "c"));
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isEqualTo("2");
+    }
+
+    @Test
+    public void testComputeIfAbsent() throws ExecutionException {
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() {
+                return "value-" + calls.incrementAndGet();
+            }
+        };
+        assertThat(cache.computeIfAbsent("key", loader, null)).isEqualTo("value-1");
+        assertThat(cache.computeIfAbsent("key", loader, null)).isEqualTo("value-1");
+        assertThat(cache.get("key")).isEqualTo("value-1");
+        assertThat(calls.get()).isEqualTo(1);
+
+        try {
+            cache.computeIfAbsent("failing", new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    throw new IllegalStateException("bad");
+                }
+            }, null);
+            fail("Exception expected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(cache.get("failing")).isNull();
+    }
+
+    @Test
+    public void testThatConcurrentComputationsInvokeTheLoaderOnce() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                calls.incrementAndGet();
+                entered.countDown();
+                release.await();
+                return "value";
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<String> task = new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return cache.computeIfAbsent("key", loader, null);
+                }
+            };
+            Future<String> first = executor.submit(task);
+            entered.await();
+            Future<String> second = executor.submit(task);
+            release.countDown();
+            assertThat(first.get()).isEqualTo("value");
+            assertThat(second.get()).isEqualTo("value");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAsyncOperations() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        cache.executor = executor;
+        try {
+            cache.setAsync("key", "value", null).get();
+            assertThat(cache.getAsync("key").get()).isEqualTo("value");
+            cache.setAllAsync(ImmutableMap.of("a", "1"), null).get();
+            assertThat(cache.getAllAsync(Arrays.asList("a", "key")).get()).hasSize(2);
+            assertThat(cache.computeIfAbsentAsync("b", new Callable<String>() {
+                @Override
+                public String call() {
+                    return "2";
+                }
+            }, null).get()).isEqualTo("2");
+            assertThat(cache.view(String.class).getAsync("b").get()).isEqualTo("2");
+            assertThat(cache.view(Integer.class).getAsync("b").get()).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTypedView() throws ExecutionException {
+        TypedCache<Integer> integers = cache.view(Integer.class);
+        integers.set("one", 1, null);
+        cache.set("text", "hello", 0);
+
+        assertThat(integers.get("one")).isEqualTo(1);
+        assertThat(integers.get("text")).isNull();
+        assertThat(integers.getAll(Arrays.asList("one", "text"))).hasSize(1).containsEntry("one", 1);
+
+        assertThat(integers.computeIfAbsent("text", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 2;
+            }
+        }, null)).isEqualTo(2);
+        assertThat(cache.get("text")).isEqualTo(2);
+
+        assertThat(integers.remove("one")).isTrue();
+        assertThat(cache.get("one")).isNull();
+    }
+
+    private static class MapCache extends AbstractCache {
+        private final Map<String, Object> map = new ConcurrentHashMap<>();
+
+        private Executor executor;
+
+        @Override
+        protected Executor executor() {
+            return executor == null ? super.executor() : executor;
+        }
+
+        @Override
+        public void set(String key, Object value, int expiration) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void set(String key, Object value, Duration expiration) {
+            map.put(key, value);
+        }
+
+        @Override
+        public Object get(String key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean remove(String key) {
+            return map.remove(key) != null;
+        }
+    }
+}
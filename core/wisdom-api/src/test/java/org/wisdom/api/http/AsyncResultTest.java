@@ -19,6 +19,7 @@
  */
 package org.wisdom.api.http;
 
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.Test;
 
 import java.util.concurrent.Callable;
@@ -42,4 +43,22 @@ public class AsyncResultTest {
         assertThat(async.callable()).isNotNull();
         assertThat(async.callable().call().getStatusCode()).isEqualTo(200);
     }
+
+    @Test
+    public void testAsyncFromFuture() throws Exception {
+        SettableFuture<Result> future = SettableFuture.create();
+        AsyncResult async = new AsyncResult(future);
+        assertThat(async.future()).isSameAs(future);
+
+        future.set(Results.ok());
+        assertThat(async.callable().call().getStatusCode()).isEqualTo(200);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailedFuture() throws Exception {
+        SettableFuture<Result> future = SettableFuture.create();
+        AsyncResult async = new AsyncResult(future);
+        future.setException(new IllegalStateException("expected"));
+        async.callable().call();
+    }
 }
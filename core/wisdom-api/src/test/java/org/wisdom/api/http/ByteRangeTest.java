@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.http;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ByteRangeTest {
+
+    @Test
+    public void testRanges() {
+        ByteRange range = ByteRange.parse("bytes=0-99", null, null, 1000);
+        assertThat(range.start()).isEqualTo(0);
+        assertThat(range.end()).isEqualTo(99);
+        assertThat(range.count()).isEqualTo(100);
+        assertThat(range.toContentRange()).isEqualTo("bytes 0-99/1000");
+
+        range = ByteRange.parse("bytes=900-", null, null, 1000);
+        assertThat(range.start()).isEqualTo(900);
+        assertThat(range.end()).isEqualTo(999);
+
+        range = ByteRange.parse("bytes=-100", null, null, 1000);
+        assertThat(range.start()).isEqualTo(900);
+        assertThat(range.count()).isEqualTo(100);
+
+        range = ByteRange.parse("bytes=500-5000", null, null, 1000);
+        assertThat(range.end()).isEqualTo(999);
+    }
+
+    @Test
+    public void testIgnoredRanges() {
+        assertThat(ByteRange.parse(null, null, null, 1000)).isNull();
+        assertThat(ByteRange.parse("items=0-10", null, null, 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=0-10,20-30", null, null, 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=10-5", null, null, 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=a-b", null, null, 1000)).isNull();
+        // The content has changed.
+        assertThat(ByteRange.parse("bytes=0-10", "old", "new", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=0-10", "new", "new", 1000)).isNotNull();
+    }
+
+    @Test
+    public void testUnsatisfiableRanges() {
+        assertThat(ByteRange.parse("bytes=1000-", null, null, 1000)).isSameAs(ByteRange.UNSATISFIABLE);
+        assertThat(ByteRange.parse("bytes=-0", null, null, 1000)).isSameAs(ByteRange.UNSATISFIABLE);
+        assertThat(ByteRange.unsatisfiable(1000)).isEqualTo("bytes */1000");
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.interception;
+
+import org.junit.Test;
+import org.wisdom.api.http.Result;
+import org.wisdom.api.router.Route;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the {@link UriMatcher}.
+ */
+public class UriMatcherTest {
+
+    @Test
+    public void testExactAndPrefix() {
+        UriMatcher exact = UriMatcher.exact("/foo");
+        assertThat(exact.matches("/foo")).isTrue();
+        assertThat(exact.matches("/foo/bar")).isFalse();
+        assertThat(exact.matches(null)).isFalse();
+
+        UriMatcher prefix = UriMatcher.prefix("/foo");
+        assertThat(prefix.matches("/foo")).isTrue();
+        assertThat(prefix.matches("/foo/bar")).isTrue();
+        assertThat(prefix.matches("/bar")).isFalse();
+    }
+
+    @Test
+    public void testThatLiteralRegexesAreNotMatchedAsRegex() {
+        assertThat(UriMatcher.regex("/foo.*").kind()).isEqualTo(UriMatcher.Kind.PREFIX);
+        assertThat(UriMatcher.regex("/foo.*").value()).isEqualTo("/foo");
+        assertThat(UriMatcher.regex("/foo").kind()).isEqualTo(UriMatcher.Kind.EXACT);
+        assertThat(UriMatcher.regex(Pattern.quote("/a.b") + ".*").value()).isEqualTo("/a.b");
+        assertThat(UriMatcher.regex(".*").kind()).isEqualTo(UriMatcher.Kind.PREFIX);
+        assertThat(UriMatcher.regex(".*").matches("/anything")).isTrue();
+
+        UriMatcher regex = UriMatcher.regex("/foo/[0-9]+");
+        assertThat(regex.kind()).isEqualTo(UriMatcher.Kind.REGEX);
+        assertThat(regex.matches("/foo/12")).isTrue();
+        assertThat(regex.matches("/foo/bar")).isFalse();
+
+        UriMatcher insensitive = UriMatcher.regex(Pattern.compile("/foo.*", Pattern.CASE_INSENSITIVE));
+        assertThat(insensitive.kind()).isEqualTo(UriMatcher.Kind.REGEX);
+        assertThat(insensitive.matches("/FOO/bar")).isTrue();
+    }
+
+    @Test
+    public void testGlob() {
+        UriMatcher all = UriMatcher.glob("/assets/**");
+        assertThat(all.kind()).isEqualTo(UriMatcher.Kind.PREFIX);
+        assertThat(all.matches("/assets/js/app.js")).isTrue();
+
+        UriMatcher files = UriMatcher.glob("/assets/*.js");
+        assertThat(files.kind()).isEqualTo(UriMatcher.Kind.REGEX);
+        assertThat(files.matches("/assets/app.js")).isTrue();
+        assertThat(files.matches("/assets/js/app.js")).isFalse();
+        assertThat(files.matches("/assets/appxjs")).isFalse();
+
+        assertThat(UriMatcher.glob("/a?c").matches("/abc")).isTrue();
+        assertThat(UriMatcher.glob("/a?c").matches("/a/c")).isFalse();
+    }
+
+    @Test
+    public void testMatcherOfFilters() {
+        assertThat(UriMatcher.of(new SimpleFilter(null))).isNull();
+        assertThat(UriMatcher.of(new SimpleFilter(Pattern.compile("/foo"))).kind())
+                .isEqualTo(UriMatcher.Kind.EXACT);
+        assertThat(UriMatcher.of(new SimpleMatchingFilter()).kind()).isEqualTo(UriMatcher.Kind.PREFIX);
+    }
+
+    private static class SimpleFilter implements Filter {
+        private final Pattern pattern;
+
+        private SimpleFilter(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public Result call(Route route, RequestContext context) throws Exception {
+            return context.proceed();
+        }
+
+        @Override
+        public Pattern uri() {
+            return pattern;
+        }
+
+        @Override
+        public int priority() {
+            return 0;
+        }
+    }
+
+    private static class SimpleMatchingFilter extends SimpleFilter implements MatchingFilter {
+        private SimpleMatchingFilter() {
+            super(null);
+        }
+
+        @Override
+        public UriMatcher matcher() {
+            return UriMatcher.prefix("/bar");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.api.utils;
+
+import org.junit.Test;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the {@link CookieDataCodec}.
+ */
+public class CookieDataCodecTest {
+
+    private static final String[] VALUES = {
+            "", "simple", "with space", "a+b", "a=b&c=d", "100%",
+            "\u00e9 \u00e0 \u00e7", "\u65e5\u672c\u8a9e", "\uD83D\uDE00 smiley",
+            "~!@#$^()[]{}|\\;:'\",<>/?`", ".-*_", "%41"
+    };
+
+    @Test
+    public void testEncodingIsCompatibleWithURLEncoder() throws Exception {
+        for (String value : VALUES) {
+            Map<String, String> map = new LinkedHashMap<>();
+            map.put("key", value);
+            assertThat(CookieDataCodec.encode(map)).isEqualTo("key=" + URLEncoder.encode(value, "UTF-8"));
+        }
+    }
+
+    @Test
+    public void testDecodingIsCompatibleWithURLDecoder() throws Exception {
+        for (String value : VALUES) {
+            String encoded = URLEncoder.encode(value, "UTF-8");
+            Map<String, String> map = new HashMap<>();
+            CookieDataCodec.decode(map, URLEncoder.encode("key", "UTF-8") + "=" + encoded);
+            assertThat(map).containsEntry("key", URLDecoder.decode(encoded, "UTF-8")).hasSize(1);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < VALUES.length; i++) {
+            map.put("key " + VALUES[i], VALUES[i]);
+        }
+        map.put("ignored", null);
+
+        String encoded = CookieDataCodec.encode(map);
+        Map<String, String> decoded = new HashMap<>();
+        CookieDataCodec.decode(decoded, encoded);
+
+        map.remove("ignored");
+        assertThat(decoded).isEqualTo(map);
+    }
+
+    @Test
+    public void testMalformedPairsAreIgnored() throws Exception {
+        Map<String, String> map = new HashMap<>();
+        CookieDataCodec.decode(map, "&a=1&&novalue&b=&=c&d=x=y&");
+        assertThat(map).hasSize(4)
+                .containsEntry("a", "1")
+                .containsEntry("b", "")
+                .containsEntry("", "c")
+                .containsEntry("d", "x=y");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncompleteEscape() throws Exception {
+        CookieDataCodec.decode(new HashMap<String, String>(), "a=%4");
+    }
+
+    @Test
+    public void testSafeEquals() {
+        assertThat(CookieDataCodec.safeEquals("abc", "abc")).isTrue();
+        assertThat(CookieDataCodec.safeEquals("abc", "abd")).isFalse();
+        assertThat(CookieDataCodec.safeEquals("abc", "ab")).isFalse();
+    }
+}
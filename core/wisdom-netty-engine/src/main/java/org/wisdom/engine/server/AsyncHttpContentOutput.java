@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.server;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisdom.api.http.AsyncOutput;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * The output receiving the content of an {@link org.wisdom.api.http.AsyncRenderable}. Each write is sent as an HTTP
+ * content. The channel writability tells the producer whether the client keeps up, and the completion of the last
+ * write tells it when to resume, so the content is never accumulated in the outbound buffer.
+ */
+public class AsyncHttpContentOutput implements AsyncOutput {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("wisdom-netty-engine");
+
+    private final ChannelHandlerContext ctx;
+
+    private final ChannelPromise completion;
+
+    private volatile ChannelFuture last;
+
+    /**
+     * Creates a new output. The response (headers) must have been written before.
+     *
+     * @param ctx the channel context
+     */
+    public AsyncHttpContentOutput(final ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        this.completion = ctx.newPromise();
+        final ChannelFutureListener closed = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                completion.tryFailure(new ClosedChannelException());
+            }
+        };
+        ctx.channel().closeFuture().addListener(closed);
+        // Kept-alive connections serve other requests, do not accumulate listeners.
+        completion.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                ctx.channel().closeFuture().removeListener(closed);
+            }
+        });
+    }
+
+    @Override
+    public boolean write(byte[] bytes, int offset, int length) throws IOException {
+        if (completion.isDone() || !ctx.channel().isActive()) {
+            throw new IOException("The connection is closed");
+        }
+        last = ctx.writeAndFlush(new DefaultHttpContent(ctx.alloc().buffer(length).writeBytes(bytes, offset, length)));
+        return ctx.channel().isWritable();
+    }
+
+    @Override
+    public void whenReady(final Runnable callback) {
+        ChannelFuture future = last;
+        if (future == null) {
+            callback.run();
+            return;
+        }
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                callback.run();
+            }
+        });
+    }
+
+    @Override
+    public void end() {
+        ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    completion.trySuccess();
+                } else {
+                    completion.tryFailure(future.cause());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void abort(Throwable cause) {
+        // The headers are already sent, we can only close the connection.
+        LOGGER.error("Cannot send the content of the response", cause);
+        completion.tryFailure(cause);
+        ctx.close();
+    }
+
+    /**
+     * @return the future completed when the whole content is written, or when the response is aborted
+     */
+    public ChannelFuture completion() {
+        return completion;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import org.wisdom.api.http.EncodingNames;
+
+/**
+ * Compresses the content of the responses while they are written. Unlike the Netty
+ * {@link io.netty.handler.codec.http.HttpContentCompressor}, it does not decide by itself which responses are
+ * compressed. Only responses created with {@link #newResponse(HttpVersion, HttpResponseStatus, String)} or
+ * {@link #newFullResponse(HttpVersion, HttpResponseStatus, ByteBuf, String)} with an encoding are compressed, so
+ * the decision stays in the {@link org.wisdom.api.content.ContentEncodingHelper}.
+ * <p>
+ * Compressed responses are sent using the chunked transfer encoding, and the content is compressed chunk by
+ * chunk. So, the compressed content is never entirely held in memory.
+ */
+public class ContentCompressor extends HttpContentEncoder {
+
+    private final int level;
+
+    /**
+     * The encoder of the current response, {@literal null} if the response is not compressed.
+     */
+    private volatile DeflaterEncoder encoder;
+
+    /**
+     * Creates a new compressor.
+     *
+     * @param level the compression level, between 0 (no compression) and 9 (best compression)
+     */
+    public ContentCompressor(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Invalid compression level: " + level + " (expected: 0-9)");
+        }
+        this.level = level;
+    }
+
+    /**
+     * Checks whether the given encoding is supported by the compressor.
+     *
+     * @param encoding the encoding
+     * @return {@literal true} for the {@literal gzip} and {@literal deflate} encodings
+     */
+    public static boolean supports(String encoding) {
+        return EncodingNames.GZIP.equalsIgnoreCase(encoding) || EncodingNames.DEFLATE.equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Creates a response whose content is going to be written separately.
+     *
+     * @param version  the HTTP version
+     * @param status   the status
+     * @param encoding the encoding to apply to the content, {@literal null} to send the content as it is
+     * @return the response
+     */
+    public static HttpResponse newResponse(HttpVersion version, HttpResponseStatus status, String encoding) {
+        if (encoding == null) {
+            return new DefaultHttpResponse(version, status);
+        }
+        return new CompressibleResponse(version, status, encoding);
+    }
+
+    /**
+     * Creates a response holding its content.
+     *
+     * @param version  the HTTP version
+     * @param status   the status
+     * @param content  the content
+     * @param encoding the encoding to apply to the content, {@literal null} to send the content as it is
+     * @return the response
+     */
+    public static FullHttpResponse newFullResponse(HttpVersion version, HttpResponseStatus status, ByteBuf content,
+                                                   String encoding) {
+        if (encoding == null) {
+            return new DefaultFullHttpResponse(version, status, content);
+        }
+        return new CompressibleFullResponse(version, status, content, encoding);
+    }
+
+    /**
+     * Gets the time spent compressing the content of the last response. The whole content is compressed once the
+     * last chunk of the response is written.
+     *
+     * @return the time in nanoseconds, {@literal 0} if the last response was not compressed
+     */
+    public long encodingTime() {
+        DeflaterEncoder current = encoder;
+        return current == null ? 0L : current.elapsed();
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse headers, String acceptEncoding) {
+        encoder = null;
+        if (!(headers instanceof Compressible)) {
+            return null;
+        }
+        String encoding = ((Compressible) headers).encoding();
+        if (EncodingNames.GZIP.equalsIgnoreCase(encoding)) {
+            encoder = new DeflaterEncoder(level, true);
+            return new Result(EncodingNames.GZIP, new EmbeddedChannel(encoder));
+        } else if (EncodingNames.DEFLATE.equalsIgnoreCase(encoding)) {
+            encoder = new DeflaterEncoder(level, false);
+            return new Result(EncodingNames.DEFLATE, new EmbeddedChannel(encoder));
+        }
+        return null;
+    }
+
+    /**
+     * Implemented by the responses that must be compressed.
+     */
+    private interface Compressible {
+        String encoding();
+    }
+
+    private static final class CompressibleResponse extends DefaultHttpResponse implements Compressible {
+        private final String encoding;
+
+        CompressibleResponse(HttpVersion version, HttpResponseStatus status, String encoding) {
+            super(version, status);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public String encoding() {
+            return encoding;
+        }
+    }
+
+    private static final class CompressibleFullResponse extends DefaultFullHttpResponse implements Compressible {
+        private final String encoding;
+
+        CompressibleFullResponse(HttpVersion version, HttpResponseStatus status, ByteBuf content, String encoding) {
+            super(version, status, content);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public String encoding() {
+            return encoding;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the content of a response using the gzip or deflate (zlib) format. Every written buffer is
+ * compressed and flushed, so the content is compressed chunk by chunk. The trailer is written when the encoder
+ * is closed.
+ * <p>
+ * {@link Deflater} instances are expensive to create, so they are pooled per thread. An encoder is created,
+ * used and closed on the event loop of its channel, so the deflater always returns to the pool it comes from.
+ */
+final class DeflaterEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    /**
+     * The maximum number of deflaters kept by each thread, for each format.
+     */
+    private static final int POOL_SIZE = 16;
+
+    /**
+     * The gzip header: magic number, deflate method, no flag, no modification time, no extra flag and unknown OS.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /**
+     * The minimum number of writable bytes ensured before each call to the deflater.
+     */
+    private static final int MIN_WRITABLE_BYTES = 256;
+
+    private static final ThreadLocal<Deque<Deflater>> GZIP_DEFLATERS = new DeflaterPool();
+
+    private static final ThreadLocal<Deque<Deflater>> ZLIB_DEFLATERS = new DeflaterPool();
+
+    private final boolean gzip;
+
+    private final CRC32 crc;
+
+    private Deflater deflater;
+
+    private boolean headerWritten;
+
+    /**
+     * The time spent compressing, in nanoseconds.
+     */
+    private long elapsed;
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param level the compression level
+     * @param gzip  {@literal true} to use the gzip format, {@literal false} to use the zlib format (the HTTP
+     *              {@literal deflate} encoding)
+     */
+    DeflaterEncoder(int level, boolean gzip) {
+        this.gzip = gzip;
+        this.crc = gzip ? new CRC32() : null;
+        this.deflater = acquire(level, gzip);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        // The deflater works on arrays.
+        return ctx.alloc().heapBuffer((int) Math.ceil(msg.readableBytes() * 1.001) + 12 + GZIP_HEADER.length);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) {
+        if (deflater == null) {
+            // Already finished.
+            out.writeBytes(in);
+            return;
+        }
+        writeHeaderIfNeeded(out);
+
+        int length = in.readableBytes();
+        if (length == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        byte[] input;
+        int offset;
+        if (in.hasArray()) {
+            input = in.array();
+            offset = in.arrayOffset() + in.readerIndex();
+        } else {
+            input = new byte[length];
+            in.getBytes(in.readerIndex(), input);
+            offset = 0;
+        }
+        in.skipBytes(length);
+
+        if (gzip) {
+            crc.update(input, offset, length);
+        }
+        deflater.setInput(input, offset, length);
+        // Flush everything, so the compressed chunk can be sent immediately.
+        while (!deflater.needsInput()) {
+            deflate(out, Deflater.SYNC_FLUSH);
+        }
+        elapsed += System.nanoTime() - start;
+    }
+
+    /**
+     * @return the time spent compressing the content written so far, in nanoseconds
+     */
+    long elapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Writes the end of the compressed stream and releases the deflater.
+     *
+     * @param ctx     the context
+     * @param promise the promise
+     * @throws Exception if the channel cannot be closed
+     */
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (deflater == null) {
+            ctx.close(promise);
+            return;
+        }
+        ByteBuf footer = ctx.alloc().heapBuffer();
+        long start = System.nanoTime();
+        try {
+            writeHeaderIfNeeded(footer);
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate(footer, Deflater.NO_FLUSH);
+            }
+            if (gzip) {
+                writeIntLE(footer, (int) crc.getValue());
+                writeIntLE(footer, (int) deflater.getBytesRead());
+            }
+        } finally {
+            release(deflater, gzip);
+            deflater = null;
+            elapsed += System.nanoTime() - start;
+        }
+        ctx.writeAndFlush(footer);
+        ctx.close(promise);
+    }
+
+    private void writeHeaderIfNeeded(ByteBuf out) {
+        if (gzip && !headerWritten) {
+            out.writeBytes(GZIP_HEADER);
+        }
+        headerWritten = true;
+    }
+
+    private void deflate(ByteBuf out, int flush) {
+        int written;
+        do {
+            out.ensureWritable(MIN_WRITABLE_BYTES);
+            int index = out.writerIndex();
+            written = deflater.deflate(out.array(), out.arrayOffset() + index, out.writableBytes(), flush);
+            out.writerIndex(index + written);
+        } while (written > 0 && !deflater.finished());
+    }
+
+    private static void writeIntLE(ByteBuf out, int value) {
+        out.writeByte(value);
+        out.writeByte(value >>> 8);
+        out.writeByte(value >>> 16);
+        out.writeByte(value >>> 24);
+    }
+
+    private static Deflater acquire(int level, boolean gzip) {
+        Deflater deflater = (gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).get().poll();
+        if (deflater == null) {
+            // gzip uses raw deflate data, the header and trailer are written by the encoder.
+            return new Deflater(level, gzip);
+        }
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    private static void release(Deflater deflater, boolean gzip) {
+        Deque<Deflater> pool = (gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).get();
+        if (pool.size() < POOL_SIZE) {
+            deflater.reset();
+            pool.push(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+
+    /**
+     * The per-thread pool of deflaters.
+     */
+    private static final class DeflaterPool extends ThreadLocal<Deque<Deflater>> {
+        @Override
+        protected Deque<Deflater> initialValue() {
+            return new ArrayDeque<>();
+        }
+    }
+}
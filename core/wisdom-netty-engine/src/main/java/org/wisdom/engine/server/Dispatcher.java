@@ -19,10 +19,13 @@
  */
 package org.wisdom.engine.server;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
 import org.apache.felix.ipojo.annotations.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,12 +33,18 @@ import org.wisdom.akka.AkkaSystemService;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.content.ContentEngine;
 import org.wisdom.api.crypto.Crypto;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.engine.WisdomEngine;
 import org.wisdom.api.http.websockets.WebSocketDispatcher;
 import org.wisdom.api.http.websockets.WebSocketListener;
 import org.wisdom.api.router.Router;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The main entry point of the Wisdom Netty Engine.
@@ -53,14 +62,38 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
     private WisdomServer wisdomServer;
 
     /**
-     * The set of Web Socket Listeners used to dispatch data received on web sockets.
+     * The set of Web Socket Listeners used to dispatch data received on web sockets. The list is copy-on-write, so
+     * received frames are dispatched without locking.
      */
-    private List<WebSocketListener> listeners = new ArrayList<>();
+    private List<WebSocketListener> listeners = new CopyOnWriteArrayList<>();
 
     /**
-     * The map of uri / list of channel context keeping a reference on all opened web sockets.
+     * The map of uri / set of channel context keeping a reference on all opened web sockets. The sets are
+     * copy-on-write, so messages are published without locking. Modifications are made while holding the lock on
+     * this object.
      */
-    private Map<String, List<ChannelHandlerContext>> sockets = new HashMap<>();
+    private final ConcurrentMap<String, Set<ChannelHandlerContext>> sockets = new ConcurrentHashMap<>();
+
+    /**
+     * The last message published to a client that was not writable, kept until the client becomes writable when
+     * the {@link SlowClientPolicy#COALESCE} policy is used.
+     */
+    private final ConcurrentMap<ChannelHandlerContext, WebSocketFrame> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The number of messages that were not sent because the client was not writable, per url.
+     */
+    private final ConcurrentMap<String, AtomicLong> dropped = new ConcurrentHashMap<>();
+
+    /**
+     * The id of the connected clients, computed once when the client connects.
+     */
+    private final ConcurrentMap<ChannelHandlerContext, String> ids = new ConcurrentHashMap<>();
+
+    /**
+     * The policy applied to clients that are not writable.
+     */
+    SlowClientPolicy policy = SlowClientPolicy.DROP;
 
     /**
      * The router service.
@@ -92,11 +125,18 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
     @Requires
     AkkaSystemService system;
 
+    /**
+     * The recorder receiving the duration of the request phases, if any.
+     */
+    @Requires(optional = true, nullable = false, proxy = false)
+    RequestRecorder recorder;
+
     /**
      * Starts the server.
      */
     @Validate
     public void start() {
+        policy = SlowClientPolicy.from(configuration.get(SlowClientPolicy.CONFIGURATION_KEY));
         ServiceAccessor accessor = new ServiceAccessor(crypto, configuration, router,
                 parsers, system, this); //NOSONAR
         wisdomServer = new WisdomServer(accessor);
@@ -115,57 +155,143 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
         }).start();
     }
 
+    /**
+     * @return the recorder receiving the duration of the request phases, {@literal null} if none
+     */
+    public RequestRecorder getRecorder() {
+        return recorder;
+    }
+
     /**
      * Stops the server.
      */
     @Invalidate
     public void stop() {
         wisdomServer.stop();
-        sockets.clear();
-        listeners.clear();
+        synchronized (this) {
+            sockets.clear();
+            listeners.clear();
+        }
+        for (WebSocketFrame frame : pending.values()) {
+            frame.release();
+        }
+        pending.clear();
+        ids.clear();
     }
 
     /**
-     * Publishes the given message to all clients subscribed to the web socket specified using its url.
+     * Publishes the given message to all clients subscribed to the web socket specified using its url. The message
+     * is encoded once, and the buffer is shared by the frames sent to the clients.
      *
      * @param url  the url of the web socket, must not be {@literal null}
      * @param data the data, must not be {@literal null}
      */
     @Override
     public void publish(String url, String data) {
-        List<ChannelHandlerContext> channels;
-        synchronized (this) {
-            List<ChannelHandlerContext> ch = sockets.get(url);
-            if (ch != null) {
-                channels = new ArrayList<>(ch);
-            } else {
-                channels = Collections.emptyList();
-            }
-        }
-        for (ChannelHandlerContext channel : channels) {
-            channel.writeAndFlush(new TextWebSocketFrame(data));
-        }
+        broadcast(url, Unpooled.copiedBuffer(data, CharsetUtil.UTF_8), true);
     }
 
     /**
-     * Publishes the given message to all clients subscribed to the web socket specified using its url.
+     * Publishes the given message to all clients subscribed to the web socket specified using its url. The message
+     * is copied once, and the buffer is shared by the frames sent to the clients.
      *
      * @param url  the url of the web socket, must not be {@literal null}
      * @param data the data, must not be {@literal null}
      */
     @Override
-    public synchronized void publish(String url, byte[] data) {
-        List<ChannelHandlerContext> channels;
-        synchronized (this) {
-            List<ChannelHandlerContext> ch = sockets.get(url);
-            if (ch != null) {
-                channels = new ArrayList<>(ch);
-            } else {
-                channels = Collections.emptyList();
+    public void publish(String url, byte[] data) {
+        broadcast(url, Unpooled.copiedBuffer(data), false);
+    }
+
+    /**
+     * Sends the content of the given buffer to all clients subscribed to the given url. Each frame wraps a
+     * duplicate of the buffer (sharing its content), retained until the frame is written. Clients that are not
+     * writable are handled according to the {@link SlowClientPolicy}.
+     *
+     * @param url     the url
+     * @param content the content, released by this method
+     * @param text    whether the content is sent as text frames or binary frames
+     */
+    private void broadcast(String url, ByteBuf content, boolean text) {
+        try {
+            Set<ChannelHandlerContext> channels = sockets.get(url);
+            if (channels == null) {
+                return;
             }
+            for (ChannelHandlerContext channel : channels) {
+                ByteBuf shared = content.duplicate().retain();
+                write(url, channel, text ? new TextWebSocketFrame(shared) : new BinaryWebSocketFrame(shared));
+            }
+        } finally {
+            content.release();
         }
-        for (ChannelHandlerContext channel : channels) {
-            channel.writeAndFlush(new BinaryWebSocketFrame(Unpooled.copiedBuffer(data)));
+    }
+
+    private void write(String url, ChannelHandlerContext channel, WebSocketFrame frame) {
+        if (channel.channel().isWritable()) {
+            WebSocketFrame coalesced = pending.remove(channel);
+            if (coalesced != null) {
+                channel.write(coalesced);
+            }
+            channel.writeAndFlush(frame);
+            return;
+        }
+
+        switch (policy) {
+            case COALESCE:
+                WebSocketFrame previous = pending.put(channel, frame);
+                if (previous != null) {
+                    previous.release();
+                    drop(url);
+                }
+                break;
+            case DISCONNECT:
+                frame.release();
+                drop(url);
+                LOGGER.warn("Closing the web socket client {} on {}, it does not read fast enough", clientId(channel),
+                        url);
+                channel.close();
+                break;
+            default:
+                frame.release();
+                drop(url);
+                break;
+        }
+    }
+
+    private void drop(String url) {
+        AtomicLong counter = dropped.get(url);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = dropped.putIfAbsent(url, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of messages that were not sent to clients subscribed to the given url because these clients
+     * were not writable.
+     *
+     * @param url the url of the web socket
+     * @return the number of dropped messages
+     */
+    public long dropped(String url) {
+        AtomicLong counter = dropped.get(url);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * A web socket client becomes writable again. The message kept for this client (if any) is sent.
+     *
+     * @param ctx the client channel
+     */
+    public void writable(ChannelHandlerContext ctx) {
+        WebSocketFrame frame = pending.remove(ctx);
+        if (frame != null) {
+            ctx.writeAndFlush(frame);
         }
     }
 
@@ -179,17 +305,19 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
         LOGGER.info("Adding web socket on {} bound to {}, {}", url, ctx, ctx.channel());
         List<WebSocketListener> webSocketListeners;
         synchronized (this) {
-            List<ChannelHandlerContext> channels = sockets.get(url);
+            Set<ChannelHandlerContext> channels = sockets.get(url);
             if (channels == null) {
-                channels = new ArrayList<>();
+                channels = new CopyOnWriteArraySet<>();
+                sockets.put(url, channels);
             }
             channels.add(ctx);
-            sockets.put(url, channels);
             webSocketListeners = new ArrayList<>(this.listeners);
         }
+        String id = id(ctx);
+        ids.put(ctx, id);
 
         for (WebSocketListener listener : webSocketListeners) {
-            listener.opened(url, id(ctx));
+            listener.opened(url, id);
         }
 
     }
@@ -204,7 +332,7 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
         LOGGER.info("Removing web socket on {} bound to {}", url, ctx);
         List<WebSocketListener> webSocketListeners;
         synchronized (this) {
-            List<ChannelHandlerContext> channels = sockets.get(url);
+            Set<ChannelHandlerContext> channels = sockets.get(url);
             if (channels != null) {
                 channels.remove(ctx);
                 if (channels.isEmpty()) {
@@ -213,9 +341,15 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
             }
             webSocketListeners = new ArrayList<>(this.listeners);
         }
+        WebSocketFrame frame = pending.remove(ctx);
+        if (frame != null) {
+            frame.release();
+        }
+        String id = clientId(ctx);
+        ids.remove(ctx);
 
         for (WebSocketListener listener : webSocketListeners) {
-            listener.closed(url, id(ctx));
+            listener.closed(url, id);
         }
     }
 
@@ -227,16 +361,16 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
      */
     @Override
     public void register(WebSocketListener listener) {
-        Map<String, List<ChannelHandlerContext>> copy;
+        Map<String, Set<ChannelHandlerContext>> copy;
         synchronized (this) {
             listeners.add(listener);
             copy = new HashMap<>(sockets);
         }
 
         // Call open on each opened web socket
-        for (Map.Entry<String, List<ChannelHandlerContext>> entry : copy.entrySet()) {
+        for (Map.Entry<String, Set<ChannelHandlerContext>> entry : copy.entrySet()) {
             for (ChannelHandlerContext client : entry.getValue()) {
-                listener.opened(entry.getKey(), id(client));
+                listener.opened(entry.getKey(), clientId(client));
             }
         }
     }
@@ -263,17 +397,12 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
      */
     @Override
     public void send(String uri, String client, String message) {
-        List<ChannelHandlerContext> channels;
-        synchronized (this) {
-            List<ChannelHandlerContext> ch = sockets.get(uri);
-            if (ch != null) {
-                channels = new ArrayList<>(ch);
-            } else {
-                channels = Collections.emptyList();
-            }
+        Set<ChannelHandlerContext> channels = sockets.get(uri);
+        if (channels == null) {
+            return;
         }
         for (ChannelHandlerContext channel : channels) {
-            if (client.equals(id(channel))) {
+            if (client.equals(clientId(channel))) {
                 channel.writeAndFlush(new TextWebSocketFrame(message));
             }
         }
@@ -289,6 +418,17 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
         return Integer.toOctalString(ctx.channel().hashCode());
     }
 
+    /**
+     * Gets the id of the given client, computed when the client connected to the web socket.
+     *
+     * @param ctx the client channel, must not be {@literal null}
+     * @return the id
+     */
+    String clientId(ChannelHandlerContext ctx) {
+        String id = ids.get(ctx);
+        return id != null ? id : id(ctx);
+    }
+
     /**
      * Sends the given message to the client identify by its id and listening to the websocket having the given url.
      *
@@ -299,17 +439,12 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
      */
     @Override
     public void send(String uri, String client, byte[] message) {
-        List<ChannelHandlerContext> channels;
-        synchronized (this) {
-            List<ChannelHandlerContext> ch = sockets.get(uri);
-            if (ch != null) {
-                channels = new ArrayList<>(ch);
-            } else {
-                channels = Collections.emptyList();
-            }
+        Set<ChannelHandlerContext> channels = sockets.get(uri);
+        if (channels == null) {
+            return;
         }
         for (ChannelHandlerContext channel : channels) {
-            if (client.equals(id(channel))) {
+            if (client.equals(clientId(channel))) {
                 channel.writeAndFlush(new BinaryWebSocketFrame(Unpooled.copiedBuffer(message)));
             }
         }
@@ -323,13 +458,9 @@ public class Dispatcher implements WebSocketDispatcher, WisdomEngine {
      * @param ctx     the client channel
      */
     public void received(String uri, byte[] content, ChannelHandlerContext ctx) {
-        List<WebSocketListener> localListeners;
-        synchronized (this) {
-            localListeners = new ArrayList<>(this.listeners);
-        }
-
-        for (WebSocketListener listener : localListeners) {
-            listener.received(uri, id(ctx), content);
+        String id = clientId(ctx);
+        for (WebSocketListener listener : listeners) {
+            listener.received(uri, id, content);
         }
     }
 
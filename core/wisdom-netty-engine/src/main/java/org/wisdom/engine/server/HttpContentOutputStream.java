@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream writing the content of a chunked response. The written bytes are accumulated in a buffer
+ * obtained from the channel allocator (pooled), and sent as an HTTP content each time the buffer is full. So, only
+ * one buffer is filled at a time, whatever the size of the content. Closing the stream sends the last HTTP content.
+ * <p>
+ * When used from a thread that is not the channel event loop, the stream waits for the chunk to be written if the
+ * channel is not writable, so a slow client slows down the producer instead of accumulating the content in memory.
+ */
+public class HttpContentOutputStream extends OutputStream {
+
+    private final ChannelHandlerContext ctx;
+
+    private final int size;
+
+    private ByteBuf buffer;
+
+    private ChannelFuture last;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream. The response (headers) must have been written before.
+     *
+     * @param ctx  the channel context
+     * @param size the size of the chunks
+     */
+    public HttpContentOutputStream(ChannelHandlerContext ctx, int size) {
+        this.ctx = ctx;
+        this.size = size;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buffer().writeByte(b);
+        if (!buffer.isWritable()) {
+            flushChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        int written = 0;
+        while (written < length) {
+            ByteBuf buf = buffer();
+            int count = Math.min(buf.writableBytes(), length - written);
+            buf.writeBytes(bytes, offset + written, count);
+            written += count;
+            if (!buf.isWritable()) {
+                flushChunk();
+            }
+        }
+    }
+
+    /**
+     * Sends the pending bytes as a chunk.
+     *
+     * @throws IOException if the stream is closed
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (buffer != null && buffer.isReadable()) {
+            flushChunk();
+        }
+    }
+
+    /**
+     * Sends the pending bytes, followed by the end of the content.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (buffer == null) {
+            last = ctx.writeAndFlush(new DefaultLastHttpContent());
+        } else {
+            last = ctx.writeAndFlush(new DefaultLastHttpContent(buffer));
+            buffer = null;
+        }
+    }
+
+    /**
+     * Releases the pending bytes without sending them. This method is used when the content cannot be produced
+     * entirely, the connection must then be closed.
+     */
+    public void abort() {
+        closed = true;
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    /**
+     * @return the future completed when the last content is written, {@literal null} if the stream is not closed
+     */
+    public ChannelFuture lastContentFuture() {
+        return last;
+    }
+
+    private ByteBuf buffer() {
+        if (buffer == null) {
+            buffer = ctx.alloc().buffer(size, size);
+        }
+        return buffer;
+    }
+
+    private void flushChunk() throws IOException {
+        ChannelFuture future = ctx.writeAndFlush(new DefaultHttpContent(buffer));
+        buffer = null;
+        if (!ctx.executor().inEventLoop() && !ctx.channel().isWritable()) {
+            future.awaitUninterruptibly();
+            if (!future.isSuccess()) {
+                throw new IOException("Cannot write the response", future.cause());
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -23,7 +23,9 @@ import org.wisdom.akka.AkkaSystemService;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.content.ContentEngine;
 import org.wisdom.api.crypto.Crypto;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.router.Router;
+import org.wisdom.engine.wrapper.cookies.CookieSettings;
 
 /**
  * A structure to access services.
@@ -36,6 +38,7 @@ public class ServiceAccessor {
     private final ContentEngine contentEngines;
     private final AkkaSystemService system;
     private final Dispatcher dispatcher;
+    private volatile CookieSettings cookieSettings;
 
     public ServiceAccessor(Crypto crypto, ApplicationConfiguration configuration, Router router,
                            ContentEngine engine, AkkaSystemService system, Dispatcher dispatcher) {
@@ -55,6 +58,21 @@ public class ServiceAccessor {
         return configuration;
     }
 
+    /**
+     * Gets the session and flash cookie settings. They are read from the configuration on the first call only.
+     *
+     * @return the cookie settings
+     */
+    public CookieSettings getCookieSettings() {
+        CookieSettings settings = cookieSettings;
+        if (settings == null) {
+            // Immutable, so computing it twice concurrently is harmless.
+            settings = CookieSettings.from(configuration);
+            cookieSettings = settings;
+        }
+        return settings;
+    }
+
     public Router getRouter() {
         return router;
     }
@@ -71,4 +89,11 @@ public class ServiceAccessor {
         return dispatcher;
     }
 
+    /**
+     * @return the recorder receiving the duration of the request phases, {@literal null} if none
+     */
+    public RequestRecorder getRecorder() {
+        return dispatcher == null ? null : dispatcher.getRecorder();
+    }
+
 }
@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.server;
+
+/**
+ * What the {@link Dispatcher} does when a message is published to a web socket client that is not writable (its
+ * outbound buffer is above the high water mark), i.e. a client not reading as fast as messages are published.
+ * The policy is configured using {@link #CONFIGURATION_KEY}.
+ */
+public enum SlowClientPolicy {
+
+    /**
+     * The message is not sent to the client.
+     */
+    DROP,
+
+    /**
+     * Only the last message is kept, and sent when the client becomes writable again. The previous kept message
+     * (if any) is dropped.
+     */
+    COALESCE,
+
+    /**
+     * The client is disconnected.
+     */
+    DISCONNECT;
+
+    /**
+     * The configuration key selecting the policy ({@literal drop}, {@literal coalesce} or {@literal disconnect}).
+     */
+    public static final String CONFIGURATION_KEY = "wisdom.websocket.slow-client-policy";
+
+    /**
+     * Gets the policy from its name.
+     *
+     * @param name the name, case insensitive, may be {@literal null}
+     * @return the policy, {@link #DROP} if the name is {@literal null} or unknown
+     */
+    public static SlowClientPolicy from(String name) {
+        if (name != null) {
+            for (SlowClientPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name.trim())) {
+                    return policy;
+                }
+            }
+        }
+        return DROP;
+    }
+}
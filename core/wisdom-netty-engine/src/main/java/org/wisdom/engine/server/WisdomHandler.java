@@ -20,15 +20,23 @@
 package org.wisdom.engine.server;
 
 import akka.dispatch.OnComplete;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.multipart.*;
 import io.netty.handler.codec.http.websocketx.*;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
 import io.netty.handler.stream.ChunkedStream;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -36,21 +44,28 @@ import org.slf4j.LoggerFactory;
 import org.wisdom.api.bodies.NoHttpBody;
 import org.wisdom.api.content.ContentCodec;
 import org.wisdom.api.content.ContentSerializer;
+import org.wisdom.api.engine.RequestPhase;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.http.*;
 import org.wisdom.api.router.Route;
 import org.wisdom.engine.util.BuildConstants;
 import org.wisdom.engine.wrapper.ContextFromNetty;
 import org.wisdom.engine.wrapper.cookies.CookieHelper;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import static io.netty.handler.codec.http.HttpHeaders.Names.*;
 import static io.netty.handler.codec.http.HttpHeaders.isKeepAlive;
@@ -83,6 +98,11 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
      */
     private static final int HANDSHAKE_UNSUPPORTED = 3;
 
+    /**
+     * The size of the chunks read from the rendered streams.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
     /**
      * The server name returned in the SERVER header.
      */
@@ -107,6 +127,38 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
     private HttpRequest request;
     private HttpPostRequestDecoder decoder;
 
+    /**
+     * The recorder receiving the duration of the phases of the current request, {@literal null} if none. As the
+     * other request fields, the following ones are reused for every request of the connection, so recording does
+     * not allocate any object.
+     */
+    private volatile RequestRecorder recorder;
+    private volatile Route route;
+    private volatile long started;
+    private volatile long writeStarted;
+
+    /**
+     * The compressor of the channel when the current response is compressed while it is written, {@literal null}
+     * otherwise.
+     */
+    private volatile ContentCompressor compressor;
+
+    /**
+     * Records the write and total durations once the last byte of the response is written, and the time spent
+     * compressing the response if it was compressed while written.
+     */
+    private final ChannelFutureListener written = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            long end = record(RequestPhase.WRITE, writeStarted);
+            ContentCompressor current = compressor;
+            if (current != null) {
+                record(RequestPhase.ENCODING, 0L, current.encodingTime());
+            }
+            record(RequestPhase.TOTAL, started, end);
+        }
+    };
+
     /**
      * Creates the handler.
      *
@@ -136,6 +188,21 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
         ctx.flush();
     }
 
+    /**
+     * Notifies the dispatcher when a web socket client becomes writable again, so it can send the message kept
+     * for this client.
+     *
+     * @param ctx the channel context
+     * @throws Exception if the next handler fails
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (handshaker != null && ctx.channel().isWritable()) {
+            accessor.getDispatcher().writable(ctx);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     private void handleWebSocketFrame(final ChannelHandlerContext ctx, final WebSocketFrame frame) {
         if (frame instanceof CloseWebSocketFrame) {
             accessor.getDispatcher().removeWebSocket(strip(handshaker.uri()), ctx);
@@ -304,7 +371,11 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
         // 2 Register context
         Context.CONTEXT.set(context);
         // 3 Get route for context
+        recorder = accessor.getRecorder();
+        started = now();
         Route route = accessor.getRouter().getRouteFor(context.request().method(), context.path());
+        this.route = route;
+        record(RequestPhase.ROUTING, started);
         Result result;
 
         if (route == null) {
@@ -356,7 +427,8 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
      * Handling an async result.
      * The controller has returned an async task ( {@link java.util.concurrent.Callable} ) that will be computed
      * asynchronously using the Akka system dispatcher.
-     * The callable is not called using the Netty worker thread.
+     * The callable is not called using the Netty worker thread. Results backed by a future are written when the
+     * future completes, without dispatching anything.
      *
      * @param ctx         the channel context
      * @param request     the request
@@ -368,8 +440,30 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
             final HttpRequest request,
             final Context context,
             final AsyncResult asyncResult) {
-        Future<Result> future = accessor.getSystem().dispatchResultWithContext(asyncResult.callable(), context);
+        final long start = now();
+        final ExecutionContext executor = accessor.getSystem().fromThread();
+        ListenableFuture<Result> pending = asyncResult.future();
+        if (pending != null) {
+            Futures.addCallback(pending, new FutureCallback<Result>() {
+                @Override
+                public void onSuccess(Result result) {
+                    completeAsyncResult(ctx, request, context, asyncResult, start, null, result);
+                }
 
+                @Override
+                public void onFailure(Throwable failure) {
+                    completeAsyncResult(ctx, request, context, asyncResult, start, failure, null);
+                }
+            }, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    executor.execute(command);
+                }
+            });
+            return;
+        }
+
+        Future<Result> future = accessor.getSystem().dispatchResultWithContext(asyncResult.callable(), context);
         future.onComplete(new OnComplete<Result>() {
             /**
              * Called when the result is computed. It writes the response.
@@ -378,25 +472,42 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
              * @param result the successfully computed result.
              */
             public void onComplete(Throwable failure, Result result) {
-                if (failure != null) {
-                    //We got a failure, handle it here
-                    writeResponse(ctx, request, context, Results.internalServerError(failure), false, true);
-                } else {
-                    // We got a result, write it here.
-                    // Merge the headers of the initial result and the async results.
-                    final Map<String, String> headers = result.getHeaders();
-                    for (Map.Entry<String, String> header : asyncResult.getHeaders().entrySet()) {
-                        if (!headers.containsKey(header.getKey())) {
-                            headers.put(header.getKey(), header.getValue());
-                        }
-                    }
-                    writeResponse(ctx, request, context, result, true, true);
+                completeAsyncResult(ctx, request, context, asyncResult, start, failure, result);
+            }
+        }, executor);
+    }
+
+    /**
+     * Writes the response of an async result once it is computed.
+     *
+     * @param ctx         the channel context
+     * @param request     the request
+     * @param context     the HTTP context
+     * @param asyncResult the async result
+     * @param start       the time at which the computation started
+     * @param failure     the failure caught when the result was computed, {@literal null} on success
+     * @param result      the computed result
+     */
+    private void completeAsyncResult(ChannelHandlerContext ctx, HttpRequest request, Context context,
+                                     AsyncResult asyncResult, long start, Throwable failure, Result result) {
+        record(RequestPhase.ACTION, start);
+        if (failure != null) {
+            //We got a failure, handle it here
+            writeResponse(ctx, request, context, Results.internalServerError(failure), false, true);
+        } else {
+            // We got a result, write it here.
+            // Merge the headers of the initial result and the async results.
+            final Map<String, String> headers = result.getHeaders();
+            for (Map.Entry<String, String> header : asyncResult.getHeaders().entrySet()) {
+                if (!headers.containsKey(header.getKey())) {
+                    headers.put(header.getKey(), header.getValue());
                 }
             }
-        }, accessor.getSystem().fromThread());
+            writeResponse(ctx, request, context, result, true, true);
+        }
     }
 
-    private InputStream processResult(Context context, Result result) throws Exception {
+    private Renderable<?> processResult(Context context, Result result) throws Exception {
         Renderable<?> renderable = result.getRenderable();
 
         if (renderable == null) {
@@ -434,7 +545,7 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
                 }
             }
         }
-        return renderable.render(context, result);
+        return renderable;
     }
 
     private boolean writeResponse(
@@ -445,20 +556,18 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
             boolean fromAsync) {
         //TODO Refactor this method.
 
-        // Render the result.
-        InputStream stream;
+        // Serialize the result, the rendering is delayed until the response is written.
+        Renderable<?> renderable;
         boolean success = true;
-        Renderable<?> renderable = result.getRenderable();
-        if (renderable == null) {
-            renderable = NoHttpBody.INSTANCE;
-        }
+        long start = now();
         try {
-            stream = processResult(context, result);
+            renderable = processResult(context, result);
         } catch (Exception e) {
             LOGGER.error("Cannot render the response to " + request.getUri(), e);
-            stream = new ByteArrayInputStream(NoHttpBody.EMPTY);
+            renderable = NoHttpBody.INSTANCE;
             success = false;
         }
+        record(RequestPhase.SERIALIZATION, start);
 
         if (accessor.getContentEngines().getContentEncodingHelper().shouldEncode(context, result, renderable)) {
             ContentCodec codec = null;
@@ -470,21 +579,35 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
                 }
             }
 
-            if (codec != null) { // Encode Async
+            if (codec != null && ContentCompressor.supports(codec.getEncodingType())) {
+                // The content is compressed by the compressor handler while it is written.
+                return finalizeWriteReponse(context, ctx, result, renderable, null, codec.getEncodingType(),
+                        success, handleFlashAndSessionCookie, fromAsync);
+            } else if (codec != null) { // Encode Async
+                InputStream stream;
+                try {
+                    stream = renderable.render(context, result);
+                } catch (Exception e) {
+                    LOGGER.error("Cannot render the response to " + request.getUri(), e);
+                    stream = new ByteArrayInputStream(NoHttpBody.EMPTY);
+                    success = false;
+                }
                 result.with(CONTENT_ENCODING, codec.getEncodingType());
-                proceedAsyncEncoding(context, codec, stream, ctx, result, success, handleFlashAndSessionCookie,
-                        fromAsync);
+                proceedAsyncEncoding(context, codec, renderable, stream, ctx, result, success,
+                        handleFlashAndSessionCookie, fromAsync);
                 return true;
             }
             //No encoding possible, do the finalize
         }
 
-        return finalizeWriteReponse(context, ctx, result, stream, success, handleFlashAndSessionCookie, fromAsync);
+        return finalizeWriteReponse(context, ctx, result, renderable, null, null, success,
+                handleFlashAndSessionCookie, fromAsync);
     }
 
     private void proceedAsyncEncoding(
             final Context httpContext,
             final ContentCodec codec,
+            final Renderable<?> renderable,
             final InputStream stream,
             final ChannelHandlerContext ctx,
             final Result result,
@@ -496,75 +619,257 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
         Future<InputStream> future = accessor.getSystem().dispatchInputStream(new Callable<InputStream>() {
             @Override
             public InputStream call() throws Exception {
-                return codec.encode(stream);
+                InputStream encoded = codec.encode(stream);
+                if (renderable.mustBeChunked()) {
+                    // The content is encoded while it is written, the encoding is part of the write phase.
+                    return encoded;
+                }
+                // The codec encodes while the stream is read, so encode the whole content now.
+                long start = now();
+                try {
+                    return new ByteArrayInputStream(IOUtils.toByteArray(encoded));
+                } finally {
+                    IOUtils.closeQuietly(encoded);
+                    record(RequestPhase.ENCODING, start);
+                }
             }
         });
         future.onComplete(new OnComplete<InputStream>() {
 
             @Override
-            public void onComplete(Throwable arg0, InputStream encodedStream)
+            public void onComplete(Throwable failure, InputStream encodedStream)
                     throws Throwable {
-                finalizeWriteReponse(httpContext, ctx, result, encodedStream, success, handleFlashAndSessionCookie,
-                        true);
+                if (failure != null) {
+                    // The content cannot be encoded, send an empty error response without the encoding header.
+                    LOGGER.error("Cannot encode the response to " + httpContext.request().uri(), failure);
+                    result.getHeaders().remove(CONTENT_ENCODING);
+                    finalizeWriteReponse(httpContext, ctx, result, renderable,
+                            new ByteArrayInputStream(NoHttpBody.EMPTY), null, false,
+                            handleFlashAndSessionCookie, true);
+                    return;
+                }
+                finalizeWriteReponse(httpContext, ctx, result, renderable, encodedStream, null, success,
+                        handleFlashAndSessionCookie, true);
             }
 
         }, accessor.getSystem().fromThread());
     }
 
+    /**
+     * Writes the response. The content is either the given stream (when the content has been encoded) or rendered
+     * from the renderable object.
+     *
+     * @param httpContext                 the HTTP context
+     * @param ctx                         the channel context
+     * @param result                      the result
+     * @param renderable                  the renderable object (already serialized)
+     * @param stream                      the encoded content, {@literal null} if the renderable object has not
+     *                                    been rendered yet
+     * @param compression                 the encoding applied by the {@link ContentCompressor} while the
+     *                                    response is written, {@literal null} if the content is written as it is
+     * @param success                     whether or not the result was processed successfully
+     * @param handleFlashAndSessionCookie whether or not the flash and session cookies need to be written
+     * @param fromAsync                   whether or not the result was computed asynchronously
+     * @return {@literal true} if the content is rendered asynchronously (the handler is cleaned up once
+     * rendered), {@literal false} otherwise
+     */
     private boolean finalizeWriteReponse(
             final Context httpContext,
             final ChannelHandlerContext ctx,
-            Result result,
+            final Result result,
+            Renderable<?> renderable,
             InputStream stream,
+            String compression,
             boolean success,
             boolean handleFlashAndSessionCookie,
             boolean fromAsync) {
 
-        Renderable<?> renderable = result.getRenderable();
-        if (renderable == null) {
-            renderable = NoHttpBody.INSTANCE;
-        }
-        final InputStream content = stream;
+        writeStarted = now();
+        compressor = compression == null ? null : ctx.pipeline().get(ContentCompressor.class);
+
         // Decide whether to close the connection or not.
         boolean keepAlive = isKeepAlive(request);
 
+        if (stream == null && compression == null && success && renderable instanceof FileRenderable
+                && result.getStatusCode() == Status.OK) {
+            RandomAccessFile file = open(((FileRenderable) renderable).file());
+            if (file != null) {
+                writeFile(httpContext, ctx, result, renderable, file, keepAlive, handleFlashAndSessionCookie);
+                if (fromAsync) {
+                    cleanup();
+                }
+                return false;
+            }
+            // Cannot open the file, let the renderable object report the error.
+        }
+
         // Build the response object.
         HttpResponse response;
-        Object res;
+        InputStream content = null;
 
         boolean isChunked = renderable.mustBeChunked();
 
+        // Renderable objects pushing their content are subscribed once the headers are sent.
+        boolean isPushed = isChunked && stream == null && renderable instanceof AsyncRenderable;
+        // Renderable objects writing their content themselves are rendered once the headers are sent.
+        boolean isStreamed = !isPushed && isChunked && stream == null && renderable instanceof StreamingRenderable;
+        if (isStreamed && result.getCharset() == null) {
+            result.with(Charsets.UTF_8);
+        }
+
         if (isChunked) {
-            response = new DefaultHttpResponse(request.getProtocolVersion(), getStatusFromResult(result, success));
-            if (renderable.length() > 0) {
-                response.headers().set(CONTENT_LENGTH, renderable.length());
+            content = stream;
+            if (content == null && !isStreamed && !isPushed) {
+                try {
+                    content = renderable.render(httpContext, result);
+                } catch (Exception e) {
+                    LOGGER.error("Cannot render the response to " + request.getUri(), e);
+                    content = new ByteArrayInputStream(NoHttpBody.EMPTY);
+                    success = false;
+                }
             }
-            // Can't determine the size, so switch to chunked.
+            response = ContentCompressor.newResponse(request.getProtocolVersion(),
+                    getStatusFromResult(result, success), compression);
+            // The content is sent using the chunked transfer encoding, so the connection can be kept alive.
             response.headers().set(TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
-            // In addition, we can't keep the connection open.
-            response.headers().set(CONNECTION, HttpHeaders.Values.CLOSE);
-            //keepAlive = false;
-            res = new ChunkedStream(content);
+            if (keepAlive) {
+                response.headers().set(CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+            }
         } else {
-            DefaultFullHttpResponse resp = new DefaultFullHttpResponse(request.getProtocolVersion(),
-                    getStatusFromResult(result, success));
-            byte[] cont = new byte[0];
+            ByteBuf buffer;
             try {
-                cont = IOUtils.toByteArray(content);
-            } catch (IOException e) {
+                buffer = toByteBuf(ctx, httpContext, result, renderable, stream);
+            } catch (Exception e) {
                 LOGGER.error("Cannot copy the response to " + request.getUri(), e);
+                buffer = Unpooled.EMPTY_BUFFER;
+                success = false;
             }
-            resp.headers().set(CONTENT_LENGTH, cont.length);
-            res = Unpooled.copiedBuffer(cont);
+            // The response takes the ownership of the buffer, it is released once written.
+            FullHttpResponse resp = ContentCompressor.newFullResponse(request.getProtocolVersion(),
+                    getStatusFromResult(result, success), buffer, compression);
+            resp.headers().set(CONTENT_LENGTH, buffer.readableBytes());
             if (keepAlive) {
                 // Add keep alive header as per:
                 // - http://www.w3.org/Protocols/HTTP/1.1/draft-ietf-http-v11-spec-01.html#Connection
                 resp.headers().set(CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
             }
-            resp.content().writeBytes(cont);
             response = resp;
         }
 
+        copyHeadersAndCookies(httpContext, response, result, renderable, handleFlashAndSessionCookie);
+
+        // Send the response and close the connection if necessary.
+        if (isPushed) {
+            // Flush the headers now, the content may not arrive immediately.
+            ctx.writeAndFlush(response);
+            AsyncHttpContentOutput output = new AsyncHttpContentOutput(ctx);
+            recordWrite(output.completion());
+            if (!keepAlive) {
+                // Close the connection when the whole content is written out.
+                output.completion().addListener(ChannelFutureListener.CLOSE);
+            }
+            try {
+                ((AsyncRenderable) renderable).subscribe(httpContext, result, output);
+            } catch (RuntimeException e) {
+                output.abort(e);
+            }
+        } else if (isStreamed) {
+            ctx.write(response);
+            final String uri = request.getUri();
+            if (ctx.executor().inEventLoop()) {
+                // The event loop cannot wait for a slow client, so the content is rendered from an Akka thread,
+                // and the handler is cleaned up once rendered.
+                final StreamingRenderable streaming = (StreamingRenderable) renderable;
+                final boolean close = !keepAlive;
+                accessor.getSystem().dispatch(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            writeStreamed(httpContext, ctx, result, streaming, close, uri);
+                        } finally {
+                            cleanup();
+                        }
+                        return null;
+                    }
+                }, accessor.getSystem().fromThread());
+                return true;
+            }
+            writeStreamed(httpContext, ctx, result, (StreamingRenderable) renderable, !keepAlive, uri);
+        } else if (isChunked) {
+            ctx.write(response);
+            final InputStream chunks = content;
+            // The chunks are written as HTTP contents (followed by the end marker), so they can be compressed.
+            ChannelFuture lastContentFuture = ctx.writeAndFlush(new HttpChunkedInput(new ChunkedStream(chunks)));
+            lastContentFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture channelFuture) throws Exception {
+                    IOUtils.closeQuietly(chunks);
+                }
+            });
+            recordWrite(lastContentFuture);
+            if (!keepAlive) {
+                // Close the connection when the whole content is written out.
+                lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+            }
+        } else {
+            ChannelFuture writeFuture = ctx.writeAndFlush(response);
+            recordWrite(writeFuture);
+            if (!keepAlive) {
+                // Close the connection when the whole content is written out.
+                writeFuture.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+
+        if (fromAsync) {
+            cleanup();
+        }
+
+        return false;
+    }
+
+    /**
+     * Renders a streaming renderable object into the response, once the headers are written. The rendering waits
+     * when the client does not read the response fast enough, so it must not be called from the event loop.
+     *
+     * @param httpContext the HTTP context
+     * @param ctx         the channel context
+     * @param result      the result
+     * @param renderable  the renderable object
+     * @param close       whether or not the connection is closed once the response is written
+     * @param uri         the request uri, for error reporting
+     */
+    private void writeStreamed(Context httpContext, ChannelHandlerContext ctx, Result result,
+                               StreamingRenderable renderable, boolean close, String uri) {
+        HttpContentOutputStream out = new HttpContentOutputStream(ctx, BUFFER_SIZE);
+        try {
+            renderable.renderTo(httpContext, result, out);
+            out.close();
+            recordWrite(out.lastContentFuture());
+            if (close) {
+                // Close the connection when the whole content is written out.
+                out.lastContentFuture().addListener(ChannelFutureListener.CLOSE);
+            }
+        } catch (Exception e) {
+            // The headers are already sent, we can only close the connection.
+            LOGGER.error("Cannot render the response to " + uri, e);
+            out.abort();
+            ctx.flush();
+            ctx.close();
+        }
+    }
+
+    /**
+     * Copies the headers and cookies of the result to the response.
+     *
+     * @param httpContext                 the HTTP context
+     * @param response                    the response
+     * @param result                      the result
+     * @param renderable                  the renderable object
+     * @param handleFlashAndSessionCookie whether or not the flash and session cookies need to be written
+     */
+    private void copyHeadersAndCookies(Context httpContext, HttpResponse response, Result result,
+                                       Renderable<?> renderable, boolean handleFlashAndSessionCookie) {
         for (Map.Entry<String, String> header : result.getHeaders().entrySet()) {
             response.headers().set(header.getKey(), header.getValue());
         }
@@ -593,43 +898,131 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
             final String encode = ServerCookieEncoder.encode(CookieHelper.convertWisdomCookieToNettyCookie(cookie));
             response.headers().add(SET_COOKIE, encode);
         }
+    }
 
-        // Send the response and close the connection if necessary.
-        ctx.write(response);
+    private static RandomAccessFile open(File file) {
+        try {
+            return new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException e) { //NOSONAR
+            return null;
+        }
+    }
 
-        final ChannelFuture writeFuture;
-        if (isChunked) {
-            writeFuture = ctx.write(res);
+    /**
+     * Writes a file, or the requested range of the file. Without TLS, the file is transferred as a
+     * {@link DefaultFileRegion}, so the content is copied directly from the file system to the socket. With TLS,
+     * the content needs to be encrypted, so the file is read chunk by chunk.
+     *
+     * @param httpContext                 the HTTP context
+     * @param ctx                         the channel context
+     * @param result                      the result
+     * @param renderable                  the renderable object
+     * @param file                        the opened file
+     * @param keepAlive                   whether or not the connection is kept alive
+     * @param handleFlashAndSessionCookie whether or not the flash and session cookies need to be written
+     */
+    private void writeFile(Context httpContext, ChannelHandlerContext ctx, Result result, Renderable<?> renderable,
+                           RandomAccessFile file, boolean keepAlive, boolean handleFlashAndSessionCookie) {
+        long length;
+        try {
+            length = file.length();
+        } catch (IOException e) {
+            LOGGER.error("Cannot read the length of the file sent to " + request.getUri(), e);
+            length = 0;
+        }
+        String validator = result.getHeaders().get(HeaderNames.ETAG);
+        if (validator == null) {
+            validator = result.getHeaders().get(HeaderNames.LAST_MODIFIED);
+        }
+        ByteRange range = ByteRange.parse(request.headers().get(RANGE), request.headers().get(IF_RANGE), validator,
+                length);
+
+        HttpResponse response;
+        long offset = 0;
+        long count = length;
+        if (range == ByteRange.UNSATISFIABLE) {
+            IOUtils.closeQuietly(file);
+            response = new DefaultFullHttpResponse(request.getProtocolVersion(),
+                    HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.headers().set(CONTENT_RANGE, ByteRange.unsatisfiable(length));
+            count = 0;
+            file = null;
+        } else if (range != null) {
+            response = new DefaultHttpResponse(request.getProtocolVersion(), HttpResponseStatus.PARTIAL_CONTENT);
+            response.headers().set(CONTENT_RANGE, range.toContentRange());
+            offset = range.start();
+            count = range.count();
         } else {
-            writeFuture = ctx.writeAndFlush(res);
+            response = new DefaultHttpResponse(request.getProtocolVersion(), HttpResponseStatus.OK);
+        }
+        copyHeadersAndCookies(httpContext, response, result, renderable, handleFlashAndSessionCookie);
+        response.headers().set(ACCEPT_RANGES, HttpHeaders.Values.BYTES);
+        response.headers().set(CONTENT_LENGTH, count);
+        if (keepAlive) {
+            response.headers().set(CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
         }
-        writeFuture.addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(ChannelFuture channelFuture) throws Exception {
-                IOUtils.closeQuietly(content);
-            }
-        });
 
-        if (isChunked) {
-            // Write the end marker
-            ChannelFuture lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-            if (!keepAlive) {
-                // Close the connection when the whole content is written out.
-                lastContentFuture.addListener(ChannelFutureListener.CLOSE);
-            }
+        ChannelFuture lastContentFuture;
+        if (file == null) {
+            lastContentFuture = ctx.writeAndFlush(response);
+        } else if (ctx.pipeline().get(SslHandler.class) == null) {
+            ctx.write(response);
+            ctx.write(new DefaultFileRegion(file.getChannel(), offset, count));
+            lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
         } else {
-            if (!keepAlive) {
-                // Close the connection when the whole content is written out.
-                writeFuture.addListener(ChannelFutureListener.CLOSE);
+            ctx.write(response);
+            try {
+                lastContentFuture = ctx.writeAndFlush(new HttpChunkedInput(
+                        new ChunkedNioFile(file.getChannel(), offset, count, BUFFER_SIZE)));
+            } catch (IOException e) {
+                LOGGER.error("Cannot read the file sent to " + request.getUri(), e);
+                IOUtils.closeQuietly(file);
+                lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                keepAlive = false;
             }
         }
+        recordWrite(lastContentFuture);
+        if (!keepAlive) {
+            // Close the connection when the whole content is written out.
+            lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
 
-
-        if (fromAsync) {
-            cleanup();
+    /**
+     * Gets the content of the response as a {@link ByteBuf}. Renderable objects already holding their content in
+     * memory are wrapped without copy. Other contents are read once into a buffer obtained from the channel
+     * allocator (pooled).
+     *
+     * @param ctx        the channel context
+     * @param context    the HTTP context
+     * @param result     the result
+     * @param renderable the renderable object
+     * @param stream     the encoded content, {@literal null} if the renderable object needs to be rendered
+     * @return the buffer, the caller is responsible for releasing it
+     * @throws Exception if the content cannot be rendered or read
+     */
+    private static ByteBuf toByteBuf(ChannelHandlerContext ctx, Context context, Result result,
+                                     Renderable<?> renderable, InputStream stream) throws Exception {
+        if (stream == null && renderable instanceof DirectRenderable) {
+            return Unpooled.wrappedBuffer(((DirectRenderable) renderable).renderAsBuffer(context, result));
         }
 
-        return false;
+        InputStream in = stream;
+        if (in == null) {
+            in = renderable.render(context, result);
+        }
+        ByteBuf buffer = ctx.alloc().buffer(Math.max(in.available(), BUFFER_SIZE));
+        try {
+            while (buffer.writeBytes(in, BUFFER_SIZE) != -1) { //NOSONAR
+                // Read until the end of the stream.
+            }
+            return buffer;
+        } catch (IOException e) {
+            buffer.release();
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
     }
 
     private HttpResponseStatus getStatusFromResult(Result result, boolean success) {
@@ -640,6 +1033,40 @@ public class WisdomHandler extends SimpleChannelInboundHandler<Object> {
         }
     }
 
+    private long now() {
+        return recorder == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a phase of the current request, if a recorder is available.
+     *
+     * @param phase the phase
+     * @param start the start time of the phase
+     * @return the end time of the phase
+     */
+    private long record(RequestPhase phase, long start) {
+        return record(phase, start, recorder == null ? 0L : System.nanoTime());
+    }
+
+    private long record(RequestPhase phase, long start, long end) {
+        RequestRecorder current = recorder;
+        if (current != null) {
+            current.record(route, phase, end - start);
+        }
+        return end;
+    }
+
+    /**
+     * Records the write and total durations when the given future completes.
+     *
+     * @param future the future of the last write of the response
+     */
+    private void recordWrite(ChannelFuture future) {
+        if (recorder != null) {
+            future.addListener(written);
+        }
+    }
+
     private Result invoke(Route route) {
         try {
             return route.invoke();
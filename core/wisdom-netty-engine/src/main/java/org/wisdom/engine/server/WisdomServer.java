@@ -20,6 +20,8 @@
 package org.wisdom.engine.server;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
@@ -160,6 +162,9 @@ public class WisdomServer {
         ServerBootstrap http = new ServerBootstrap();
         http.group(bossGroup, workerGroup)
                 .channel(NioServerSocketChannel.class)
+                // Responses are written from pooled buffers.
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                 .childHandler(new WisdomServerInitializer(accessor, secure));
         group.add(http.bind(address, port).sync().channel());
     }
@@ -31,6 +31,7 @@ import java.security.KeyStoreException;
 
 import javax.net.ssl.SSLEngine;
 
+import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.engine.ssl.SSLServerContext;
 
 /**
@@ -63,6 +64,9 @@ public class WisdomServerInitializer extends ChannelInitializer<SocketChannel> {
         // Uncomment the following line if you don't want to handle HttpChunks.
         //p.addLast("aggregator", new HttpObjectAggregator(65536));
         pipeline.addLast("encoder", new HttpResponseEncoder());
+        // Compresses the responses selected by the wisdom handler.
+        pipeline.addLast("compressor", new ContentCompressor(accessor.getConfiguration().getIntegerWithDefault(
+                ApplicationConfiguration.ENCODING_LEVEL, ApplicationConfiguration.DEFAULT_ENCODING_LEVEL)));
         pipeline.addLast("chunkedWriter", new ChunkedWriteHandler());
 
         // The wisdom handler.
@@ -114,8 +114,8 @@ public class ContextFromNetty implements Context {
         queryStringDecoder = new QueryStringDecoder(httpRequest.getUri());
         request = new RequestFromNetty(this, ctxt, httpRequest);
 
-        flashCookie = new FlashCookieImpl(accessor.getConfiguration());
-        sessionCookie = new SessionCookieImpl(accessor.getCrypto(), accessor.getConfiguration());
+        flashCookie = new FlashCookieImpl(accessor.getCookieSettings());
+        sessionCookie = new SessionCookieImpl(accessor.getCrypto(), accessor.getCookieSettings());
         sessionCookie.init(this);
         flashCookie.init(this);
     }
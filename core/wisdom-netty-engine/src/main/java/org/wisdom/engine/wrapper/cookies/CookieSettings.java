@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.wrapper.cookies;
+
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.cookies.Cookie;
+import org.wisdom.api.cookies.SessionCookie;
+
+/**
+ * The settings of the session and flash cookies. They are read once from the configuration, instead of on every
+ * request. Instances are immutable.
+ */
+public final class CookieSettings {
+
+    private final String sessionCookieName;
+    private final String flashCookieName;
+    private final int sessionExpireTimeInMs;
+    private final boolean sessionSendOnlyIfChanged;
+    private final Boolean sessionTransferredOverHttpsOnly;
+    private final Boolean sessionHttpOnly;
+
+    private CookieSettings(String applicationCookiePrefix, int sessionExpireTimeInMs,
+                           boolean sessionSendOnlyIfChanged, Boolean sessionTransferredOverHttpsOnly,
+                           Boolean sessionHttpOnly) {
+        this.sessionCookieName = applicationCookiePrefix + SessionCookieImpl.SESSION_SUFFIX;
+        this.flashCookieName = applicationCookiePrefix + FlashCookieImpl.FLASH_SUFFIX;
+        this.sessionExpireTimeInMs = sessionExpireTimeInMs;
+        this.sessionSendOnlyIfChanged = sessionSendOnlyIfChanged;
+        this.sessionTransferredOverHttpsOnly = sessionTransferredOverHttpsOnly;
+        this.sessionHttpOnly = sessionHttpOnly;
+    }
+
+    /**
+     * Reads the settings from the configuration.
+     *
+     * @param configuration the application configuration
+     * @return the settings
+     */
+    public static CookieSettings from(ApplicationConfiguration configuration) {
+        Integer expiration = configuration.getIntegerWithDefault(SessionCookie.SESSION_EXPIRE_TIME_SECOND, 3600);
+        Boolean sendOnlyIfChanged = configuration.getBooleanWithDefault(SessionCookie.SESSION_SEND_ONLY_IF_CHANGED,
+                true);
+        return new CookieSettings(
+                configuration.getWithDefault(Cookie.APPLICATION_COOKIE_PREFIX, "wisdom"),
+                (expiration == null ? 3600 : expiration) * 1000,
+                sendOnlyIfChanged == null || sendOnlyIfChanged,
+                configuration.getBooleanWithDefault(SessionCookie.SESSION_OVER_HTTPS_ONLY, false),
+                configuration.getBooleanWithDefault(SessionCookie.SESSION_HTTP_ONLY, true));
+    }
+
+    /**
+     * @return the name of the session cookie
+     */
+    public String getSessionCookieName() {
+        return sessionCookieName;
+    }
+
+    /**
+     * @return the name of the flash cookie
+     */
+    public String getFlashCookieName() {
+        return flashCookieName;
+    }
+
+    /**
+     * @return the session expiration time in milliseconds
+     */
+    public int getSessionExpireTimeInMs() {
+        return sessionExpireTimeInMs;
+    }
+
+    /**
+     * @return whether the session cookie is sent only if the session has changed
+     */
+    public boolean isSessionSendOnlyIfChanged() {
+        return sessionSendOnlyIfChanged;
+    }
+
+    /**
+     * @return whether the session cookie is only sent over HTTPS, {@literal null} if not set
+     */
+    public Boolean getSessionTransferredOverHttpsOnly() {
+        return sessionTransferredOverHttpsOnly;
+    }
+
+    /**
+     * @return whether the session cookie is not accessible from scripts, {@literal null} if not set
+     */
+    public Boolean getSessionHttpOnly() {
+        return sessionHttpOnly;
+    }
+}
@@ -39,6 +39,8 @@ import java.util.Map;
  * Stuff in a flash cookie gets deleted after the next request.
  * <p/>
  * Please note also that flash cookies are not signed.
+ * <p/>
+ * The incoming cookie is decoded lazily, the first time the flash scope is read.
  */
 public class FlashCookieImpl implements FlashCookie {
 
@@ -47,25 +49,42 @@ public class FlashCookieImpl implements FlashCookie {
     private static final Logger LOGGER = LoggerFactory.getLogger(FlashCookieImpl.class);
     private Map<String, String> currentFlashCookieData = new HashMap<>();
     private Map<String, String> outgoingFlashCookieData = new HashMap<>();
-    private final String applicationCookiePrefix;
+    private final String flashCookieName;
+
+    /**
+     * The context from which the flash cookie is read, {@literal null} once read.
+     */
+    private Context context;
 
     public FlashCookieImpl(ApplicationConfiguration configuration) {
-        applicationCookiePrefix = configuration.getWithDefault(Cookie.APPLICATION_COOKIE_PREFIX, "wisdom");
+        this(CookieSettings.from(configuration));
+    }
+
+    public FlashCookieImpl(CookieSettings settings) {
+        flashCookieName = settings.getFlashCookieName();
     }
 
     @Override
     public void init(Context context) {
-        // get flash cookie:
-        Cookie flashCookie = context.request().cookie(applicationCookiePrefix
-                + FLASH_SUFFIX);
-        if (flashCookie != null) {
-            try {
-                CookieDataCodec.decode(currentFlashCookieData, flashCookie.value());
-            } catch (UnsupportedEncodingException e) {
-                LOGGER.error(ERROR, e);
+        this.context = context;
+    }
+
+    /**
+     * Reads the flash cookie if not done already.
+     */
+    private Map<String, String> current() {
+        if (context != null) {
+            Cookie flashCookie = context.request().cookie(flashCookieName);
+            context = null;
+            if (flashCookie != null) {
+                try {
+                    CookieDataCodec.decode(currentFlashCookieData, flashCookie.value());
+                } catch (UnsupportedEncodingException e) {
+                    LOGGER.error(ERROR, e);
+                }
             }
         }
-
+        return currentFlashCookieData;
     }
 
     @Override
@@ -73,11 +92,9 @@ public class FlashCookieImpl implements FlashCookie {
 
         if (outgoingFlashCookieData.isEmpty()) {
 
-            if (context.hasCookie(applicationCookiePrefix
-                    + FLASH_SUFFIX)) {
+            if (context.hasCookie(flashCookieName)) {
                 // Clear the cookie.
-                Cookie.Builder cookie = Cookie.builder(applicationCookiePrefix
-                        + FLASH_SUFFIX, "");
+                Cookie.Builder cookie = Cookie.builder(flashCookieName, "");
                 cookie.setPath("/");
                 cookie.setSecure(false);
                 cookie.setMaxAge(0);
@@ -88,8 +105,7 @@ public class FlashCookieImpl implements FlashCookie {
             try {
                 String flashData = CookieDataCodec.encode(outgoingFlashCookieData);
 
-                Cookie.Builder cookie = Cookie.builder(applicationCookiePrefix
-                        + FLASH_SUFFIX, flashData);
+                Cookie.Builder cookie = Cookie.builder(flashCookieName, flashData);
                 cookie.setPath("/");
                 cookie.setSecure(false);
                 cookie.setMaxAge(3600);
@@ -107,7 +123,7 @@ public class FlashCookieImpl implements FlashCookie {
             throw new IllegalArgumentException(
                     "Character ':' is invalid in a flash key.");
         }
-        currentFlashCookieData.put(key, value);
+        current().put(key, value);
         outgoingFlashCookieData.put(key, value);
     }
 
@@ -142,19 +158,19 @@ public class FlashCookieImpl implements FlashCookie {
 
     @Override
     public void keep(String key) {
-        if (currentFlashCookieData.containsKey(key)) {
-            outgoingFlashCookieData.put(key, currentFlashCookieData.get(key));
+        if (current().containsKey(key)) {
+            outgoingFlashCookieData.put(key, current().get(key));
         }
     }
 
     @Override
     public void keep() {
-        outgoingFlashCookieData.putAll(currentFlashCookieData);
+        outgoingFlashCookieData.putAll(current());
     }
 
     @Override
     public String get(String key) {
-        String value = currentFlashCookieData.get(key);
+        String value = current().get(key);
         if (value == null) {
             value = outgoingFlashCookieData.get(key);
         }
@@ -163,22 +179,22 @@ public class FlashCookieImpl implements FlashCookie {
 
     @Override
     public boolean remove(String key) {
-        return currentFlashCookieData.remove(key) != null;
+        return current().remove(key) != null;
     }
 
     @Override
     public void clearCurrentFlashCookieData() {
-        currentFlashCookieData.clear();
+        current().clear();
     }
 
     @Override
     public boolean contains(String key) {
-        return currentFlashCookieData.containsKey(key);
+        return current().containsKey(key);
     }
 
     @Override
     public Map<String, String> getCurrentFlashCookieData() {
-        return currentFlashCookieData;
+        return current();
     }
 
     @Override
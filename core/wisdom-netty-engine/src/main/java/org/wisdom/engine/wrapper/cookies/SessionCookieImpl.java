@@ -39,6 +39,9 @@ import java.util.UUID;
 /**
  * Session Cookie... Mostly an adaption of Play1's excellent cookie system that
  * in turn is based on the new client side rails cookies.
+ * <p>
+ * The cookie is decoded and its signature checked lazily, the first time the session is accessed. So requests not
+ * using the session do not pay for it.
  */
 public class SessionCookieImpl implements SessionCookie {
 
@@ -47,11 +50,7 @@ public class SessionCookieImpl implements SessionCookie {
     private static final String TIMESTAMP_KEY = "___TS";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SessionCookieImpl.class);
-    private final Integer sessionExpireTimeInMs;
-    private final Boolean sessionSendOnlyIfChanged;
-    private final Boolean sessionTransferredOverHttpsOnly;
-    private final Boolean sessionHttpOnly;
-    private final String applicationCookiePrefix;
+    private final CookieSettings settings;
     private final Map<String, String> data = new HashMap<>();
     /**
      * The crypto service.
@@ -62,45 +61,55 @@ public class SessionCookieImpl implements SessionCookie {
      */
     private boolean sessionDataHasBeenChanged = false;
 
+    /**
+     * The context from which the session is read, {@literal null} once read.
+     */
+    private Context context;
+
     public SessionCookieImpl(Crypto crypto, ApplicationConfiguration configuration) {
-        applicationCookiePrefix = configuration.getWithDefault(Cookie.APPLICATION_COOKIE_PREFIX, "wisdom");
-        this.crypto = crypto;
+        this(crypto, CookieSettings.from(configuration));
+    }
 
-        // read configuration stuff:
-        sessionExpireTimeInMs =
-                configuration.getIntegerWithDefault(SessionCookie.SESSION_EXPIRE_TIME_SECOND, 3600) * 1000;
-
-        this.sessionSendOnlyIfChanged = configuration.getBooleanWithDefault(
-                SessionCookie.SESSION_SEND_ONLY_IF_CHANGED, true);
-        this.sessionTransferredOverHttpsOnly = configuration
-                .getBooleanWithDefault(
-                        SessionCookie.SESSION_OVER_HTTPS_ONLY, false);
-        this.sessionHttpOnly = configuration.getBooleanWithDefault(
-                SessionCookie.SESSION_HTTP_ONLY, true);
+    public SessionCookieImpl(Crypto crypto, CookieSettings settings) {
+        this.crypto = crypto;
+        this.settings = settings;
     }
 
     /**
-     * Has to be called initially.
+     * Has to be called initially. The session cookie is only read when the session is accessed.
      *
      * @param context the current http context.
      */
     @Override
     public void init(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Reads the session cookie if not done already.
+     */
+    private void load() {
+        if (context == null) {
+            return;
+        }
+        Context current = context;
+        context = null;
         try {
             // get the cookie that contains session information:
-            Cookie cookie = context.request().cookie(applicationCookiePrefix
-                    + SESSION_SUFFIX);
+            Cookie cookie = current.request().cookie(settings.getSessionCookieName());
 
             // check that the cookie is not empty:
-            if (cookie != null && cookie.value() != null
-                    && !"".equals(cookie.value().trim())
-                    && cookie.value().contains("-")) {
+            if (cookie != null && cookie.value() != null) {
                 String value = cookie.value();
                 // the first substring until "-" is the sign
-                String sign = value.substring(0, value.indexOf('-'));
+                int index = value.indexOf('-');
+                if (index == -1 || value.trim().isEmpty()) {
+                    return;
+                }
+                String sign = value.substring(0, index);
 
                 // rest from "-" until the end it the payload of the cookie
-                String payload = value.substring(value.indexOf('-') + 1);
+                String payload = value.substring(index + 1);
 
                 if (CookieDataCodec.safeEquals(sign,
                         crypto.sign(payload))) {
@@ -114,7 +123,7 @@ public class SessionCookieImpl implements SessionCookie {
                     data.clear();
                 } else {
                     if (Long.parseLong(data.get(TIMESTAMP_KEY))
-                            + sessionExpireTimeInMs < System
+                            + settings.getSessionExpireTimeInMs() < System
                             .currentTimeMillis()) {
                         // Session expired
                         sessionDataHasBeenChanged = true;
@@ -136,6 +145,7 @@ public class SessionCookieImpl implements SessionCookie {
      */
     @Override
     public String getId() {
+        load();
         if (!data.containsKey(ID_KEY)) {
             data.put(ID_KEY, UUID.randomUUID().toString());
         }
@@ -148,6 +158,7 @@ public class SessionCookieImpl implements SessionCookie {
      */
     @Override
     public Map<String, String> getData() {
+        load();
         return data;
     }
 
@@ -155,7 +166,12 @@ public class SessionCookieImpl implements SessionCookie {
     public void save(Context context, Result result) {
         // Don't save the cookie nothing has changed, and if we're not expiring
         // or we are expiring but we're only updating if the session changes
-        if (!sessionDataHasBeenChanged && sessionSendOnlyIfChanged) {
+        if (this.context != null && settings.isSessionSendOnlyIfChanged()) {
+            // The session has not been read, so it has not changed.
+            return;
+        }
+        load();
+        if (!sessionDataHasBeenChanged && settings.isSessionSendOnlyIfChanged()) {
             // Nothing changed and no cookie-expire, consequently send nothing
             // back.
             return;
@@ -164,11 +180,10 @@ public class SessionCookieImpl implements SessionCookie {
         if (isEmpty()) {
             // It is empty, but there was a session coming in, therefore clear
             // it
-            if (context.hasCookie(applicationCookiePrefix
-                    + SESSION_SUFFIX)) {
+            if (context.hasCookie(settings.getSessionCookieName())) {
 
                 Cookie.Builder expiredSessionCookie = Cookie.builder(
-                        applicationCookiePrefix + SESSION_SUFFIX,
+                        settings.getSessionCookieName(),
                         "");
                 expiredSessionCookie.setPath("/");
                 expiredSessionCookie.setMaxAge(0);
@@ -189,16 +204,15 @@ public class SessionCookieImpl implements SessionCookie {
 
             String sign = crypto.sign(sessionData);
 
-            Cookie.Builder cookie = Cookie.builder(applicationCookiePrefix
-                    + SESSION_SUFFIX, sign + "-" + sessionData);
+            Cookie.Builder cookie = Cookie.builder(settings.getSessionCookieName(), sign + "-" + sessionData);
             cookie.setPath("/");
 
-            cookie.setMaxAge(sessionExpireTimeInMs / 1000);
-            if (sessionTransferredOverHttpsOnly != null) {
-                cookie.setSecure(sessionTransferredOverHttpsOnly);
+            cookie.setMaxAge(settings.getSessionExpireTimeInMs() / 1000);
+            if (settings.getSessionTransferredOverHttpsOnly() != null) {
+                cookie.setSecure(settings.getSessionTransferredOverHttpsOnly());
             }
-            if (sessionHttpOnly != null) {
-                cookie.setHttpOnly(sessionHttpOnly);
+            if (settings.getSessionHttpOnly() != null) {
+                cookie.setHttpOnly(settings.getSessionHttpOnly());
             }
 
             result.with(cookie.build());
@@ -225,6 +239,7 @@ public class SessionCookieImpl implements SessionCookie {
                     "Character ':' is invalid in a session key.");
         }
 
+        load();
         sessionDataHasBeenChanged = true;
 
         if (value == null) {
@@ -243,12 +258,13 @@ public class SessionCookieImpl implements SessionCookie {
      */
     @Override
     public String get(String key) {
+        load();
         return data.get(key);
     }
 
     @Override
     public String remove(String key) {
-
+        load();
         sessionDataHasBeenChanged = true;
         String result = get(key);
         data.remove(key);
@@ -257,6 +273,7 @@ public class SessionCookieImpl implements SessionCookie {
 
     @Override
     public void clear() {
+        load();
         sessionDataHasBeenChanged = true;
         data.clear();
     }
@@ -267,6 +284,7 @@ public class SessionCookieImpl implements SessionCookie {
      */
     @Override
     public boolean isEmpty() {
+        load();
         return data.isEmpty() || data.size() == 1 && data.containsKey(TIMESTAMP_KEY);
     }
 
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.server;
+
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the compression of the responses.
+ */
+public class ContentCompressorTest {
+
+    private static final String CONTENT = "Hello Wisdom ! Hello Wisdom ! Hello Wisdom ! Hello Wisdom !";
+
+    private EmbeddedChannel channel(String acceptEncoding) {
+        return channel(new ContentCompressor(6), acceptEncoding);
+    }
+
+    private EmbeddedChannel channel(ContentCompressor compressor, String acceptEncoding) {
+        EmbeddedChannel channel = new EmbeddedChannel(compressor);
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        request.headers().set(HttpHeaders.Names.ACCEPT_ENCODING, acceptEncoding);
+        channel.writeInbound(request);
+        channel.readInbound();
+        return channel;
+    }
+
+    private byte[] readContent(EmbeddedChannel channel) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            if (message instanceof HttpContent) {
+                ByteBuf content = ((HttpContent) message).content();
+                byte[] bytes = new byte[content.readableBytes()];
+                content.readBytes(bytes);
+                out.write(bytes, 0, bytes.length);
+                ((HttpContent) message).release();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testFullResponseCompressedWithGzip() throws Exception {
+        EmbeddedChannel channel = channel("gzip");
+        FullHttpResponse response = ContentCompressor.newFullResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(CONTENT, Charsets.UTF_8), "gzip");
+        response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, CONTENT.length());
+        channel.writeOutbound(response);
+
+        HttpResponse written = (HttpResponse) channel.readOutbound();
+        assertThat(written.headers().get(HttpHeaders.Names.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(written.headers().get(HttpHeaders.Names.CONTENT_LENGTH)).isNull();
+        assertThat(written.headers().get(HttpHeaders.Names.TRANSFER_ENCODING)).isEqualTo("chunked");
+
+        InputStream stream = new GZIPInputStream(new ByteArrayInputStream(readContent(channel)));
+        assertThat(IOUtils.toString(stream, "UTF-8")).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testChunkedResponseCompressedWithDeflate() throws Exception {
+        EmbeddedChannel channel = channel("deflate");
+        channel.writeOutbound(ContentCompressor.newResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                "deflate"));
+        for (int i = 0; i < 3; i++) {
+            channel.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer(CONTENT, Charsets.UTF_8)));
+        }
+        channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+
+        HttpResponse written = (HttpResponse) channel.readOutbound();
+        assertThat(written.headers().get(HttpHeaders.Names.CONTENT_ENCODING)).isEqualTo("deflate");
+
+        InputStream stream = new InflaterInputStream(new ByteArrayInputStream(readContent(channel)));
+        assertThat(IOUtils.toString(stream, "UTF-8")).isEqualTo(CONTENT + CONTENT + CONTENT);
+    }
+
+    @Test
+    public void testThatOtherResponsesAreNotCompressed() throws Exception {
+        EmbeddedChannel channel = channel("gzip");
+        channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(CONTENT, Charsets.UTF_8)));
+
+        FullHttpResponse written = (FullHttpResponse) channel.readOutbound();
+        assertThat(written.headers().get(HttpHeaders.Names.CONTENT_ENCODING)).isNull();
+        assertThat(written.content().toString(Charsets.UTF_8)).isEqualTo(CONTENT);
+        written.release();
+    }
+
+    @Test
+    public void testEncodingTime() throws Exception {
+        ContentCompressor compressor = new ContentCompressor(6);
+        EmbeddedChannel channel = channel(compressor, "gzip");
+        channel.writeOutbound(ContentCompressor.newFullResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(CONTENT, Charsets.UTF_8), "gzip"));
+        readContent(channel);
+        assertThat(compressor.encodingTime()).isGreaterThan(0L);
+
+        // The time is reset for every response.
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+        channel.readInbound();
+        channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(CONTENT, Charsets.UTF_8)));
+        ((FullHttpResponse) channel.readOutbound()).release();
+        assertThat(compressor.encodingTime()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testThatDeflatersAreReused() throws Exception {
+        // Several responses on the same thread, each one must be a complete and valid gzip stream.
+        for (int i = 0; i < 5; i++) {
+            testFullResponseCompressedWithGzip();
+        }
+    }
+}
@@ -21,9 +21,11 @@ package org.wisdom.engine.server;
 
 import com.google.common.base.Charsets;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import org.junit.After;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.content.ContentEncodingHelper;
 import org.wisdom.api.content.ContentEngine;
@@ -368,7 +370,9 @@ public class DispatcherTest {
         dispatcher.register(listener);
 
         final ChannelHandlerContext client1 = mock(ChannelHandlerContext.class);
-        when(client1.channel()).thenReturn(mock(io.netty.channel.Channel.class));
+        io.netty.channel.Channel channel = mock(io.netty.channel.Channel.class);
+        when(channel.isWritable()).thenReturn(true);
+        when(client1.channel()).thenReturn(channel);
 
         dispatcher.addWebSocket("/hello", client1);
         // The listener should have been notified.
@@ -391,6 +395,52 @@ public class DispatcherTest {
         verify(client1, times(2)).writeAndFlush(any(TextWebSocketFrame.class));
     }
 
+    @Test
+    public void testPublishingToSlowClients() {
+        Dispatcher broadcaster = new Dispatcher();
+
+        final ChannelHandlerContext fast = mock(ChannelHandlerContext.class);
+        io.netty.channel.Channel fastChannel = mock(io.netty.channel.Channel.class);
+        when(fastChannel.isWritable()).thenReturn(true);
+        when(fast.channel()).thenReturn(fastChannel);
+        final ChannelHandlerContext slow = mock(ChannelHandlerContext.class);
+        io.netty.channel.Channel slowChannel = mock(io.netty.channel.Channel.class);
+        when(slowChannel.isWritable()).thenReturn(false);
+        when(slow.channel()).thenReturn(slowChannel);
+        broadcaster.addWebSocket("/hello", fast);
+        broadcaster.addWebSocket("/hello", slow);
+
+        // Drop
+        broadcaster.publish("/hello", "1");
+        broadcaster.publish("/hello", "2".getBytes(Charsets.UTF_8));
+        verify(fast, times(1)).writeAndFlush(any(TextWebSocketFrame.class));
+        verify(fast, times(1)).writeAndFlush(any(BinaryWebSocketFrame.class));
+        verify(slow, never()).writeAndFlush(any());
+        assertThat(broadcaster.dropped("/hello")).isEqualTo(2);
+        assertThat(broadcaster.dropped("/missing")).isEqualTo(0);
+
+        // Coalesce, only the last message is sent when the client becomes writable.
+        broadcaster.policy = SlowClientPolicy.COALESCE;
+        broadcaster.publish("/hello", "3");
+        broadcaster.publish("/hello", "4");
+        assertThat(broadcaster.dropped("/hello")).isEqualTo(3);
+        verify(slow, never()).writeAndFlush(any());
+        broadcaster.writable(slow);
+        ArgumentCaptor<TextWebSocketFrame> captor = ArgumentCaptor.forClass(TextWebSocketFrame.class);
+        verify(slow, times(1)).writeAndFlush(captor.capture());
+        assertThat(captor.getValue().text()).isEqualTo("4");
+
+        // Disconnect
+        broadcaster.policy = SlowClientPolicy.DISCONNECT;
+        broadcaster.publish("/hello", "5");
+        verify(slow, times(1)).close();
+        verify(fast, never()).close();
+        assertThat(broadcaster.dropped("/hello")).isEqualTo(4);
+
+        assertThat(SlowClientPolicy.from("Coalesce")).isEqualTo(SlowClientPolicy.COALESCE);
+        assertThat(SlowClientPolicy.from(null)).isEqualTo(SlowClientPolicy.DROP);
+    }
+
     private class MyWebSocketListener implements WebSocketListener {
         String lastMessage;
         String lastClient;
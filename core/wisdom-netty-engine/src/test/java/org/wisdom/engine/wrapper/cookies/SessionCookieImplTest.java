@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.engine.wrapper.cookies;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.cookies.Cookie;
+import org.wisdom.api.crypto.Crypto;
+import org.wisdom.api.http.Context;
+import org.wisdom.api.http.Request;
+import org.wisdom.api.http.Result;
+import org.wisdom.api.http.Results;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the session and flash cookies.
+ */
+public class SessionCookieImplTest {
+
+    private CookieSettings settings;
+    private Crypto crypto;
+    private Context context;
+    private Request request;
+
+    @Before
+    public void setUp() {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        Answer<Object> defaultValue = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return invocation.getArguments()[1];
+            }
+        };
+        when(configuration.getWithDefault(anyString(), anyString())).then(defaultValue);
+        when(configuration.getIntegerWithDefault(anyString(), anyInt())).then(defaultValue);
+        when(configuration.getBooleanWithDefault(anyString(), anyBoolean())).then(defaultValue);
+        settings = CookieSettings.from(configuration);
+        crypto = mock(Crypto.class);
+        when(crypto.sign(anyString())).then(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                return Integer.toHexString(("secret" + invocation.getArguments()[0]).hashCode());
+            }
+        });
+        context = mock(Context.class);
+        request = mock(Request.class);
+        when(context.request()).thenReturn(request);
+    }
+
+    @Test
+    public void testSettings() {
+        assertThat(settings.getSessionCookieName()).isEqualTo("wisdom_SESSION");
+        assertThat(settings.getFlashCookieName()).isEqualTo("wisdom_FLASH");
+        assertThat(settings.getSessionExpireTimeInMs()).isEqualTo(3600 * 1000);
+        assertThat(settings.isSessionSendOnlyIfChanged()).isTrue();
+        assertThat(settings.getSessionHttpOnly()).isTrue();
+        assertThat(settings.getSessionTransferredOverHttpsOnly()).isFalse();
+    }
+
+    @Test
+    public void testThatUnusedSessionIsNeitherDecodedNorSent() {
+        when(request.cookie("wisdom_SESSION")).thenReturn(Cookie.cookie("wisdom_SESSION", "invalid").build());
+        SessionCookieImpl session = new SessionCookieImpl(crypto, settings);
+        session.init(context);
+        Result result = Results.ok();
+        session.save(context, result);
+
+        verify(request, never()).cookie(anyString());
+        verify(crypto, never()).sign(anyString());
+        assertThat(result.getCookies()).isEmpty();
+    }
+
+    @Test
+    public void testSessionRoundTrip() {
+        SessionCookieImpl session = new SessionCookieImpl(crypto, settings);
+        session.init(context);
+        session.put("user", "wisdom & co");
+        Result result = Results.ok();
+        session.save(context, result);
+        Cookie cookie = result.getCookie("wisdom_SESSION");
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.isHttpOnly()).isTrue();
+
+        when(request.cookie("wisdom_SESSION")).thenReturn(cookie);
+        SessionCookieImpl next = new SessionCookieImpl(crypto, settings);
+        next.init(context);
+        assertThat(next.get("user")).isEqualTo("wisdom & co");
+        assertThat(next.isEmpty()).isFalse();
+    }
+
+    @Test
+    public void testThatTamperedSessionIsIgnored() {
+        SessionCookieImpl session = new SessionCookieImpl(crypto, settings);
+        session.init(context);
+        session.put("user", "wisdom");
+        Result result = Results.ok();
+        session.save(context, result);
+        String value = result.getCookie("wisdom_SESSION").value().replace("wisdom", "admin");
+
+        when(request.cookie("wisdom_SESSION")).thenReturn(Cookie.cookie("wisdom_SESSION", value).build());
+        SessionCookieImpl next = new SessionCookieImpl(crypto, settings);
+        next.init(context);
+        assertThat(next.get("user")).isNull();
+    }
+
+    @Test
+    public void testFlashRoundTrip() {
+        FlashCookieImpl flash = new FlashCookieImpl(settings);
+        flash.init(context);
+        flash.success("done");
+        Result result = Results.ok();
+        flash.save(context, result);
+        Cookie cookie = result.getCookie("wisdom_FLASH");
+        assertThat(cookie).isNotNull();
+
+        when(request.cookie("wisdom_FLASH")).thenReturn(cookie);
+        FlashCookieImpl next = new FlashCookieImpl(settings);
+        next.init(context);
+        // Only read once, when the first flash scope was modified.
+        verify(request, times(1)).cookie("wisdom_FLASH");
+        assertThat(next.get(FlashCookieImpl.FLASH_SUCCESS)).isEqualTo("done");
+        assertThat(next.getOutgoingFlashCookieData()).isEmpty();
+    }
+}
@@ -19,7 +19,10 @@
  */
 package snippets.controllers.cache;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.apache.felix.ipojo.annotations.Requires;
+import org.joda.time.Duration;
 import org.wisdom.api.DefaultController;
 import org.wisdom.api.annotations.Controller;
 import org.wisdom.api.annotations.Path;
@@ -28,6 +31,11 @@ import org.wisdom.api.cache.Cache;
 import org.wisdom.api.http.HttpMethod;
 import org.wisdom.api.http.Result;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
 @Controller
 @Path("/cache")
 public class CacheUsage extends DefaultController {
@@ -65,6 +73,27 @@ public class CacheUsage extends DefaultController {
         // end::cache-remove[]
     }
 
+    public void advanced() throws ExecutionException {
+        // tag::cache-bulk[]
+        Map<String, Object> fragments = cache.getAll(Arrays.asList("fragment.header", "fragment.footer"));
+        cache.setAll(ImmutableMap.of("fragment.header", "<header/>", "fragment.footer", "<footer/>"),
+                Duration.standardMinutes(15));
+        // end::cache-bulk[]
+
+        // tag::cache-compute[]
+        News news = cache.view(News.class).computeIfAbsent("item.key", new Callable<News>() {
+            @Override
+            public News call() throws Exception {
+                return new News();
+            }
+        }, Duration.standardMinutes(15));
+        // end::cache-compute[]
+
+        // tag::cache-async[]
+        ListenableFuture<Object> future = cache.getAsync("item.key");
+        // end::cache-async[]
+    }
+
     private class News {
     }
     // end::cache-example[]
@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.filters;
+
+import akka.actor.Cancellable;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.wisdom.akka.AkkaSystemService;
+import org.wisdom.api.configuration.Configuration;
+import org.wisdom.api.http.AsyncResult;
+import org.wisdom.api.http.Request;
+import org.wisdom.api.http.Result;
+import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.router.Route;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ProxyFilter} spreading the requests over several servers ({@literal upstreams}). In addition to the
+ * parameters of the {@link ProxyFilter} (except {@literal proxyTo}), this filter is configured using:
+ * <ul>
+ * <li>{@literal upstreams}: the comma-separated list of server locations (required)</li>
+ * <li>{@literal strategy}: {@literal round-robin} (default), {@literal least-outstanding-requests} or
+ * {@literal consistent-hash}</li>
+ * <li>{@literal hash.header} and {@literal hash.cookie}: the header or cookie hashed by the consistent-hash
+ * strategy</li>
+ * <li>{@literal ejection.failures}: the number of consecutive failures (errors, timeouts or 5xx responses)
+ * ejecting a server, 5 by default</li>
+ * <li>{@literal ejection.duration}: how long a server is ejected, in milliseconds, 30 seconds by default</li>
+ * <li>{@literal health.path}: the path checked on each server to determine whether it is healthy, health checks
+ * are disabled if not set</li>
+ * <li>{@literal health.interval} and {@literal health.timeout}: the health check period and timeout, in
+ * milliseconds, 10 and 2 seconds by default</li>
+ * </ul>
+ * When all the servers are unavailable, the requests are spread over all the servers.
+ * <p>
+ * When a metric registry is given, the latency, number of requests being processed and failures of each server are
+ * registered as {@literal proxy.prefix.host_port.latency}, {@literal proxy.prefix.host_port.inflight} and
+ * {@literal proxy.prefix.host_port.errors}. In streaming mode, a request is considered as completed once the
+ * response head is received.
+ * <p>
+ * Subclasses must call {@link #close()} when they are invalidated, to stop the health checks and unregister the
+ * metrics.
+ */
+public class BalancerFilter extends ProxyFilter {
+
+    private final List<Upstream> upstreams;
+
+    private final BalancingStrategy strategy;
+
+    private final MetricRegistry registry;
+
+    private final String metricPrefix;
+
+    private Cancellable checks;
+
+    /**
+     * Creates a new filter without health checks nor metrics.
+     *
+     * @param configuration the configuration
+     */
+    public BalancerFilter(Configuration configuration) {
+        this(configuration, null, null);
+    }
+
+    /**
+     * Creates a new filter.
+     *
+     * @param configuration the configuration
+     * @param akka          the Akka system used to schedule the health checks, may be {@literal null} to disable
+     *                      the health checks
+     * @param registry      the registry receiving the metrics of the servers, may be {@literal null}
+     */
+    public BalancerFilter(Configuration configuration, AkkaSystemService akka, MetricRegistry registry) {
+        super(configuration);
+        List<Upstream> list = new ArrayList<>();
+        for (String location : getUpstreams()) {
+            list.add(new Upstream(location, getInteger("ejection.failures", 5), getLong("ejection.duration", 30000L)));
+        }
+        upstreams = ImmutableList.copyOf(list);
+        strategy = newStrategy(upstreams);
+
+        this.registry = registry;
+        String prefix = getPrefix() == null ? "" : getPrefix();
+        this.metricPrefix = MetricRegistry.name("proxy", prefix.replaceAll("[^A-Za-z0-9]+", "_"));
+        if (registry != null) {
+            unregisterMetrics();
+            for (Upstream upstream : upstreams) {
+                upstream.register(registry, metricPrefix);
+            }
+        }
+
+        String health = getHealthPath();
+        if (akka != null && health != null) {
+            scheduleHealthChecks(akka, health);
+        }
+    }
+
+    /**
+     * @return the servers
+     */
+    public List<Upstream> upstreams() {
+        return upstreams;
+    }
+
+    /**
+     * @return the locations of the servers, read from the {@literal upstreams} parameter
+     */
+    protected List<String> getUpstreams() {
+        if (configuration() == null) {
+            return Collections.emptyList();
+        }
+        return configuration().getList("upstreams");
+    }
+
+    /**
+     * @return the first server, so the {@literal proxyTo} parameter is not required
+     */
+    @Override
+    protected String getProxyTo() {
+        List<String> locations = getUpstreams();
+        if (locations == null || locations.isEmpty()) {
+            return null;
+        }
+        return locations.get(0);
+    }
+
+    /**
+     * @return the path used to check the health of the servers, {@literal null} to disable the health checks
+     */
+    protected String getHealthPath() {
+        if (configuration() == null) {
+            return null;
+        }
+        return configuration().get("health.path");
+    }
+
+    /**
+     * Creates the strategy selecting the servers, from the {@literal strategy} parameter.
+     *
+     * @param upstreams the servers
+     * @return the strategy
+     */
+    protected BalancingStrategy newStrategy(List<Upstream> upstreams) {
+        Configuration configuration = configuration();
+        String name = configuration == null ? null : configuration.get("strategy");
+        if (BalancingStrategies.LEAST_OUTSTANDING_REQUESTS.equalsIgnoreCase(name)) {
+            return BalancingStrategies.leastOutstandingRequests();
+        }
+        if (BalancingStrategies.CONSISTENT_HASH.equalsIgnoreCase(name)) {
+            return BalancingStrategies.consistentHash(upstreams, configuration.get("hash.header"),
+                    configuration.get("hash.cookie"));
+        }
+        if (name != null && !BalancingStrategies.ROUND_ROBIN.equalsIgnoreCase(name)) {
+            logger.warn("Unknown balancing strategy '{}', using round-robin", name);
+        }
+        return BalancingStrategies.roundRobin();
+    }
+
+    /**
+     * Checks whether the given result denotes a failure of the server.
+     *
+     * @param result the result built from the response of the server
+     * @return {@literal true} for 5xx responses
+     */
+    protected boolean isFailure(Result result) {
+        return result.getStatusCode() >= 500;
+    }
+
+    /**
+     * Selects the server handling the request and forwards the request to this server.
+     *
+     * @param route   the route
+     * @param context the filter context
+     * @return the result
+     * @throws Exception if anything bad happen
+     */
+    @Override
+    public Result call(final Route route, final RequestContext context) throws Exception {
+        if (getAsyncClient() != null) {
+            return stream(context);
+        }
+        return new AsyncResult(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                Upstream upstream = select(context.request());
+                URI rewrittenURI = rewriteURI(context.request(), upstream.location());
+                logger.debug("Proxy request - rewriting {} to {}", context.request().uri(), rewrittenURI);
+                if (rewrittenURI == null) {
+                    return onRewriteFailed(context);
+                }
+
+                long start = upstream.started();
+                boolean failed = true;
+                try {
+                    Result result = proxy(context, rewrittenURI);
+                    failed = isFailure(result);
+                    return onResult(result);
+                } finally {
+                    upstream.completed(start, failed);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forwards the request using the non-blocking client. The result is completed by the client, no thread waits
+     * for the selected server.
+     *
+     * @param context the filter context
+     * @return the result
+     * @throws Exception if the URI of the proxied resource cannot be computed
+     */
+    private Result stream(final RequestContext context) throws Exception {
+        final Upstream upstream = select(context.request());
+        URI rewrittenURI = rewriteURI(context.request(), upstream.location());
+        logger.debug("Proxy request - rewriting {} to {}", context.request().uri(), rewrittenURI);
+        if (rewrittenURI == null) {
+            return onRewriteFailed(context);
+        }
+
+        final long start = upstream.started();
+        ListenableFuture<Result> proxied;
+        try {
+            proxied = proxyAsync(context, rewrittenURI);
+        } catch (RuntimeException e) {
+            upstream.completed(start, true);
+            throw e;
+        }
+        Futures.addCallback(proxied, new FutureCallback<Result>() {
+            @Override
+            public void onSuccess(Result result) {
+                upstream.completed(start, isFailure(result));
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                upstream.completed(start, true);
+            }
+        });
+        return new AsyncResult(Futures.transform(proxied, new Function<Result, Result>() {
+            @Override
+            public Result apply(Result result) {
+                return onResult(result);
+            }
+        }));
+    }
+
+    /**
+     * Selects the server handling the given request.
+     *
+     * @param request the request
+     * @return the server
+     */
+    Upstream select(Request request) {
+        List<Upstream> candidates = new ArrayList<>(upstreams.size());
+        for (Upstream upstream : upstreams) {
+            if (upstream.isAvailable()) {
+                candidates.add(upstream);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Better trying an unavailable server than rejecting the request.
+            return strategy.select(upstreams, request);
+        }
+        return strategy.select(candidates, request);
+    }
+
+    /**
+     * Stops the health checks, unregisters the metrics and closes the HTTP clients.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (checks != null) {
+                checks.cancel();
+                checks = null;
+            }
+        }
+        if (registry != null) {
+            unregisterMetrics();
+        }
+        super.close();
+    }
+
+    private void unregisterMetrics() {
+        registry.removeMatching(new MetricFilter() {
+            @Override
+            public boolean matches(String name, Metric metric) {
+                return name.startsWith(metricPrefix + ".");
+            }
+        });
+    }
+
+    private synchronized void scheduleHealthChecks(final AkkaSystemService akka, final String path) {
+        long interval = getLong("health.interval", 10000L);
+        final int timeout = getInteger("health.timeout", 2000);
+        checks = akka.system().scheduler().schedule(
+                new FiniteDuration(0, TimeUnit.MILLISECONDS),
+                new FiniteDuration(interval, TimeUnit.MILLISECONDS),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final Upstream upstream : upstreams) {
+                            // Check the servers concurrently, so a server not responding does not delay the others.
+                            akka.system().dispatcher().execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    check(upstream, path, timeout);
+                                }
+                            });
+                        }
+                    }
+                }, akka.system().dispatcher());
+    }
+
+    /**
+     * Checks the health of the given server. The server is healthy if the given path returns a 2xx or 3xx
+     * response within the given timeout.
+     *
+     * @param upstream the server
+     * @param path     the path
+     * @param timeout  the timeout in milliseconds
+     */
+    void check(Upstream upstream, String path, int timeout) {
+        String location = upstream.location();
+        if (location.endsWith("/") && path.startsWith("/")) {
+            location = location.substring(0, location.length() - 1);
+        }
+        HttpGet request = new HttpGet(URI.create(location + path));
+        request.setConfig(RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build());
+        boolean healthy;
+        try {
+            HttpResponse response = getClient().execute(request);
+            int status = response.getStatusLine().getStatusCode();
+            EntityUtils.consumeQuietly(response.getEntity());
+            healthy = status >= 200 && status < 400;
+        } catch (Exception e) { //NOSONAR
+            logger.debug("Health check of {} failed", upstream, e);
+            healthy = false;
+        }
+        if (healthy != upstream.isHealthy()) {
+            logger.info("The server {} is now {}", upstream, healthy ? "healthy" : "unhealthy");
+        }
+        upstream.healthy(healthy);
+    }
+
+    private int getInteger(String key, int defaultValue) {
+        if (configuration() == null) {
+            return defaultValue;
+        }
+        Integer value = configuration().getInteger(key);
+        return value == null ? defaultValue : value;
+    }
+
+    private long getLong(String key, long defaultValue) {
+        if (configuration() == null) {
+            return defaultValue;
+        }
+        Long value = configuration().getLong(key);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.filters;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.wisdom.api.cookies.Cookie;
+import org.wisdom.api.http.Request;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link BalancingStrategy} implementations supported by the {@link BalancerFilter}.
+ */
+public final class BalancingStrategies {
+
+    /**
+     * The name of the round-robin strategy in the configuration.
+     */
+    public static final String ROUND_ROBIN = "round-robin";
+
+    /**
+     * The name of the least-outstanding-requests strategy in the configuration.
+     */
+    public static final String LEAST_OUTSTANDING_REQUESTS = "least-outstanding-requests";
+
+    /**
+     * The name of the consistent-hash strategy in the configuration.
+     */
+    public static final String CONSISTENT_HASH = "consistent-hash";
+
+    private BalancingStrategies() {
+        // Avoid direct instantiation.
+    }
+
+    /**
+     * Creates a strategy selecting the servers in turn.
+     *
+     * @return the strategy
+     */
+    public static BalancingStrategy roundRobin() {
+        return new RoundRobin();
+    }
+
+    /**
+     * Creates a strategy selecting the server processing the fewest requests. Servers processing the same number
+     * of requests are selected in turn.
+     *
+     * @return the strategy
+     */
+    public static BalancingStrategy leastOutstandingRequests() {
+        return new LeastOutstandingRequests();
+    }
+
+    /**
+     * Creates a strategy selecting the server from a hash of a header or cookie value, so requests having the same
+     * value are sent to the same server as long as it is available. When a server becomes unavailable, only the
+     * requests it was handling are moved to other servers. Requests without the value are balanced in turn.
+     *
+     * @param upstreams the servers
+     * @param header    the name of the header to hash, may be {@literal null}
+     * @param cookie    the name of the cookie to hash when the header is not set, may be {@literal null}
+     * @return the strategy
+     */
+    public static BalancingStrategy consistentHash(List<Upstream> upstreams, String header, String cookie) {
+        return new ConsistentHash(upstreams, header, cookie);
+    }
+
+    private static class RoundRobin implements BalancingStrategy {
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public Upstream select(List<Upstream> candidates, Request request) {
+            return candidates.get(index(next, candidates.size()));
+        }
+    }
+
+    private static class LeastOutstandingRequests implements BalancingStrategy {
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public Upstream select(List<Upstream> candidates, Request request) {
+            int size = candidates.size();
+            // Start from a rotating position so ties are spread.
+            int start = index(next, size);
+            Upstream selected = null;
+            for (int i = 0; i < size; i++) {
+                Upstream candidate = candidates.get((start + i) % size);
+                if (selected == null || candidate.inflight() < selected.inflight()) {
+                    selected = candidate;
+                }
+            }
+            return selected;
+        }
+    }
+
+    private static class ConsistentHash implements BalancingStrategy {
+        /**
+         * The number of points of each server on the ring, spreading the load evenly.
+         */
+        private static final int REPLICAS = 100;
+
+        private static final HashFunction HASH = Hashing.murmur3_32();
+
+        private final NavigableMap<Integer, Upstream> ring = new TreeMap<>();
+        private final String header;
+        private final String cookie;
+        private final RoundRobin fallback = new RoundRobin();
+
+        private ConsistentHash(List<Upstream> upstreams, String header, String cookie) {
+            this.header = header;
+            this.cookie = cookie;
+            for (Upstream upstream : upstreams) {
+                for (int i = 0; i < REPLICAS; i++) {
+                    ring.put(hash(upstream.location() + "#" + i), upstream);
+                }
+            }
+        }
+
+        private static int hash(String value) {
+            return HASH.hashString(value, Charsets.UTF_8).asInt();
+        }
+
+        @Override
+        public Upstream select(List<Upstream> candidates, Request request) {
+            String key = key(request);
+            if (key == null) {
+                return fallback.select(candidates, request);
+            }
+            int hash = hash(key);
+            // Walk the ring from the hash, and use the first server that can be selected.
+            for (Upstream upstream : ring.tailMap(hash, true).values()) {
+                if (candidates.contains(upstream)) {
+                    return upstream;
+                }
+            }
+            for (Map.Entry<Integer, Upstream> entry : ring.headMap(hash, false).entrySet()) {
+                if (candidates.contains(entry.getValue())) {
+                    return entry.getValue();
+                }
+            }
+            return fallback.select(candidates, request);
+        }
+
+        private String key(Request request) {
+            if (header != null) {
+                String value = request.getHeader(header);
+                if (value != null) {
+                    return value;
+                }
+            }
+            if (cookie != null) {
+                Cookie value = request.cookie(cookie);
+                if (value != null) {
+                    return value.value();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static int index(AtomicInteger counter, int size) {
+        // Mask the sign bit, so the index stays positive when the counter overflows.
+        return (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+    }
+}
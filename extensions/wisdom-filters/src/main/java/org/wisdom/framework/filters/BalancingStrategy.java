@@ -0,0 +1,42 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.filters;
+
+import org.wisdom.api.http.Request;
+
+import java.util.List;
+
+/**
+ * Selects the server handling a request in the {@link BalancerFilter}. Implementations are used concurrently.
+ *
+ * @see BalancingStrategies
+ */
+public interface BalancingStrategy {
+
+    /**
+     * Selects the server handling the given request.
+     *
+     * @param candidates the servers that can be selected, never empty. This list contains the available servers,
+     *                   or all the servers if none is available.
+     * @param request    the request
+     * @return the selected server, must be one of the candidates
+     */
+    Upstream select(List<Upstream> candidates, Request request);
+}
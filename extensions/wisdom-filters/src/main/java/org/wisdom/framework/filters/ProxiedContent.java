@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.filters;
+
+import org.wisdom.api.http.AsyncOutput;
+import org.wisdom.api.http.AsyncRenderable;
+import org.wisdom.api.http.Context;
+import org.wisdom.api.http.Renderable;
+import org.wisdom.api.http.RenderableException;
+import org.wisdom.api.http.Result;
+
+import java.io.InputStream;
+
+/**
+ * The content of a proxied response, sent to the client while it is received from the proxied server. Engines
+ * supporting {@link AsyncRenderable} let the I/O reactor of the client push the content into the response, so no
+ * thread is held while the content is transferred, and each chunk is sent as soon as it is received (so events
+ * pushed by the server, such as server-sent events, are not delayed). Otherwise, the content is read from a
+ * blocking stream.
+ */
+class ProxiedContent implements Renderable<InputStream>, AsyncRenderable {
+
+    private final StreamingResponseConsumer consumer;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param consumer the consumer receiving the content from the proxied server
+     */
+    ProxiedContent(StreamingResponseConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Lets the client push the content into the response.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @param output  the output receiving the content
+     */
+    @Override
+    public void subscribe(Context context, Result result, AsyncOutput output) {
+        consumer.push(output);
+    }
+
+    /**
+     * @return the stream reading the content. Reading this stream blocks until content is available.
+     * @throws RenderableException if the content is already pushed into the response
+     */
+    @Override
+    public InputStream render(Context context, Result result) throws RenderableException {
+        try {
+            return consumer.pull();
+        } catch (IllegalStateException e) {
+            throw new RenderableException("Cannot read the proxied response", e);
+        }
+    }
+
+    /**
+     * @return {@literal -1}, as the content is re-chunked
+     */
+    @Override
+    public long length() {
+        return -1;
+    }
+
+    /**
+     * @return {@literal null}, the {@literal Content-Type} header is copied from the proxied response
+     */
+    @Override
+    public String mimetype() {
+        return null;
+    }
+
+    /**
+     * @return the stream reading the content
+     */
+    @Override
+    public InputStream content() {
+        return consumer.pull();
+    }
+
+    /**
+     * @return {@literal false}, the content is already serialized
+     */
+    @Override
+    public boolean requireSerializer() {
+        return false;
+    }
+
+    /**
+     * Not supported, the content is already serialized.
+     *
+     * @param serialized the serialized form
+     */
+    @Override
+    public void setSerializedForm(String serialized) {
+        // Serialization is not supported.
+    }
+
+    /**
+     * @return {@literal true}
+     */
+    @Override
+    public boolean mustBeChunked() {
+        return true;
+    }
+}
@@ -19,29 +19,40 @@
  */
 package org.wisdom.framework.filters;
 
+import com.google.common.base.Function;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.cookie.Cookie;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultRedirectStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wisdom.api.bodies.RenderableStream;
 import org.wisdom.api.configuration.Configuration;
 import org.wisdom.api.http.*;
-import org.wisdom.api.interception.Filter;
+import org.wisdom.api.interception.MatchingFilter;
 import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.interception.UriMatcher;
 import org.wisdom.api.router.Route;
 
 import java.io.IOException;
@@ -49,12 +60,22 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 /**
  * A filter implementation to extend to create a transparent proxy to a specific location.
+ * <p>
+ * The connections to the proxied server are pooled and kept alive. The size of the pool and the keep-alive
+ * duration are configured using the {@literal pool.max}, {@literal pool.max-per-route} and {@literal pool.keep-alive}
+ * (in milliseconds) keys, and the connection and socket timeout using the {@literal timeout} key (in milliseconds).
+ * When the {@literal streaming} key is set to {@literal true}, the requests are sent using a
+ * non-blocking client, and the content of the responses is streamed to the client while it is received, see
+ * {@link #isStreaming()}. In this mode, no thread waits for the proxied server: the result is completed by the
+ * client when the response head is received, and on engines supporting
+ * {@link org.wisdom.api.http.AsyncRenderable}, the content is pushed into the response by the client.
  */
-public class ProxyFilter implements Filter {
+public class ProxyFilter implements MatchingFilter {
 
 
     private static final Set<String> HOP_HEADERS = new HashSet<>();
@@ -71,12 +92,20 @@ public class ProxyFilter implements Filter {
         HOP_HEADERS.add("upgrade");
     }
 
+    /**
+     * The size of the buffer holding the content received from the proxied server and not yet sent to the client,
+     * in streaming mode.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
     private final Configuration configuration;
 
     protected Logger logger;
     private HttpClient client;
+    private CloseableHttpAsyncClient asyncClient;
     private String proxyTo;
     private String prefix;
+    private volatile UriMatcher matcher;
 
     public ProxyFilter() {
         this(null);
@@ -86,6 +115,10 @@ public class ProxyFilter implements Filter {
         configuration = conf;
         logger = createLogger();
         client = createHttpClient();
+        if (isStreaming()) {
+            asyncClient = newAsyncHttpClient();
+            asyncClient.start();
+        }
         proxyTo = getProxyTo();
         prefix = getPrefix();
 
@@ -98,6 +131,14 @@ public class ProxyFilter implements Filter {
         }
     }
 
+    /**
+     * @return the configuration of the filter, {@literal null} if the filter is not configured using a
+     * configuration object
+     */
+    protected Configuration configuration() {
+        return configuration;
+    }
+
     /**
      * Retrieves the HTTP Client instance used by this filter.
      * @return the HTTP Client instance
@@ -106,6 +147,28 @@ public class ProxyFilter implements Filter {
         return client;
     }
 
+    /**
+     * Retrieves the non-blocking HTTP Client instance used by this filter in streaming mode.
+     * @return the HTTP Client instance, {@literal null} if the filter is not in streaming mode
+     */
+    public CloseableHttpAsyncClient getAsyncClient() {
+        return asyncClient;
+    }
+
+    /**
+     * Closes the non-blocking HTTP client and its connections. Filters in streaming mode should call this method
+     * when they are invalidated.
+     */
+    public void close() {
+        if (asyncClient != null) {
+            try {
+                asyncClient.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close the HTTP client", e);
+            }
+        }
+    }
+
     private HttpClient createHttpClient() {
         return newHttpClient();
     }
@@ -125,9 +188,70 @@ public class ProxyFilter implements Filter {
                         return Collections.emptyList();
                     }
                 })
+                .setMaxConnTotal(getMaxConnections())
+                .setMaxConnPerRoute(getMaxConnectionsPerRoute())
+                .setKeepAliveStrategy(newKeepAliveStrategy())
+                .setDefaultRequestConfig(newRequestConfig())
                 .build();
     }
 
+    /**
+     * Creates the non-blocking HTTP client used in streaming mode. The client is started by the filter.
+     *
+     * @return the client
+     */
+    protected CloseableHttpAsyncClient newAsyncHttpClient() {
+        return HttpAsyncClients.custom()
+                // Do not manage redirection.
+                .setRedirectStrategy(new DefaultRedirectStrategy() {
+                    @Override
+                    protected boolean isRedirectable(String method) {
+                        return followRedirect(method);
+                    }
+                })
+                .setDefaultCookieStore(new BasicCookieStore() {
+                    @Override
+                    public synchronized List<Cookie> getCookies() {
+                        return Collections.emptyList();
+                    }
+                })
+                .setMaxConnTotal(getMaxConnections())
+                .setMaxConnPerRoute(getMaxConnectionsPerRoute())
+                .setKeepAliveStrategy(newKeepAliveStrategy())
+                .setDefaultRequestConfig(newRequestConfig())
+                .build();
+    }
+
+    /**
+     * Creates the configuration of the requests, setting the connection and socket timeouts.
+     *
+     * @return the configuration
+     */
+    private RequestConfig newRequestConfig() {
+        int timeout = getTimeout();
+        return RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Creates the strategy computing how long a connection is kept alive: the duration announced by the proxied
+     * server, bounded by {@link #getKeepAliveDuration()}.
+     *
+     * @return the strategy
+     */
+    private ConnectionKeepAliveStrategy newKeepAliveStrategy() {
+        final long max = getKeepAliveDuration();
+        return new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = super.getKeepAliveDuration(response, context);
+                return duration > 0 && duration < max ? duration : max;
+            }
+        };
+    }
+
     protected boolean followRedirect(String method) {
         return false;
     }
@@ -149,6 +273,20 @@ public class ProxyFilter implements Filter {
      */
     @Override
     public Result call(final Route route, final RequestContext context) throws Exception {
+        if (asyncClient != null) {
+            URI rewrittenURI = rewriteURI(context.request());
+            logger.debug("Proxy request - rewriting {} to {}", context.request().uri(), rewrittenURI);
+            if (rewrittenURI == null) {
+                return onRewriteFailed(context);
+            }
+            return new AsyncResult(Futures.transform(proxyAsync(context, rewrittenURI),
+                    new Function<Result, Result>() {
+                        @Override
+                        public Result apply(Result result) {
+                            return onResult(result);
+                        }
+                    }));
+        }
         return new AsyncResult(new Callable<Result>() {
             @Override
             public Result call() throws Exception {
@@ -157,78 +295,155 @@ public class ProxyFilter implements Filter {
                 if (rewrittenURI == null) {
                     return onRewriteFailed(context);
                 }
+                return onResult(proxy(context, rewrittenURI));
+            }
+        });
 
-                BasicHttpEntityEnclosingRequest request
-                        = new BasicHttpEntityEnclosingRequest(context.request().method(), rewrittenURI.toString());
-                // Any header listed by the Connection header must be removed:
-                // http://tools.ietf.org/html/rfc7230#section-6.1.
-                Set<String> hopHeaders = new HashSet<>();
-                List<String> connectionHeaders = context.request().headers().get(HeaderNames.CONNECTION);
-                for (String s : connectionHeaders) {
-                    for (String entry : Splitter.on(",").omitEmptyStrings().trimResults().splitToList(s)) {
-                        hopHeaders.add(entry.toLowerCase(Locale.ENGLISH));
-                    }
-                }
+    }
 
-                boolean hasContent = context.request().contentType() != null;
-                final String host = getHost();
-                Multimap<String, String> headers = ArrayListMultimap.create();
-                for (Map.Entry<String, List<String>> entry : context.request().headers().entrySet()) {
-                    String name = entry.getKey();
-                    if (HeaderNames.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
-                        hasContent = true;
-                    }
-                    if (host != null && HeaderNames.HOST.equalsIgnoreCase(name)) {
-                        continue;
-                    }
-                    // Remove hop-by-hop headers.
-                    String lower = name.toLowerCase(Locale.ENGLISH);
-                    if (HOP_HEADERS.contains(lower) || hopHeaders.contains(lower)) {
-                        continue;
-                    }
+    /**
+     * Sends the request to the given URI, and builds the result from the response. In streaming mode, this method
+     * only waits for the head of the response, the content is then written to the client while it is received. To
+     * not wait at all, use {@link #proxyAsync(RequestContext, URI)}.
+     *
+     * @param context      the filter context
+     * @param rewrittenURI the URI of the proxied resource
+     * @return the result
+     * @throws Exception if the request cannot be sent, or the response cannot be read
+     */
+    protected Result proxy(RequestContext context, URI rewrittenURI) throws Exception {
+        if (asyncClient == null) {
+            BasicHttpEntityEnclosingRequest request = createRequest(context, rewrittenURI);
+            HttpHost target = new HttpHost(rewrittenURI.getHost(), rewrittenURI.getPort());
+            return toResult(client.execute(target, request));
+        }
 
-                    for (String v : entry.getValue()) {
-                        headers.put(name, v);
-                    }
-                }
+        try {
+            return proxyAsync(context, rewrittenURI).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-                // Force the Host header if configured
-                headers.removeAll(HeaderNames.HOST);
-                if (host != null) {
-                    headers.put(HeaderNames.HOST, host);
-                    headers.put("X-Forwarded-Server", host);
-                } else {
-                    // Set of the URI one
-                    headers.put("X-Forwarded-Server", rewrittenURI.getHost());
-                }
+    /**
+     * Sends the request to the given URI using the non-blocking client. This method does not block: the returned
+     * future is completed by the client when the head of the response is received, and the content is then sent to
+     * the client while it is received.
+     *
+     * @param context      the filter context
+     * @param rewrittenURI the URI of the proxied resource
+     * @return the future completed with the result, or with the failure of the exchange
+     * @throws IllegalStateException if the filter is not in streaming mode
+     */
+    protected ListenableFuture<Result> proxyAsync(RequestContext context, URI rewrittenURI) {
+        if (asyncClient == null) {
+            throw new IllegalStateException("The filter is not in streaming mode");
+        }
+        BasicHttpEntityEnclosingRequest request = createRequest(context, rewrittenURI);
+        HttpHost target = new HttpHost(rewrittenURI.getHost(), rewrittenURI.getPort());
+        final StreamingResponseConsumer consumer = new StreamingResponseConsumer(STREAM_BUFFER_SIZE);
+        consumer.exchange(asyncClient.execute(new BasicAsyncRequestProducer(target, request), consumer, null));
+        return Futures.transform(consumer.head(), new Function<HttpResponse, Result>() {
+            @Override
+            public Result apply(HttpResponse response) {
+                return toStreamedResult(response, consumer);
+            }
+        });
+    }
 
-                // Add proxy headers
-                if (getVia() != null) {
-                    headers.put(HeaderNames.VIA, "http/1.1 " + getVia());
-                }
-                headers.put("X-Forwarded-For", context.request().remoteAddress());
-                if (host != null) {
-                    headers.put("X-Forwarded-Host", host);
-                }
+    private Result toStreamedResult(HttpResponse response, StreamingResponseConsumer consumer) {
+        Result result = new Result(response.getStatusLine().getStatusCode());
+        for (Header h : response.getAllHeaders()) {
+            // The content is re-chunked by the engine, so the framing headers are not forwarded.
+            String lower = h.getName().toLowerCase(Locale.ENGLISH);
+            if (!HOP_HEADERS.contains(lower) && !"content-length".equals(lower)) {
+                result.with(h.getName(), h.getValue());
+            }
+        }
+        if (consumer.hasContent()) {
+            result.render(new ProxiedContent(consumer));
+        }
+        return result;
+    }
 
-                updateHeaders(context, headers);
-                for (Map.Entry<String, String> s : headers.entries()) {
-                    request.addHeader(s.getKey(), s.getValue());
-                }
-                // Remove content-length as it is computed by the HTTP client.
-                request.removeHeaders(HeaderNames.CONTENT_LENGTH);
+    /**
+     * Creates the request sent to the proxied server.
+     *
+     * @param context      the filter context
+     * @param rewrittenURI the URI of the proxied resource
+     * @return the request
+     */
+    private BasicHttpEntityEnclosingRequest createRequest(RequestContext context, URI rewrittenURI) {
+        BasicHttpEntityEnclosingRequest request
+                = new BasicHttpEntityEnclosingRequest(context.request().method(), rewrittenURI.toString());
+        // Any header listed by the Connection header must be removed:
+        // http://tools.ietf.org/html/rfc7230#section-6.1.
+        Set<String> hopHeaders = new HashSet<>();
+        List<String> connectionHeaders = context.request().headers().get(HeaderNames.CONNECTION);
+        for (String s : connectionHeaders) {
+            for (String entry : Splitter.on(",").omitEmptyStrings().trimResults().splitToList(s)) {
+                hopHeaders.add(entry.toLowerCase(Locale.ENGLISH));
+            }
+        }
 
-                if (hasContent) {
-                    ByteArrayEntity entity = new ByteArrayEntity(context.context().raw(),
-                            ContentType.create(context.request().contentMimeType(), context.request().contentCharset()));
-                    request.setEntity(entity);
-                }
+        boolean hasContent = context.request().contentType() != null;
+        final String host = getHost();
+        Multimap<String, String> headers = ArrayListMultimap.create();
+        for (Map.Entry<String, List<String>> entry : context.request().headers().entrySet()) {
+            String name = entry.getKey();
+            if (HeaderNames.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+                hasContent = true;
+            }
+            if (host != null && HeaderNames.HOST.equalsIgnoreCase(name)) {
+                continue;
+            }
+            // Remove hop-by-hop headers.
+            String lower = name.toLowerCase(Locale.ENGLISH);
+            if (HOP_HEADERS.contains(lower) || hopHeaders.contains(lower)) {
+                continue;
+            }
 
-                HttpResponse response = client.execute(new HttpHost(rewrittenURI.getHost(), rewrittenURI.getPort()), request);
-                return onResult(toResult(response));
+            for (String v : entry.getValue()) {
+                headers.put(name, v);
             }
-        });
+        }
+
+        // Force the Host header if configured
+        headers.removeAll(HeaderNames.HOST);
+        if (host != null) {
+            headers.put(HeaderNames.HOST, host);
+            headers.put("X-Forwarded-Server", host);
+        } else {
+            // Set of the URI one
+            headers.put("X-Forwarded-Server", rewrittenURI.getHost());
+        }
+
+        // Add proxy headers
+        if (getVia() != null) {
+            headers.put(HeaderNames.VIA, "http/1.1 " + getVia());
+        }
+        headers.put("X-Forwarded-For", context.request().remoteAddress());
+        if (host != null) {
+            headers.put("X-Forwarded-Host", host);
+        }
 
+        updateHeaders(context, headers);
+        for (Map.Entry<String, String> s : headers.entries()) {
+            request.addHeader(s.getKey(), s.getValue());
+        }
+        // Remove content-length as it is computed by the HTTP client.
+        request.removeHeaders(HeaderNames.CONTENT_LENGTH);
+
+        if (hasContent) {
+            ByteArrayEntity entity = new ByteArrayEntity(context.context().raw(),
+                    ContentType.create(context.request().contentMimeType(), context.request().contentCharset()));
+            request.setEntity(entity);
+        }
+
+        return request;
     }
 
     protected void updateHeaders(RequestContext context, Multimap<String, String> headers) {
@@ -268,6 +483,18 @@ public class ProxyFilter implements Filter {
      * @throws URISyntaxException if the URI cannot be computed
      */
     public URI rewriteURI(Request request) throws URISyntaxException {
+        return rewriteURI(request, proxyTo);
+    }
+
+    /**
+     * Computes the URI where the request need to be transferred, on the given location.
+     *
+     * @param request the request
+     * @param proxyTo the location, with the same syntax as the {@literal proxyTo} parameter
+     * @return the URI, {@literal null} if the request path does not start with the prefix
+     * @throws URISyntaxException if the URI cannot be computed
+     */
+    protected URI rewriteURI(Request request, String proxyTo) throws URISyntaxException {
         String path = request.path();
         if (!path.startsWith(prefix)) {
             return null;
@@ -304,7 +531,25 @@ public class ProxyFilter implements Filter {
      */
     @Override
     public Pattern uri() {
-        return Pattern.compile(getPrefix() +".*");
+        return matcher().pattern();
+    }
+
+    /**
+     * Gets the matcher used to determine whether the route is handled by the filter or not. The pattern
+     * {@literal prefix.*} is compiled once, and checked as a string prefix when the prefix does not contain any
+     * special character.
+     *
+     * @return the matcher
+     */
+    @Override
+    public UriMatcher matcher() {
+        // Computed lazily, as the logger created in the constructor needs it before the prefix is read.
+        UriMatcher current = matcher;
+        if (current == null) {
+            current = UriMatcher.regex(Pattern.compile(getPrefix() + ".*"));
+            matcher = current;
+        }
+        return current;
     }
 
     /**
@@ -351,4 +596,62 @@ public class ProxyFilter implements Filter {
             return configuration.get("via");
         }
     }
+
+    /**
+     * Whether the filter uses the non-blocking client and streams the responses. In this mode, no thread waits for
+     * the proxied server, the content of the response is sent to the client while it is received, and the proxied
+     * server is not read faster than the client reads. The request content is sent as it has been read by the
+     * engine. Engines not supporting {@link org.wisdom.api.http.AsyncRenderable} read the content from a blocking
+     * stream.
+     *
+     * @return {@literal false} unless {@literal streaming} is set to {@literal true}
+     */
+    protected boolean isStreaming() {
+        if (configuration == null) {
+            return false;
+        }
+        Boolean streaming = configuration.getBoolean("streaming");
+        return streaming != null && streaming;
+    }
+
+    /**
+     * @return the maximum number of connections to the proxied server, 200 by default
+     */
+    protected int getMaxConnections() {
+        return getInteger("pool.max", 200);
+    }
+
+    /**
+     * @return the maximum number of connections to the proxied server per route, 50 by default
+     */
+    protected int getMaxConnectionsPerRoute() {
+        return getInteger("pool.max-per-route", 50);
+    }
+
+    /**
+     * @return the maximum duration in milliseconds during which an idle connection is kept alive, 30 seconds by
+     * default
+     */
+    protected long getKeepAliveDuration() {
+        if (configuration == null) {
+            return 30000L;
+        }
+        Long duration = configuration.getLong("pool.keep-alive");
+        return duration == null ? 30000L : duration;
+    }
+
+    /**
+     * @return the connection and socket timeout in milliseconds, no timeout by default
+     */
+    protected int getTimeout() {
+        return getInteger("timeout", -1);
+    }
+
+    private int getInteger(String key, int defaultValue) {
+        if (configuration == null) {
+            return defaultValue;
+        }
+        Integer value = configuration.getInteger(key);
+        return value == null ? defaultValue : value;
+    }
 }
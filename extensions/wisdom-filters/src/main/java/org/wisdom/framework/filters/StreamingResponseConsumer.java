@@ -0,0 +1,328 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.filters;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentInputStream;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.util.SharedInputBuffer;
+import org.apache.http.protocol.HttpContext;
+import org.wisdom.api.http.AsyncOutput;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * Consumes the response of the proxied server without waiting for its end. The response head is made available as
+ * soon as it is received, and the content is then consumed in one of the following ways:
+ * <ul>
+ * <li>{@linkplain #push(AsyncOutput) pushed} into the response by the I/O reactor while it is received. When the
+ * client does not read fast enough, the reactor stops reading from the connection until the client catches up. No
+ * thread waits for the content.</li>
+ * <li>{@linkplain #pull() pulled} from a bounded buffer, by a thread reading a stream. When the buffer is full, the
+ * reactor stops reading from the connection until the content is consumed.</li>
+ * </ul>
+ * In both cases, a slow client slows down the proxied server instead of accumulating the content in memory. Until
+ * the way of consuming the content is chosen, the connection is not read.
+ */
+class StreamingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+    /**
+     * The size of the chunks pushed into the response.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private enum Mode {
+        UNDECIDED, PULL, PUSH
+    }
+
+    private final SharedInputBuffer buffer;
+
+    private final SettableFuture<HttpResponse> head = SettableFuture.create();
+
+    private final Content content;
+
+    private volatile HttpResponse response;
+
+    private volatile boolean enclosed;
+
+    private volatile Future<HttpResponse> exchange;
+
+    /**
+     * The chunk receiving the content before it is pushed. Only used by the I/O reactor.
+     */
+    private ByteBuffer chunk;
+
+    /**
+     * The following fields are guarded by {@code this}.
+     */
+    private Mode mode = Mode.UNDECIDED;
+
+    private IOControl control;
+
+    private AsyncOutput output;
+
+    private boolean completed;
+
+    private Exception failure;
+
+    /**
+     * Resumes the reading of the connection once the client has caught up.
+     */
+    private final Runnable resume = new Runnable() {
+        @Override
+        public void run() {
+            IOControl current;
+            synchronized (StreamingResponseConsumer.this) {
+                current = control;
+            }
+            current.requestInput();
+        }
+    };
+
+    /**
+     * Creates a new consumer.
+     *
+     * @param size the size of the buffer holding the content not read yet, when the content is pulled
+     */
+    StreamingResponseConsumer(int size) {
+        this.buffer = new SharedInputBuffer(size);
+        this.content = new Content();
+    }
+
+    /**
+     * Sets the future of the exchange, used to abort it when the content is not entirely read.
+     *
+     * @param exchange the future
+     */
+    void exchange(Future<HttpResponse> exchange) {
+        this.exchange = exchange;
+    }
+
+    /**
+     * @return the future completed when the response head is received, or when the exchange fails
+     */
+    ListenableFuture<HttpResponse> head() {
+        return head;
+    }
+
+    /**
+     * @return whether or not the response has content
+     */
+    boolean hasContent() {
+        return enclosed;
+    }
+
+    /**
+     * Chooses to read the content from a stream.
+     *
+     * @return the stream reading the content. Reading this stream blocks until content is available.
+     * @throws IllegalStateException if the content is pushed
+     */
+    ContentInputStream pull() {
+        IOControl suspended = null;
+        synchronized (this) {
+            if (mode == Mode.PUSH) {
+                throw new IllegalStateException("The content is pushed into the response");
+            }
+            if (mode == Mode.UNDECIDED) {
+                mode = Mode.PULL;
+                suspended = control;
+            }
+        }
+        if (suspended != null) {
+            suspended.requestInput();
+        }
+        return content;
+    }
+
+    /**
+     * Chooses to push the content into the given output. This method does not block.
+     *
+     * @param output the output
+     * @throws IllegalStateException if the content is already pulled or pushed
+     */
+    void push(AsyncOutput output) {
+        IOControl suspended;
+        boolean done;
+        Exception failed;
+        synchronized (this) {
+            if (mode != Mode.UNDECIDED) {
+                throw new IllegalStateException("The content is already consumed");
+            }
+            mode = Mode.PUSH;
+            this.output = output;
+            suspended = control;
+            done = completed;
+            failed = failure;
+        }
+        if (failed != null) {
+            output.abort(failed);
+        } else if (done) {
+            output.end();
+        } else if (suspended != null) {
+            suspended.requestInput();
+        }
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+        enclosed = true;
+        head.set(response);
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl control) throws IOException {
+        Mode current;
+        synchronized (this) {
+            this.control = control;
+            current = mode;
+        }
+        if (current == Mode.UNDECIDED) {
+            // Wait until the content is pulled or pushed.
+            control.suspendInput();
+        } else if (current == Mode.PULL) {
+            buffer.consumeContent(decoder, control);
+        } else {
+            pushContent(decoder, control);
+        }
+    }
+
+    /**
+     * Pushes the available content into the output. A failure to write aborts the exchange.
+     */
+    private void pushContent(ContentDecoder decoder, IOControl control) throws IOException {
+        if (chunk == null) {
+            chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        }
+        while (decoder.read(chunk) > 0) {
+            chunk.flip();
+            boolean ready = output.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            chunk.clear();
+            if (!ready) {
+                // The client does not keep up, stop reading until it has received the content.
+                control.suspendInput();
+                output.whenReady(resume);
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult(HttpContext context) {
+        // Responses without content.
+        head.set(response);
+        AsyncOutput pushed;
+        synchronized (this) {
+            completed = true;
+            pushed = mode == Mode.PUSH ? output : null;
+        }
+        if (pushed != null) {
+            pushed.end();
+        }
+        return response;
+    }
+
+    @Override
+    protected void releaseResources() {
+        Exception exception = getException();
+        AsyncOutput pushed;
+        Exception cause;
+        synchronized (this) {
+            pushed = mode == Mode.PUSH && !completed ? output : null;
+            if (exception != null) {
+                failure = exception;
+            } else if (!completed) {
+                failure = new CancellationException("The exchange has been cancelled");
+            }
+            cause = failure;
+        }
+        if (exception != null) {
+            head.setException(exception);
+            // Unblock the reader, it reports the failure.
+            buffer.shutdown();
+        } else if (isDone() && !head.isDone()) {
+            head.cancel(false);
+            buffer.shutdown();
+        }
+        if (pushed != null) {
+            pushed.abort(cause);
+        }
+    }
+
+    /**
+     * The stream reading the content from the buffer. Unlike the regular content stream, it reports the failure of
+     * the exchange instead of truncating the content, and closing it before the end of the content aborts the
+     * exchange instead of waiting for the remaining content.
+     */
+    private final class Content extends ContentInputStream {
+
+        private boolean eof;
+
+        private Content() {
+            super(buffer);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return check(super.read());
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return check(super.read(bytes, offset, length));
+        }
+
+        private int check(int read) throws IOException {
+            if (read == -1) {
+                eof = true;
+                Exception failure = getException();
+                if (failure != null) {
+                    throw new IOException("The proxied response cannot be read entirely", failure);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            if (!eof) {
+                Future<HttpResponse> future = exchange;
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+            buffer.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.filters;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A server to which the {@link BalancerFilter} forwards requests. It keeps track of the requests being processed by
+ * the server, of its consecutive failures and of the result of the last health check.
+ * <p>
+ * A server is ejected (not selected anymore) for a given duration once the number of consecutive failures reaches
+ * the configured threshold (passive outlier detection), and while the health checks fail (active health checks).
+ */
+public class Upstream {
+
+    private final String location;
+
+    private final String name;
+
+    private final int failureThreshold;
+
+    private final long ejectionDuration;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile long ejectedUntil;
+
+    private volatile boolean healthy = true;
+
+    private Timer latency;
+
+    private Meter errors;
+
+    /**
+     * Creates a new upstream.
+     *
+     * @param location         the location of the server, with the same syntax as the {@literal proxyTo} parameter
+     *                         of the {@link ProxyFilter}
+     * @param failureThreshold the number of consecutive failures ejecting the server
+     * @param ejectionDuration the ejection duration in milliseconds
+     */
+    public Upstream(String location, int failureThreshold, long ejectionDuration) {
+        this.location = location;
+        URI uri = URI.create(location);
+        this.name = uri.getHost() + "_" + (uri.getPort() == -1 ? "default" : Integer.toString(uri.getPort()));
+        this.failureThreshold = failureThreshold;
+        this.ejectionDuration = TimeUnit.MILLISECONDS.toNanos(ejectionDuration);
+        this.ejectedUntil = System.nanoTime();
+    }
+
+    /**
+     * @return the location of the server
+     */
+    public String location() {
+        return location;
+    }
+
+    /**
+     * @return the name of the server, used in metric names ({@literal host_port})
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the number of requests being processed by the server
+     */
+    public int inflight() {
+        return inflight.get();
+    }
+
+    /**
+     * @return whether the server can be selected: it is healthy and not ejected
+     */
+    public boolean isAvailable() {
+        return healthy && System.nanoTime() - ejectedUntil >= 0;
+    }
+
+    /**
+     * @return whether the last health check succeeded
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Records the result of a health check.
+     *
+     * @param healthy whether the check succeeded
+     */
+    public void healthy(boolean healthy) {
+        this.healthy = healthy;
+        if (healthy) {
+            failures.set(0);
+        }
+    }
+
+    /**
+     * Registers the metrics of the server: the latency ({@literal prefix.name.latency}), the number of requests
+     * being processed ({@literal prefix.name.inflight}) and the failures ({@literal prefix.name.errors}).
+     *
+     * @param registry the registry
+     * @param prefix   the prefix of the metric names
+     */
+    void register(MetricRegistry registry, String prefix) {
+        String base = MetricRegistry.name(prefix, name);
+        latency = registry.timer(MetricRegistry.name(base, "latency"));
+        errors = registry.meter(MetricRegistry.name(base, "errors"));
+        registry.register(MetricRegistry.name(base, "inflight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return inflight.get();
+            }
+        });
+    }
+
+    /**
+     * Notifies that a request is sent to the server.
+     *
+     * @return the start time, to pass to {@link #completed(long, boolean)}
+     */
+    long started() {
+        inflight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Notifies that a request sent to the server has completed.
+     *
+     * @param start  the value returned by {@link #started()}
+     * @param failed whether the request has failed (error, timeout or server error)
+     */
+    void completed(long start, boolean failed) {
+        long now = System.nanoTime();
+        inflight.decrementAndGet();
+        if (latency != null) {
+            latency.update(now - start, TimeUnit.NANOSECONDS);
+        }
+        if (!failed) {
+            failures.set(0);
+            return;
+        }
+        if (errors != null) {
+            errors.mark();
+        }
+        if (failures.incrementAndGet() >= failureThreshold) {
+            failures.set(0);
+            ejectedUntil = now + ejectionDuration;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return location;
+    }
+}
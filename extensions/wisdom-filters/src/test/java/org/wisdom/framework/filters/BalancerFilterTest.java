@@ -0,0 +1,276 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.filters;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wisdom.api.configuration.Configuration;
+import org.wisdom.api.http.AsyncOutput;
+import org.wisdom.api.http.AsyncRenderable;
+import org.wisdom.api.http.AsyncResult;
+import org.wisdom.api.http.HttpMethod;
+import org.wisdom.api.http.Result;
+import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.router.Route;
+import org.wisdom.test.parents.FakeContext;
+import org.wisdom.test.parents.FakeRequest;
+import org.wisdom.test.parents.WisdomUnitTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the balancer filter against local servers.
+ */
+public class BalancerFilterTest extends WisdomUnitTest {
+
+    private Stub a;
+    private Stub b;
+    private BalancerFilter filter;
+
+    @Before
+    public void setUp() throws IOException {
+        a = new Stub("a");
+        b = new Stub("b");
+    }
+
+    @After
+    public void tearDown() {
+        if (filter != null) {
+            filter.close();
+        }
+        a.stop();
+        b.stop();
+    }
+
+    private Configuration configuration(String strategy) {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.get("prefix")).thenReturn("/lb");
+        when(configuration.get("strategy")).thenReturn(strategy);
+        when(configuration.get("hash.header")).thenReturn("X-User");
+        when(configuration.getInteger("ejection.failures")).thenReturn(2);
+        when(configuration.getList("upstreams")).thenReturn(Arrays.asList(a.location(), b.location()));
+        return configuration;
+    }
+
+    private String get(String user) throws Exception {
+        Result result = ((AsyncResult) call(user)).callable().call();
+        return result.getStatusCode() + ":" + streamToString(result);
+    }
+
+    private Result call(String user) throws Exception {
+        Route route = mock(Route.class);
+        RequestContext rc = mock(RequestContext.class);
+        FakeContext context = new FakeContext();
+        context.setPath("/lb/hello");
+        if (user != null) {
+            context.setHeader("X-User", user);
+        }
+        FakeRequest request = new FakeRequest(context).method(HttpMethod.GET).uri("/lb/hello");
+        when(rc.context()).thenReturn(context);
+        when(rc.request()).thenReturn(request);
+        return filter.call(route, rc);
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        filter = new BalancerFilter(configuration(null));
+        assertThat(filter.upstreams()).hasSize(2);
+        List<String> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(get(null));
+        }
+        assertThat(responses).containsExactly("200:a", "200:b", "200:a", "200:b");
+        assertThat(a.paths).containsOnly("/hello");
+    }
+
+    @Test
+    public void testConsistentHash() throws Exception {
+        filter = new BalancerFilter(configuration(BalancingStrategies.CONSISTENT_HASH));
+        String first = get("alice");
+        for (int i = 0; i < 5; i++) {
+            assertThat(get("alice")).isEqualTo(first);
+        }
+
+        // Move alice to the other server once hers is ejected.
+        Stub stub = first.endsWith("a") ? a : b;
+        stub.status = 500;
+        get("alice");
+        get("alice");
+        assertThat(get("alice")).isNotEqualTo(first).startsWith("200:");
+    }
+
+    @Test
+    public void testOutlierEjectionAndMetrics() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        filter = new BalancerFilter(configuration(BalancingStrategies.LEAST_OUTSTANDING_REQUESTS), null, registry);
+        b.status = 503;
+        // b fails twice and gets ejected.
+        for (int i = 0; i < 6; i++) {
+            get(null);
+        }
+        assertThat(filter.upstreams().get(1).isAvailable()).isFalse();
+        for (int i = 0; i < 4; i++) {
+            assertThat(get(null)).isEqualTo("200:a");
+        }
+
+        String prefix = "proxy._lb." + filter.upstreams().get(1).name();
+        assertThat(registry.getMeters().get(prefix + ".errors").getCount()).isEqualTo(2);
+        assertThat(registry.getTimers().get(prefix + ".latency").getCount()).isEqualTo(2);
+        assertThat(registry.getGauges().get(prefix + ".inflight").getValue()).isEqualTo(0);
+
+        filter.close();
+        assertThat(registry.getMetrics()).isEmpty();
+        filter = null;
+    }
+
+    @Test
+    public void testHealthChecks() throws Exception {
+        filter = new BalancerFilter(configuration(null));
+        Upstream upstream = filter.upstreams().get(0);
+        a.status = 500;
+        filter.check(upstream, "/health", 1000);
+        assertThat(upstream.isHealthy()).isFalse();
+        assertThat(upstream.isAvailable()).isFalse();
+        for (int i = 0; i < 4; i++) {
+            assertThat(get(null)).isEqualTo("200:b");
+        }
+
+        a.status = 200;
+        filter.check(upstream, "/health", 1000);
+        assertThat(upstream.isAvailable()).isTrue();
+        assertThat(a.paths).contains("/health");
+
+        a.stop();
+        filter.check(upstream, "/health", 1000);
+        assertThat(upstream.isHealthy()).isFalse();
+    }
+
+    @Test
+    public void testStreamingPushesTheContentWithoutWaiting() throws Exception {
+        Configuration configuration = configuration(null);
+        when(configuration.getBoolean("streaming")).thenReturn(true);
+        filter = new BalancerFilter(configuration);
+        assertThat(get(null)).isEqualTo("200:a");
+
+        // The result is completed by the client, and the content pushed by its reactor.
+        AsyncResult async = (AsyncResult) call(null);
+        assertThat(async.future()).isNotNull();
+        Result result = async.future().get(5, TimeUnit.SECONDS);
+        assertThat(result.getStatusCode()).isEqualTo(200);
+        assertThat(result.getRenderable()).isInstanceOf(AsyncRenderable.class);
+
+        SlowOutput output = new SlowOutput();
+        ((AsyncRenderable) result.getRenderable()).subscribe(null, result, output);
+        assertThat(output.ended.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(output.content.toString("UTF-8")).isEqualTo("b");
+        assertThat(output.waits).isGreaterThan(0);
+        assertThat(filter.upstreams().get(1).isAvailable()).isTrue();
+    }
+
+    /**
+     * An output telling the producer to wait after every write, and resuming it from another thread.
+     */
+    private static class SlowOutput implements AsyncOutput {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private final CountDownLatch ended = new CountDownLatch(1);
+        private volatile int waits;
+
+        @Override
+        public synchronized boolean write(byte[] bytes, int offset, int length) {
+            content.write(bytes, offset, length);
+            return false;
+        }
+
+        @Override
+        public void whenReady(final Runnable callback) {
+            waits++;
+            new Thread(callback).start();
+        }
+
+        @Override
+        public void end() {
+            ended.countDown();
+        }
+
+        @Override
+        public void abort(Throwable cause) {
+            throw new AssertionError(cause);
+        }
+    }
+
+    /**
+     * A local server answering its name.
+     */
+    private static class Stub implements HttpHandler {
+        private final String name;
+        private final HttpServer server;
+        private final List<String> paths = new ArrayList<>();
+        private volatile int status = 200;
+        private boolean stopped;
+
+        private Stub(String name) throws IOException {
+            this.name = name;
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/", this);
+            server.start();
+        }
+
+        private String location() {
+            return "http://localhost:" + server.getAddress().getPort();
+        }
+
+        private void stop() {
+            if (!stopped) {
+                stopped = true;
+                server.stop(0);
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            synchronized (paths) {
+                paths.add(exchange.getRequestURI().getPath());
+            }
+            byte[] body = name.getBytes(Charsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
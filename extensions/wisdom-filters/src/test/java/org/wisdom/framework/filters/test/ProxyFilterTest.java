@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.wisdom.api.configuration.Configuration;
 import org.wisdom.api.http.*;
 import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.interception.UriMatcher;
 import org.wisdom.api.router.Route;
 import org.wisdom.framework.filters.ProxyFilter;
 import org.wisdom.test.parents.FakeContext;
@@ -71,6 +72,43 @@ public class ProxyFilterTest extends WisdomUnitTest {
         assertThat(result.getHeaders().get(HeaderNames.CONTENT_TYPE)).isEqualTo(MimeTypes.HTML);
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        ProxyFilter filter = new ProxyFilter() {
+
+            @Override
+            protected String getProxyTo() {
+                return "http://perdu.com";
+            }
+
+            @Override
+            protected boolean isStreaming() {
+                return true;
+            }
+        };
+        assertThat(filter.getAsyncClient()).isNotNull();
+
+        Route route = mock(Route.class);
+        RequestContext rc = mock(RequestContext.class);
+        FakeContext context = new FakeContext();
+        context.setPath("/").setHeader(HttpHeaders.CONNECTION, "keep-alive");
+
+        FakeRequest request = new FakeRequest(context).method(HttpMethod.GET).uri("/");
+
+        when(rc.context()).thenReturn(context);
+        when(rc.request()).thenReturn(request);
+        try {
+            Result result = ((AsyncResult) filter.call(route, rc)).callable().call();
+            assertThat(result).isNotNull();
+            assertThat(result.getStatusCode()).isEqualTo(Status.OK);
+            assertThat(result.getRenderable()).isInstanceOf(AsyncRenderable.class);
+            assertThat(streamToString(result)).contains("Pas de panique");
+            assertThat(result.getHeaders().get(HeaderNames.CONTENT_TYPE)).isEqualTo(MimeTypes.HTML);
+        } finally {
+            filter.close();
+        }
+    }
+
     @Test
     public void testQuery() throws Exception {
         ProxyFilter filter = new ProxyFilter() {
@@ -282,4 +320,27 @@ public class ProxyFilterTest extends WisdomUnitTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testThatThePrefixIsMatchedWithoutRegex() throws Exception {
+        ProxyFilter filter = new ProxyFilter() {
+            @Override
+            protected String getPrefix() {
+                return "/proxy";
+            }
+
+            @Override
+            protected String getProxyTo() {
+                return "http://example.com";
+            }
+        };
+
+        assertThat(filter.matcher().kind()).isEqualTo(UriMatcher.Kind.PREFIX);
+        assertThat(filter.matcher().value()).isEqualTo("/proxy");
+        assertThat(filter.matcher().matches("/proxy/foo")).isTrue();
+        assertThat(filter.matcher().matches("/foo")).isFalse();
+        // The pattern is compiled once.
+        assertThat(filter.uri()).isSameAs(filter.uri());
+        assertThat(filter.uri().pattern()).isEqualTo("/proxy.*");
+    }
+
+}
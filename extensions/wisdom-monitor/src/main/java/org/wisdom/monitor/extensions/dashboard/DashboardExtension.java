@@ -97,6 +97,7 @@ public class DashboardExtension extends DefaultController implements MonitorExte
 
     private Cancellable task;
     private HttpMetricFilter httpMetricFilter;
+    private RouteMetrics routeMetrics;
     private ServiceRegistration<MetricRegistry> reg;
 
     /**
@@ -123,6 +124,12 @@ public class DashboardExtension extends DefaultController implements MonitorExte
             logger().info("Registering HTTP metrics");
             this.httpMetricFilter = new HttpMetricFilter(bc, configuration, registry);
             httpMetricFilter.start();
+
+            if (configuration.getBooleanWithDefault("monitor.http.routes.enabled", true)) {
+                logger().info("Registering per-route HTTP metrics");
+                this.routeMetrics = new RouteMetrics(bc, configuration, registry);
+                routeMetrics.start();
+            }
         }
 
         if (configuration.getBooleanWithDefault("monitor.jmx.enabled", true)) {
@@ -185,7 +192,18 @@ public class DashboardExtension extends DefaultController implements MonitorExte
         return ImmutableMap.<String, Object>builder()
                 .put("gauges", registry.getGauges())
                 .put("activeRequests", active)
-                .put("timers", registry.getTimers())
+                .put("timers", registry.getTimers(new MetricFilter() {
+                    /**
+                     * Excludes the route timers, summarized in the 'routes' entry.
+                     * @param s the name
+                     * @param metric the metric
+                     * @return {@code true} if the metric is not a route timer
+                     */
+                    public boolean matches(String s, Metric metric) {
+                        return !s.startsWith(RouteMetrics.PREFIX + ".");
+                    }
+                }))
+                .put("routes", routeMetrics == null ? ImmutableMap.of() : routeMetrics.summary())
                 .put("counter", registry.getCounters())
                 .put("meter", registry.getMeters())
                 .put("health", getHealth())
@@ -269,6 +287,11 @@ public class DashboardExtension extends DefaultController implements MonitorExte
             httpMetricFilter.stop();
         }
 
+        if (routeMetrics != null) {
+            routeMetrics.stop();
+            routeMetrics = null;
+        }
+
         registry.removeMatching(new MetricFilter() {
             /**
              * Returns true to remove all metrics.
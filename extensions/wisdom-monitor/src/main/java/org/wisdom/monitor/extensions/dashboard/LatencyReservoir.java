@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.monitor.extensions.dashboard;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link Reservoir} of durations keeping all the recorded values in logarithmic buckets, as HDR histograms do:
+ * values are rounded to the microsecond, and each power of two is split in 16 buckets, so the relative error is
+ * below 7%. Values greater than one hour are counted as one hour.
+ * <p>
+ * Recording a value increments an atomic counter, it neither locks nor allocates any object. Unlike the default
+ * reservoirs, the values are never discarded, so snapshots describe all the values recorded since the creation of
+ * the reservoir. Snapshots are made of {@link #SNAPSHOT_SIZE} values evenly distributed over the recorded values
+ * (their quantiles), the last value being the maximum recorded value.
+ */
+public class LatencyReservoir implements Reservoir {
+
+    /**
+     * The number of values in the snapshots.
+     */
+    static final int SNAPSHOT_SIZE = 1028;
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final long MAX_VALUE = TimeUnit.HOURS.toMicros(1);
+
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * The maximum recorded value, in nanoseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Computes the index of the bucket of the given value. The values lower than 16 have their own bucket, then
+     * each power of two is split in 16 buckets.
+     *
+     * @param value the value, in microseconds
+     * @return the index
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Computes the lowest value of the given bucket.
+     *
+     * @param index the index of the bucket
+     * @return the lowest value, in microseconds
+     */
+    static long lowest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    }
+
+    /**
+     * Computes the width of the given bucket.
+     *
+     * @param index the index of the bucket
+     * @return the number of values (microseconds) counted in the bucket
+     */
+    static long width(int index) {
+        if (index < SUB_BUCKETS) {
+            return 1;
+        }
+        return 1L << ((index >>> SUB_BUCKET_BITS) - 1);
+    }
+
+    /**
+     * @return the number of recorded values, bounded to {@link Integer#MAX_VALUE}
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(count.get(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param value the duration in nanoseconds, ignored if negative
+     */
+    @Override
+    public void update(long value) {
+        if (value < 0) {
+            return;
+        }
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(value), MAX_VALUE);
+        counts.incrementAndGet(index(micros));
+        count.incrementAndGet();
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Builds a snapshot made of the quantiles of the recorded values.
+     *
+     * @return the snapshot, the values are in nanoseconds
+     */
+    @Override
+    public Snapshot getSnapshot() {
+        long maximum = max.get();
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        if (total == 0) {
+            return new Snapshot(new long[0]);
+        }
+
+        int size = (int) Math.min(total, SNAPSHOT_SIZE);
+        long[] values = new long[size];
+        int bucket = 0;
+        long seen = copy[0];
+        for (int i = 0; i < size; i++) {
+            // The rank of the value representing the i-th quantile.
+            long rank = (long) ((i + 0.5) * total / size);
+            while (seen <= rank && bucket < BUCKETS - 1) {
+                bucket++;
+                seen += copy[bucket];
+            }
+            // Use the middle of the bucket, without exceeding the maximum.
+            values[i] = Math.min(TimeUnit.MICROSECONDS.toNanos(lowest(bucket) + width(bucket) / 2), maximum);
+        }
+        values[size - 1] = maximum;
+        return new Snapshot(values);
+    }
+}
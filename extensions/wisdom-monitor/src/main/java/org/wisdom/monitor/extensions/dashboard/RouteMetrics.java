@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.monitor.extensions.dashboard;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.engine.RequestPhase;
+import org.wisdom.api.engine.RequestRecorder;
+import org.wisdom.api.router.Route;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RequestRecorder} service computing the latency histograms of every route ({@literal METHOD uri}),
+ * for every request phase. The histograms are registered in the metric registry as timers named
+ * {@literal http.routes.METHOD uri.phase}, backed by {@link LatencyReservoir}s, so they are also exposed through
+ * JMX. Requests without route are recorded under {@literal http.routes.unbound}, and the routes exceeding the
+ * {@literal monitor.http.routes.max} parameter (200 by default) under {@literal http.routes.others}.
+ */
+public class RouteMetrics implements RequestRecorder {
+
+    /**
+     * The prefix of the metric names.
+     */
+    public static final String PREFIX = "http.routes";
+
+    private static final String UNBOUND = "unbound";
+
+    private static final String OTHERS = "others";
+
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final BundleContext context;
+
+    private final MetricRegistry registry;
+
+    private final int maxRoutes;
+
+    /**
+     * The timers of the routes, by route object. Route objects are kept while the controller is bound, so the
+     * lookup does not compute the route name. Keys are weak and compared by identity.
+     */
+    private final Cache<Route, Timer[]> timers = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * The timers of the routes, by route name.
+     */
+    private final ConcurrentMap<String, Timer[]> names = new ConcurrentHashMap<>();
+
+    private final Timer[] unbound;
+
+    private final Timer[] others;
+
+    private ServiceRegistration<RequestRecorder> reg;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param context       the bundle context
+     * @param configuration the application configuration
+     * @param registry      the metric registry
+     */
+    public RouteMetrics(BundleContext context, ApplicationConfiguration configuration, MetricRegistry registry) {
+        this.context = context;
+        this.registry = registry;
+        this.maxRoutes = configuration.getIntegerWithDefault("monitor.http.routes.max", 200);
+        this.unbound = create(UNBOUND);
+        this.others = create(OTHERS);
+    }
+
+    /**
+     * Starts recording the request phases.
+     */
+    public void start() {
+        reg = context.registerService(RequestRecorder.class, this, null);
+    }
+
+    /**
+     * Stops recording the request phases.
+     */
+    public void stop() {
+        if (reg != null) {
+            reg.unregister();
+            reg = null;
+        }
+    }
+
+    /**
+     * Records the duration of a phase. Once the timers of the route are created, it only updates atomic counters.
+     *
+     * @param route    the route handling the request, may be unbound or {@literal null}
+     * @param phase    the phase
+     * @param duration the duration in nanoseconds
+     */
+    @Override
+    public void record(Route route, RequestPhase phase, long duration) {
+        get(route)[phase.ordinal()].update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer[] get(Route route) {
+        if (route == null || route.isUnbound()) {
+            return unbound;
+        }
+        // Parameterized routes are wrapped in a new object for every request, use the registered route.
+        Route canonical = route.getCanonicalRoute();
+        Timer[] current = timers.getIfPresent(canonical);
+        if (current == null) {
+            current = add(canonical);
+        }
+        return current;
+    }
+
+    private synchronized Timer[] add(Route route) {
+        Timer[] current = timers.getIfPresent(route);
+        if (current != null) {
+            return current;
+        }
+        String name = name(route);
+        current = names.get(name);
+        if (current == null) {
+            if (names.size() >= maxRoutes) {
+                // Named timers are never removed, so the route is recorded under 'others' until it is collected.
+                current = others;
+            } else {
+                current = create(name);
+                names.put(name, current);
+            }
+        }
+        timers.put(route, current);
+        return current;
+    }
+
+    /**
+     * Computes the name of the given route, used in the metric names.
+     *
+     * @param route the route
+     * @return the name, {@literal METHOD uri}
+     */
+    static String name(Route route) {
+        // Remove the characters forbidden in JMX names.
+        return (route.getHttpMethod() + " " + route.getUrl()).replaceAll("[,=:*?\"\\n]", "_");
+    }
+
+    private Timer[] create(String name) {
+        Timer[] array = new Timer[PHASES.length];
+        for (RequestPhase phase : PHASES) {
+            String metric = MetricRegistry.name(PREFIX, name, phase.name().toLowerCase(Locale.ENGLISH));
+            Metric existing = registry.getMetrics().get(metric);
+            if (existing instanceof Timer) {
+                array[phase.ordinal()] = (Timer) existing;
+            } else {
+                array[phase.ordinal()] = registry.register(metric, new Timer(new LatencyReservoir()));
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Builds a summary of the histograms of every route: for every phase, the number of requests, the mean, the
+     * median, the 95th and 99th percentiles and the maximum, in milliseconds. Phases without values are omitted.
+     *
+     * @return the summary, sorted by route name
+     */
+    public SortedMap<String, Map<String, Map<String, Object>>> summary() {
+        SortedMap<String, Map<String, Map<String, Object>>> summary = new TreeMap<>();
+        if (unbound[RequestPhase.TOTAL.ordinal()].getCount() > 0) {
+            summary.put(UNBOUND, summary(unbound));
+        }
+        if (others[RequestPhase.TOTAL.ordinal()].getCount() > 0) {
+            summary.put(OTHERS, summary(others));
+        }
+        for (Map.Entry<String, Timer[]> entry : names.entrySet()) {
+            summary.put(entry.getKey(), summary(entry.getValue()));
+        }
+        return summary;
+    }
+
+    private static Map<String, Map<String, Object>> summary(Timer[] array) {
+        Map<String, Map<String, Object>> phases = new LinkedHashMap<>();
+        for (RequestPhase phase : PHASES) {
+            Timer timer = array[phase.ordinal()];
+            if (timer.getCount() == 0) {
+                continue;
+            }
+            Snapshot snapshot = timer.getSnapshot();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", timer.getCount());
+            values.put("mean", toMillis(snapshot.getMean()));
+            values.put("p50", toMillis(snapshot.getMedian()));
+            values.put("p95", toMillis(snapshot.get95thPercentile()));
+            values.put("p99", toMillis(snapshot.get99thPercentile()));
+            values.put("max", toMillis(snapshot.getMax()));
+            phases.put(phase.name().toLowerCase(Locale.ENGLISH), values);
+        }
+        return phases;
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -53,6 +53,8 @@ public class DashboardExtensionTest {
         // HTTP
         when(configuration.getWithDefault("monitor.http.interception", ".*")).thenReturn(".*");
         when(configuration.getIntegerWithDefault("monitor.http.priority", 10000)).thenReturn(10000);
+        when(configuration.getBooleanWithDefault("monitor.http.routes.enabled", true)).thenReturn(true);
+        when(configuration.getIntegerWithDefault("monitor.http.routes.max", 200)).thenReturn(200);
 
         BundleContext context = mock(BundleContext.class);
 
@@ -75,6 +77,7 @@ public class DashboardExtensionTest {
         assertThat(extension.registry.counter("http.activeRequests")).isNotNull();
         assertThat(extension.registry.meter("http.responseCodes.others")).isNotNull();
         assertThat(extension.registry.timer("http.requests")).isNotNull();
+        assertThat(extension.registry.getTimers()).containsKey("http.routes.unbound.total");
 
         extension.stop();
     }
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.monitor.extensions.dashboard;
+
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class LatencyReservoirTest {
+
+    @Test
+    public void testBuckets() {
+        long previous = -1;
+        for (int index = 0; index < 400; index++) {
+            long lowest = LatencyReservoir.lowest(index);
+            assertThat(lowest).isGreaterThan(previous);
+            assertThat(LatencyReservoir.index(lowest)).isEqualTo(index);
+            assertThat(LatencyReservoir.index(lowest + LatencyReservoir.width(index) - 1)).isEqualTo(index);
+            assertThat(LatencyReservoir.index(lowest + LatencyReservoir.width(index))).isEqualTo(index + 1);
+            previous = lowest;
+        }
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        LatencyReservoir reservoir = new LatencyReservoir();
+        assertThat(reservoir.size()).isEqualTo(0);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testQuantiles() {
+        LatencyReservoir reservoir = new LatencyReservoir();
+        // 1 to 10000 microseconds.
+        for (int i = 1; i <= 10000; i++) {
+            reservoir.update(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        reservoir.update(-1);
+        assertThat(reservoir.size()).isEqualTo(10000);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(LatencyReservoir.SNAPSHOT_SIZE);
+        assertThat(snapshot.getMedian()).isEqualTo(5000000, offset(5000000 * 0.07));
+        assertThat(snapshot.get99thPercentile()).isEqualTo(9900000, offset(9900000 * 0.07));
+        assertThat(snapshot.getMax()).isEqualTo(10000000);
+        assertThat(snapshot.getMean()).isEqualTo(5000000, offset(5000000 * 0.07));
+    }
+
+    @Test
+    public void testLargeValues() {
+        LatencyReservoir reservoir = new LatencyReservoir();
+        reservoir.update(TimeUnit.HOURS.toNanos(3));
+        reservoir.update(1);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.getMin()).isEqualTo(0);
+        assertThat(snapshot.getMax()).isEqualTo(TimeUnit.HOURS.toNanos(3));
+    }
+}
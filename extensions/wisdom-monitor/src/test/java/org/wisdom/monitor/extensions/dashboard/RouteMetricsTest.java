@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.monitor.extensions.dashboard;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.engine.RequestPhase;
+import org.wisdom.api.engine.RequestRecorder;
+import org.wisdom.api.http.HttpMethod;
+import org.wisdom.api.router.Route;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class RouteMetricsTest {
+
+    private MetricRegistry registry = new MetricRegistry();
+
+    private RouteMetrics create(int max) {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        when(configuration.getIntegerWithDefault("monitor.http.routes.max", 200)).thenReturn(max);
+        return new RouteMetrics(mock(BundleContext.class), configuration, registry);
+    }
+
+    private static Route route(HttpMethod method, String uri) {
+        Route route = mock(Route.class);
+        when(route.getHttpMethod()).thenReturn(method);
+        when(route.getUrl()).thenReturn(uri);
+        when(route.getCanonicalRoute()).thenReturn(route);
+        return route;
+    }
+
+    @Test
+    public void testPerRequestRoutesShareTheTimersOfTheirCanonicalRoute() {
+        RouteMetrics metrics = create(200);
+        Route delegate = route(HttpMethod.GET, "/foo/{id}");
+        Route first = mock(Route.class);
+        when(first.getCanonicalRoute()).thenReturn(delegate);
+        Route second = mock(Route.class);
+        when(second.getCanonicalRoute()).thenReturn(delegate);
+
+        metrics.record(first, RequestPhase.TOTAL, 1000);
+        metrics.record(second, RequestPhase.TOTAL, 1000);
+
+        assertThat(metrics.summary()).containsOnlyKeys("GET /foo/{id}");
+        assertThat(registry.getTimers().get("http.routes.GET /foo/{id}.total").getCount()).isEqualTo(2);
+        // The name is computed from the canonical route, once.
+        verify(delegate, times(1)).getUrl();
+        verify(first, never()).getUrl();
+        verify(second, never()).getUrl();
+    }
+
+    @Test
+    public void testRecording() {
+        RouteMetrics metrics = create(200);
+        Route route = route(HttpMethod.GET, "/foo/{id}");
+        metrics.record(route, RequestPhase.ACTION, TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.record(route, RequestPhase.ACTION, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.record(route, RequestPhase.TOTAL, TimeUnit.MILLISECONDS.toNanos(30));
+
+        assertThat(registry.getTimers().get("http.routes.GET /foo/{id}.action").getCount()).isEqualTo(2);
+        assertThat(registry.getTimers().get("http.routes.GET /foo/{id}.total").getCount()).isEqualTo(1);
+        // JMX forbids some characters.
+        assertThat(RouteMetrics.name(route(HttpMethod.GET, "/foo/{path*}"))).isEqualTo("GET /foo/{path_}");
+
+        Map<String, Map<String, Object>> summary = metrics.summary().get("GET /foo/{id}");
+        assertThat(summary).containsOnlyKeys("action", "total");
+        assertThat(summary.get("action").get("count")).isEqualTo(2L);
+        assertThat((Double) summary.get("action").get("max")).isEqualTo(20.0);
+        assertThat(metrics.summary()).doesNotContainKey("unbound");
+    }
+
+    @Test
+    public void testUnboundAndOtherRoutes() {
+        RouteMetrics metrics = create(1);
+        Route unbound = route(HttpMethod.GET, "/missing");
+        when(unbound.isUnbound()).thenReturn(true);
+        metrics.record(unbound, RequestPhase.TOTAL, 1000);
+        metrics.record(null, RequestPhase.TOTAL, 1000);
+        metrics.record(route(HttpMethod.GET, "/a"), RequestPhase.TOTAL, 1000);
+        Route other = route(HttpMethod.POST, "/b");
+        metrics.record(other, RequestPhase.TOTAL, 1000);
+        metrics.record(other, RequestPhase.TOTAL, 1000);
+
+        assertThat(metrics.summary()).containsOnlyKeys("unbound", "others", "GET /a");
+        assertThat(metrics.summary().get("unbound").get("total").get("count")).isEqualTo(2L);
+        assertThat(metrics.summary().get("others").get("total").get("count")).isEqualTo(2L);
+        // The overflowing route is cached, its name is computed once.
+        verify(other, times(1)).getUrl();
+    }
+
+    @Test
+    public void testRegistration() {
+        BundleContext context = mock(BundleContext.class);
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        when(configuration.getIntegerWithDefault("monitor.http.routes.max", 200)).thenReturn(200);
+        RouteMetrics metrics = new RouteMetrics(context, configuration, registry);
+        metrics.start();
+        verify(context).registerService(RequestRecorder.class, metrics, null);
+    }
+}
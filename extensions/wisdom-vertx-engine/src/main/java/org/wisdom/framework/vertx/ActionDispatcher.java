@@ -0,0 +1,325 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.vertx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisdom.api.annotations.Dispatch;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.router.Route;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which threads invoke the actions, and runs the blocking work on a bounded worker pool so it does not
+ * delay the other requests handled by the event loops.
+ * <p/>
+ * The threads invoking the action of a route are selected from:
+ * <ol>
+ * <li>the {@literal vertx.dispatch.worker} and {@literal vertx.dispatch.event-loop} configuration lists,
+ * containing controller class names</li>
+ * <li>the {@link Dispatch} annotation of the action method, then of the controller class</li>
+ * <li>the {@literal vertx.dispatch.mode} configuration key, {@literal worker} (default) or
+ * {@literal event-loop}</li>
+ * </ol>
+ * The worker pool is configured using {@literal vertx.dispatch.threads} (20 by default) and
+ * {@literal vertx.dispatch.queue}, the number of tasks waiting for a thread before rejecting new ones (1000 by
+ * default).
+ * <p/>
+ * The time spent by the event loops dispatching the requests is exposed with the worker pool statistics through
+ * JMX. A warning is logged when a dispatch blocks an event loop longer than {@literal vertx.dispatch.blocked}
+ * milliseconds (100 by default).
+ */
+public class ActionDispatcher implements ActionDispatcherMBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionDispatcher.class);
+
+    /**
+     * The name of the registered MBean.
+     */
+    public static final String OBJECT_NAME = "org.wisdom.vertx:type=ActionDispatcher";
+
+    private static final String EVENT_LOOP = "event-loop";
+
+    private final Dispatch.Mode defaultMode;
+
+    private final Set<String> workerControllers;
+
+    private final Set<String> eventLoopControllers;
+
+    private final long threshold;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The dispatch mode of each action, computed on the first request.
+     */
+    private final ConcurrentMap<Method, Dispatch.Mode> modes = new ConcurrentHashMap<>();
+
+    private final AtomicLong tasks = new AtomicLong();
+
+    private final AtomicLong time = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    private final AtomicLong blocked = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private ObjectName name;
+
+    /**
+     * Creates the dispatcher. {@link #start()} must be called to expose the statistics.
+     *
+     * @param configuration the application configuration
+     */
+    public ActionDispatcher(ApplicationConfiguration configuration) {
+        String mode = configuration.getWithDefault("vertx.dispatch.mode", null);
+        defaultMode = EVENT_LOOP.equalsIgnoreCase(mode) ? Dispatch.Mode.EVENT_LOOP : Dispatch.Mode.WORKER;
+        workerControllers = toSet(configuration.getList("vertx.dispatch.worker"));
+        eventLoopControllers = toSet(configuration.getList("vertx.dispatch.event-loop"));
+        threshold = TimeUnit.MILLISECONDS.toNanos(getInteger(configuration, "vertx.dispatch.blocked", 100));
+
+        int threads = getInteger(configuration, "vertx.dispatch.threads", 20);
+        int queue = getInteger(configuration, "vertx.dispatch.queue", 1000);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queue), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Reads a positive integer from the configuration.
+     *
+     * @return the value, or the default value if the key is not set or not positive
+     */
+    private static int getInteger(ApplicationConfiguration configuration, String key, int defaultValue) {
+        Integer value = configuration.getIntegerWithDefault(key, defaultValue);
+        return value == null || value <= 0 ? defaultValue : value;
+    }
+
+    private static Set<String> toSet(List<String> list) {
+        if (list == null || list.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(list);
+    }
+
+    /**
+     * Registers the MBean.
+     */
+    public void start() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, objectName);
+            } catch (InstanceAlreadyExistsException e) { //NOSONAR
+                // Left by a previous server not stopped properly.
+                server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+            }
+            name = objectName;
+        } catch (Exception e) {
+            LOGGER.warn("Cannot register the action dispatcher MBean", e);
+        }
+    }
+
+    /**
+     * Unregisters the MBean and stops the worker pool. The tasks already submitted are completed.
+     */
+    public void stop() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception e) {
+                LOGGER.debug("Cannot unregister the action dispatcher MBean", e);
+            }
+            name = null;
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the threads invoking the action of the given route. Unbound routes are handled by the event loop.
+     *
+     * @param route the route
+     * @return the dispatch mode
+     */
+    public Dispatch.Mode mode(Route route) {
+        Method method = route.getControllerMethod();
+        if (route.isUnbound() || method == null) {
+            return Dispatch.Mode.EVENT_LOOP;
+        }
+        Dispatch.Mode mode = modes.get(method);
+        if (mode == null) {
+            mode = resolve(route.getControllerClass(), method);
+            modes.putIfAbsent(method, mode);
+        }
+        return mode;
+    }
+
+    private Dispatch.Mode resolve(Class<?> controller, Method method) {
+        String className = controller == null ? method.getDeclaringClass().getName() : controller.getName();
+        if (workerControllers.contains(className)) {
+            return Dispatch.Mode.WORKER;
+        }
+        if (eventLoopControllers.contains(className)) {
+            return Dispatch.Mode.EVENT_LOOP;
+        }
+        Dispatch dispatch = method.getAnnotation(Dispatch.class);
+        if (dispatch == null && controller != null) {
+            dispatch = controller.getAnnotation(Dispatch.class);
+        }
+        return dispatch == null ? defaultMode : dispatch.value();
+    }
+
+    /**
+     * Submits a task to the worker pool.
+     *
+     * @param task the task
+     * @return {@literal true} if the task was accepted, {@literal false} if the pool is saturated or stopped
+     */
+    public boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) { //NOSONAR
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Submits a task to the worker pool, or runs it in the calling thread if the pool is saturated. Used to move
+     * CPU-bound or blocking work (encoding, rendering) off the event loops: the tasks run by the caller are counted
+     * (see {@link #getWorkerFallbacks()}), as they delay the other requests handled by the event loop.
+     *
+     * @param task the task
+     */
+    public void executeOrRun(Runnable task) {
+        if (!execute(task)) {
+            fallbacks.incrementAndGet();
+            LOGGER.debug("The worker pool is saturated, running the task in the calling thread");
+            task.run();
+        }
+    }
+
+    /**
+     * Records the time spent by an event loop on a request.
+     *
+     * @param route    the route, {@literal null} if none
+     * @param duration the duration in nanoseconds
+     */
+    public void eventLoop(Route route, long duration) {
+        tasks.incrementAndGet();
+        time.addAndGet(duration);
+        long current = max.get();
+        while (duration > current && !max.compareAndSet(current, duration)) {
+            current = max.get();
+        }
+        if (duration > threshold) {
+            blocked.incrementAndGet();
+            LOGGER.warn("The event loop was blocked for {} ms by {}, consider dispatching it to the worker pool",
+                    TimeUnit.NANOSECONDS.toMillis(duration), route == null ? "a request" : route);
+        }
+    }
+
+    @Override
+    public long getEventLoopTasks() {
+        return tasks.get();
+    }
+
+    @Override
+    public double getEventLoopTime() {
+        return toMillis(time.get());
+    }
+
+    @Override
+    public double getEventLoopMaxTime() {
+        return toMillis(max.get());
+    }
+
+    @Override
+    public long getEventLoopBlocked() {
+        return blocked.get();
+    }
+
+    @Override
+    public int getWorkerPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    @Override
+    public int getWorkerActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getWorkerQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public long getWorkerRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public long getWorkerFallbacks() {
+        return fallbacks.get();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    /**
+     * Creates named daemon threads, so the pool does not prevent the JVM from stopping.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "wisdom-vertx-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
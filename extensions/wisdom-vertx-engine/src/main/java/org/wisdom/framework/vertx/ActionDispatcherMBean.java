@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.vertx;
+
+/**
+ * The management interface of the {@link ActionDispatcher}, registered as
+ * {@literal org.wisdom.vertx:type=ActionDispatcher}. Durations are in milliseconds.
+ */
+public interface ActionDispatcherMBean {
+
+    /**
+     * @return the number of tasks (request dispatches) executed by the event loops
+     */
+    long getEventLoopTasks();
+
+    /**
+     * @return the total time spent by the event loops executing the dispatches
+     */
+    double getEventLoopTime();
+
+    /**
+     * @return the longest time an event loop was blocked by a dispatch
+     */
+    double getEventLoopMaxTime();
+
+    /**
+     * @return the number of dispatches having blocked an event loop longer than the configured threshold
+     */
+    long getEventLoopBlocked();
+
+    /**
+     * @return the number of worker threads
+     */
+    int getWorkerPoolSize();
+
+    /**
+     * @return the number of worker threads executing a task
+     */
+    int getWorkerActiveCount();
+
+    /**
+     * @return the number of tasks waiting for a worker thread
+     */
+    int getWorkerQueueSize();
+
+    /**
+     * @return the number of tasks rejected because the queue was full
+     */
+    long getWorkerRejected();
+
+    /**
+     * @return the number of rejected tasks run by the calling thread instead, usually an event loop
+     */
+    long getWorkerFallbacks();
+}
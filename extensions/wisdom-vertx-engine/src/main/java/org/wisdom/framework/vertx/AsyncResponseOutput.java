@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.vertx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServerResponse;
+import org.wisdom.api.http.AsyncOutput;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The output receiving the content of an {@link org.wisdom.api.http.AsyncRenderable}, written into a chunked
+ * Vert.x response. The write queue of the response is bounded: when it is full, the producer is told to wait, and
+ * is resumed by the drain handler of the response, so the content is never accumulated in memory.
+ */
+public class AsyncResponseOutput implements AsyncOutput {
+
+    /**
+     * The number of bytes the write queue holds before the producer is told to wait.
+     */
+    private static final int WRITE_QUEUE_SIZE = 64 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncResponseOutput.class);
+
+    private final HttpServerResponse response;
+
+    private final boolean keepAlive;
+
+    private final Handler<Void> completion;
+
+    private final AtomicReference<Runnable> pending = new AtomicReference<>();
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new output. The status and headers of the response must have been set before.
+     *
+     * @param response   the response, must be chunked
+     * @param keepAlive  whether or not the connection is kept open once the response is ended
+     * @param completion called once, when the response is ended, aborted, or when the connection is closed
+     */
+    public AsyncResponseOutput(HttpServerResponse response, boolean keepAlive, Handler<Void> completion) {
+        this.response = response;
+        this.keepAlive = keepAlive;
+        this.completion = completion;
+        response.setWriteQueueMaxSize(WRITE_QUEUE_SIZE);
+        response.closeHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                closed = true;
+                complete();
+                // Let the producer notice that the connection is closed.
+                resume();
+            }
+        });
+    }
+
+    @Override
+    public boolean write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed || completed.get()) {
+            throw new IOException("The connection is closed");
+        }
+        byte[] chunk = new byte[length];
+        System.arraycopy(bytes, offset, chunk, 0, length);
+        response.write(new Buffer(chunk));
+        return !response.writeQueueFull();
+    }
+
+    @Override
+    public void whenReady(Runnable callback) {
+        pending.set(callback);
+        response.drainHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                resume();
+            }
+        });
+        // The queue may have been drained before the handler was set.
+        if (closed || !response.writeQueueFull()) {
+            resume();
+        }
+    }
+
+    @Override
+    public void end() {
+        if (completed.get()) {
+            return;
+        }
+        response.end();
+        if (!keepAlive) {
+            response.close();
+        }
+        complete();
+    }
+
+    @Override
+    public void abort(Throwable cause) {
+        // The headers are already sent, we can only close the connection.
+        LOGGER.error("Cannot send the content of the response", cause);
+        if (!closed) {
+            response.close();
+        }
+        complete();
+    }
+
+    private void resume() {
+        Runnable callback = pending.getAndSet(null);
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private void complete() {
+        if (completed.compareAndSet(false, true)) {
+            completion.handle(null);
+        }
+    }
+}
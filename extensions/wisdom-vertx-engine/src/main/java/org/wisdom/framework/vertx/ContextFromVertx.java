@@ -28,6 +28,7 @@ import org.wisdom.api.cookies.Cookie;
 import org.wisdom.api.cookies.Cookies;
 import org.wisdom.api.cookies.FlashCookie;
 import org.wisdom.api.cookies.SessionCookie;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.http.*;
 import org.wisdom.api.router.Route;
 import org.wisdom.framework.vertx.cookies.CookieHelper;
@@ -67,6 +68,14 @@ public class ContextFromVertx implements Context {
     private RequestFromVertx request;
     private org.vertx.java.core.Context vertxContext;
 
+    /**
+     * The recorder receiving the duration of the request phases ({@literal null} if none), and the start times
+     * of the request and of the response write. They are managed by the {@link HttpHandler}.
+     */
+    volatile RequestRecorder recorder;
+    volatile long started;
+    volatile long writeStarted;
+
 
     /**
      * Creates a new context.
@@ -20,8 +20,13 @@
 package org.wisdom.framework.vertx;
 
 import akka.dispatch.OnComplete;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.handler.codec.http.ServerCookieEncoder;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
@@ -31,17 +36,24 @@ import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.HttpServerResponse;
 import org.vertx.java.core.streams.Pump;
+import org.wisdom.api.annotations.Dispatch;
 import org.wisdom.api.bodies.NoHttpBody;
 import org.wisdom.api.content.ContentCodec;
+import org.wisdom.api.engine.RequestPhase;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.http.*;
 import org.wisdom.api.router.Route;
 import org.wisdom.framework.vertx.cookies.CookieHelper;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Handles HTTP Request. Don't forget that request may arrive as chunk.
@@ -55,8 +67,14 @@ public class HttpHandler implements Handler<HttpServerRequest> {
             BuildConstants.VERTX_VERSION;
 
     private final static Logger LOGGER = LoggerFactory.getLogger(HttpHandler.class);
+
+    /**
+     * The size of the chunks written by streamed responses.
+     */
+    private static final int BUFFER_SIZE = 8192;
     private final ServiceAccessor accessor;
     private final Vertx vertx;
+    private final ActionDispatcher actions;
 
 
     /**
@@ -64,10 +82,12 @@ public class HttpHandler implements Handler<HttpServerRequest> {
      *
      * @param vertx    the vertx singleton
      * @param accessor the accessor
+     * @param actions  the dispatcher selecting the threads invoking the actions
      */
-    public HttpHandler(Vertx vertx, ServiceAccessor accessor) {
+    public HttpHandler(Vertx vertx, ServiceAccessor accessor, ActionDispatcher actions) {
         this.accessor = accessor;
         this.vertx = vertx;
+        this.actions = actions;
     }
 
     /**
@@ -100,45 +120,105 @@ public class HttpHandler implements Handler<HttpServerRequest> {
     private static void cleanup(ContextFromVertx context) {
         // Release all resources, especially uploaded file.
         if (context != null) {
+            long end = record(context, RequestPhase.WRITE, context.writeStarted);
+            record(context, RequestPhase.TOTAL, context.started, end);
             context.cleanup();
         }
         Context.CONTEXT.remove();
     }
 
 
-    private void dispatch(ContextFromVertx context, RequestFromVertx request) {
+    /**
+     * Dispatches the request. This method is called by the event loop, and hands the action over to the worker pool
+     * unless the route must be invoked by the event loop.
+     *
+     * @param context the HTTP context
+     * @param request the request
+     */
+    private void dispatch(final ContextFromVertx context, final RequestFromVertx request) {
         LOGGER.debug("Dispatching {} {}", context.request().method(), context.path());
-        // 2 Register context
-        Context.CONTEXT.set(context);
-        // 3 Get route for context
-        Route route = accessor.getRouter().getRouteFor(context.request().method(), context.path());
-        Result result;
-
-        if (route == null) {
-            // 3.1 : no route to destination
-            // Should never return null, but an unbound route instead.
-            LOGGER.error("The router has returned 'null' instead of an unbound route for " + context.path());
-            result = Results.notFound();
-        } else {
+        long begin = System.nanoTime();
+        Route route = null;
+        try {
+            // 2 Register context
+            Context.CONTEXT.set(context);
+            // 3 Get route for context
+            context.recorder = accessor.getRecorder();
+            context.started = now(context);
+            route = accessor.getRouter().getRouteFor(context.request().method(), context.path());
+
+            if (route == null) {
+                // 3.1 : no route to destination
+                // Should never return null, but an unbound route instead.
+                LOGGER.error("The router has returned 'null' instead of an unbound route for " + context.path());
+                respond(context, request, Results.notFound());
+                return;
+            }
+
             // 3.2 : route found
             context.route(route);
-            result = invoke(route);
-
-            if (result instanceof AsyncResult) {
-                // Asynchronous operation in progress.
-                handleAsyncResult(context, request, (AsyncResult) result);
+            record(context, RequestPhase.ROUTING, context.started);
+            if (actions.mode(route) == Dispatch.Mode.EVENT_LOOP) {
+                process(context, request, route);
                 return;
             }
+
+            final Route target = route;
+            boolean accepted = actions.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Context.CONTEXT.set(context);
+                    try {
+                        process(context, request, target);
+                    } finally {
+                        Context.CONTEXT.remove();
+                    }
+                }
+            });
+            if (accepted) {
+                // The context is now attached to the worker thread.
+                Context.CONTEXT.remove();
+            } else {
+                LOGGER.warn("The worker pool is saturated, rejecting {} {}", context.request().method(),
+                        context.path());
+                respond(context, request, Results.status(Status.SERVICE_UNAVAILABLE));
+            }
+        } finally {
+            actions.eventLoop(route, System.nanoTime() - begin);
         }
+    }
 
-        // Synchronous processing or not found.
+    /**
+     * Invokes the route and writes the result.
+     *
+     * @param context the HTTP context
+     * @param request the request
+     * @param route   the route
+     */
+    private void process(ContextFromVertx context, RequestFromVertx request, Route route) {
+        Result result = invoke(route);
+        if (result instanceof AsyncResult) {
+            // Asynchronous operation in progress.
+            handleAsyncResult(context, request, (AsyncResult) result);
+            return;
+        }
+        respond(context, request, result);
+    }
+
+    /**
+     * Writes the result of a synchronous processing.
+     *
+     * @param context the HTTP context
+     * @param request the request
+     * @param result  the result
+     */
+    private void respond(ContextFromVertx context, RequestFromVertx request, Result result) {
         try {
             writeResponse(context, request, result, true, false);
         } catch (Exception e) {
             LOGGER.error("Cannot write response", e);
-            result = Results.internalServerError(e);
             try {
-                writeResponse(context, request, result, false, false);
+                writeResponse(context, request, Results.internalServerError(e), false, false);
             } catch (Exception e1) {
                 LOGGER.error("Cannot even write the error response...", e1);
                 // Ignore.
@@ -147,6 +227,30 @@ public class HttpHandler implements Handler<HttpServerRequest> {
         // If we reach this point, it means we did not write anything... Annoying.
     }
 
+    private static long now(ContextFromVertx context) {
+        return context.recorder == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a phase of the request, if a recorder is available.
+     *
+     * @param context the HTTP context
+     * @param phase   the phase
+     * @param start   the start time of the phase
+     * @return the end time of the phase
+     */
+    private static long record(ContextFromVertx context, RequestPhase phase, long start) {
+        return record(context, phase, start, now(context));
+    }
+
+    private static long record(ContextFromVertx context, RequestPhase phase, long start, long end) {
+        RequestRecorder recorder = context.recorder;
+        if (recorder != null) {
+            recorder.record(context.route(), phase, end - start);
+        }
+        return end;
+    }
+
     private Result invoke(Route route) {
         try {
             return route.invoke();
@@ -166,6 +270,30 @@ public class HttpHandler implements Handler<HttpServerRequest> {
             final ContextFromVertx context,
             final RequestFromVertx request,
             final AsyncResult asyncResult) {
+        final long start = now(context);
+        final ExecutionContext executor = accessor.getSystem().fromThread();
+        ListenableFuture<Result> pending = asyncResult.future();
+        if (pending != null) {
+            // The result is completed by another component, no thread waits for it.
+            Futures.addCallback(pending, new FutureCallback<Result>() {
+                @Override
+                public void onSuccess(Result result) {
+                    completeAsyncResult(context, request, asyncResult, start, null, result);
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    completeAsyncResult(context, request, asyncResult, start, failure, null);
+                }
+            }, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    executor.execute(command);
+                }
+            });
+            return;
+        }
+
         Future<Result> future = accessor.getSystem().dispatchResultWithContext(asyncResult.callable(), context);
         future.onComplete(new OnComplete<Result>() {
             /**
@@ -175,22 +303,38 @@ public class HttpHandler implements Handler<HttpServerRequest> {
              * @param result the successfully computed result.
              */
             public void onComplete(Throwable failure, Result result) {
-                if (failure != null) {
-                    //We got a failure, handle it here
-                    writeResponse(context, request, Results.internalServerError(failure), false, true);
-                } else {
-                    // We got a result, write it here.
-                    // Merge the headers of the initial result and the async results.
-                    final Map<String, String> headers = result.getHeaders();
-                    for (Map.Entry<String, String> header : asyncResult.getHeaders().entrySet()) {
-                        if (! headers.containsKey(header.getKey())) {
-                            headers.put(header.getKey(), header.getValue());
-                        }
-                    }
-                    writeResponse(context, request, result, true, true);
+                completeAsyncResult(context, request, asyncResult, start, failure, result);
+            }
+        }, executor);
+    }
+
+    /**
+     * Writes the response of an async result once it is computed.
+     *
+     * @param context     the HTTP context
+     * @param request     the request
+     * @param asyncResult the async result
+     * @param start       the time at which the computation started
+     * @param failure     the failure caught when the result was computed, {@literal null} on success
+     * @param result      the computed result
+     */
+    private void completeAsyncResult(ContextFromVertx context, RequestFromVertx request, AsyncResult asyncResult,
+                                     long start, Throwable failure, Result result) {
+        record(context, RequestPhase.ACTION, start);
+        if (failure != null) {
+            //We got a failure, handle it here
+            writeResponse(context, request, Results.internalServerError(failure), false, true);
+        } else {
+            // We got a result, write it here.
+            // Merge the headers of the initial result and the async results.
+            final Map<String, String> headers = result.getHeaders();
+            for (Map.Entry<String, String> header : asyncResult.getHeaders().entrySet()) {
+                if (! headers.containsKey(header.getKey())) {
+                    headers.put(header.getKey(), header.getValue());
                 }
             }
-        }, accessor.getSystem().fromThread());
+            writeResponse(context, request, result, true, true);
+        }
     }
 
     private void writeResponse(
@@ -207,8 +351,29 @@ public class HttpHandler implements Handler<HttpServerRequest> {
             renderable = NoHttpBody.INSTANCE;
         }
 
+        if (renderable instanceof FileRenderable && result.getStatusCode() == Status.OK
+                && ((FileRenderable) renderable).file().isFile()
+                && !accessor.getContentEngines().getContentEncodingHelper().shouldEncode(context, result, renderable)) {
+            writeFile(context, request.getVertxRequest(), result, renderable, ((FileRenderable) renderable).file(),
+                    handleFlashAndSessionCookie);
+            return;
+        }
+
+        if (renderable instanceof AsyncRenderable && renderable.mustBeChunked()
+                && !accessor.getContentEngines().getContentEncodingHelper().shouldEncode(context, result, renderable)) {
+            writePushed(context, request.getVertxRequest(), result, renderable, handleFlashAndSessionCookie);
+            return;
+        }
+
+        if (renderable instanceof StreamingRenderable && renderable.mustBeChunked()
+                && !accessor.getContentEngines().getContentEncodingHelper().shouldEncode(context, result, renderable)) {
+            writeStreamed(context, request.getVertxRequest(), result, renderable, handleFlashAndSessionCookie);
+            return;
+        }
+
         InputStream stream;
         boolean success = true;
+        long start = now(context);
         try {
             // Process the result, and apply serialization is required.
             stream = HttpUtils.processResult(accessor, context, renderable, result);
@@ -217,6 +382,7 @@ public class HttpHandler implements Handler<HttpServerRequest> {
             stream = new ByteArrayInputStream(NoHttpBody.EMPTY);
             success = false;
         }
+        record(context, RequestPhase.SERIALIZATION, start);
 
         if (accessor.getContentEngines().getContentEncodingHelper().shouldEncode(context, result, renderable)) {
             ContentCodec codec = null;
@@ -253,25 +419,60 @@ public class HttpHandler implements Handler<HttpServerRequest> {
             final boolean handleFlashAndSessionCookie,
             final boolean fromAsync) {
 
-        vertx.runOnContext(new Handler<Void>() {
+        Runnable encoding = new Runnable() {
             @Override
-            public void handle(Void event) {
-                InputStream is = null;
+            public void run() {
+                InputStream is;
+                boolean encoded = success;
+                Renderable<?> renderable = result.getRenderable();
                 try {
                     is = codec.encode(stream);
-                    finalizeWriteReponse(httpContext, request.getVertxRequest(),
-                            result, is, success, handleFlashAndSessionCookie, true);
+                    if (renderable == null || !renderable.mustBeChunked()) {
+                        // The codec encodes while the stream is read, so encode the whole content now. Chunked
+                        // contents are encoded while they are written, as part of the write phase.
+                        is = encodeNow(httpContext, is);
+                    }
                 } catch (IOException e) {
-                    e.printStackTrace();
-                    //TODO Error handling here...
+                    LOGGER.error("Cannot encode the response to {}", request.uri(), e);
+                    result.getHeaders().remove(HeaderNames.CONTENT_ENCODING);
+                    is = new ByteArrayInputStream(NoHttpBody.EMPTY);
+                    encoded = false;
                 }
-
+                finalizeWriteReponse(httpContext, request.getVertxRequest(),
+                        result, is, encoded, handleFlashAndSessionCookie, true);
             }
-        });
+        };
+
+        // Compressing is CPU-bound, keep it off the event loops. Worker and Akka threads encode directly.
+        if (vertx.isEventLoop()) {
+            actions.executeOrRun(encoding);
+        } else {
+            encoding.run();
+        }
     }
 
     /**
-     * This method must be called in a Vert.X context. It finalizes the response and send it to the client.
+     * Reads the whole given encoding stream, recording the encoding phase.
+     *
+     * @param context the HTTP context
+     * @param encoder the stream encoding the content while it is read, closed by this method
+     * @return the encoded content
+     * @throws IOException if the content cannot be encoded
+     */
+    private InputStream encodeNow(ContextFromVertx context, InputStream encoder) throws IOException {
+        long start = now(context);
+        try {
+            return new ByteArrayInputStream(IOUtils.toByteArray(encoder));
+        } finally {
+            IOUtils.closeQuietly(encoder);
+            record(context, RequestPhase.ENCODING, start);
+        }
+    }
+
+    /**
+     * Finalizes the response and sends it to the client. This method is called by the thread having computed the
+     * result: an event loop, a worker thread of the {@link ActionDispatcher}, or an Akka thread for asynchronous
+     * results.
      *
      * @param context                     the HTTP context
      * @param request                     the Vert.x request
@@ -289,6 +490,7 @@ public class HttpHandler implements Handler<HttpServerRequest> {
             boolean success,
             boolean handleFlashAndSessionCookie,
             boolean fromAsync) {
+        context.writeStarted = now(context);
 
         Renderable<?> renderable = result.getRenderable();
         if (renderable == null) {
@@ -299,6 +501,64 @@ public class HttpHandler implements Handler<HttpServerRequest> {
 
         // Build the response object.
         final HttpServerResponse response = request.response();
+        copyHeadersAndCookies(context, response, result, renderable, handleFlashAndSessionCookie);
+        response.setStatusCode(HttpUtils.getStatusFromResult(result, success));
+        if (renderable.mustBeChunked()) {
+            LOGGER.debug("Building the chunked response for {} {} ({})", request.method(), request.uri(), context);
+            if (!response.headers().contains(HeaderNames.CONTENT_TYPE)) {
+                // No content is not legal, set default to binary.
+                response.putHeader(HeaderNames.CONTENT_TYPE, MimeTypes.BINARY);
+            }
+
+            // Can't determine the size, so switch to chunked. As the end of the content is marked,
+            // the connection can be kept open.
+            response.setChunked(true);
+            response.putHeader(HeaderNames.TRANSFER_ENCODING, "chunked");
+            if (keepAlive) {
+                response.putHeader(HeaderNames.CONNECTION, HttpUtils.KEEP_ALIVE);
+            }
+            pump(context, request, response, stream, keepAlive);
+        } else {
+            byte[] cont = new byte[0];
+            try {
+                cont = IOUtils.toByteArray(stream);
+            } catch (IOException e) {
+                LOGGER.error("Cannot copy the response to {}", request.uri(), e);
+            }
+
+            if (!response.headers().contains(HeaderNames.CONTENT_LENGTH)) {
+                // Because of the HEAD implementation, if the length is already set, do not update it.
+                // (HEAD would mean no content)
+                response.putHeader(HeaderNames.CONTENT_LENGTH, Long.toString(cont.length));
+            }
+
+            if (keepAlive) {
+                // Add keep alive header as per:
+                // - http://www.w3.org/Protocols/HTTP/1.1/draft-ietf-http-v11-spec-01.html#Connection
+                response.putHeader(HeaderNames.CONNECTION, "keep-alive");
+            }
+            response.write(new Buffer(cont));
+            if (HttpUtils.isKeepAlive(request)) {
+                response.end();
+            } else {
+                response.end();
+                response.close();
+            }
+            cleanup(context);
+        }
+    }
+
+    /**
+     * Copies the headers and cookies of the result to the response.
+     *
+     * @param context                     the HTTP context
+     * @param response                    the response
+     * @param result                      the result
+     * @param renderable                  the renderable object
+     * @param handleFlashAndSessionCookie if the flash and session cookie need to be send with the response
+     */
+    private void copyHeadersAndCookies(ContextFromVertx context, HttpServerResponse response, Result result,
+                                       Renderable<?> renderable, boolean handleFlashAndSessionCookie) {
         for (Map.Entry<String, String> header : result.getHeaders().entrySet()) {
             response.putHeader(header.getKey(), header.getValue());
         }
@@ -328,92 +588,234 @@ public class HttpHandler implements Handler<HttpServerRequest> {
             // Here we use the 'add' method to add a new value to the header.
             response.headers().add(HeaderNames.SET_COOKIE, encoded);
         }
-        response.setStatusCode(HttpUtils.getStatusFromResult(result, success));
-        if (renderable.mustBeChunked()) {
-            LOGGER.debug("Building the chunked response for {} {} ({})", request.method(), request.uri(), context);
-            if (renderable.length() > 0 && !response.headers().contains(HeaderNames.CONTENT_LENGTH)) {
-                response.putHeader(HeaderNames.CONTENT_LENGTH, Long.toString(renderable.length()));
-            }
+    }
 
-            if (!response.headers().contains(HeaderNames.CONTENT_TYPE)) {
-                // No content is not legal, set default to binary.
-                response.putHeader(HeaderNames.CONTENT_TYPE, MimeTypes.BINARY);
-            }
+    /**
+     * Sends a file, or the requested range of the file. It is called by the thread having computed the result,
+     * not necessarily an event loop. The whole file is sent using {@link HttpServerResponse#sendFile(String)}, so the content does not go through the heap
+     * (except with TLS). Vert.x cannot send a region of a file, so ranges are streamed from the file.
+     *
+     * @param context                     the HTTP context
+     * @param request                     the Vert.x request
+     * @param result                      the computed result
+     * @param renderable                  the renderable object
+     * @param file                        the file to send
+     * @param handleFlashAndSessionCookie if the flash and session cookie need to be send with the response
+     */
+    private void writeFile(final ContextFromVertx context, final HttpServerRequest request, Result result,
+                           Renderable<?> renderable, File file, boolean handleFlashAndSessionCookie) {
+        context.writeStarted = now(context);
+        final HttpServerResponse response = request.response();
+        copyHeadersAndCookies(context, response, result, renderable, handleFlashAndSessionCookie);
+        boolean keepAlive = HttpUtils.isKeepAlive(request);
+        if (keepAlive) {
+            response.putHeader(HeaderNames.CONNECTION, HttpUtils.KEEP_ALIVE);
+        }
+        response.putHeader(HeaderNames.ACCEPT_RANGES, "bytes");
 
-            // Can't determine the size, so switch to chunked.
-            response.setChunked(true);
-            response.putHeader(HeaderNames.TRANSFER_ENCODING, "chunked");
-            // In addition, we can't keep the connection open.
-            response.putHeader(HeaderNames.CONNECTION, "close");
-
-            final AsyncInputStream s = new AsyncInputStream(vertx, accessor.getSystem().system(), stream);
-            s.setContext(context.vertxContext());
-            final Pump pump = Pump.createPump(s, response);
-            s.endHandler(new Handler<Void>() {
-                             @Override
-                             public void handle(Void event) {
-                                 context.vertxContext().runOnContext(new Handler<Void>() {
-                                     @Override
-                                     public void handle(Void event) {
-                                         LOGGER.debug("Ending chunked response for {} - {} bytes",
-                                                 request.uri(), pump.bytesPumped());
-                                         response.end();
-                                         response.close();
-                                         cleanup(context);
-                                     }
-                                 });
-                             }
-                         }
-            );
-            s.exceptionHandler(new Handler<Throwable>() {
-                                   @Override
-                                   public void handle(Throwable event) {
-                                       context.vertxContext().runOnContext(new Handler<Void>() {
-                                           @Override
-                                           public void handle(Void event) {
-                                               LOGGER.error("Cannot read the result stream", event);
-                                               response.close();
-                                               cleanup(context);
-                                           }
-                                       });
-                                   }
-                               }
-            );
-            context.vertxContext().runOnContext(new Handler<Void>() {
+        long length = file.length();
+        String validator = result.getHeaders().get(HeaderNames.ETAG);
+        if (validator == null) {
+            validator = result.getHeaders().get(HeaderNames.LAST_MODIFIED);
+        }
+        ByteRange range = ByteRange.parse(request.headers().get(HeaderNames.RANGE),
+                request.headers().get(HeaderNames.IF_RANGE), validator, length);
+
+        if (range == null) {
+            LOGGER.debug("Sending file {} for {} {}", file.getAbsolutePath(), request.method(), request.uri());
+            response.setStatusCode(Status.OK);
+            response.sendFile(file.getAbsolutePath(), new Handler<org.vertx.java.core.AsyncResult<Void>>() {
                 @Override
-                public void handle(Void event) {
-                    pump.start();
+                public void handle(org.vertx.java.core.AsyncResult<Void> event) {
+                    if (event.failed()) {
+                        LOGGER.error("Cannot send the file to {}", request.uri(), event.cause());
+                    }
+                    cleanup(context);
                 }
             });
-
+        } else if (range == ByteRange.UNSATISFIABLE) {
+            response.setStatusCode(Status.REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.putHeader(HeaderNames.CONTENT_RANGE, ByteRange.unsatisfiable(length));
+            response.putHeader(HeaderNames.CONTENT_LENGTH, "0");
+            response.end();
+            if (!keepAlive) {
+                response.close();
+            }
+            cleanup(context);
         } else {
-            byte[] cont = new byte[0];
+            response.setStatusCode(Status.PARTIAL_CONTENT);
+            response.putHeader(HeaderNames.CONTENT_RANGE, range.toContentRange());
+            response.putHeader(HeaderNames.CONTENT_LENGTH, Long.toString(range.count()));
+            InputStream stream = null;
             try {
-                cont = IOUtils.toByteArray(stream);
+                stream = new FileInputStream(file);
+                IOUtils.skipFully(stream, range.start());
             } catch (IOException e) {
-                LOGGER.error("Cannot copy the response to {}", request.uri(), e);
+                LOGGER.error("Cannot read the file sent to {}", request.uri(), e);
+                IOUtils.closeQuietly(stream);
+                response.close();
+                cleanup(context);
+                return;
             }
+            pump(context, request, response, new BoundedInputStream(stream, range.count()), keepAlive);
+        }
+    }
 
-            if (!response.headers().contains(HeaderNames.CONTENT_LENGTH)) {
-                // Because of the HEAD implementation, if the length is already set, do not update it.
-                // (HEAD would mean no content)
-                response.putHeader(HeaderNames.CONTENT_LENGTH, Long.toString(cont.length));
-            }
+    /**
+     * Lets the renderable object write its content into the response, chunk by chunk. The rendering waits when the
+     * client does not read the response fast enough, which the event loops cannot do: when called from an event
+     * loop (actions dispatched on the event loop), the rendering is delegated to the action threads. If they are
+     * saturated, the content is rendered on the event loop (counted in the dispatcher statistics), and so queued in
+     * memory until written.
+     *
+     * @param context                     the HTTP context
+     * @param request                     the Vert.x request
+     * @param result                      the computed result
+     * @param renderable                  the renderable object, implementing {@link StreamingRenderable}
+     * @param handleFlashAndSessionCookie if the flash and session cookie need to be send with the response
+     */
+    private void writeStreamed(final ContextFromVertx context, final HttpServerRequest request, final Result result,
+                               final Renderable<?> renderable, boolean handleFlashAndSessionCookie) {
+        context.writeStarted = now(context);
+        if (result.getCharset() == null) {
+            result.with(Charsets.UTF_8);
+        }
+        final HttpServerResponse response = request.response();
+        copyHeadersAndCookies(context, response, result, renderable, handleFlashAndSessionCookie);
+        final boolean keepAlive = HttpUtils.isKeepAlive(request);
+        if (keepAlive) {
+            response.putHeader(HeaderNames.CONNECTION, HttpUtils.KEEP_ALIVE);
+        }
+        response.setStatusCode(HttpUtils.getStatusFromResult(result, true));
+        response.setChunked(true);
 
-            if (keepAlive) {
-                // Add keep alive header as per:
-                // - http://www.w3.org/Protocols/HTTP/1.1/draft-ietf-http-v11-spec-01.html#Connection
-                response.putHeader(HeaderNames.CONNECTION, "keep-alive");
+        Runnable rendering = new Runnable() {
+            @Override
+            public void run() {
+                renderStreamed(context, request, response, result, (StreamingRenderable) renderable, keepAlive);
             }
-            response.write(new Buffer(cont));
-            if (HttpUtils.isKeepAlive(request)) {
-                response.end();
-            } else {
-                response.end();
+        };
+        if (vertx.isEventLoop()) {
+            actions.executeOrRun(rendering);
+        } else {
+            rendering.run();
+        }
+    }
+
+    /**
+     * Renders a streaming renderable object into the response, and ends the response.
+     *
+     * @param context    the HTTP context
+     * @param request    the Vert.x request
+     * @param response   the response, with its headers set
+     * @param result     the computed result
+     * @param renderable the renderable object
+     * @param keepAlive  whether or not the connection is kept alive once the response is written
+     */
+    private void renderStreamed(ContextFromVertx context, HttpServerRequest request, HttpServerResponse response,
+                                Result result, StreamingRenderable renderable, boolean keepAlive) {
+        ResponseOutputStream out = new ResponseOutputStream(vertx, response, BUFFER_SIZE);
+        try {
+            renderable.renderTo(context, result, out);
+            out.close();
+            response.end();
+            if (!keepAlive) {
                 response.close();
             }
-            cleanup(context);
+        } catch (Exception e) {
+            // The headers may already be sent, we can only close the connection.
+            LOGGER.error("Cannot render the response to {}", request.uri(), e);
+            response.close();
+        }
+        cleanup(context);
+    }
+
+    /**
+     * Lets the renderable object push its content into the response while it is received. This method does not
+     * wait for the content.
+     *
+     * @param context                     the HTTP context
+     * @param request                     the Vert.x request
+     * @param result                      the computed result
+     * @param renderable                  the renderable object, implementing {@link AsyncRenderable}
+     * @param handleFlashAndSessionCookie if the flash and session cookie need to be send with the response
+     */
+    private void writePushed(final ContextFromVertx context, HttpServerRequest request, Result result,
+                             Renderable<?> renderable, boolean handleFlashAndSessionCookie) {
+        context.writeStarted = now(context);
+        final HttpServerResponse response = request.response();
+        copyHeadersAndCookies(context, response, result, renderable, handleFlashAndSessionCookie);
+        boolean keepAlive = HttpUtils.isKeepAlive(request);
+        if (keepAlive) {
+            response.putHeader(HeaderNames.CONNECTION, HttpUtils.KEEP_ALIVE);
+        }
+        response.setStatusCode(HttpUtils.getStatusFromResult(result, true));
+        response.setChunked(true);
+
+        AsyncResponseOutput output = new AsyncResponseOutput(response, keepAlive, new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                cleanup(context);
+            }
+        });
+        try {
+            ((AsyncRenderable) renderable).subscribe(context, result, output);
+        } catch (RuntimeException e) {
+            output.abort(e);
         }
     }
 
+    /**
+     * Pumps the given stream to the response, and ends the response once the stream is consumed.
+     *
+     * @param context   the HTTP context
+     * @param request   the Vert.x request
+     * @param response  the response, with its headers set
+     * @param stream    the stream
+     * @param keepAlive whether or not the connection is kept open
+     */
+    private void pump(final ContextFromVertx context, final HttpServerRequest request,
+                      final HttpServerResponse response, InputStream stream, final boolean keepAlive) {
+        final AsyncInputStream s = new AsyncInputStream(vertx, accessor.getSystem().system(), stream);
+        s.setContext(context.vertxContext());
+        final Pump pump = Pump.createPump(s, response);
+        s.endHandler(new Handler<Void>() {
+                         @Override
+                         public void handle(Void event) {
+                             context.vertxContext().runOnContext(new Handler<Void>() {
+                                 @Override
+                                 public void handle(Void event) {
+                                     LOGGER.debug("Ending streamed response for {} - {} bytes",
+                                             request.uri(), pump.bytesPumped());
+                                     response.end();
+                                     if (!keepAlive) {
+                                         response.close();
+                                     }
+                                     cleanup(context);
+                                 }
+                             });
+                         }
+                     }
+        );
+        s.exceptionHandler(new Handler<Throwable>() {
+                               @Override
+                               public void handle(Throwable event) {
+                                   context.vertxContext().runOnContext(new Handler<Void>() {
+                                       @Override
+                                       public void handle(Void event) {
+                                           LOGGER.error("Cannot read the result stream", event);
+                                           response.close();
+                                           cleanup(context);
+                                       }
+                                   });
+                               }
+                           }
+        );
+        context.vertxContext().runOnContext(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                pump.start();
+            }
+        });
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.vertx;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An output stream writing to a chunked Vert.x response. The written bytes are accumulated in a bounded buffer,
+ * and written as a chunk each time the buffer is full. Closing the stream writes the pending bytes but does not end
+ * the response.
+ * <p/>
+ * When used from a thread that is not an event loop, the stream waits for the write queue of the response to be
+ * drained when it is full, so a slow client slows down the producer instead of accumulating the content in memory.
+ */
+public class ResponseOutputStream extends OutputStream {
+
+    /**
+     * The number of chunks the write queue holds before the producer waits.
+     */
+    private static final int QUEUED_CHUNKS = 8;
+
+    /**
+     * How long the producer waits between two checks of the connection, in milliseconds.
+     */
+    private static final long DRAIN_CHECK = 1000L;
+
+    private final Vertx vertx;
+
+    private final HttpServerResponse response;
+
+    private final int size;
+
+    private byte[] buffer;
+
+    private int count;
+
+    private boolean closed;
+
+    private volatile boolean connectionClosed;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param vertx    the vertx singleton, used to detect whether the stream is used from an event loop
+     * @param response the response, must be chunked
+     * @param size     the size of the chunks
+     */
+    public ResponseOutputStream(Vertx vertx, HttpServerResponse response, int size) {
+        this.vertx = vertx;
+        this.response = response;
+        this.size = size;
+        response.setWriteQueueMaxSize(QUEUED_CHUNKS * size);
+        response.closeHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                connectionClosed = true;
+            }
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buffer()[count++] = (byte) b;
+        if (count == size) {
+            flushChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        int written = 0;
+        while (written < length) {
+            int chunk = Math.min(size - count, length - written);
+            System.arraycopy(bytes, offset + written, buffer(), count, chunk);
+            count += chunk;
+            written += chunk;
+            if (count == size) {
+                flushChunk();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending bytes as a chunk.
+     *
+     * @throws IOException if the stream is closed
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0) {
+            flushChunk();
+        }
+    }
+
+    /**
+     * Writes the pending bytes.
+     *
+     * @throws IOException if the connection is closed while waiting for the client
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (count > 0) {
+            flushChunk();
+        }
+    }
+
+    private byte[] buffer() {
+        if (buffer == null) {
+            buffer = new byte[size];
+        }
+        return buffer;
+    }
+
+    private void flushChunk() throws IOException {
+        byte[] chunk = buffer;
+        if (count < size) {
+            byte[] copy = new byte[count];
+            System.arraycopy(chunk, 0, copy, 0, count);
+            chunk = copy;
+        }
+        // The buffer is handed over to Vert.x, a new one is allocated for the next chunk.
+        response.write(new Buffer(chunk));
+        buffer = null;
+        count = 0;
+        if (response.writeQueueFull() && !vertx.isEventLoop()) {
+            awaitDrain();
+        }
+    }
+
+    /**
+     * Waits until the write queue is drained. The event loops must never wait, they write the queued chunks.
+     *
+     * @throws IOException if the connection is closed or the thread interrupted while waiting
+     */
+    private void awaitDrain() throws IOException {
+        final CountDownLatch drained = new CountDownLatch(1);
+        response.drainHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                drained.countDown();
+            }
+        });
+        try {
+            while (response.writeQueueFull()) {
+                if (connectionClosed) {
+                    throw new IOException("The connection has been closed by the client");
+                }
+                if (drained.await(DRAIN_CHECK, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the client", e);
+        } finally {
+            response.drainHandler(null);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
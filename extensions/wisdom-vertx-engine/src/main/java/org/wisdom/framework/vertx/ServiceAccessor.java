@@ -23,6 +23,7 @@ import org.wisdom.akka.AkkaSystemService;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.content.ContentEngine;
 import org.wisdom.api.crypto.Crypto;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.router.Router;
 
 /**
@@ -70,4 +71,11 @@ public class ServiceAccessor {
     public WisdomVertxServer getDispatcher() {
         return dispatcher;
     }
+
+    /**
+     * @return the recorder receiving the duration of the request phases, {@literal null} if none
+     */
+    public RequestRecorder getRecorder() {
+        return dispatcher == null ? null : dispatcher.getRecorder();
+    }
 }
@@ -33,6 +33,7 @@ import org.wisdom.akka.AkkaSystemService;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.content.ContentEngine;
 import org.wisdom.api.crypto.Crypto;
+import org.wisdom.api.engine.RequestRecorder;
 import org.wisdom.api.engine.WisdomEngine;
 import org.wisdom.api.http.websockets.WebSocketDispatcher;
 import org.wisdom.api.http.websockets.WebSocketListener;
@@ -85,8 +86,19 @@ public class WisdomVertxServer implements WebSocketDispatcher, WisdomEngine {
     @Requires
     private AkkaSystemService system;
 
+    /**
+     * The recorder receiving the duration of the request phases, if any.
+     */
+    @Requires(optional = true, nullable = false, proxy = false)
+    private RequestRecorder recorder;
+
     ServiceAccessor accessor = new ServiceAccessor(crypto, configuration, router, engine, system, this);
 
+    /**
+     * Selects the threads invoking the actions, created when the server starts.
+     */
+    private ActionDispatcher actions;
+
     private HttpServer http;
     private HttpServer https;
     private Integer httpPort;
@@ -98,6 +110,13 @@ public class WisdomVertxServer implements WebSocketDispatcher, WisdomEngine {
      */
     private Random random;
 
+    /**
+     * @return the recorder receiving the duration of the request phases, {@literal null} if none
+     */
+    public RequestRecorder getRecorder() {
+        return recorder;
+    }
+
     /**
      * Starts the servers (HTTP and HTTPS).
      * The actual start is asynchronous.
@@ -110,6 +129,9 @@ public class WisdomVertxServer implements WebSocketDispatcher, WisdomEngine {
 
         initializeInetAddress();
 
+        actions = new ActionDispatcher(accessor.getConfiguration());
+        actions.start();
+
         if (httpPort != -1) {
             bindHttp(httpPort);
         }
@@ -123,7 +145,7 @@ public class WisdomVertxServer implements WebSocketDispatcher, WisdomEngine {
         // Get port number.
         final int thePort = pickAPort(port);
         http = vertx.createHttpServer()
-                .requestHandler(new HttpHandler(vertx, accessor))
+                .requestHandler(new HttpHandler(vertx, accessor, actions))
                 .websocketHandler(new WebSocketHandler(accessor));
 
         if (configuration.getIntegerWithDefault("vertx.acceptBacklog", -1) != -1) {
@@ -164,7 +186,7 @@ public class WisdomVertxServer implements WebSocketDispatcher, WisdomEngine {
         https = vertx.createHttpServer()
                 .setSSL(true)
                 .setSSLContext(SSLServerContext.getInstance(accessor).serverContext())
-                .requestHandler(new HttpHandler(vertx, accessor))
+                .requestHandler(new HttpHandler(vertx, accessor, actions))
                 .websocketHandler(new WebSocketHandler(accessor));
 
         if (configuration.getIntegerWithDefault("vertx.acceptBacklog", -1) != -1) {
@@ -251,6 +273,10 @@ public class WisdomVertxServer implements WebSocketDispatcher, WisdomEngine {
                 }
             });
         }
+        if (actions != null) {
+            actions.stop();
+            actions = null;
+        }
     }
 
     /**
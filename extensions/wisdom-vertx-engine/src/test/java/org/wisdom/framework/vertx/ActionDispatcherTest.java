@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.vertx;
+
+import org.junit.After;
+import org.junit.Test;
+import org.wisdom.api.DefaultController;
+import org.wisdom.api.annotations.Dispatch;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.http.HttpMethod;
+import org.wisdom.api.http.Result;
+import org.wisdom.api.router.Route;
+import org.wisdom.api.router.RouteBuilder;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the selection of the threads invoking the actions, and the worker pool.
+ */
+public class ActionDispatcherTest {
+
+    private ActionDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testModeResolution() {
+        dispatcher = new ActionDispatcher(mock(ApplicationConfiguration.class));
+        Plain plain = new Plain();
+        assertThat(dispatcher.mode(route(plain, "index"))).isEqualTo(Dispatch.Mode.WORKER);
+        assertThat(dispatcher.mode(route(plain, "quick"))).isEqualTo(Dispatch.Mode.EVENT_LOOP);
+
+        Quick quick = new Quick();
+        assertThat(dispatcher.mode(route(quick, "index"))).isEqualTo(Dispatch.Mode.EVENT_LOOP);
+        assertThat(dispatcher.mode(route(quick, "blocking"))).isEqualTo(Dispatch.Mode.WORKER);
+
+        assertThat(dispatcher.mode(new Route(HttpMethod.GET, "/", null, null)))
+                .isEqualTo(Dispatch.Mode.EVENT_LOOP);
+    }
+
+    @Test
+    public void testModeConfiguration() {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        when(configuration.getWithDefault(eq("vertx.dispatch.mode"), anyString())).thenReturn("event-loop");
+        when(configuration.getList("vertx.dispatch.worker"))
+                .thenReturn(Collections.singletonList(Quick.class.getName()));
+        dispatcher = new ActionDispatcher(configuration);
+
+        // The configuration overrides the annotations.
+        assertThat(dispatcher.mode(route(new Quick(), "index"))).isEqualTo(Dispatch.Mode.WORKER);
+        assertThat(dispatcher.mode(route(new Plain(), "index"))).isEqualTo(Dispatch.Mode.EVENT_LOOP);
+    }
+
+    @Test
+    public void testRejection() throws InterruptedException {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        when(configuration.getIntegerWithDefault(eq("vertx.dispatch.threads"), anyInt())).thenReturn(1);
+        when(configuration.getIntegerWithDefault(eq("vertx.dispatch.queue"), anyInt())).thenReturn(1);
+        dispatcher = new ActionDispatcher(configuration);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        assertThat(dispatcher.execute(blocking)).isTrue();
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        // One task waits in the queue, the next one is rejected.
+        assertThat(dispatcher.execute(blocking)).isTrue();
+        assertThat(dispatcher.execute(blocking)).isFalse();
+        assertThat(dispatcher.getWorkerActiveCount()).isEqualTo(1);
+        assertThat(dispatcher.getWorkerQueueSize()).isEqualTo(1);
+        assertThat(dispatcher.getWorkerRejected()).isEqualTo(1);
+
+        // The rejected task is run by the caller, and counted.
+        final AtomicReference<Thread> caller = new AtomicReference<>();
+        dispatcher.executeOrRun(new Runnable() {
+            @Override
+            public void run() {
+                caller.set(Thread.currentThread());
+            }
+        });
+        assertThat(caller.get()).isSameAs(Thread.currentThread());
+        assertThat(dispatcher.getWorkerFallbacks()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    public void testEventLoopStatistics() throws Exception {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        when(configuration.getIntegerWithDefault(eq("vertx.dispatch.blocked"), anyInt())).thenReturn(10);
+        dispatcher = new ActionDispatcher(configuration);
+        dispatcher.start();
+
+        dispatcher.eventLoop(null, TimeUnit.MILLISECONDS.toNanos(2));
+        dispatcher.eventLoop(null, TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(dispatcher.getEventLoopTasks()).isEqualTo(2);
+        assertThat(dispatcher.getEventLoopTime()).isEqualTo(22.0);
+        assertThat(dispatcher.getEventLoopMaxTime()).isEqualTo(20.0);
+        assertThat(dispatcher.getEventLoopBlocked()).isEqualTo(1);
+
+        ObjectName name = new ObjectName(ActionDispatcher.OBJECT_NAME);
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "EventLoopBlocked"))
+                .isEqualTo(1L);
+        dispatcher.stop();
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name)).isFalse();
+        dispatcher = null;
+    }
+
+    private Route route(DefaultController controller, String method) {
+        return new RouteBuilder().route(HttpMethod.GET).on("/").to(controller, method);
+    }
+
+    public static class Plain extends DefaultController {
+        public Result index() {
+            return ok();
+        }
+
+        @Dispatch(Dispatch.Mode.EVENT_LOOP)
+        public Result quick() {
+            return ok();
+        }
+    }
+
+    @Dispatch(Dispatch.Mode.EVENT_LOOP)
+    public static class Quick extends DefaultController {
+        public Result index() {
+            return ok();
+        }
+
+        @Dispatch(Dispatch.Mode.WORKER)
+        public Result blocking() {
+            return ok();
+        }
+    }
+}
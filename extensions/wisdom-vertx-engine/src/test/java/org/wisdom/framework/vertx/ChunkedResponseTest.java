@@ -319,6 +319,73 @@ public class ChunkedResponseTest extends VertxBaseTest {
         assertThat(success).hasSize(NUMBER_OF_CLIENTS);
     }
 
+    @Test
+    public void testFileRangeDownload() throws InterruptedException, IOException {
+
+        // Prepare the configuration
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        when(configuration.getIntegerWithDefault(eq("vertx.http.port"), anyInt())).thenReturn(0);
+        when(configuration.getIntegerWithDefault(eq("vertx.https.port"), anyInt())).thenReturn(-1);
+        when(configuration.getIntegerWithDefault("vertx.acceptBacklog", -1)).thenReturn(-1);
+        when(configuration.getIntegerWithDefault("vertx.receiveBufferSize", -1)).thenReturn(-1);
+        when(configuration.getIntegerWithDefault("vertx.sendBufferSize", -1)).thenReturn(-1);
+
+        // Prepare the router with a controller
+        Controller controller = new DefaultController() {
+            @SuppressWarnings("unused")
+            public Result index() throws IOException {
+                File file = new File("src/test/resources/owl.png");
+                return ok(file);
+            }
+        };
+
+        Router router = mock(Router.class);
+        Route route = new RouteBuilder().route(HttpMethod.GET)
+                .on("/")
+                .to(controller, "index");
+        when(router.getRouteFor("GET", "/")).thenReturn(route);
+
+        // Configure the server.
+        server = new WisdomVertxServer();
+        server.configuration = configuration;
+        server.accessor = new ServiceAccessor(
+                null,
+                configuration,
+                router,
+                getMockContentEngine(),
+                system,
+                null
+        );
+        server.vertx = vertx;
+
+        server.start();
+
+        VertxHttpServerTest.waitForStart(server);
+
+        byte[] expected = FileUtils.readFileToByteArray(new File("src/test/resources/owl.png"));
+        URL url = new URL("http://localhost:" + server.httpPort());
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Range", "bytes=10-109");
+        assertThat(connection.getResponseCode()).isEqualTo(206);
+        assertThat(connection.getHeaderField("Accept-Ranges")).isEqualTo("bytes");
+        assertThat(connection.getHeaderField("Content-Range")).isEqualTo("bytes 10-109/" + expected.length);
+        byte[] body = IOUtils.toByteArray(connection.getInputStream());
+        assertThat(body).hasSize(100);
+        for (int i = 0; i < body.length; i++) {
+            assertThat(body[i]).isEqualTo(expected[i + 10]);
+        }
+
+        connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Range", "bytes=" + expected.length + "-");
+        assertThat(connection.getResponseCode()).isEqualTo(416);
+        assertThat(connection.getHeaderField("Content-Range")).isEqualTo("bytes */" + expected.length);
+
+        connection = (HttpURLConnection) url.openConnection();
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(containsExactly(IOUtils.toByteArray(connection.getInputStream()), expected)).isTrue();
+    }
+
     @Test
     public void testFileAsUrlDownload() throws InterruptedException, IOException {
 
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.framework.vertx;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServerResponse;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that the stream waits for slow clients when used outside the event loops.
+ */
+public class ResponseOutputStreamTest {
+
+    /**
+     * A response whose write queue is only drained when the client reads.
+     */
+    private static class SlowClient implements Answer<Object> {
+        private final HttpServerResponse response = mock(HttpServerResponse.class);
+        private int max;
+        private int queued;
+        private int read;
+        private Handler<Void> drain;
+        private volatile Handler<Void> close;
+
+        @SuppressWarnings("unchecked")
+        private SlowClient() {
+            when(response.setWriteQueueMaxSize(anyInt())).then(this);
+            when(response.write(any(Buffer.class))).then(this);
+            when(response.writeQueueFull()).then(this);
+            when(response.drainHandler(any(Handler.class))).then(this);
+            when(response.closeHandler(any(Handler.class))).then(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized Object answer(InvocationOnMock invocation) throws Throwable {
+            switch (invocation.getMethod().getName()) {
+                case "setWriteQueueMaxSize":
+                    max = (Integer) invocation.getArguments()[0];
+                    return response;
+                case "write":
+                    queued += ((Buffer) invocation.getArguments()[0]).length();
+                    return response;
+                case "writeQueueFull":
+                    return queued >= max;
+                case "drainHandler":
+                    drain = (Handler<Void>) invocation.getArguments()[0];
+                    return response;
+                default:
+                    close = (Handler<Void>) invocation.getArguments()[0];
+                    return response;
+            }
+        }
+
+        private synchronized int queued() {
+            return queued;
+        }
+
+        private void read() {
+            Handler<Void> handler;
+            synchronized (this) {
+                read += queued;
+                queued = 0;
+                handler = drain;
+            }
+            if (handler != null) {
+                handler.handle(null);
+            }
+        }
+
+        private synchronized int total() {
+            return read + queued;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Future<Void> produce(final ResponseOutputStream out, final int chunks) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                byte[] chunk = new byte[100];
+                for (int i = 0; i < chunks; i++) {
+                    out.write(chunk);
+                }
+                out.close();
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testThatProducersWaitForSlowClients() throws Exception {
+        Vertx vertx = mock(Vertx.class);
+        SlowClient client = new SlowClient();
+        ResponseOutputStream out = new ResponseOutputStream(vertx, client.response, 100);
+
+        Future<Void> producer = produce(out, 100);
+        try {
+            producer.get(200, TimeUnit.MILLISECONDS);
+            fail("The producer should wait for the client");
+        } catch (TimeoutException e) {
+            // Expected, the write queue is full.
+        }
+        // Only the queue size is buffered.
+        assertThat(client.queued()).isEqualTo(800);
+
+        while (!producer.isDone()) {
+            client.read();
+            Thread.sleep(1);
+        }
+        producer.get();
+        assertThat(client.total()).isEqualTo(100 * 100);
+    }
+
+    @Test
+    public void testThatProducersStopWhenTheClientLeaves() throws Exception {
+        Vertx vertx = mock(Vertx.class);
+        SlowClient client = new SlowClient();
+        ResponseOutputStream out = new ResponseOutputStream(vertx, client.response, 100);
+
+        Future<Void> producer = produce(out, 100);
+        Thread.sleep(100);
+        client.close.handle(null);
+        try {
+            producer.get(5, TimeUnit.SECONDS);
+            fail("The producer should have failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    public void testThatEventLoopsNeverWait() throws IOException {
+        Vertx vertx = mock(Vertx.class);
+        when(vertx.isEventLoop()).thenReturn(true);
+        SlowClient client = new SlowClient();
+        ResponseOutputStream out = new ResponseOutputStream(vertx, client.response, 100);
+        out.write(new byte[100 * 100]);
+        out.close();
+        assertThat(client.queued()).isEqualTo(100 * 100);
+        verify(client.response, never()).drainHandler(any(Handler.class));
+    }
+}
@@ -27,6 +27,7 @@ import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClientResponse;
 import org.wisdom.api.Controller;
 import org.wisdom.api.DefaultController;
+import org.wisdom.api.annotations.Dispatch;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.http.HeaderNames;
 import org.wisdom.api.http.HttpMethod;
@@ -111,6 +112,45 @@ public class VertxHttpServerTest extends VertxBaseTest {
         assertThat(body).isEqualTo("Alright");
     }
 
+    @Test
+    public void testDispatchModes() throws InterruptedException, IOException {
+        Router router = prepareServer();
+
+        // The first action is invoked by the worker pool (default), the second by the event loop.
+        Controller controller = new DefaultController() {
+            @SuppressWarnings("unused")
+            public Result blocking() {
+                return ok(Thread.currentThread().getName());
+            }
+
+            @SuppressWarnings("unused")
+            @Dispatch(Dispatch.Mode.EVENT_LOOP)
+            public Result quick() {
+                return ok(Thread.currentThread().getName());
+            }
+        };
+        when(router.getRouteFor("GET", "/blocking")).thenReturn(new RouteBuilder().route(HttpMethod.GET)
+                .on("/blocking")
+                .to(controller, "blocking"));
+        when(router.getRouteFor("GET", "/quick")).thenReturn(new RouteBuilder().route(HttpMethod.GET)
+                .on("/quick")
+                .to(controller, "quick"));
+
+        server.start();
+        waitForStart(server);
+
+        int port = server.httpPort();
+        URL url = new URL("http://localhost:" + port + "/blocking");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(IOUtils.toString(connection.getInputStream())).startsWith("wisdom-vertx-worker-");
+
+        url = new URL("http://localhost:" + port + "/quick");
+        connection = (HttpURLConnection) url.openConnection();
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(IOUtils.toString(connection.getInputStream())).doesNotContain("wisdom-vertx-worker-");
+    }
+
     @Test
     public void testInternalError() throws InterruptedException, IOException {
         Router router = prepareServer();
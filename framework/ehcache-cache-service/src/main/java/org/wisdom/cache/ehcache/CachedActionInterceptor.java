@@ -20,6 +20,11 @@
 package org.wisdom.cache.ehcache;
 
 import com.google.common.base.Strings;
+import akka.actor.Cancellable;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.felix.ipojo.annotations.Component;
 import org.apache.felix.ipojo.annotations.Instantiate;
 import org.apache.felix.ipojo.annotations.Provides;
@@ -27,15 +32,41 @@ import org.apache.felix.ipojo.annotations.Requires;
 import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wisdom.akka.AkkaSystemService;
+import org.wisdom.api.bodies.NoHttpBody;
+import org.wisdom.api.bodies.RenderableByteArray;
 import org.wisdom.api.cache.Cache;
 import org.wisdom.api.cache.Cached;
+import org.wisdom.api.content.ContentEngine;
+import org.wisdom.api.content.ContentSerializer;
+import org.wisdom.api.http.AsyncResult;
 import org.wisdom.api.http.HeaderNames;
+import org.wisdom.api.http.Renderable;
 import org.wisdom.api.http.Result;
+import org.wisdom.api.http.StreamingRenderable;
 import org.wisdom.api.interception.Interceptor;
 import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.router.Route;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An action interceptor caching the result of an action and returning the cached result if it was cached already.
+ * <p>
+ * The rendered content of the result is cached, not the result itself, so cache hits are not serialized again.
+ * Concurrent requests missing the same key get an {@link AsyncResult} completed with the result computed by the
+ * first one, instead of all invoking the action. No thread waits for the shared computation: if it fails, cannot be
+ * cached, or does not complete within {@link #timeout} milliseconds, the action is invoked on the Akka dispatcher.
+ * When {@link Cached#staleWhileRevalidate()} is set, expired results are served while a new result is
+ * computed on the Akka dispatcher. The new result is computed by invoking the route again, with a copy of the HTTP
+ * context of the request having served the expired result (see {@link RefreshContext}), as the original context is
+ * cleaned up once the response is sent.
  */
 @Component
 @Provides(specifications = Interceptor.class)
@@ -45,16 +76,37 @@ public class CachedActionInterceptor extends Interceptor<Cached> {
     @Requires
     protected Cache cache;
 
+    @Requires(optional = true, nullable = false)
+    protected ContentEngine engine;
+
+    @Requires(optional = true, nullable = false)
+    protected AkkaSystemService akka;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CachedActionInterceptor.class);
 
+    /**
+     * How long concurrent misses wait for the shared computation before invoking the action, in milliseconds.
+     */
+    long timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * The default value of {@link #timeout}.
+     */
+    static final long DEFAULT_TIMEOUT = 30000L;
+
+    /**
+     * The computations in progress, by key. It lets concurrent misses share the same computation.
+     */
+    private final ConcurrentMap<String, SettableFuture<CachedResult>> computations = new ConcurrentHashMap<>();
+
     /**
      * Intercepts a @Cached action method.
      * If the result of the action is cached, returned it immediately without having actually invoked the action method.
      * In this case, the interception chain is cut.
      * <p>
      * If the result is not yet cached, the interception chain continues, and the result is cached to be used during
-     * the next invocation.
+     * the next invocation. If another request is already computing the result, an asynchronous result completed by
+     * this computation is returned.
      *
      * @param configuration the interception configuration
      * @param context       the interception context
@@ -67,40 +119,301 @@ public class CachedActionInterceptor extends Interceptor<Cached> {
         boolean nocache =
                 HeaderNames.NOCACHE_VALUE.equalsIgnoreCase(context.context().header(HeaderNames.CACHE_CONTROL));
 
-        String key;
+        String key = key(configuration, context);
+
+        if (context.context() instanceof RefreshContext) {
+            // Background computation of an expired result, the computation is registered already.
+            Result result = context.proceed();
+            return withCachedContent(result, compute(key, configuration, context, result));
+        }
+
+        if (nocache) {
+            Result result = context.proceed();
+            return withCachedContent(result, compute(key, configuration, context, result));
+        }
+
+        Object cached = cache.get(key);
+        if (cached instanceof CachedResult) {
+            CachedResult entry = (CachedResult) cached;
+            if (entry.isFresh(System.currentTimeMillis())) {
+                LOGGER.debug("Returning cached result for {} (key:{})", context.request().uri(), key);
+                return entry.toResult();
+            }
+            if (configuration.staleWhileRevalidate() > 0 && akka != null) {
+                // Stale, but still in the cache, so within the stale-while-revalidate window.
+                LOGGER.debug("Returning stale result for {} (key:{})", context.request().uri(), key);
+                revalidate(key, configuration, context);
+                return entry.toResult();
+            }
+        }
+
+        SettableFuture<CachedResult> computation = SettableFuture.create();
+        SettableFuture<CachedResult> pending = computations.putIfAbsent(key, computation);
+        if (pending != null) {
+            if (akka == null) {
+                // The action cannot be invoked later, so do not wait.
+                return context.proceed();
+            }
+            return share(pending, context);
+        }
+
+        CachedResult entry = null;
+        try {
+            Result result = context.proceed();
+            entry = compute(key, configuration, context, result);
+            return withCachedContent(result, entry);
+        } finally {
+            computations.remove(key, computation);
+            computation.set(entry);
+        }
+    }
+
+    /**
+     * Computes the key identifying the result in the cache.
+     *
+     * @param configuration the interception configuration
+     * @param context       the interception context
+     * @return the key
+     */
+    private static String key(Cached configuration, RequestContext context) {
+        StringBuilder key = new StringBuilder();
         if (Strings.isNullOrEmpty(configuration.key())) {
-            key = context.request().uri();
+            key.append(context.request().uri());
         } else {
-            key = configuration.key();
+            key.append(configuration.key());
+        }
+        if (configuration.headers() != null) {
+            for (String header : configuration.headers()) {
+                key.append('|').append(header).append(':')
+                        .append(Strings.nullToEmpty(context.context().header(header)));
+            }
+        }
+        if (configuration.parameters() != null) {
+            for (String parameter : configuration.parameters()) {
+                key.append('|').append(parameter).append('=')
+                        .append(Strings.nullToEmpty(context.context().parameter(parameter)));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Creates an asynchronous result completed with the result of the given computation. If the computation cannot
+     * provide a result (failure or result not cacheable) or does not complete in time, the action is invoked on the
+     * Akka dispatcher.
+     *
+     * @param computation the computation in progress
+     * @param context     the interception context
+     * @return the asynchronous result
+     */
+    private Result share(final SettableFuture<CachedResult> computation, final RequestContext context) {
+        final SettableFuture<Result> shared = SettableFuture.create();
+        // Set by the first of the computation and the timeout.
+        final AtomicBoolean settled = new AtomicBoolean();
+        final Cancellable timer = akka.system().scheduler().scheduleOnce(
+                FiniteDuration.create(timeout, TimeUnit.MILLISECONDS), new Runnable() {
+                    @Override
+                    public void run() {
+                        if (settled.compareAndSet(false, true)) {
+                            LOGGER.debug("The shared computation of {} timed out", context.request().uri());
+                            proceed(context, shared);
+                        }
+                    }
+                }, akka.system().dispatcher());
+        computation.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (!settled.compareAndSet(false, true)) {
+                    return;
+                }
+                if (timer != null) {
+                    timer.cancel();
+                }
+                CachedResult entry = Futures.getUnchecked(computation);
+                if (entry != null) {
+                    shared.set(entry.toResult());
+                } else {
+                    // The other computation failed or its result cannot be cached, invoke the action.
+                    proceed(context, shared);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return new AsyncResult(shared);
+    }
+
+    /**
+     * Invokes the action on the Akka dispatcher, and completes the given future with its result.
+     */
+    private void proceed(final RequestContext context, final SettableFuture<Result> future) {
+        try {
+            akka.dispatchResultWithContext(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    try {
+                        Result result = context.proceed();
+                        future.set(result);
+                        return result;
+                    } catch (Exception e) {
+                        future.setException(e);
+                        throw e;
+                    }
+                }
+            }, context.context());
+        } catch (RuntimeException e) {
+            future.setException(e);
         }
+    }
 
-        Result result = null;
-        if (!nocache) {
-            result = (Result) cache.get(key);
+    /**
+     * Computes a new result in background, unless a computation is already in progress for the given key. The route
+     * is invoked again, with a copy of the current HTTP context, as the current request is answered with the expired
+     * result (and its context cleaned up) before the computation completes.
+     */
+    private void revalidate(final String key, final Cached configuration, final RequestContext context) {
+        final Route route = context.route();
+        if (route == null) {
+            return;
+        }
+        final SettableFuture<CachedResult> computation = SettableFuture.create();
+        if (computations.putIfAbsent(key, computation) != null) {
+            return;
+        }
+        try {
+            final RefreshContext refresh = new RefreshContext(context.context(), route);
+            akka.dispatchResultWithContext(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    CachedResult entry = null;
+                    try {
+                        // The whole chain is invoked, this interceptor caches the result.
+                        Result result = route.invoke();
+                        Object cached = cache.get(key);
+                        if (cached instanceof CachedResult) {
+                            entry = (CachedResult) cached;
+                        }
+                        return result;
+                    } finally {
+                        computations.remove(key, computation);
+                        computation.set(entry);
+                    }
+                }
+            }, refresh);
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot refresh the cached result of {} (key:{})", context.request().uri(), key, e);
+            computations.remove(key, computation);
+            computation.set(null);
         }
+    }
 
-        if (result == null) {
-            result = context.proceed();
-        } else {
-            LOGGER.info("Returning cached result for {} (key:{})",
-                    context.request().uri(), key);
+    /**
+     * Replaces the content of the given result by the rendered content, as the original content may not be
+     * renderable twice.
+     */
+    private static Result withCachedContent(Result result, CachedResult entry) {
+        if (entry == null) {
             return result;
         }
+        return result.render(new RenderableByteArray(entry.content(), result.getContentType()));
+    }
+
+    /**
+     * Renders the result and stores it in the cache.
+     *
+     * @return the cached result, {@literal null} if the result cannot be cached
+     */
+    private CachedResult compute(String key, Cached configuration, RequestContext context, Result result) {
+        byte[] content = render(context, result);
+        if (content == null) {
+            LOGGER.debug("The result of {} cannot be cached (key:{})", context.request().uri(), key);
+            return null;
+        }
 
         Duration duration;
+        long freshUntil;
         if (configuration.duration() == 0) {
             // Eternity == 1 year.
             duration = Duration.standardDays(365);
+            freshUntil = Long.MAX_VALUE;
         } else {
             duration = Duration.standardSeconds(configuration.duration());
+            freshUntil = System.currentTimeMillis() + duration.getMillis();
+            if (configuration.staleWhileRevalidate() > 0) {
+                // Keep the result in the cache during the stale period.
+                duration = duration.plus(Duration.standardSeconds(configuration.staleWhileRevalidate()));
+            }
         }
 
-
-        cache.set(key, result, duration);
-        LoggerFactory.getLogger(this.getClass()).info("Caching result of {} for {} seconds (key:{})",
+        CachedResult entry = new CachedResult(result, content, freshUntil);
+        cache.set(key, entry, duration);
+        LOGGER.debug("Caching result of {} for {} seconds (key:{})",
                 context.request().uri(), configuration.duration(), key);
+        return entry;
+    }
+
+    /**
+     * Renders the content of the result, serializing it if needed.
+     *
+     * @return the rendered content, {@literal null} if the result cannot be rendered upfront (asynchronous or
+     * chunked results, or no serializer). Streamed results (such as templates) are rendered into memory, as they
+     * are only chunked to not hold the whole content.
+     */
+    private byte[] render(RequestContext context, Result result) {
+        if (result == null || result instanceof AsyncResult) {
+            return null;
+        }
+        Renderable<?> renderable = result.getRenderable();
+        if (renderable == null) {
+            renderable = NoHttpBody.INSTANCE;
+        }
+        if (renderable.mustBeChunked() && !(renderable instanceof StreamingRenderable)) {
+            return null;
+        }
+        if (renderable.requireSerializer()) {
+            ContentSerializer serializer = serializer(context, result);
+            if (serializer == null) {
+                // Let the engine decide.
+                return null;
+            }
+            serializer.serialize(renderable);
+        }
+        if (result.getContentType() == null && renderable.mimetype() != null) {
+            result.as(renderable.mimetype());
+        }
 
-        return result;
+        InputStream stream = null;
+        try {
+            stream = renderable.render(context.context(), result);
+            return stream == null ? NoHttpBody.EMPTY : ByteStreams.toByteArray(stream);
+        } catch (Exception e) {
+            LOGGER.error("Cannot render the result of {}", context.request().uri(), e);
+            return null;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (Exception e) { //NOSONAR
+                    // Ignored.
+                }
+            }
+        }
+    }
+
+    private ContentSerializer serializer(RequestContext context, Result result) {
+        if (engine == null) {
+            return null;
+        }
+        ContentSerializer serializer = null;
+        if (result.getContentType() != null) {
+            serializer = engine.getContentSerializerForContentType(result.getContentType());
+        }
+        if (serializer == null) {
+            // Try with the Accept type
+            serializer = engine.getBestSerializer(context.request().mediaTypes());
+            if (serializer != null) {
+                result.with(HeaderNames.CONTENT_TYPE, serializer.getContentType());
+            }
+        }
+        return serializer;
     }
 
     /**
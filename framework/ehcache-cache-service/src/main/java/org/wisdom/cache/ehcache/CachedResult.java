@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.ehcache;
+
+import org.wisdom.api.bodies.RenderableByteArray;
+import org.wisdom.api.cookies.Cookie;
+import org.wisdom.api.http.HeaderNames;
+import org.wisdom.api.http.Result;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cached form of a result: its status, headers, cookies and rendered content. Results built from this object
+ * are sent as they are, without being serialized again.
+ */
+final class CachedResult {
+
+    private final int status;
+
+    private final Map<String, String> headers;
+
+    private final List<Cookie> cookies;
+
+    private final Charset charset;
+
+    private final byte[] content;
+
+    /**
+     * The time (in milliseconds) until which the result is fresh. Once reached, the result is stale.
+     */
+    private final long freshUntil;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param result     the result
+     * @param content    the rendered content of the result
+     * @param freshUntil the time (in milliseconds) until which the result is fresh
+     */
+    CachedResult(Result result, byte[] content, long freshUntil) {
+        this.status = result.getStatusCode();
+        this.headers = new HashMap<>(result.getHeaders());
+        this.cookies = new ArrayList<>(result.getCookies());
+        this.charset = result.getCharset();
+        this.content = content;
+        this.freshUntil = freshUntil;
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     * @return {@literal true} if the result is still fresh
+     */
+    boolean isFresh(long now) {
+        return now < freshUntil;
+    }
+
+    /**
+     * @return the rendered content
+     */
+    byte[] content() {
+        return content;
+    }
+
+    /**
+     * Creates a new result from the cached one. Each call returns a new instance, as results are modified by the
+     * engine.
+     *
+     * @return the result
+     */
+    Result toResult() {
+        Result result = new Result(status);
+        result.getHeaders().putAll(headers);
+        for (Cookie cookie : cookies) {
+            result.with(cookie);
+        }
+        return result.with(charset)
+                .render(new RenderableByteArray(content, headers.get(HeaderNames.CONTENT_TYPE)));
+    }
+}
@@ -23,19 +23,24 @@ import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 import org.apache.felix.ipojo.annotations.*;
 import org.joda.time.Duration;
+import org.wisdom.akka.AkkaSystemService;
+import org.wisdom.api.cache.AbstractCache;
 import org.wisdom.api.cache.Cache;
 import org.wisdom.api.configuration.ApplicationConfiguration;
+import scala.concurrent.ExecutionContext;
 
 import java.io.File;
 import java.net.URL;
+import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * An implementation of the cache service based on EhCache.
  */
 @Component(immediate = true)
-@Provides
+@Provides(specifications = Cache.class)
 @Instantiate
-public class EhCacheService implements Cache {
+public class EhCacheService extends AbstractCache {
 
     private static final String WISDOM_KEY = "wisdom";
 
@@ -56,6 +61,9 @@ public class EhCacheService implements Cache {
 
     @Requires ApplicationConfiguration configuration;
 
+    @Requires
+    AkkaSystemService akka;
+
     /**
      * Creates the EhCache-based implementation of the Cache Service.
      */
@@ -104,8 +112,9 @@ public class EhCacheService implements Cache {
         Element element = new Element(key, value);
         if (expiration == 0) {
             element.setEternal(true);
+        } else {
+            element.setTimeToLive(expiration);
         }
-        element.setTimeToLive(expiration);
         cache.put(element);
     }
 
@@ -114,17 +123,21 @@ public class EhCacheService implements Cache {
      *
      * @param key        Item key.
      * @param value      Item value.
-     * @param expiration Expiration time.
+     * @param expiration Expiration time, {@literal null} or zero means eternity.
      */
     @Override
     public void set(String key, Object value, Duration expiration) {
+        cache.put(element(key, value, expiration));
+    }
+
+    private static Element element(Object key, Object value, Duration expiration) {
         Element element = new Element(key, value);
-        if (expiration == null) {
+        if (expiration == null || expiration.getStandardSeconds() == 0) {
             element.setEternal(true);
         } else {
             element.setTimeToLive((int) expiration.getStandardSeconds());
         }
-        cache.put(element);
+        return element;
     }
 
     /**
@@ -152,4 +165,61 @@ public class EhCacheService implements Cache {
     public boolean remove(String key) {
         return cache.remove(key);
     }
+
+    /**
+     * Gets several entries from the cache, using a single EhCache call.
+     *
+     * @param keys Item keys.
+     * @return the stored objects by key, the keys not stored or expired are omitted.
+     */
+    @Override
+    public Map<String, Object> getAll(Collection<String> keys) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<Object, Element> entry : cache.getAll(keys).entrySet()) {
+            if (entry.getValue() != null) {
+                values.put((String) entry.getKey(), entry.getValue().getObjectValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds several entries in the cache, using a single EhCache call.
+     *
+     * @param entries    the items to store, by key.
+     * @param expiration Expiration time, {@literal null} or zero means eternity.
+     */
+    @Override
+    public void setAll(Map<String, ?> entries, Duration expiration) {
+        List<Element> elements = new ArrayList<>(entries.size());
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            elements.add(element(entry.getKey(), entry.getValue(), expiration));
+        }
+        cache.putAll(elements);
+    }
+
+    /**
+     * Removes several entries from the cache, using a single EhCache call.
+     *
+     * @param keys Item keys.
+     */
+    @Override
+    public void removeAll(Collection<String> keys) {
+        cache.removeAll(keys);
+    }
+
+    /**
+     * @return an executor running the asynchronous operations on the Akka dispatcher, preserving the HTTP context
+     * and thread context class loader of the caller.
+     */
+    @Override
+    protected Executor executor() {
+        final ExecutionContext context = akka.fromThread();
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                context.execute(command);
+            }
+        };
+    }
 }
@@ -0,0 +1,542 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.ehcache;
+
+import org.wisdom.api.cookies.Cookie;
+import org.wisdom.api.cookies.Cookies;
+import org.wisdom.api.cookies.FlashCookie;
+import org.wisdom.api.cookies.SessionCookie;
+import org.wisdom.api.http.Context;
+import org.wisdom.api.http.FileItem;
+import org.wisdom.api.http.MediaType;
+import org.wisdom.api.http.Request;
+import org.wisdom.api.http.Result;
+import org.wisdom.api.router.Route;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The HTTP context used to compute a cached result in background, once the request having triggered the
+ * computation has been answered. The engine cleans up the original context once the response is written, so this
+ * context is created while the original request is processed, and does not share its mutable state:
+ * <ul>
+ * <li>the request data, session and flash are copies, there is no response to send their modifications to, so
+ * they are discarded</li>
+ * <li>uploaded files are not available, as they are deleted with the original context</li>
+ * <li>the request line, headers, parameters, cookies and body are read from the original context, as they are not
+ * modified by the engine</li>
+ * </ul>
+ */
+final class RefreshContext implements Context {
+
+    private final Context context;
+
+    private final Request request;
+
+    private final SessionCookie session;
+
+    private final FlashCookie flash;
+
+    private Route route;
+
+    /**
+     * Creates a new context. This constructor must be called while the original request is processed.
+     *
+     * @param context the context of the original request
+     * @param route   the route to invoke
+     */
+    RefreshContext(Context context, Route route) {
+        this.context = context;
+        this.route = route;
+        this.request = new RefreshRequest(context.request());
+        this.session = new RefreshSession(context.session());
+        this.flash = new RefreshFlash(context.flash());
+    }
+
+    @Override
+    public Long id() {
+        return context.id();
+    }
+
+    @Override
+    public Request request() {
+        return request;
+    }
+
+    @Override
+    public String path() {
+        return context.path();
+    }
+
+    @Override
+    public FlashCookie flash() {
+        return flash;
+    }
+
+    @Override
+    public SessionCookie session() {
+        return session;
+    }
+
+    @Override
+    public Cookie cookie(String cookieName) {
+        return context.cookie(cookieName);
+    }
+
+    @Override
+    public boolean hasCookie(String cookieName) {
+        return context.hasCookie(cookieName);
+    }
+
+    @Override
+    public Cookies cookies() {
+        return context.cookies();
+    }
+
+    @Override
+    public String contextPath() {
+        return context.contextPath();
+    }
+
+    @Override
+    public String parameter(String name) {
+        return context.parameter(name);
+    }
+
+    @Override
+    public List<String> parameterMultipleValues(String name) {
+        return context.parameterMultipleValues(name);
+    }
+
+    @Override
+    public String parameter(String name, String defaultValue) {
+        return context.parameter(name, defaultValue);
+    }
+
+    @Override
+    public Integer parameterAsInteger(String name) {
+        return context.parameterAsInteger(name);
+    }
+
+    @Override
+    public Integer parameterAsInteger(String name, Integer defaultValue) {
+        return context.parameterAsInteger(name, defaultValue);
+    }
+
+    @Override
+    public Boolean parameterAsBoolean(String name) {
+        return context.parameterAsBoolean(name);
+    }
+
+    @Override
+    public Boolean parameterAsBoolean(String name, boolean defaultValue) {
+        return context.parameterAsBoolean(name, defaultValue);
+    }
+
+    @Override
+    public String parameterFromPath(String name) {
+        return context.parameterFromPath(name);
+    }
+
+    @Override
+    public String parameterFromPathEncoded(String name) {
+        return context.parameterFromPathEncoded(name);
+    }
+
+    @Override
+    public Integer parameterFromPathAsInteger(String key) {
+        return context.parameterFromPathAsInteger(key);
+    }
+
+    @Override
+    public Map<String, List<String>> parameters() {
+        return context.parameters();
+    }
+
+    @Override
+    public String header(String name) {
+        return context.header(name);
+    }
+
+    @Override
+    public List<String> headers(String name) {
+        return context.headers(name);
+    }
+
+    @Override
+    public Map<String, List<String>> headers() {
+        return context.headers();
+    }
+
+    @Override
+    public String cookieValue(String name) {
+        return context.cookieValue(name);
+    }
+
+    @Override
+    public <T> T body(Class<T> classOfT) {
+        return context.body(classOfT);
+    }
+
+    @Override
+    public String body() {
+        return context.body();
+    }
+
+    @Override
+    public byte[] raw() {
+        return context.raw();
+    }
+
+    @Override
+    public BufferedReader reader() throws IOException {
+        return context.reader();
+    }
+
+    @Override
+    public Route route() {
+        return route;
+    }
+
+    @Override
+    public void route(Route route) {
+        this.route = route;
+    }
+
+    @Override
+    public boolean isMultipart() {
+        return false;
+    }
+
+    @Override
+    public Collection<? extends FileItem> files() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public FileItem file(String name) {
+        return null;
+    }
+
+    @Override
+    public Map<String, List<String>> attributes() {
+        return context.attributes();
+    }
+
+    @Override
+    public Map<String, List<String>> form() {
+        return context.form();
+    }
+
+    /**
+     * The request of the refresh context, with its own data.
+     */
+    private static final class RefreshRequest extends Request {
+
+        private final Request request;
+
+        private final Map<String, Object> data = new ConcurrentHashMap<>();
+
+        private RefreshRequest(Request request) {
+            this.request = request;
+            setUsername(request.username());
+        }
+
+        @Override
+        public String contentType() {
+            return request.contentType();
+        }
+
+        @Override
+        public String method() {
+            return request.method();
+        }
+
+        @Override
+        public String parameter(String name) {
+            return request.parameter(name);
+        }
+
+        @Override
+        public List<String> parameterMultipleValues(String name) {
+            return request.parameterMultipleValues(name);
+        }
+
+        @Override
+        public String parameter(String name, String defaultValue) {
+            return request.parameter(name, defaultValue);
+        }
+
+        @Override
+        public Integer parameterAsInteger(String name) {
+            return request.parameterAsInteger(name);
+        }
+
+        @Override
+        public Integer parameterAsInteger(String name, Integer defaultValue) {
+            return request.parameterAsInteger(name, defaultValue);
+        }
+
+        @Override
+        public Boolean parameterAsBoolean(String name) {
+            return request.parameterAsBoolean(name);
+        }
+
+        @Override
+        public Boolean parameterAsBoolean(String name, boolean defaultValue) {
+            return request.parameterAsBoolean(name, defaultValue);
+        }
+
+        @Override
+        public Map<String, List<String>> parameters() {
+            return request.parameters();
+        }
+
+        @Override
+        public Map<String, Object> data() {
+            return data;
+        }
+
+        @Override
+        public String uri() {
+            return request.uri();
+        }
+
+        @Override
+        public String remoteAddress() {
+            return request.remoteAddress();
+        }
+
+        @Override
+        public String host() {
+            return request.host();
+        }
+
+        @Override
+        public String path() {
+            return request.path();
+        }
+
+        @Override
+        public MediaType mediaType() {
+            return request.mediaType();
+        }
+
+        @Override
+        public Collection<MediaType> mediaTypes() {
+            return request.mediaTypes();
+        }
+
+        @Override
+        public boolean accepts(String mimeType) {
+            return request.accepts(mimeType);
+        }
+
+        @Override
+        public Cookies cookies() {
+            return request.cookies();
+        }
+
+        @Override
+        public Map<String, List<String>> headers() {
+            return request.headers();
+        }
+
+        @Override
+        public String encoding() {
+            return request.encoding();
+        }
+
+        @Override
+        public String language() {
+            return request.language();
+        }
+
+        @Override
+        public String charset() {
+            return request.charset();
+        }
+    }
+
+    /**
+     * A copy of the session of the original request, never saved.
+     */
+    private static final class RefreshSession implements SessionCookie {
+
+        private final String id;
+
+        private final Map<String, String> data;
+
+        private RefreshSession(SessionCookie session) {
+            this.id = session == null ? null : session.getId();
+            this.data = session == null ? new HashMap<String, String>() : new HashMap<>(session.getData());
+        }
+
+        @Override
+        public void init(Context context) {
+            // Already initialized from the original session.
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public synchronized Map<String, String> getData() {
+            return Collections.unmodifiableMap(new HashMap<>(data));
+        }
+
+        @Override
+        public void save(Context context, Result result) {
+            // No response to save the session to.
+        }
+
+        @Override
+        public synchronized void put(String key, String value) {
+            data.put(key, value);
+        }
+
+        @Override
+        public synchronized String get(String key) {
+            return data.get(key);
+        }
+
+        @Override
+        public synchronized String remove(String key) {
+            return data.remove(key);
+        }
+
+        @Override
+        public synchronized void clear() {
+            data.clear();
+        }
+
+        @Override
+        public synchronized boolean isEmpty() {
+            return data.isEmpty();
+        }
+    }
+
+    /**
+     * A copy of the flash scope of the original request, never saved.
+     */
+    private static final class RefreshFlash implements FlashCookie {
+
+        private final Map<String, String> current;
+
+        private final Map<String, String> outgoing = new HashMap<>();
+
+        private RefreshFlash(FlashCookie flash) {
+            this.current = flash == null ? new HashMap<String, String>()
+                    : new HashMap<>(flash.getCurrentFlashCookieData());
+        }
+
+        @Override
+        public void init(Context context) {
+            // Already initialized from the original flash scope.
+        }
+
+        @Override
+        public void save(Context context, Result result) {
+            // No response to save the flash scope to.
+        }
+
+        @Override
+        public synchronized void put(String key, String value) {
+            current.put(key, value);
+            outgoing.put(key, value);
+        }
+
+        @Override
+        public void put(String key, Object value) {
+            put(key, value == null ? null : value.toString());
+        }
+
+        @Override
+        public void error(String value) {
+            put(FLASH_ERROR, value);
+        }
+
+        @Override
+        public void success(String value) {
+            put(FLASH_SUCCESS, value);
+        }
+
+        @Override
+        public synchronized void discard(String key) {
+            outgoing.remove(key);
+        }
+
+        @Override
+        public synchronized void discard() {
+            outgoing.clear();
+        }
+
+        @Override
+        public synchronized void keep(String key) {
+            if (current.containsKey(key)) {
+                outgoing.put(key, current.get(key));
+            }
+        }
+
+        @Override
+        public synchronized void keep() {
+            outgoing.putAll(current);
+        }
+
+        @Override
+        public synchronized String get(String key) {
+            return current.get(key);
+        }
+
+        @Override
+        public synchronized boolean remove(String key) {
+            return current.remove(key) != null;
+        }
+
+        @Override
+        public synchronized void clearCurrentFlashCookieData() {
+            current.clear();
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return current.containsKey(key);
+        }
+
+        @Override
+        public synchronized Map<String, String> getCurrentFlashCookieData() {
+            return new HashMap<>(current);
+        }
+
+        @Override
+        public synchronized Map<String, String> getOutgoingFlashCookieData() {
+            return new HashMap<>(outgoing);
+        }
+    }
+}
@@ -19,14 +19,37 @@
  */
 package org.wisdom.cache.ehcache;
 
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.actor.Scheduler;
+import com.google.common.base.Charsets;
 import org.joda.time.Duration;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wisdom.akka.AkkaSystemService;
+import org.wisdom.api.cache.AbstractCache;
 import org.wisdom.api.cache.Cache;
 import org.wisdom.api.cache.Cached;
+import org.wisdom.api.cookies.FlashCookie;
+import org.wisdom.api.cookies.SessionCookie;
 import org.wisdom.api.http.*;
 import org.wisdom.api.interception.RequestContext;
+import org.wisdom.api.router.Route;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.duration.FiniteDuration;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -53,17 +76,21 @@ public class CachedActionInterceptorTest {
         when(context.proceed()).thenReturn(r);
 
         Result result = interceptor.call(cached, context);
-        assertThat(result.getRenderable().<String>content()).isEqualTo("Result");
+        assertThat(content(result)).isEqualTo("Result");
         assertThat(result).isEqualTo(r);
         // Check that the result was put in cache.
         verify(interceptor.cache, times(1)).get("key");
-        verify(interceptor.cache, times(1)).set("key", r, Duration.standardSeconds(10));
+        ArgumentCaptor<Object> entry = ArgumentCaptor.forClass(Object.class);
+        verify(interceptor.cache, times(1)).set(eq("key"), entry.capture(), eq(Duration.standardSeconds(10)));
+        assertThat(entry.getValue()).isInstanceOf(CachedResult.class);
 
-        when(interceptor.cache.get("key")).thenReturn(r);
+        when(interceptor.cache.get("key")).thenReturn(entry.getValue());
         result = interceptor.call(cached, context);
-        assertThat(result).isEqualTo(r);
+        assertThat(content(result)).isEqualTo("Result");
+        assertThat(result.getStatusCode()).isEqualTo(Status.OK);
 
         verify(interceptor.cache, times(2)).get("key");
+        verify(context, times(1)).proceed();
     }
 
     @Test
@@ -85,15 +112,15 @@ public class CachedActionInterceptorTest {
         when(context.proceed()).thenReturn(r);
 
         Result result = interceptor.call(cached, context);
-        assertThat(result.getRenderable().<String>content()).isEqualTo("Result");
+        assertThat(content(result)).isEqualTo("Result");
         assertThat(result).isEqualTo(r);
         // Check that the result was put in cache.
         verify(interceptor.cache, times(1)).get("/my/url?withquery");
-        verify(interceptor.cache, times(1)).set("/my/url?withquery", r, Duration.standardSeconds(10));
+        verify(interceptor.cache, times(1)).set(eq("/my/url?withquery"), any(CachedResult.class),
+                eq(Duration.standardSeconds(10)));
 
-        when(interceptor.cache.get("key")).thenReturn(r);
         result = interceptor.call(cached, context);
-        assertThat(result).isEqualTo(r);
+        assertThat(content(result)).isEqualTo("Result");
 
         verify(interceptor.cache, times(2)).get("/my/url?withquery");
     }
@@ -116,7 +143,7 @@ public class CachedActionInterceptorTest {
 
         Result result = interceptor.call(cached, context);
 
-        assertThat(result.getRenderable().<String>content()).isEqualTo("Result");
+        assertThat(content(result)).isEqualTo("Result");
         assertThat(result).isEqualTo(r);
 
         final Result r2 = Results.ok("Result2");
@@ -124,13 +151,14 @@ public class CachedActionInterceptorTest {
 
         result = interceptor.call(cached, context);
         // r is cached return r even is r2 is the new result.
-        assertThat(result).isEqualTo(r);
+        assertThat(content(result)).isEqualTo("Result");
 
         // The object is cached, let's use NO CACHE
         when(context.context().header(HeaderNames.CACHE_CONTROL)).thenReturn(HeaderNames.NOCACHE_VALUE);
 
         result = interceptor.call(cached, context);
-        assertThat(result).isNotEqualTo(r).isEqualTo(r2);
+        assertThat(result).isEqualTo(r2);
+        assertThat(content(result)).isEqualTo("Result2");
 
         final Result r3 = Results.ok("Result3");
         when(context.proceed()).thenReturn(r3);
@@ -138,29 +166,424 @@ public class CachedActionInterceptorTest {
         // Remove the cache-control
         when(context.context().header(HeaderNames.CACHE_CONTROL)).thenReturn(null);
         result = interceptor.call(cached, context);
-        System.out.println(result.getRenderable().content());
-        assertThat(result).isEqualTo(r2).isNotEqualTo(r3);
+        assertThat(content(result)).isEqualTo("Result2");
+    }
+
+    @Test
+    public void testThatConcurrentMissesInvokeTheActionOnce() throws Exception {
+        final CachedActionInterceptor interceptor = new CachedActionInterceptor();
+        interceptor.cache = new DummyCache();
+        interceptor.akka = akka(new ArrayList<Runnable>());
+        final Cached cached = mock(Cached.class);
+        when(cached.duration()).thenReturn(10);
+        when(cached.key()).thenReturn("key");
+
+        final RequestContext context = mock(RequestContext.class);
+        when(context.request()).thenReturn(mock(Request.class));
+        when(context.context()).thenReturn(mock(Context.class));
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger invocations = new AtomicInteger();
+        when(context.proceed()).thenAnswer(new Answer<Result>() {
+            @Override
+            public Result answer(InvocationOnMock invocation) throws Throwable {
+                invocations.incrementAndGet();
+                entered.countDown();
+                release.await();
+                return Results.ok("Result");
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            Callable<Result> call = new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    return interceptor.call(cached, context);
+                }
+            };
+            futures.add(executor.submit(call));
+            entered.await();
+            // The concurrent misses do not wait, they get an asynchronous result.
+            List<AsyncResult> shared = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Result result = interceptor.call(cached, context);
+                assertThat(result).isInstanceOf(AsyncResult.class);
+                assertThat(((AsyncResult) result).future().isDone()).isFalse();
+                shared.add((AsyncResult) result);
+            }
+            release.countDown();
+            assertThat(content(futures.get(0).get())).isEqualTo("Result");
+            for (AsyncResult result : shared) {
+                assertThat(content(result.future().get())).isEqualTo("Result");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(invocations.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testThatConcurrentMissesInvokeTheActionOnTimeout() throws Exception {
+        final CachedActionInterceptor interceptor = new CachedActionInterceptor();
+        interceptor.cache = new DummyCache();
+        List<Runnable> timeouts = new ArrayList<>();
+        interceptor.akka = akka(timeouts);
+        final Cached cached = mock(Cached.class);
+        when(cached.duration()).thenReturn(10);
+        when(cached.key()).thenReturn("key");
+
+        final RequestContext context = mock(RequestContext.class);
+        when(context.request()).thenReturn(mock(Request.class));
+        when(context.context()).thenReturn(mock(Context.class));
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(context.proceed()).thenAnswer(new Answer<Result>() {
+            @Override
+            public Result answer(InvocationOnMock invocation) throws Throwable {
+                entered.countDown();
+                release.await();
+                return Results.ok("Result");
+            }
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Result> first = executor.submit(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    return interceptor.call(cached, context);
+                }
+            });
+            entered.await();
+            AsyncResult result = (AsyncResult) interceptor.call(cached, context);
+            assertThat(timeouts).hasSize(1);
+
+            // The shared computation takes too long, the action is invoked.
+            when(context.proceed()).thenReturn(Results.ok("Late"));
+            timeouts.get(0).run();
+            assertThat(result.future().get().getRenderable().content()).isEqualTo("Late");
+
+            release.countDown();
+            assertThat(content(first.get())).isEqualTo("Result");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates an Akka service running the dispatched tasks immediately, and collecting the scheduled ones.
+     */
+    private static AkkaSystemService akka(final List<Runnable> scheduled) {
+        AkkaSystemService akka = mock(AkkaSystemService.class);
+        ActorSystem system = mock(ActorSystem.class);
+        Scheduler scheduler = mock(Scheduler.class);
+        when(akka.system()).thenReturn(system);
+        when(system.scheduler()).thenReturn(scheduler);
+        when(scheduler.scheduleOnce(any(FiniteDuration.class), any(Runnable.class), any(ExecutionContext.class)))
+                .thenAnswer(new Answer<Cancellable>() {
+                    @Override
+                    public Cancellable answer(InvocationOnMock invocation) throws Throwable {
+                        scheduled.add((Runnable) invocation.getArguments()[1]);
+                        return mock(Cancellable.class);
+                    }
+                });
+        when(akka.dispatchResultWithContext(any(Callable.class), any(Context.class))).thenAnswer(
+                new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        try {
+                            ((Callable<?>) invocation.getArguments()[0]).call();
+                        } catch (Exception e) { //NOSONAR
+                            // Reported by the task.
+                        }
+                        return null;
+                    }
+                });
+        return akka;
+    }
+
+    @Test
+    public void testKeyComposedFromHeadersAndParameters() throws Exception {
+        CachedActionInterceptor interceptor = new CachedActionInterceptor();
+        interceptor.cache = new DummyCache();
+        Cached cached = mock(Cached.class);
+        when(cached.duration()).thenReturn(10);
+        when(cached.key()).thenReturn("key");
+        when(cached.headers()).thenReturn(new String[]{HeaderNames.ACCEPT});
+        when(cached.parameters()).thenReturn(new String[]{"page"});
+
+        RequestContext context = mock(RequestContext.class);
+        when(context.request()).thenReturn(mock(Request.class));
+        Context ctx = mock(Context.class);
+        when(context.context()).thenReturn(ctx);
+        when(ctx.header(HeaderNames.ACCEPT)).thenReturn(MimeTypes.JSON);
+        when(ctx.parameter("page")).thenReturn("1");
+        when(context.proceed()).thenReturn(Results.ok("json"));
+
+        assertThat(content(interceptor.call(cached, context))).isEqualTo("json");
+        assertThat(((DummyCache) interceptor.cache).map.keySet()).containsExactly("key|Accept:application/json|page=1");
+
+        when(ctx.header(HeaderNames.ACCEPT)).thenReturn(MimeTypes.HTML);
+        when(context.proceed()).thenReturn(Results.ok("html"));
+        assertThat(content(interceptor.call(cached, context))).isEqualTo("html");
+
+        when(ctx.header(HeaderNames.ACCEPT)).thenReturn(MimeTypes.JSON);
+        assertThat(content(interceptor.call(cached, context))).isEqualTo("json");
+        verify(context, times(2)).proceed();
+    }
+
+    /**
+     * Creates a route invoking the interceptor, as the router does, with the current HTTP context. The action
+     * returns the value of the {@literal user} session attribute and stores a new one.
+     */
+    private static Route route(final CachedActionInterceptor interceptor, final Cached cached,
+                               final AtomicInteger invocations) throws Exception {
+        Route route = mock(Route.class);
+        when(route.invoke()).thenAnswer(new Answer<Result>() {
+            @Override
+            public Result answer(InvocationOnMock invocation) throws Throwable {
+                final Context ctx = Context.CONTEXT.get();
+                RequestContext rc = mock(RequestContext.class);
+                when(rc.context()).thenReturn(ctx);
+                when(rc.request()).thenReturn(ctx.request());
+                when(rc.proceed()).thenAnswer(new Answer<Result>() {
+                    @Override
+                    public Result answer(InvocationOnMock invocation) throws Throwable {
+                        invocations.incrementAndGet();
+                        ctx.request().data().put("visited", true);
+                        ctx.session().put("visited", "true");
+                        return Results.ok("fresh " + ctx.session().get("user"));
+                    }
+                });
+                return interceptor.call(cached, rc);
+            }
+        });
+        return route;
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        final CachedActionInterceptor interceptor = new CachedActionInterceptor();
+        interceptor.cache = new DummyCache();
+        interceptor.akka = mock(AkkaSystemService.class);
+        final List<Callable<Result>> tasks = new ArrayList<>();
+        final List<Context> contexts = new ArrayList<>();
+        when(interceptor.akka.dispatchResultWithContext(any(Callable.class), any(Context.class))).thenAnswer(
+                new Answer<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        // Run the task later.
+                        tasks.add((Callable<Result>) invocation.getArguments()[0]);
+                        contexts.add((Context) invocation.getArguments()[1]);
+                        return null;
+                    }
+                });
+        Cached cached = mock(Cached.class);
+        when(cached.duration()).thenReturn(10);
+        when(cached.staleWhileRevalidate()).thenReturn(5);
+        when(cached.key()).thenReturn("key");
+        AtomicInteger invocations = new AtomicInteger();
+
+        // The original request.
+        Request request = mock(Request.class);
+        Map<String, Object> data = new TreeMap<>();
+        when(request.data()).thenReturn(data);
+        SessionCookie session = mock(SessionCookie.class);
+        when(session.getData()).thenReturn(Collections.singletonMap("user", "alice"));
+        Context ctx = mock(Context.class);
+        when(ctx.request()).thenReturn(request);
+        when(ctx.session()).thenReturn(session);
+        when(ctx.flash()).thenReturn(mock(FlashCookie.class));
+        RequestContext context = mock(RequestContext.class);
+        when(context.request()).thenReturn(request);
+        when(context.context()).thenReturn(ctx);
+        when(context.route()).thenReturn(route(interceptor, cached, invocations));
+
+        // An expired entry still in the cache.
+        interceptor.cache.set("key", new CachedResult(Results.ok("stale"), "stale".getBytes(), 0), 15);
+
+        Result result = interceptor.call(cached, context);
+        assertThat(content(result)).isEqualTo("stale");
+        verify(context, never()).proceed();
+        assertThat(tasks).hasSize(1);
+
+        // The original request completes, and the engine cleans up its context.
+        data.clear();
+        Context.CONTEXT.remove();
+
+        // The background computation runs with its own context.
+        Context.CONTEXT.set(contexts.get(0));
+        try {
+            assertThat(content(tasks.get(0).call())).isEqualTo("fresh alice");
+        } finally {
+            Context.CONTEXT.remove();
+        }
+        assertThat(invocations.get()).isEqualTo(1);
+        CachedResult entry = (CachedResult) interceptor.cache.get("key");
+        assertThat(entry.isFresh(System.currentTimeMillis())).isTrue();
+        assertThat(content(entry.toResult())).isEqualTo("fresh alice");
+
+        // The state of the original request is not modified.
+        assertThat(data).isEmpty();
+        verify(session, never()).put(anyString(), anyString());
+
+        // The refreshed entry is served.
+        assertThat(content(interceptor.call(cached, context))).isEqualTo("fresh alice");
+        assertThat(tasks).hasSize(1);
+    }
+
+    @Test
+    public void testStaleEntriesAreNotServedWithoutStaleWhileRevalidate() throws Exception {
+        CachedActionInterceptor interceptor = new CachedActionInterceptor();
+        interceptor.cache = mock(Cache.class);
+        interceptor.akka = mock(AkkaSystemService.class);
+        Cached cached = mock(Cached.class);
+        when(cached.duration()).thenReturn(10);
+        when(cached.key()).thenReturn("key");
+
+        RequestContext context = mock(RequestContext.class);
+        when(context.request()).thenReturn(mock(Request.class));
+        when(context.context()).thenReturn(mock(Context.class));
+        when(context.proceed()).thenReturn(Results.ok("fresh"));
+
+        // An expired entry still in the cache, as the cache expiration is rounded to the second.
+        CachedResult stale = new CachedResult(Results.ok("stale"), "stale".getBytes(), 0);
+        when(interceptor.cache.get("key")).thenReturn(stale);
+
+        assertThat(content(interceptor.call(cached, context))).isEqualTo("fresh");
+        verify(context, times(1)).proceed();
+        verify(interceptor.akka, never()).dispatchResultWithContext(any(Callable.class), any(Context.class));
+        // Without stale period, the entry is only kept for the duration.
+        verify(interceptor.cache).set(eq("key"), any(CachedResult.class), eq(Duration.standardSeconds(10)));
+    }
+
+    @Test
+    public void testThatAsyncResultsAreNotCached() throws Exception {
+        CachedActionInterceptor interceptor = new CachedActionInterceptor();
+        interceptor.cache = mock(Cache.class);
+        Cached cached = mock(Cached.class);
+        when(cached.key()).thenReturn("key");
+
+        RequestContext context = mock(RequestContext.class);
+        when(context.request()).thenReturn(mock(Request.class));
+        when(context.context()).thenReturn(mock(Context.class));
+        Result async = new AsyncResult(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                return Results.ok();
+            }
+        });
+        when(context.proceed()).thenReturn(async);
+
+        assertThat(interceptor.call(cached, context)).isSameAs(async);
+        verify(interceptor.cache, never()).set(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    public void testThatStreamedTemplatesAreCached() throws Exception {
+        CachedActionInterceptor interceptor = new CachedActionInterceptor();
+        interceptor.cache = new DummyCache();
+        Cached cached = mock(Cached.class);
+        when(cached.duration()).thenReturn(10);
+        when(cached.key()).thenReturn("key");
+
+        RequestContext context = mock(RequestContext.class);
+        when(context.request()).thenReturn(mock(Request.class));
+        when(context.context()).thenReturn(mock(Context.class));
+        Template template = new Template("<p>page</p>");
+        when(context.proceed()).thenReturn(Results.ok().render(template));
+
+        assertThat(content(interceptor.call(cached, context))).isEqualTo("<p>page</p>");
+        assertThat(content(interceptor.call(cached, context))).isEqualTo("<p>page</p>");
+        Result hit = interceptor.call(cached, context);
+        assertThat(hit.getContentType()).isEqualTo(MimeTypes.HTML);
+        // The cached content is sent as it is, the template is rendered once.
+        assertThat(hit.getRenderable().mustBeChunked()).isFalse();
+        assertThat(template.renderings).isEqualTo(1);
+        verify(context, times(1)).proceed();
     }
 
-    private class DummyCache extends TreeMap<String, Object> implements Cache {
+    /**
+     * A renderable object streamed by the engines, as the templates are.
+     */
+    private static class Template implements Renderable<String>, StreamingRenderable {
+        private final String page;
+        private int renderings;
+
+        private Template(String page) {
+            this.page = page;
+        }
+
+        @Override
+        public void renderTo(Context context, Result result, OutputStream out) throws RenderableException {
+            throw new UnsupportedOperationException("Rendered into the response");
+        }
+
+        @Override
+        public InputStream render(Context context, Result result) throws RenderableException {
+            renderings++;
+            return new ByteArrayInputStream(page.getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public long length() {
+            return -1;
+        }
+
+        @Override
+        public String mimetype() {
+            return MimeTypes.HTML;
+        }
+
+        @Override
+        public String content() {
+            return page;
+        }
+
+        @Override
+        public boolean requireSerializer() {
+            return false;
+        }
+
+        @Override
+        public void setSerializedForm(String serialized) {
+            // Not supported.
+        }
+
+        @Override
+        public boolean mustBeChunked() {
+            return true;
+        }
+    }
+
+    private static String content(Result result) {
+        return new String((byte[]) result.getRenderable().content(), Charsets.UTF_8);
+    }
+
+    private class DummyCache extends AbstractCache {
+        private final Map<String, Object> map = new TreeMap<>();
+
         @Override
-        public void set(String key, Object value, int expiration) {
-            put(key, value);
+        public synchronized void set(String key, Object value, int expiration) {
+            map.put(key, value);
         }
 
         @Override
-        public void set(String key, Object value, Duration expiration) {
-            put(key, value);
+        public synchronized void set(String key, Object value, Duration expiration) {
+            map.put(key, value);
         }
 
         @Override
-        public Object get(String key) {
-            return super.get(key);
+        public synchronized Object get(String key) {
+            return map.get(key);
         }
 
         @Override
-        public boolean remove(String key) {
-            return super.remove(key) != null;
+        public synchronized boolean remove(String key) {
+            return map.remove(key) != null;
         }
     }
 }
@@ -19,10 +19,13 @@
  */
 package org.wisdom.cache.ehcache;
 
+import com.google.common.collect.ImmutableMap;
 import org.joda.time.Duration;
 import org.junit.Test;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
@@ -96,6 +99,24 @@ public class EhCacheServiceTest {
 
     }
 
+    @Test
+    public void testBulkOperations() {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        EhCacheService svc = new EhCacheService();
+        svc.configuration = configuration;
+        svc.start();
+
+        svc.setAll(ImmutableMap.of("a", "1", "b", "2"), Duration.standardSeconds(10));
+        assertThat(svc.getAll(Arrays.asList("a", "b", "c"))).hasSize(2)
+                .containsEntry("a", "1").containsEntry("b", "2");
+
+        svc.removeAll(Arrays.asList("a", "c"));
+        assertThat(svc.get("a")).isNull();
+        assertThat(svc.view(String.class).get("b")).isEqualTo("2");
+
+        svc.stop();
+    }
+
     private void waitForCleanup(EhCacheService svc) throws InterruptedException {
         for (int count = 0; count < 5; count++) {
             Object obj = svc.get("key");
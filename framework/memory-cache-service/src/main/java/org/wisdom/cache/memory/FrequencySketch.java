@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.memory;
+
+/**
+ * A probabilistic estimate of the access frequency of the entries (a Count-Min sketch with 4-bit counters), used
+ * by the TinyLFU admission policy. Each hash increments 4 counters, the frequency is the minimum of them. Once
+ * enough accesses have been recorded, all the counters are halved so that the old accesses fade away.
+ * <p>
+ * This class is not thread-safe, it is guarded by the lock of its segment.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long MAXIMUM_COUNTER = 15L;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    /**
+     * Creates a new sketch.
+     *
+     * @param expectedEntries the expected number of entries, rounded to a power of two
+     */
+    FrequencySketch(int expectedEntries) {
+        int length = ceilingPowerOfTwo(Math.max(expectedEntries, 16));
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    /**
+     * Records an access.
+     *
+     * @param hash the hash of the entry
+     */
+    void increment(int hash) {
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @param hash the hash of the entry
+     * @return the estimated number of accesses, between 0 and 15
+     */
+    int frequency(int hash) {
+        int start = (hash & 3) << 2;
+        long frequency = MAXIMUM_COUNTER;
+        for (int i = 0; i < 4; i++) {
+            long count = (table[indexOf(hash, i)] >>> ((start + i) << 2)) & MAXIMUM_COUNTER;
+            frequency = Math.min(frequency, count);
+        }
+        return (int) frequency;
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = MAXIMUM_COUNTER << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    /**
+     * Halves all the counters.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+    }
+
+    static int ceilingPowerOfTwo(int value) {
+        return 1 << -Integer.numberOfLeadingZeros(value - 1);
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.memory;
+
+import com.google.common.base.Ticker;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory cache bounded by the (estimated) size of its entries, in bytes.
+ * <p>
+ * The cache is split into segments (stripes), each one holding a part of the keys. Reads never block: the entry is
+ * looked up in a concurrent map, and the access is recorded only if the lock of the segment is free. Writes lock
+ * their segment only.
+ * <p>
+ * Each segment uses the W-TinyLFU policy: new entries enter a small LRU window (1% of the segment). Entries leaving
+ * the window are admitted in the main LRU space only if they are accessed more often than the entry they would
+ * evict, as estimated by a {@link FrequencySketch}. So, entries read once do not flush the frequently used ones.
+ * <p>
+ * Each entry has its own time-to-live, tracked by a {@link TimerWheel}. Expired entries are never returned, and
+ * they are removed when the wheel is advanced, during the maintenance following reads and writes.
+ */
+final class MemoryCache {
+
+    /**
+     * The estimated weight of an entry without its key and value.
+     */
+    static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * The maximum time-to-live, longer durations never expire.
+     */
+    private static final long MAXIMUM_TTL = Long.MAX_VALUE >> 2;
+
+    /**
+     * The percentage of the segment weight given to the window.
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    /**
+     * The estimated average weight of the entries, used to size the frequency sketches.
+     */
+    private static final int AVERAGE_WEIGHT = 512;
+
+    private static final int MAXIMUM_SKETCH_SIZE = 1 << 20;
+
+    private final Segment[] segments;
+
+    private final int segmentShift;
+
+    private final Ticker ticker;
+
+    private final int defaultWeight;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maximumWeight the maximum weight of the cache, in bytes
+     * @param concurrency   the expected number of threads accessing the cache concurrently, it sets the number of
+     *                      segments
+     * @param defaultWeight the weight of the values whose size cannot be estimated
+     * @param ticker        the source of time
+     */
+    MemoryCache(long maximumWeight, int concurrency, int defaultWeight, Ticker ticker) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("The maximum weight must be positive: " + maximumWeight);
+        }
+        int count = FrequencySketch.ceilingPowerOfTwo(Math.max(1, Math.min(concurrency, 1 << 16)));
+        this.segments = new Segment[count];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+        this.ticker = ticker;
+        this.defaultWeight = defaultWeight;
+        long segmentWeight = Math.max(1, maximumWeight / count);
+        long now = ticker.read();
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(segmentWeight, now);
+        }
+    }
+
+    /**
+     * Gets the value associated with the given key.
+     *
+     * @param key the key
+     * @return the value, {@literal null} if not cached or expired
+     */
+    Object get(String key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Associates the given value with the given key, replacing the previous value if any. A {@literal null} value
+     * removes the entry.
+     *
+     * @param key   the key
+     * @param value the value
+     * @param ttl   the time-to-live, zero or negative for entries that never expire
+     * @param unit  the unit of the time-to-live
+     */
+    void put(String key, Object value, long ttl, TimeUnit unit) {
+        int hash = hash(key);
+        if (value == null) {
+            segmentFor(hash).remove(key);
+            return;
+        }
+        long nanos = unit.toNanos(ttl);
+        segmentFor(hash).put(key, hash, value, weigh(key, value),
+                nanos <= 0 || nanos >= MAXIMUM_TTL ? -1 : nanos);
+    }
+
+    /**
+     * Removes the entry associated with the given key.
+     *
+     * @param key the key
+     * @return {@literal true} if an entry (not yet expired) was removed
+     */
+    boolean remove(String key) {
+        return segmentFor(hash(key)).remove(key);
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Removes the expired entries.
+     */
+    void cleanUp() {
+        for (Segment segment : segments) {
+            segment.cleanUp();
+        }
+    }
+
+    /**
+     * @return the number of reads having found a value
+     */
+    long hits() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.hits.get();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of reads having not found a value
+     */
+    long misses() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.misses.get();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of entries removed to respect the maximum weight
+     */
+    long evictions() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.evictions.get();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of entries removed because they have expired
+     */
+    long expirations() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.expirations.get();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of entries, including the expired ones not yet removed
+     */
+    long size() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.map.size();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the current weight of the cache, in bytes
+     */
+    long weight() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.weight;
+        }
+        return sum;
+    }
+
+    /**
+     * Estimates the weight of an entry, in bytes.
+     */
+    int weigh(String key, Object value) {
+        long weight = ENTRY_OVERHEAD + 2L * key.length();
+        if (value instanceof byte[]) {
+            weight += ((byte[]) value).length;
+        } else if (value instanceof CharSequence) {
+            weight += 2L * ((CharSequence) value).length();
+        } else if (value instanceof ByteBuffer) {
+            weight += ((ByteBuffer) value).remaining();
+        } else {
+            weight += defaultWeight;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    /**
+     * Spreads the bits of the hash code of the key, as the segment is selected using the highest bits.
+     */
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A segment of the cache.
+     */
+    private final class Segment implements TimerWheel.Expirer {
+
+        final ConcurrentMap<String, Node> map = new ConcurrentHashMap<>();
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        final AtomicLong hits = new AtomicLong();
+
+        final AtomicLong misses = new AtomicLong();
+
+        final AtomicLong evictions = new AtomicLong();
+
+        final AtomicLong expirations = new AtomicLong();
+
+        final long maximumWeight;
+
+        final long maximumWindowWeight;
+
+        /*
+         * The following fields are guarded by the lock.
+         */
+
+        final Node window = new Node();
+
+        final Node main = new Node();
+
+        final FrequencySketch sketch;
+
+        final TimerWheel wheel;
+
+        long windowWeight;
+
+        /**
+         * The total weight, written under the lock, read without.
+         */
+        volatile long weight;
+
+        Segment(long maximumWeight, long now) {
+            this.maximumWeight = maximumWeight;
+            this.maximumWindowWeight = Math.max(1, maximumWeight * WINDOW_PERCENT / 100);
+            this.sketch = new FrequencySketch((int) Math.min(MAXIMUM_SKETCH_SIZE,
+                    Math.max(1, maximumWeight / AVERAGE_WEIGHT)));
+            this.wheel = new TimerWheel(now);
+        }
+
+        Object get(String key, int hash) {
+            Node node = map.get(key);
+            if (node == null) {
+                misses.incrementAndGet();
+                afterRead(null, hash);
+                return null;
+            }
+            Object value = node.value;
+            long now = ticker.read();
+            if (node.isExpired(now)) {
+                misses.incrementAndGet();
+                afterRead(null, hash);
+                return null;
+            }
+            hits.incrementAndGet();
+            afterRead(node, hash);
+            return value;
+        }
+
+        /**
+         * Records the access if the segment is not locked. Under contention, some accesses are not recorded, which
+         * only makes the policy slightly less accurate.
+         */
+        private void afterRead(Node node, int hash) {
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                sketch.increment(hash);
+                if (node != null && node.previous != null) {
+                    moveToLast(node.space == Node.WINDOW ? window : main, node);
+                }
+                wheel.advance(ticker.read(), this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String key, int hash, Object value, int entryWeight, long ttl) {
+            lock.lock();
+            try {
+                long now = ticker.read();
+                wheel.advance(now, this);
+                if (entryWeight > maximumWeight) {
+                    // Would evict everything else.
+                    Node node = map.get(key);
+                    if (node != null) {
+                        discard(node);
+                    }
+                    return;
+                }
+                sketch.increment(hash);
+                long expiresAt = ttl < 0 ? Node.ETERNAL : now + ttl;
+                Node node = map.get(key);
+                if (node == null) {
+                    node = new Node(key, hash, value, expiresAt, entryWeight);
+                    node.space = Node.WINDOW;
+                    linkLast(window, node);
+                    windowWeight += entryWeight;
+                    weight += entryWeight;
+                    map.put(key, node);
+                    if (expiresAt != Node.ETERNAL) {
+                        wheel.schedule(node);
+                    }
+                } else {
+                    int delta = entryWeight - node.weight;
+                    node.value = value;
+                    node.expiresAt = expiresAt;
+                    node.weight = entryWeight;
+                    if (node.space == Node.WINDOW) {
+                        windowWeight += delta;
+                        moveToLast(window, node);
+                    } else {
+                        moveToLast(main, node);
+                    }
+                    weight += delta;
+                    wheel.reschedule(node);
+                }
+                evict();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(String key) {
+            lock.lock();
+            try {
+                Node node = map.get(key);
+                if (node == null) {
+                    return false;
+                }
+                discard(node);
+                return !node.isExpired(ticker.read());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                for (Node node : map.values()) {
+                    discard(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void cleanUp() {
+            lock.lock();
+            try {
+                wheel.advance(ticker.read(), this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void expire(Node node) {
+            discard(node);
+            expirations.incrementAndGet();
+        }
+
+        /**
+         * Moves the entries exceeding the window to the main space, where they are candidates for admission, and
+         * evicts entries until the segment fits in its maximum weight.
+         */
+        private void evict() {
+            Node candidate = null;
+            while (windowWeight > maximumWindowWeight) {
+                Node node = window.next;
+                unlink(node);
+                node.space = Node.MAIN;
+                linkLast(main, node);
+                windowWeight -= node.weight;
+                if (candidate == null) {
+                    candidate = node;
+                }
+            }
+
+            while (weight > maximumWeight) {
+                Node victim = main.next;
+                if (victim == main) {
+                    if (window.next == window) {
+                        // Nothing left.
+                        return;
+                    }
+                    // The main space is empty.
+                    evict(window.next);
+                } else if (candidate == null) {
+                    evict(victim);
+                } else if (candidate == victim) {
+                    candidate = next(candidate);
+                    evict(victim);
+                } else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                    // The candidate is admitted.
+                    evict(victim);
+                } else {
+                    Node rejected = candidate;
+                    candidate = next(candidate);
+                    evict(rejected);
+                }
+            }
+        }
+
+        private Node next(Node node) {
+            return node.next == main ? null : node.next;
+        }
+
+        private void evict(Node node) {
+            discard(node);
+            evictions.incrementAndGet();
+        }
+
+        /**
+         * Removes the entry from the map, its space and the timer wheel.
+         */
+        private void discard(Node node) {
+            if (node.previous == null) {
+                // Already removed.
+                return;
+            }
+            map.remove(node.key, node);
+            unlink(node);
+            wheel.remove(node);
+            if (node.space == Node.WINDOW) {
+                windowWeight -= node.weight;
+            }
+            weight -= node.weight;
+        }
+    }
+
+    private static void linkLast(Node sentinel, Node node) {
+        node.previous = sentinel.previous;
+        node.next = sentinel;
+        sentinel.previous.next = node;
+        sentinel.previous = node;
+    }
+
+    private static void unlink(Node node) {
+        if (node.previous != null) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+        }
+    }
+
+    private static void moveToLast(Node sentinel, Node node) {
+        unlink(node);
+        linkLast(sentinel, node);
+    }
+}
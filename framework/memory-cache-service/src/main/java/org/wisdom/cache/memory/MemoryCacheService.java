@@ -0,0 +1,299 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.memory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import org.apache.felix.ipojo.annotations.*;
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisdom.akka.AkkaSystemService;
+import org.wisdom.api.cache.AbstractCache;
+import org.wisdom.api.cache.Cache;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import scala.concurrent.ExecutionContext;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of the cache service keeping the entries in memory, designed for the request path: reads do
+ * not lock, entries are not wrapped in additional objects, and the cache is bounded by the estimated size of its
+ * entries (in bytes).
+ * <p>
+ * The service is published with a higher ranking than the EhCache-based implementation
+ * ({@literal cache.memory.ranking}, 10 by default), so it is used when both are deployed. Set a negative ranking to
+ * prefer EhCache.
+ * <p>
+ * When the monitor is deployed, the hit, miss, eviction and expiration counters are published in its metric
+ * registry, under the {@literal cache.memory} prefix.
+ */
+@Component(immediate = true)
+@Provides(specifications = Cache.class)
+@Instantiate
+public class MemoryCacheService extends AbstractCache {
+
+    /**
+     * The configuration key setting the maximum weight (estimated size in bytes) of the cache.
+     */
+    public static final String MAXIMUM_WEIGHT = "cache.memory.maximum.weight";
+
+    /**
+     * The default maximum weight: 64 Mb.
+     */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+    /**
+     * The configuration key setting the expected number of concurrent threads, which is used to compute the
+     * number of segments.
+     */
+    public static final String CONCURRENCY = "cache.memory.concurrency";
+
+    /**
+     * The configuration key setting the weight of the values whose size cannot be estimated. The size of byte
+     * arrays, byte buffers and character sequences is estimated from their length.
+     */
+    public static final String DEFAULT_WEIGHT = "cache.memory.default.weight";
+
+    /**
+     * The default weight of the values whose size cannot be estimated: 1 Kb.
+     */
+    public static final int DEFAULT_DEFAULT_WEIGHT = 1024;
+
+    /**
+     * The configuration key setting the ranking of the service.
+     */
+    public static final String RANKING = "cache.memory.ranking";
+
+    /**
+     * The default ranking, higher than the one of the EhCache service (0).
+     */
+    public static final int DEFAULT_RANKING = 10;
+
+    /**
+     * The prefix of the published metrics.
+     */
+    public static final String METRICS_PREFIX = "cache.memory";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryCacheService.class);
+
+    @Requires
+    ApplicationConfiguration configuration;
+
+    @Requires
+    AkkaSystemService akka;
+
+    @ServiceProperty(name = "service.ranking", value = "10")
+    int ranking;
+
+    private volatile MemoryCache cache;
+
+    private final Ticker ticker;
+
+    /**
+     * Creates the service.
+     */
+    public MemoryCacheService() {
+        this(Ticker.systemTicker());
+    }
+
+    /**
+     * Creates the service using the given ticker, for testing purpose.
+     *
+     * @param ticker the ticker
+     */
+    MemoryCacheService(Ticker ticker) {
+        this.ticker = ticker;
+    }
+
+    /**
+     * Creates the cache.
+     */
+    @Validate
+    public void start() {
+        long weight = configuration.getLongWithDefault(MAXIMUM_WEIGHT, DEFAULT_MAXIMUM_WEIGHT);
+        int concurrency = configuration.getIntegerWithDefault(CONCURRENCY,
+                4 * Runtime.getRuntime().availableProcessors());
+        int defaultWeight = configuration.getIntegerWithDefault(DEFAULT_WEIGHT, DEFAULT_DEFAULT_WEIGHT);
+        ranking = configuration.getIntegerWithDefault(RANKING, DEFAULT_RANKING);
+        cache = new MemoryCache(weight, concurrency, defaultWeight, ticker);
+        LOGGER.info("In-memory cache created (maximum weight: {} bytes, concurrency: {})", weight, concurrency);
+    }
+
+    /**
+     * Clears the cache.
+     */
+    @Invalidate
+    public void stop() {
+        MemoryCache current = cache;
+        if (current != null) {
+            current.clear();
+        }
+    }
+
+    /**
+     * Publishes the metrics of the cache.
+     *
+     * @param registry the metric registry of the monitor
+     */
+    @Bind(optional = true, aggregate = true)
+    public void bindRegistry(MetricRegistry registry) {
+        registry.register(METRICS_PREFIX, metrics());
+    }
+
+    /**
+     * Withdraws the metrics of the cache.
+     *
+     * @param registry the metric registry of the monitor
+     */
+    @Unbind
+    public void unbindRegistry(MetricRegistry registry) {
+        registry.removeMatching(new MetricFilter() {
+            @Override
+            public boolean matches(String name, Metric metric) {
+                return name.startsWith(METRICS_PREFIX + ".");
+            }
+        });
+    }
+
+    /**
+     * Adds an entry in the cache.
+     *
+     * @param key        Item key.
+     * @param value      Item value.
+     * @param expiration Expiration time in seconds (0 second means eternity).
+     */
+    @Override
+    public void set(String key, Object value, int expiration) {
+        cache.put(key, value, expiration, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds an entry in the cache.
+     *
+     * @param key        Item key.
+     * @param value      Item value.
+     * @param expiration Expiration time, {@literal null} or zero means eternity.
+     */
+    @Override
+    public void set(String key, Object value, Duration expiration) {
+        cache.put(key, value, expiration == null ? 0 : expiration.getMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets an entry from the cache.
+     *
+     * @param key Item key.
+     * @return the stored object, {@literal null} if none of expired.
+     */
+    @Override
+    public Object get(String key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Removes an object from the cache.
+     *
+     * @param key Item key
+     * @return {@literal true} if the object was removed, {@literal false} otherwise.
+     */
+    @Override
+    public boolean remove(String key) {
+        return cache.remove(key);
+    }
+
+    /**
+     * @return an executor running the asynchronous operations on the Akka dispatcher, preserving the HTTP context
+     * and thread context class loader of the caller.
+     */
+    @Override
+    protected Executor executor() {
+        final ExecutionContext context = akka.fromThread();
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                context.execute(command);
+            }
+        };
+    }
+
+    /**
+     * @return the gauges exposing the counters of the cache.
+     */
+    MetricSet metrics() {
+        return new MetricSet() {
+            @Override
+            public Map<String, Metric> getMetrics() {
+                return ImmutableMap.<String, Metric>builder()
+                        .put("hits", new Gauge<Long>() {
+                            @Override
+                            public Long getValue() {
+                                return cache == null ? 0L : cache.hits();
+                            }
+                        })
+                        .put("misses", new Gauge<Long>() {
+                            @Override
+                            public Long getValue() {
+                                return cache == null ? 0L : cache.misses();
+                            }
+                        })
+                        .put("evictions", new Gauge<Long>() {
+                            @Override
+                            public Long getValue() {
+                                return cache == null ? 0L : cache.evictions();
+                            }
+                        })
+                        .put("expirations", new Gauge<Long>() {
+                            @Override
+                            public Long getValue() {
+                                return cache == null ? 0L : cache.expirations();
+                            }
+                        })
+                        .put("size", new Gauge<Long>() {
+                            @Override
+                            public Long getValue() {
+                                return cache == null ? 0L : cache.size();
+                            }
+                        })
+                        .put("weight", new Gauge<Long>() {
+                            @Override
+                            public Long getValue() {
+                                return cache == null ? 0L : cache.weight();
+                            }
+                        })
+                        .build();
+            }
+        };
+    }
+
+    /**
+     * @return the underlying cache, for testing purpose.
+     */
+    MemoryCache cache() {
+        return cache;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.memory;
+
+/**
+ * An entry of the {@link MemoryCache}. The key, value and expiration time are read without lock. The other fields
+ * are guarded by the lock of the segment holding the entry.
+ * <p>
+ * An entry belongs to two lists: the access-order list of its space (window or main) and the bucket of the
+ * {@link TimerWheel} holding it, if it expires.
+ */
+final class Node {
+
+    /**
+     * The expiration time of the entries that never expire.
+     */
+    static final long ETERNAL = Long.MAX_VALUE;
+
+    static final int WINDOW = 0;
+
+    static final int MAIN = 1;
+
+    final String key;
+
+    final int hash;
+
+    volatile Object value;
+
+    /**
+     * The expiration time, in nanoseconds as given by the ticker.
+     */
+    volatile long expiresAt;
+
+    int weight;
+
+    /**
+     * The space holding the entry, {@link #WINDOW} or {@link #MAIN}.
+     */
+    int space;
+
+    Node previous;
+
+    Node next;
+
+    Node previousInTimer;
+
+    Node nextInTimer;
+
+    /**
+     * Creates a sentinel, heading a list.
+     */
+    Node() {
+        this(null, 0, null, ETERNAL, 0);
+        previous = next = this;
+        previousInTimer = nextInTimer = this;
+    }
+
+    Node(String key, int hash, Object value, long expiresAt, int weight) {
+        this.key = key;
+        this.hash = hash;
+        this.value = value;
+        this.expiresAt = expiresAt;
+        this.weight = weight;
+    }
+
+    /**
+     * @param now the current time in nanoseconds
+     * @return {@literal true} if the entry has expired
+     */
+    boolean isExpired(long now) {
+        long expiration = expiresAt;
+        return expiration != ETERNAL && now - expiration >= 0;
+    }
+
+    /**
+     * @return {@literal true} if the entry is in a bucket of the timer wheel
+     */
+    boolean isScheduled() {
+        return nextInTimer != null;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.memory;
+
+/**
+ * A hierarchical timer wheel tracking the expiration of the entries of a segment. Scheduling, rescheduling and
+ * removing an entry are constant-time operations, and advancing the wheel only visits the buckets whose time has
+ * passed, instead of scanning all the entries.
+ * <p>
+ * The wheel has four levels of 64 buckets. The buckets of the first level cover about one second, the ones of the
+ * next levels about one minute, one hour and three days. An entry is placed in the lowest level able to hold its
+ * expiration time, and cascades to lower levels when its bucket is reached. Entries expiring beyond the span of the
+ * last level are rescheduled when their bucket is reached.
+ * <p>
+ * This class is not thread-safe, it is guarded by the lock of its segment.
+ */
+final class TimerWheel {
+
+    /**
+     * The number of buckets per level.
+     */
+    static final int BUCKETS = 64;
+
+    /**
+     * The duration of a bucket for each level, as a power of two (in nanoseconds): ~1.07s, ~1.14m, ~1.22h, ~3.26d.
+     */
+    static final int[] SHIFTS = {30, 36, 42, 48};
+
+    /**
+     * Receives the entries whose expiration time has been reached.
+     */
+    interface Expirer {
+        /**
+         * Removes the given expired entry.
+         *
+         * @param node the entry
+         */
+        void expire(Node node);
+    }
+
+    private final Node[][] wheel;
+
+    /**
+     * The time (in nanoseconds) up to which the wheel has been advanced.
+     */
+    private long nanos;
+
+    /**
+     * Creates a new wheel.
+     *
+     * @param now the current time in nanoseconds
+     */
+    TimerWheel(long now) {
+        this.nanos = now;
+        this.wheel = new Node[SHIFTS.length][BUCKETS];
+        for (Node[] buckets : wheel) {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new Node();
+            }
+        }
+    }
+
+    /**
+     * Schedules the given entry. The entry must not be scheduled already, and must expire.
+     *
+     * @param node the entry
+     */
+    void schedule(Node node) {
+        Node sentinel = bucket(node.expiresAt);
+        node.previousInTimer = sentinel.previousInTimer;
+        node.nextInTimer = sentinel;
+        sentinel.previousInTimer.nextInTimer = node;
+        sentinel.previousInTimer = node;
+    }
+
+    /**
+     * Moves the given entry to the bucket matching its expiration time, or removes it from the wheel if it does not
+     * expire anymore.
+     *
+     * @param node the entry
+     */
+    void reschedule(Node node) {
+        remove(node);
+        if (node.expiresAt != Node.ETERNAL) {
+            schedule(node);
+        }
+    }
+
+    /**
+     * Removes the given entry from the wheel, if scheduled.
+     *
+     * @param node the entry
+     */
+    void remove(Node node) {
+        if (node.isScheduled()) {
+            node.previousInTimer.nextInTimer = node.nextInTimer;
+            node.nextInTimer.previousInTimer = node.previousInTimer;
+            node.previousInTimer = null;
+            node.nextInTimer = null;
+        }
+    }
+
+    /**
+     * Advances the wheel to the given time, expiring the entries whose expiration time has been reached.
+     *
+     * @param now     the current time in nanoseconds
+     * @param expirer the object removing the expired entries
+     */
+    void advance(long now, Expirer expirer) {
+        long previous = nanos;
+        if (now - previous <= 0) {
+            return;
+        }
+        nanos = now;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previous >> SHIFTS[level];
+            long currentTicks = now >> SHIFTS[level];
+            if (currentTicks - previousTicks <= 0) {
+                // The upper levels have not moved either.
+                break;
+            }
+            expire(level, previousTicks, currentTicks - previousTicks, expirer);
+        }
+    }
+
+    /**
+     * Processes the buckets of the given level whose time has passed. The expired entries are removed, the others
+     * are scheduled again, most of the time in a lower level.
+     */
+    private void expire(int level, long previousTicks, long delta, Expirer expirer) {
+        Node[] buckets = wheel[level];
+        int count = (int) Math.min(delta, BUCKETS);
+        for (int i = 0; i < count; i++) {
+            Node sentinel = buckets[(int) ((previousTicks + i) & (BUCKETS - 1))];
+            // Detach the whole bucket, as entries may be scheduled in the same bucket again.
+            Node node = sentinel.nextInTimer;
+            sentinel.previousInTimer.nextInTimer = null;
+            sentinel.nextInTimer = sentinel;
+            sentinel.previousInTimer = sentinel;
+            while (node != sentinel && node != null) {
+                Node next = node.nextInTimer;
+                node.previousInTimer = null;
+                node.nextInTimer = null;
+                if (node.isExpired(nanos)) {
+                    expirer.expire(node);
+                } else {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Finds the bucket holding the entries expiring at the given time.
+     */
+    private Node bucket(long time) {
+        long duration = time - nanos;
+        int last = SHIFTS.length - 1;
+        for (int level = 0; level < last; level++) {
+            if (duration < (1L << SHIFTS[level + 1])) {
+                return wheel[level][(int) ((time >> SHIFTS[level]) & (BUCKETS - 1))];
+            }
+        }
+        return wheel[last][(int) ((time >> SHIFTS[last]) & (BUCKETS - 1))];
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.memory;
+
+import com.codahale.metrics.MetricRegistry;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the in-memory cache service.
+ */
+public class MemoryCacheServiceTest {
+
+    private MemoryCacheService service;
+
+    @Before
+    public void setUp() {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        Answer<Object> defaultValue = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return invocation.getArguments()[1];
+            }
+        };
+        when(configuration.getLongWithDefault(anyString(), anyLong())).thenAnswer(defaultValue);
+        when(configuration.getIntegerWithDefault(anyString(), anyInt())).thenAnswer(defaultValue);
+        service = new MemoryCacheService();
+        service.configuration = configuration;
+        service.start();
+    }
+
+    @After
+    public void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    public void testSetGetRemove() {
+        assertThat(service.ranking).isEqualTo(MemoryCacheService.DEFAULT_RANKING);
+        assertThat(service.get("key")).isNull();
+        service.set("key", "value", Duration.standardSeconds(10));
+        assertThat(service.get("key")).isEqualTo("value");
+
+        // 0 means eternity.
+        service.set("key", "value", 0);
+        assertThat(service.get("key")).isEqualTo("value");
+        service.set("key2", "value", Duration.ZERO);
+        assertThat(service.get("key2")).isEqualTo("value");
+        service.set("key3", "value", null);
+        assertThat(service.get("key3")).isEqualTo("value");
+
+        assertThat(service.remove("key")).isTrue();
+        assertThat(service.get("key")).isNull();
+        assertThat(service.remove("missing")).isFalse();
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        service.set("key", "value", Duration.millis(100));
+        assertThat(service.get("key")).isEqualTo("value");
+        Thread.sleep(200);
+        assertThat(service.get("key")).isNull();
+    }
+
+    @Test
+    public void testMetrics() {
+        MetricRegistry registry = new MetricRegistry();
+        service.bindRegistry(registry);
+        service.set("key", "value", 0);
+        service.get("key");
+        service.get("missing");
+
+        assertThat(registry.getGauges().get("cache.memory.hits").getValue()).isEqualTo(1L);
+        assertThat(registry.getGauges().get("cache.memory.misses").getValue()).isEqualTo(1L);
+        assertThat(registry.getGauges().get("cache.memory.size").getValue()).isEqualTo(1L);
+        assertThat(registry.getGauges().get("cache.memory.evictions").getValue()).isEqualTo(0L);
+
+        service.unbindRegistry(registry);
+        assertThat(registry.getGauges()).isEmpty();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.cache.memory;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the behavior of the {@link MemoryCache}.
+ */
+public class MemoryCacheTest {
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    public void testGetPutRemove() {
+        MemoryCache cache = new MemoryCache(1024 * 1024, 4, 100, ticker);
+        assertThat(cache.get("key")).isNull();
+        cache.put("key", "value", 0, TimeUnit.SECONDS);
+        assertThat(cache.get("key")).isEqualTo("value");
+        cache.put("key", "value2", 0, TimeUnit.SECONDS);
+        assertThat(cache.get("key")).isEqualTo("value2");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.weight()).isEqualTo(cache.weigh("key", "value2"));
+
+        assertThat(cache.remove("key")).isTrue();
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.remove("key")).isFalse();
+        assertThat(cache.weight()).isEqualTo(0);
+
+        assertThat(cache.hits()).isEqualTo(2);
+        assertThat(cache.misses()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNullValueRemovesTheEntry() {
+        MemoryCache cache = new MemoryCache(1024 * 1024, 4, 100, ticker);
+        cache.put("key", "value", 0, TimeUnit.SECONDS);
+        cache.put("key", null, 0, TimeUnit.SECONDS);
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testWeights() {
+        MemoryCache cache = new MemoryCache(1024, 1, 100, ticker);
+        assertThat(cache.weigh("k", new byte[100])).isEqualTo(MemoryCache.ENTRY_OVERHEAD + 2 + 100);
+        assertThat(cache.weigh("k", "abc")).isEqualTo(MemoryCache.ENTRY_OVERHEAD + 2 + 6);
+        assertThat(cache.weigh("k", new Object())).isEqualTo(MemoryCache.ENTRY_OVERHEAD + 2 + 100);
+
+        // Too heavy to be cached.
+        cache.put("big", new byte[2048], 0, TimeUnit.SECONDS);
+        assertThat(cache.get("big")).isNull();
+        assertThat(cache.weight()).isEqualTo(0);
+    }
+
+    @Test
+    public void testExpiration() {
+        MemoryCache cache = new MemoryCache(1024 * 1024, 1, 100, ticker);
+        cache.put("short", "value", 1, TimeUnit.SECONDS);
+        cache.put("long", "value", 2, TimeUnit.HOURS);
+        cache.put("eternal", "value", 0, TimeUnit.SECONDS);
+
+        ticker.advance(500, TimeUnit.MILLISECONDS);
+        assertThat(cache.get("short")).isEqualTo("value");
+
+        ticker.advance(600, TimeUnit.MILLISECONDS);
+        // Never returned once expired, even if not yet removed.
+        assertThat(cache.get("short")).isNull();
+        assertThat(cache.get("long")).isEqualTo("value");
+
+        ticker.advance(2, TimeUnit.SECONDS);
+        cache.cleanUp();
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.expirations()).isEqualTo(1);
+
+        ticker.advance(3, TimeUnit.HOURS);
+        assertThat(cache.get("long")).isNull();
+        cache.cleanUp();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.expirations()).isEqualTo(2);
+        assertThat(cache.get("eternal")).isEqualTo("value");
+
+        ticker.advance(1000, TimeUnit.DAYS);
+        cache.cleanUp();
+        assertThat(cache.get("eternal")).isEqualTo("value");
+    }
+
+    @Test
+    public void testThatUpdatesRescheduleTheExpiration() {
+        MemoryCache cache = new MemoryCache(1024 * 1024, 1, 100, ticker);
+        cache.put("key", "value", 1, TimeUnit.SECONDS);
+        cache.put("key", "value", 10, TimeUnit.MINUTES);
+        ticker.advance(5, TimeUnit.SECONDS);
+        cache.cleanUp();
+        assertThat(cache.get("key")).isEqualTo("value");
+
+        cache.put("key", "value", 0, TimeUnit.SECONDS);
+        ticker.advance(1, TimeUnit.HOURS);
+        cache.cleanUp();
+        assertThat(cache.get("key")).isEqualTo("value");
+        assertThat(cache.expirations()).isEqualTo(0);
+    }
+
+    @Test
+    public void testThatWeightIsBounded() {
+        long maximum = 100 * 1024;
+        MemoryCache cache = new MemoryCache(maximum, 1, 100, ticker);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key-" + i, new byte[1000], 0, TimeUnit.SECONDS);
+            assertThat(cache.weight()).isLessThanOrEqualTo(maximum);
+        }
+        assertThat(cache.evictions()).isGreaterThan(0);
+        assertThat(cache.size() + cache.evictions()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testThatFrequentEntriesAreKept() {
+        MemoryCache cache = new MemoryCache(100 * 1024, 1, 100, ticker);
+        // A working set, accessed frequently.
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get("hot-" + i) == null) {
+                    cache.put("hot-" + i, new byte[1000], 0, TimeUnit.SECONDS);
+                }
+            }
+        }
+        // A scan of entries read once.
+        for (int i = 0; i < 1000; i++) {
+            cache.put("scan-" + i, new byte[1000], 0, TimeUnit.SECONDS);
+        }
+        int kept = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot-" + i) != null) {
+                kept++;
+            }
+        }
+        // With a plain LRU, the scan would have evicted the whole working set.
+        assertThat(kept).isGreaterThan(40);
+    }
+
+    @Test
+    public void testConcurrentAccesses() throws Exception {
+        final MemoryCache cache = new MemoryCache(64 * 1024, 4, 100, Ticker.systemTicker());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < 20000; i++) {
+                            String key = "key-" + random.nextInt(500);
+                            int operation = random.nextInt(10);
+                            if (operation == 0) {
+                                cache.remove(key);
+                            } else if (operation < 4) {
+                                cache.put(key, new byte[random.nextInt(500)], seed % 2, TimeUnit.SECONDS);
+                            } else {
+                                cache.get(key);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.weight()).isLessThanOrEqualTo(64 * 1024);
+        assertThat(cache.hits() + cache.misses()).isGreaterThan(0);
+        cache.clear();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.weight()).isEqualTo(0);
+    }
+
+    private static class FakeTicker extends Ticker {
+        private final AtomicLong nanos = new AtomicLong(-TimeUnit.DAYS.toNanos(1));
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(time));
+        }
+    }
+}
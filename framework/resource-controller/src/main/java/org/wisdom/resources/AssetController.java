@@ -25,6 +25,9 @@ import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.felix.ipojo.annotations.*;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.ow2.chameleon.core.services.Deployer;
+import org.ow2.chameleon.core.services.Watcher;
 import org.wisdom.api.DefaultController;
 import org.wisdom.api.asset.Asset;
 import org.wisdom.api.asset.AssetProvider;
@@ -60,8 +63,20 @@ public class AssetController extends DefaultController implements AssetProvider
     ApplicationConfiguration configuration;
     @Requires
     Crypto crypto;
+    @Requires(optional = true, nullable = false)
+    Watcher watcher;
 
+    /**
+     * The compressed variants of the served assets.
+     */
+    private final CompressedVariants variants;
+
+    /**
+     * The index of the served assets.
+     */
+    private final AssetIndex index;
 
+    private ServiceRegistration<Deployer> registration;
 
     /**
      * Creates an instance of the asset controller.
@@ -74,6 +89,40 @@ public class AssetController extends DefaultController implements AssetProvider
         this.directory = new File(configuration.getBaseDir(), path);
         this.context = bc;
         this.manageAssetsFromBundles = manageAssetsFromBundles;
+        this.variants = new CompressedVariants(configuration);
+        this.index = new AssetIndex(directory, bc, configuration, crypto);
+    }
+
+    /**
+     * Builds the asset index and registers it as deployer to be notified when the assets are modified.
+     */
+    @Validate
+    public void start() {
+        boolean watched = false;
+        if (watcher != null && directory.isDirectory()) {
+            registration = context.registerService(Deployer.class, index, null);
+            watcher.add(directory, true);
+            watched = true;
+        }
+        index.start(watched);
+    }
+
+    /**
+     * Stops watching the assets and clears the index.
+     */
+    @Invalidate
+    public void stop() {
+        if (registration != null) {
+            registration.unregister();
+            registration = null;
+            try {
+                watcher.removeAndStopIfNeeded(directory);
+            } catch (RuntimeException e) { //NOSONAR
+                // An exception can be thrown when the platform is shutting down.
+                // ignore it.
+            }
+        }
+        index.stop();
     }
 
     /**
@@ -96,40 +145,13 @@ public class AssetController extends DefaultController implements AssetProvider
             path = path.substring(1);
         }
 
-        Asset<?> asset = getAssetFromFS(path);
-        if (asset == null  && manageAssetsFromBundles) {
-            asset = getAssetFromBundle(path);
-        }
-
-        if (asset != null) {
-            return CacheUtils.fromAsset(context(), asset, configuration);
+        Asset<?> asset = index.get(path);
+        if (asset != null && (manageAssetsFromBundles || asset.getContent() instanceof File)) {
+            return variants.serve(context(), asset);
         }
         return notFound();
     }
 
-    private Asset<URL> getAssetFromBundle(String path) {
-        Bundle[] bundles = context.getBundles();
-        // Skip bundle 0
-        for (int i = 1; i < bundles.length; i++) {
-            URL url = bundles[i].getResource("/assets/" + path);
-            if (url != null) {
-                return new DefaultAsset<>("/assets/" + path, url, bundles[i].getSymbolicName(),
-                        bundles[i].getLastModified(),
-                        CacheUtils.computeEtag(bundles[i].getLastModified(), configuration, crypto));
-            }
-        }
-        return null; // NO FOUND;
-    }
-
-    private Asset<File> getAssetFromFS(String path) {
-        File file = new File(directory, path);
-        if (!file.exists()) {
-            return null;
-        }
-        return new DefaultAsset<>("/assets/", file, file.getAbsolutePath(), file.lastModified(),
-                CacheUtils.computeEtag(file.lastModified(), configuration, crypto));
-    }
-
     /**
      * @return the list of provided assets.
      */
@@ -191,10 +213,6 @@ public class AssetController extends DefaultController implements AssetProvider
      */
     @Override
     public Asset<?> assetAt(String path) {
-        Asset<?> asset = getAssetFromFS(path);
-        if (asset == null) {
-            asset = getAssetFromBundle(path);
-        }
-        return asset;
+        return index.get(path);
     }
 }
@@ -0,0 +1,369 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.util.tracker.BundleTracker;
+import org.osgi.util.tracker.BundleTrackerCustomizer;
+import org.ow2.chameleon.core.services.AbstractDeployer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisdom.api.asset.Asset;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.crypto.Crypto;
+import org.wisdom.api.http.MimeTypes;
+import org.wisdom.api.utils.DateUtil;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An index of the assets served by the {@link AssetController}, keyed by path (relative to the asset directory).
+ * Each entry holds the resolved asset and its metadata (etag, last modification header, mime type and length),
+ * so serving an asset does not hit the file system, the bundles or the crypto service. Missing assets are recorded
+ * in a second, smaller cache, so repeated lookups of unknown paths do not iterate over the bundles, while lookups of
+ * random paths cannot evict the indexed assets.
+ * <p>
+ * The index is built when the controller starts, and kept up to date by:
+ * <ul>
+ * <li>the Chameleon watcher, for the files from the asset directory (this class is a deployer),</li>
+ * <li>a bundle tracker, for the assets embedded in bundles.</li>
+ * </ul>
+ * When the asset directory is not watched, file entries are checked against the file last modification date on
+ * every lookup. The number of entries is bounded by {@literal assets.index.size}, and the number of recorded missing
+ * assets by {@literal assets.index.missing}.
+ */
+public class AssetIndex extends AbstractDeployer implements BundleTrackerCustomizer<Bundle> {
+
+    /**
+     * The configuration key setting the maximum number of entries in the index.
+     */
+    public static final String INDEX_SIZE = "assets.index.size";
+
+    /**
+     * The default maximum number of entries in the index.
+     */
+    public static final long DEFAULT_INDEX_SIZE = 10000;
+
+    /**
+     * The configuration key setting the maximum number of missing assets recorded by the index.
+     */
+    public static final String MISSING_INDEX_SIZE = "assets.index.missing";
+
+    /**
+     * The default maximum number of missing assets recorded by the index.
+     */
+    public static final long DEFAULT_MISSING_INDEX_SIZE = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AssetIndex.class);
+
+    private final File directory;
+
+    private final BundleContext context;
+
+    private final ApplicationConfiguration configuration;
+
+    private final Crypto crypto;
+
+    private final Cache<String, IndexedAsset<?>> entries;
+
+    /**
+     * The paths of the assets known to be missing. Values are meaningless.
+     */
+    private final Cache<String, Boolean> missing;
+
+    private BundleTracker<Bundle> tracker;
+
+    /**
+     * Whether or not the asset directory is watched.
+     */
+    private volatile boolean watched;
+
+    /**
+     * Incremented on every invalidation, so assets resolved concurrently with an invalidation are not indexed.
+     * Invalidations come from the watcher and the bundle tracker threads, hence the atomic increment.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Creates a new index.
+     *
+     * @param directory     the asset directory
+     * @param context       the bundle context, {@literal null} if bundles are not tracked
+     * @param configuration the application configuration
+     * @param crypto        the crypto service
+     */
+    public AssetIndex(File directory, BundleContext context, ApplicationConfiguration configuration, Crypto crypto) {
+        this.directory = directory;
+        this.context = context;
+        this.configuration = configuration;
+        this.crypto = crypto;
+        Long size = configuration.getLongWithDefault(INDEX_SIZE, DEFAULT_INDEX_SIZE);
+        this.entries = CacheBuilder.newBuilder()
+                .maximumSize(size == null ? DEFAULT_INDEX_SIZE : size)
+                .build();
+        Long missingSize = configuration.getLongWithDefault(MISSING_INDEX_SIZE, DEFAULT_MISSING_INDEX_SIZE);
+        this.missing = CacheBuilder.newBuilder()
+                .maximumSize(missingSize == null ? DEFAULT_MISSING_INDEX_SIZE : missingSize)
+                .build();
+    }
+
+    /**
+     * Opens the bundle tracker and indexes the assets from the asset directory.
+     *
+     * @param watched whether or not the asset directory is watched, and so whether this deployer is notified of
+     *                the file changes
+     */
+    public void start(boolean watched) {
+        this.watched = watched;
+        if (context != null) {
+            tracker = new BundleTracker<>(context, Bundle.ACTIVE, this);
+            tracker.open();
+        }
+        if (directory.isDirectory()) {
+            Collection<File> files = FileUtils.listFiles(directory, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE);
+            for (File file : files) {
+                if (!file.getName().startsWith(".")) {
+                    String path = file.getAbsolutePath().substring(directory.getAbsolutePath().length() + 1)
+                            .replace(File.separatorChar, '/');
+                    entries.put(path, fromFile(file));
+                }
+            }
+        }
+        LOGGER.debug("{} assets indexed from {}", entries.size(), directory.getAbsolutePath());
+    }
+
+    /**
+     * Closes the bundle tracker and clears the index.
+     */
+    public void stop() {
+        if (tracker != null) {
+            tracker.close();
+            tracker = null;
+        }
+        entries.invalidateAll();
+        missing.invalidateAll();
+    }
+
+    /**
+     * Retrieves the asset at the given path. Assets from the asset directory override the ones from bundles.
+     *
+     * @param path the path, relative to the asset directory
+     * @return the asset, {@literal null} if there are no asset at the given path
+     */
+    public Asset<?> get(String path) {
+        IndexedAsset<?> asset = entries.getIfPresent(path);
+        if (asset != null && (watched || isUpToDate(path, asset))) {
+            return asset;
+        }
+        if (asset == null && missing.getIfPresent(path) != null
+                && (watched || !new File(directory, path).exists())) {
+            return null;
+        }
+        long current = generation.get();
+        asset = resolve(path);
+        if (current == generation.get()) {
+            if (asset == null) {
+                entries.invalidate(path);
+                missing.put(path, Boolean.TRUE);
+            } else {
+                missing.invalidate(path);
+                entries.put(path, asset);
+            }
+            // An invalidation may have happened between the check and the put, drop the stale resolution.
+            if (current != generation.get()) {
+                entries.invalidate(path);
+                missing.invalidate(path);
+            }
+        }
+        return asset;
+    }
+
+    /**
+     * @return the number of indexed assets
+     */
+    long size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of recorded missing assets
+     */
+    long missingSize() {
+        return missing.size();
+    }
+
+    private boolean isUpToDate(String path, IndexedAsset<?> asset) {
+        if (asset.getContent() instanceof File) {
+            File file = (File) asset.getContent();
+            return file.lastModified() == asset.getLastModified();
+        }
+        // Bundle assets are still valid if the file was not created.
+        return !new File(directory, path).exists();
+    }
+
+    private IndexedAsset<?> resolve(String path) {
+        File file = new File(directory, path);
+        if (file.isFile()) {
+            return fromFile(file);
+        }
+        if (context != null) {
+            Bundle[] bundles = context.getBundles();
+            // Skip bundle 0
+            for (int i = 1; i < bundles.length; i++) {
+                URL url = bundles[i].getResource("/assets/" + path);
+                if (url != null) {
+                    long lastModified = bundles[i].getLastModified();
+                    return new IndexedAsset<>("/assets/" + path, url, bundles[i].getSymbolicName(), lastModified,
+                            CacheUtils.computeEtag(lastModified, configuration, crypto),
+                            DateUtil.formatForHttpHeader(lastModified), MimeTypes.getMimeTypeForFile(url), -1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private IndexedAsset<File> fromFile(File file) {
+        long lastModified = file.lastModified();
+        return new IndexedAsset<>("/assets/", file, file.getAbsolutePath(), lastModified,
+                CacheUtils.computeEtag(lastModified, configuration, crypto),
+                DateUtil.formatForHttpHeader(lastModified), MimeTypes.getMimeTypeForFile(file), file.length());
+    }
+
+    /**
+     * Drops the entries that may be impacted by a change in the set of bundles: the bundle assets and the
+     * missing assets.
+     */
+    private void invalidateBundleEntries() {
+        // The generation must be incremented before dropping the entries, see get(String).
+        generation.incrementAndGet();
+        missing.invalidateAll();
+        Iterator<Map.Entry<String, IndexedAsset<?>>> iterator = entries.asMap().entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (!(iterator.next().getValue().getContent() instanceof File)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the entry of the given file.
+     *
+     * @param file the file
+     */
+    private void invalidate(File file) {
+        String root = directory.getAbsolutePath();
+        String absolute = file.getAbsolutePath();
+        if (absolute.length() > root.length()) {
+            String path = absolute.substring(root.length() + 1).replace(File.separatorChar, '/');
+            generation.incrementAndGet();
+            entries.invalidate(path);
+            missing.invalidate(path);
+        }
+    }
+
+    /**
+     * Accepts the files from the asset directory.
+     *
+     * @param file the file
+     * @return {@literal true} if the file is in the asset directory, {@literal false} otherwise
+     */
+    @Override
+    public boolean accept(File file) {
+        return file.getAbsolutePath().startsWith(directory.getAbsolutePath() + File.separator);
+    }
+
+    /**
+     * A file was created in the asset directory.
+     *
+     * @param file the file
+     */
+    @Override
+    public void onFileCreate(File file) {
+        invalidate(file);
+    }
+
+    /**
+     * A file was modified in the asset directory.
+     *
+     * @param file the file
+     */
+    @Override
+    public void onFileChange(File file) {
+        invalidate(file);
+    }
+
+    /**
+     * A file was deleted from the asset directory.
+     *
+     * @param file the file
+     */
+    @Override
+    public void onFileDelete(File file) {
+        invalidate(file);
+    }
+
+    /**
+     * A bundle becomes active.
+     *
+     * @param bundle the bundle
+     * @param event  the event
+     * @return the bundle
+     */
+    @Override
+    public Bundle addingBundle(Bundle bundle, BundleEvent event) {
+        invalidateBundleEntries();
+        return bundle;
+    }
+
+    /**
+     * A bundle was updated.
+     *
+     * @param bundle the bundle
+     * @param event  the event
+     * @param object the bundle
+     */
+    @Override
+    public void modifiedBundle(Bundle bundle, BundleEvent event, Bundle object) {
+        invalidateBundleEntries();
+    }
+
+    /**
+     * A bundle is not active anymore.
+     *
+     * @param bundle the bundle
+     * @param event  the event
+     * @param object the bundle
+     */
+    @Override
+    public void removedBundle(Bundle bundle, BundleEvent event, Bundle object) {
+        invalidateBundleEntries();
+    }
+}
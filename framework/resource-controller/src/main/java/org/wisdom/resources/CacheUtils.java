@@ -99,6 +99,43 @@ public class CacheUtils {
         return false;
     }
 
+    /**
+     * Check whether the request can send a NOT_MODIFIED response for the given asset. For indexed assets, the
+     * {@literal If-Modified-Since} header is compared to the precomputed {@literal Last-Modified} value.
+     *
+     * @param context the context
+     * @param asset   the asset
+     * @param etag    the etag of the served representation
+     * @return true if the content is not modified
+     */
+    public static boolean isNotModified(Context context, Asset<?> asset, String etag) {
+        if (!(asset instanceof IndexedAsset)) {
+            return isNotModified(context, asset.getLastModified(), etag);
+        }
+        final String browserEtag = context.header(HeaderNames.IF_NONE_MATCH);
+        if (browserEtag != null) {
+            return browserEtag.equals(etag);
+        }
+        final String ifModifiedSince = context.header(HeaderNames.IF_MODIFIED_SINCE);
+        return ifModifiedSince != null && asset.getLastModified() > 0
+                && ifModifiedSince.equals(((IndexedAsset<?>) asset).getLastModifiedHeader());
+    }
+
+    /**
+     * Add the last modified header of the given asset to the given result. For indexed assets, the precomputed
+     * value is used.
+     *
+     * @param result the result
+     * @param asset  the asset
+     */
+    public static void addLastModified(Result result, Asset<?> asset) {
+        if (asset instanceof IndexedAsset) {
+            result.with(HeaderNames.LAST_MODIFIED, ((IndexedAsset<?>) asset).getLastModifiedHeader());
+        } else {
+            addLastModified(result, asset.getLastModified());
+        }
+    }
+
     /**
      * Computes the ETAG value based on the last modification date passed as parameter.
      *
@@ -180,8 +217,8 @@ public class CacheUtils {
         }
     }
 
-    public static Result fromAsset(Context context, Asset asset, ApplicationConfiguration configuration) {
-        if (CacheUtils.isNotModified(context, asset.getLastModified(), asset.getEtag())) {
+    public static Result fromAsset(Context context, Asset<?> asset, ApplicationConfiguration configuration) {
+        if (CacheUtils.isNotModified(context, asset, asset.getEtag())) {
             return new Result(Status.NOT_MODIFIED);
         } else {
             Result result;
@@ -193,7 +230,7 @@ public class CacheUtils {
                 // Use object, probably won't work.
                 result = Results.ok(asset.getContent());
             }
-            addLastModified(result, asset.getLastModified());
+            addLastModified(result, asset);
             addCacheControlAndEtagToResult(result, asset.getEtag(), configuration);
             return result;
         }
@@ -0,0 +1,348 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisdom.api.asset.Asset;
+import org.wisdom.api.bodies.RenderableByteArray;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.http.*;
+import org.wisdom.api.utils.KnownMimeTypes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the compressed variants of the assets. Assets are immutable (until their last modification date changes),
+ * so the compressed variants are built once and reused:
+ * <ol>
+ * <li>if a sibling file ending with {@literal .br} or {@literal .gz} exists (on disk or in the bundle), it is served
+ * as it is,</li>
+ * <li>otherwise, the asset is compressed using gzip and the result is kept in memory.</li>
+ * </ol>
+ * Variants are kept in a cache bounded by the total size of the compressed content
+ * ({@literal assets.compression.cache.size} in bytes). The cache key contains the asset location,
+ * the encoding and the last modification date, so modified assets are not served from stale variants.
+ */
+public class CompressedVariants {
+
+    /**
+     * The configuration key setting the maximum size (in bytes) of the compressed variants kept in memory.
+     */
+    public static final String CACHE_SIZE = "assets.compression.cache.size";
+
+    /**
+     * The default maximum size of the compressed variants kept in memory (16 Mb).
+     */
+    public static final long DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The supported encodings, in preference order.
+     */
+    private static final String[] ENCODINGS = {EncodingNames.BROTLI, EncodingNames.GZIP};
+
+    /**
+     * The weight of the variants not holding their content.
+     */
+    private static final int ENTRY_WEIGHT = 128;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressedVariants.class);
+
+    /**
+     * Variant telling that the asset has no variant for the encoding.
+     */
+    private static final Variant NONE = new Variant(null);
+
+    private final ApplicationConfiguration configuration;
+
+    private final Cache<String, Variant> cache;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param configuration the application configuration
+     */
+    public CompressedVariants(ApplicationConfiguration configuration) {
+        this.configuration = configuration;
+        Long size = configuration.getLongWithDefault(CACHE_SIZE, DEFAULT_CACHE_SIZE);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(size == null ? DEFAULT_CACHE_SIZE : size)
+                .weigher(new Weigher<String, Variant>() {
+                    @Override
+                    public int weigh(String key, Variant variant) {
+                        return key.length() + variant.weight();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Computes the result serving the given asset. The asset is served compressed if the client accepts one of the
+     * supported encodings and a compressed variant exists or can be built. Cache headers are set by this method.
+     *
+     * @param context the context
+     * @param asset   the asset
+     * @return the result, it can be a NOT_MODIFIED if the asset was not modified since the last request
+     */
+    public Result serve(Context context, Asset<?> asset) {
+        Object content = asset.getContent();
+        if (!(content instanceof File) && !(content instanceof URL)) {
+            return CacheUtils.fromAsset(context, asset, configuration);
+        }
+
+        String mimeType;
+        if (asset instanceof IndexedAsset) {
+            mimeType = ((IndexedAsset<?>) asset).getMimeType();
+        } else {
+            mimeType = content instanceof File ? MimeTypes.getMimeTypeForFile((File) content) :
+                    MimeTypes.getMimeTypeForFile((URL) content);
+        }
+
+        Variant variant = NONE;
+        List<String> accepted = accepted(context.header(HeaderNames.ACCEPT_ENCODING));
+        for (String encoding : ENCODINGS) {
+            if (accepted.contains(encoding)) {
+                variant = get(asset, content, mimeType, encoding);
+                if (variant != NONE) {
+                    break;
+                }
+            }
+        }
+
+        Result result;
+        if (variant == NONE) {
+            result = CacheUtils.fromAsset(context, asset, configuration);
+        } else {
+            // Each representation has its own etag.
+            String etag = asset.getEtag() == null ? null : asset.getEtag() + "-" + variant.encoding;
+            if (CacheUtils.isNotModified(context, asset, etag)) {
+                result = new Result(Status.NOT_MODIFIED);
+            } else {
+                result = variant.toResult(mimeType);
+                CacheUtils.addLastModified(result, asset);
+                CacheUtils.addCacheControlAndEtagToResult(result, etag, configuration);
+            }
+        }
+        if (variant != NONE || isCompressible(mimeType)) {
+            result.with(HeaderNames.VARY, HeaderNames.ACCEPT_ENCODING);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of variants in the cache, including the negative entries.
+     */
+    long size() {
+        return cache.size();
+    }
+
+    private Variant get(final Asset<?> asset, final Object content, final String mimeType,
+                        final String encoding) {
+        String location = content instanceof File ? ((File) content).getAbsolutePath() :
+                ((URL) content).toExternalForm();
+        String key = location + "|" + encoding + "|" + asset.getLastModified();
+        try {
+            return cache.get(key, new Callable<Variant>() {
+                @Override
+                public Variant call() throws Exception {
+                    return load(content, mimeType, encoding);
+                }
+            });
+        } catch (ExecutionException e) {
+            LOGGER.error("Cannot compute the {} variant of {}", encoding, location, e.getCause());
+            return NONE;
+        }
+    }
+
+    private Variant load(Object content, String mimeType, String encoding) throws IOException {
+        // First, look for a precompressed sibling.
+        String extension = EncodingNames.GZIP.equals(encoding) ? ".gz" : "." + encoding;
+        if (content instanceof File) {
+            File file = (File) content;
+            File sibling = new File(file.getParentFile(), file.getName() + extension);
+            if (sibling.isFile() && sibling.lastModified() >= file.lastModified()) {
+                return new Variant(encoding, sibling);
+            }
+        } else {
+            URL url = (URL) content;
+            String path = url.getPath();
+            URL sibling = new URL(url, path.substring(path.lastIndexOf('/') + 1) + extension);
+            if (exists(sibling)) {
+                return new Variant(encoding, sibling);
+            }
+        }
+
+        // Then, compress the content in memory.
+        if (!EncodingNames.GZIP.equals(encoding) || !isCompressible(mimeType)) {
+            return NONE;
+        }
+        long length = content instanceof File ? ((File) content).length() : -1;
+        if (length > -1 && (length < getMinSize() || length > getMaxSize())) {
+            return NONE;
+        }
+        byte[] compressed = gzip(content);
+        if (compressed == null) {
+            return NONE;
+        }
+        return new Variant(encoding, compressed);
+    }
+
+    private byte[] gzip(Object content) throws IOException {
+        InputStream in = null;
+        try {
+            in = content instanceof File ? new FileInputStream((File) content) :
+                    ((URL) content).openStream();
+            byte[] raw = IOUtils.toByteArray(in);
+            if (raw.length < getMinSize() || raw.length > getMaxSize()) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(raw);
+            gzip.close();
+            if (out.size() >= raw.length) {
+                // Not worth it.
+                return null;
+            }
+            return out.toByteArray();
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private boolean isCompressible(String mimeType) {
+        return mimeType != null && !KnownMimeTypes.COMPRESSED_MIME.contains(mimeType)
+                && Boolean.TRUE.equals(configuration.getBooleanWithDefault(ApplicationConfiguration.ENCODING_GLOBAL,
+                ApplicationConfiguration.DEFAULT_ENCODING_GLOBAL));
+    }
+
+    private long getMinSize() {
+        Long size = configuration.getLongWithDefault(ApplicationConfiguration.ENCODING_MIN_SIZE,
+                ApplicationConfiguration.DEFAULT_ENCODING_MIN_SIZE);
+        return size == null ? ApplicationConfiguration.DEFAULT_ENCODING_MIN_SIZE : size;
+    }
+
+    private long getMaxSize() {
+        Long size = configuration.getLongWithDefault(ApplicationConfiguration.ENCODING_MAX_SIZE,
+                ApplicationConfiguration.DEFAULT_ENCODING_MAX_SIZE);
+        return size == null ? ApplicationConfiguration.DEFAULT_ENCODING_MAX_SIZE : size;
+    }
+
+    private static boolean exists(URL url) {
+        InputStream stream = null;
+        try {
+            stream = url.openStream();
+            return true;
+        } catch (IOException e) { //NOSONAR
+            return false;
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Parses the {@literal Accept-Encoding} header, ignoring the encodings explicitly refused ({@literal q=0}).
+     *
+     * @param header the header value, may be {@literal null}
+     * @return the accepted encodings
+     */
+    static List<String> accepted(String header) {
+        List<String> encodings = new ArrayList<>();
+        if (header == null) {
+            return encodings;
+        }
+        for (String item : header.split(",")) {
+            String[] segments = item.split(";");
+            String encoding = segments[0].trim().toLowerCase();
+            boolean refused = false;
+            for (int i = 1; i < segments.length; i++) {
+                String parameter = segments[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) { //NOSONAR
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused && !encoding.isEmpty()) {
+                encodings.add(encoding);
+            }
+        }
+        return encodings;
+    }
+
+    /**
+     * A compressed variant: either a precompressed file or URL, or the compressed content.
+     */
+    private static final class Variant {
+        final String encoding;
+        final Object content;
+
+        Variant(String encoding) {
+            this(encoding, null);
+        }
+
+        Variant(String encoding, Object content) {
+            this.encoding = encoding;
+            this.content = content;
+        }
+
+        int weight() {
+            if (content instanceof byte[]) {
+                return ((byte[]) content).length + ENTRY_WEIGHT;
+            }
+            return ENTRY_WEIGHT;
+        }
+
+        Result toResult(String mimeType) {
+            Result result;
+            if (content instanceof byte[]) {
+                byte[] bytes = (byte[]) content;
+                result = new Result(Status.OK)
+                        .with(HeaderNames.CONTENT_LENGTH, Integer.toString(bytes.length))
+                        .render(new RenderableByteArray(bytes, mimeType));
+            } else if (content instanceof File) {
+                result = Results.ok((File) content);
+            } else {
+                result = Results.ok((URL) content);
+            }
+            if (mimeType != null) {
+                // The mime type of the asset, not the one of the compressed file.
+                result.as(mimeType);
+            }
+            return result.with(HeaderNames.CONTENT_ENCODING, encoding);
+        }
+    }
+}
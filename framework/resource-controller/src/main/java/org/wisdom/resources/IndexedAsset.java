@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.resources;
+
+import org.wisdom.api.asset.DefaultAsset;
+
+/**
+ * An asset coming from the {@link AssetIndex}. In addition to the asset data, it holds the metadata computed when
+ * the asset was indexed, so they are not recomputed on every request.
+ *
+ * @param <T> the type of content (file or url)
+ */
+final class IndexedAsset<T> extends DefaultAsset<T> {
+
+    private final String lastModifiedHeader;
+
+    private final String mimeType;
+
+    private final long length;
+
+    /**
+     * Creates a new indexed asset.
+     *
+     * @param path               the path
+     * @param content            the content
+     * @param source             the source
+     * @param lastModified       the last modification date
+     * @param etag               the etag, {@literal null} if etags are disabled
+     * @param lastModifiedHeader the last modification date formatted for the {@literal Last-Modified} header
+     * @param mimeType           the mime type
+     * @param length             the length, {@literal -1} if unknown
+     */
+    IndexedAsset(String path, T content, String source, long lastModified, String etag, String lastModifiedHeader,
+                 String mimeType, long length) {
+        super(path, content, source, lastModified, etag);
+        this.lastModifiedHeader = lastModifiedHeader;
+        this.mimeType = mimeType;
+        this.length = length;
+    }
+
+    /**
+     * @return the last modification date formatted for the {@literal Last-Modified} header
+     */
+    String getLastModifiedHeader() {
+        return lastModifiedHeader;
+    }
+
+    /**
+     * @return the mime type
+     */
+    String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return the length, {@literal -1} if unknown
+     */
+    long getLength() {
+        return length;
+    }
+}
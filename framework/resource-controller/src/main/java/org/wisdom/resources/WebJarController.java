@@ -35,9 +35,11 @@ import org.wisdom.api.asset.DefaultAsset;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.crypto.Crypto;
 import org.wisdom.api.http.HttpMethod;
+import org.wisdom.api.http.MimeTypes;
 import org.wisdom.api.http.Result;
 import org.wisdom.api.router.Route;
 import org.wisdom.api.router.RouteBuilder;
+import org.wisdom.api.utils.DateUtil;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -96,7 +98,10 @@ public class WebJarController extends DefaultController implements BundleTracker
 
     private final BundleTracker<List<BundleWebJarLib>> tracker;
 
-    Set<WebJarLib> libraries = new TreeSet<>(new Comparator<WebJarLib>() {
+    /**
+     * The order of the libraries. When several libraries provide the same resource, the first one is used.
+     */
+    private static final Comparator<WebJarLib> ORDER = new Comparator<WebJarLib>() {
         @Override
         public int compare(WebJarLib o1, WebJarLib o2) {
             if (o1 instanceof FileWebJarLib && o2 instanceof BundleWebJarLib) {
@@ -107,7 +112,14 @@ public class WebJarController extends DefaultController implements BundleTracker
             }
             return o1.toString().compareTo(o2.toString());
         }
-    });
+    };
+
+    Set<WebJarLib> libraries = new TreeSet<>(ORDER);
+
+    /**
+     * The index of the resources provided by the libraries, updated with {@link #libraries}.
+     */
+    private final WebJarIndex index = new WebJarIndex(ORDER);
 
     @Requires
     Crypto crypto;
@@ -115,6 +127,11 @@ public class WebJarController extends DefaultController implements BundleTracker
     @Requires
     ApplicationConfiguration configuration;
 
+    /**
+     * The compressed variants of the served resources.
+     */
+    private final CompressedVariants variants;
+
     /**
      * Constructor used for testing purpose only.
      *
@@ -126,6 +143,7 @@ public class WebJarController extends DefaultController implements BundleTracker
         this.crypto = crypto;
         this.configuration = configuration;
         directory = new File(configuration.getBaseDir(), path);
+        variants = new CompressedVariants(configuration);
         tracker = null;
         deployer = null;
         start();
@@ -140,6 +158,7 @@ public class WebJarController extends DefaultController implements BundleTracker
     public WebJarController(@Context BundleContext context, @Property(value = "assets/libs",
             name = "path") String path) {
         directory = new File(configuration.getBaseDir(), path);
+        variants = new CompressedVariants(configuration);
         tracker = new BundleTracker<>(context, Bundle.ACTIVE, this);
         deployer = new WebJarDeployer(context, this);
     }
@@ -171,7 +190,10 @@ public class WebJarController extends DefaultController implements BundleTracker
         if (tracker != null) {
             tracker.close();
         }
-        libraries.clear();
+        synchronized (this) {
+            libraries.clear();
+            index.clear();
+        }
     }
 
     private void buildFileIndex() {
@@ -189,18 +211,18 @@ public class WebJarController extends DefaultController implements BundleTracker
         File[] names = directory.listFiles(isDirectory);
 
         // Build index from files
-        synchronized (this) {
-            for (File dir : names) {
-                String library = dir.getName();
-                File[] versions = dir.listFiles(isDirectory);
-                for (File ver : versions) {
-                    String version = ver.getName();
-                    FileWebJarLib lib = new FileWebJarLib(library, version, ver);
-                    logger().info("Exploded web jar libraries detected : {}", lib);
-                    libraries.add(lib);
-                }
+        List<WebJarLib> found = new ArrayList<>();
+        for (File dir : names) {
+            String library = dir.getName();
+            File[] versions = dir.listFiles(isDirectory);
+            for (File ver : versions) {
+                String version = ver.getName();
+                FileWebJarLib lib = new FileWebJarLib(library, version, ver);
+                logger().info("Exploded web jar libraries detected : {}", lib);
+                found.add(lib);
             }
         }
+        addWebJarLibs(found);
 
     }
 
@@ -216,26 +238,6 @@ public class WebJarController extends DefaultController implements BundleTracker
         return new ArrayList<>(libraries);
     }
 
-    private List<WebJarLib> findLibsContaining(String path) {
-        List<WebJarLib> list = new ArrayList<>();
-        for (WebJarLib lib : libs()) {
-            if (lib.contains(path)) {
-                list.add(lib);
-            }
-        }
-        return list;
-    }
-
-    private List<WebJarLib> find(String name) {
-        List<WebJarLib> list = new ArrayList<>();
-        for (WebJarLib lib : libs()) {
-            if (lib.name.equals(name)) {
-                list.add(lib);
-            }
-        }
-        return list;
-    }
-
     /**
      * @return the router serving the assets embedded in WebJars.
      */
@@ -264,16 +266,7 @@ public class WebJarController extends DefaultController implements BundleTracker
             return notFound();
         }
 
-        return CacheUtils.fromAsset(context(), asset, configuration);
-    }
-
-    private WebJarLib find(String name, String version) {
-        for (WebJarLib lib : libs()) {
-            if (lib.name.equals(name) && lib.version.equals(version)) {
-                return lib;
-            }
-        }
-        return null;
+        return variants.serve(context(), asset);
     }
 
     /**
@@ -312,9 +305,21 @@ public class WebJarController extends DefaultController implements BundleTracker
         return list;
     }
 
+    /**
+     * Adds libraries and indexes their resources.
+     *
+     * @param list the libraries
+     */
     public void addWebJarLibs(Collection<? extends WebJarLib> list) {
         synchronized (this) {
-            libraries.addAll(list);
+            List<WebJarLib> added = new ArrayList<>();
+            for (WebJarLib lib : list) {
+                // Libraries considered as equal to an existing one are ignored.
+                if (libraries.add(lib)) {
+                    added.add(lib);
+                }
+            }
+            index.add(added);
         }
     }
 
@@ -346,9 +351,20 @@ public class WebJarController extends DefaultController implements BundleTracker
         removeWebJarLibs(webJarLibs);
     }
 
+    /**
+     * Removes libraries and their resources from the index.
+     *
+     * @param webJarLibs the libraries
+     */
     public void removeWebJarLibs(Collection<? extends WebJarLib> webJarLibs) {
         synchronized (this) {
-            libraries.removeAll(webJarLibs);
+            List<WebJarLib> removed = new ArrayList<>();
+            for (WebJarLib lib : webJarLibs) {
+                if (libraries.remove(lib)) {
+                    removed.add(lib);
+                }
+            }
+            index.remove(removed);
         }
     }
 
@@ -382,91 +398,33 @@ public class WebJarController extends DefaultController implements BundleTracker
      */
     @Override
     public Asset<?> assetAt(String path) {
-        List<WebJarLib> candidates = findLibsContaining(path);
-
-        if (candidates.size() == 1) {
-            // Perfect ! only one match
-            return new DefaultAsset<>(
-                    "/libs/" + candidates.get(0).name + "/" + candidates.get(0).version + "/" + path,
-                    candidates.get(0).get(path),
-                    candidates.get(0).toString(),
-                    candidates.get(0).lastModified(),
-                    CacheUtils.computeEtag(candidates.get(0).lastModified(), configuration, crypto)
-            );
-        } else if (candidates.size() > 1) {
-            // Several candidates
-            logger().warn("{} WebJars provide '{}' - returning the one from {}-{}", candidates.size(), path,
-                    candidates.get(0).name, candidates.get(0).version);
-            return new DefaultAsset<>(
-                    "/libs/" + candidates.get(0).name + "/" + candidates.get(0).version + "/" + path,
-                    candidates.get(0).get(path),
-                    candidates.get(0).toString(),
-                    candidates.get(0).lastModified(),
-                    CacheUtils.computeEtag(candidates.get(0).lastModified(), configuration, crypto)
-            );
-        } else {
-            Matcher matcher = PATTERN.matcher(path);
-            if (!matcher.matches()) {
-                // It should have been handled by the path match.
-                return null;
-            }
-
-            final String name = matcher.group(1);
-            final String version = matcher.group(3);
-            if (version != null) {
-                String rel = matcher.group(4);
-                // We have a name and a version
-                // Try to find the matching library
-                WebJarLib lib = find(name, version);
-                if (lib != null) {
-                    return new DefaultAsset<>(
-                            rel,
-                            lib.get(rel),
-                            lib.toString(),
-                            lib.lastModified(),
-                            CacheUtils.computeEtag(lib.lastModified(), configuration, crypto)
-                    );
-                }
-                // If not found, it may be because the version is not really the version but a segment of the path.
-            }
-            // If we reach this point it means that the name/version lookup has failed, try without the version
-            String rel = matcher.group(4);
-            if (version != null) {
-                // We have a group 3
-                rel = version + "/" + rel;
-            }
-
-            List<WebJarLib> libs = find(name);
-            if (libs.size() == 1) {
-                // Only on library has the given name
-                if (libs.get(0).contains(rel)) {
-                    WebJarLib lib = libs.get(0);
-                    return new DefaultAsset<>(
-                            "/libs/" + lib.name + "/" + lib.version + "/" + rel,
-                            lib.get(rel),
-                            lib.toString(),
-                            lib.lastModified(),
-                            CacheUtils.computeEtag(lib.lastModified(), configuration, crypto)
-                    );
-                }
-            } else if (libs.size() > 1) {
-                // Several candidates
-                for (WebJarLib lib : libs()) {
-                    if (lib.contains(rel)) {
-                        logger().warn("{} WebJars match the request '{}' - returning the resource from {}-{}",
-                                libs.size(), path, lib.name, lib.version);
-                        return new DefaultAsset<>(
-                                "/libs/" + lib.name + "/" + lib.version + "/" + rel,
-                                lib.get(rel),
-                                lib.toString(),
-                                lib.lastModified(),
-                                CacheUtils.computeEtag(lib.lastModified(), configuration, crypto)
-                        );
-                    }
-                }
-            }
-
+        WebJarIndex.Resolution resolution = index.resolve(path);
+        if (resolution == null) {
             return null;
         }
+        WebJarLib lib = resolution.lib;
+        long lastModified = lib.lastModified();
+        IndexedAsset<?> asset = resolution.asset;
+        if (asset == null || asset.getLastModified() != lastModified) {
+            // Compute the etag and headers once, not on every request.
+            Object resource = resolution.resource;
+            String mimeType = null;
+            if (resource instanceof File) {
+                mimeType = MimeTypes.getMimeTypeForFile((File) resource);
+            } else if (resource instanceof URL) {
+                mimeType = MimeTypes.getMimeTypeForFile((URL) resource);
+            }
+            asset = new IndexedAsset<>(
+                    "/libs/" + lib.name + "/" + lib.version + "/" + resolution.path,
+                    resource,
+                    lib.toString(),
+                    lastModified,
+                    CacheUtils.computeEtag(lastModified, configuration, crypto),
+                    DateUtil.formatForHttpHeader(lastModified),
+                    mimeType,
+                    -1);
+            resolution.asset = asset;
+        }
+        return asset;
     }
 }
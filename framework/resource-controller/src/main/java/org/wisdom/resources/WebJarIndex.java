@@ -0,0 +1,321 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+
+/**
+ * An index of the resources provided by the web jar libraries, used by the {@link WebJarController} to resolve a
+ * request in constant time instead of asking each library whether it contains the requested path.
+ * <p>
+ * The index is updated incrementally when libraries are added or removed. When several libraries provide the same
+ * path, the conflict is resolved once, when the index is updated, using the order of the libraries in the
+ * controller (exploded libraries first). The resolution of the forms not containing a version
+ * ({@literal /libs/name/path}) is cached, as it requires checking the libraries having the given name. The paths
+ * that cannot be resolved are recorded in a separate cache, so requests on random paths cannot evict the
+ * resolutions. Both caches are bounded and cleared every time the index is updated.
+ */
+class WebJarIndex {
+
+    /**
+     * The maximum number of cached resolutions.
+     */
+    static final int RESOLUTION_CACHE_SIZE = 1000;
+
+    /**
+     * The maximum number of recorded paths that cannot be resolved.
+     */
+    static final int MISSING_CACHE_SIZE = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebJarIndex.class);
+
+    private final Comparator<WebJarLib> order;
+
+    /**
+     * All the libraries providing a path, sorted using {@link #order}. Guarded by {@code this}.
+     */
+    private final Map<String, List<WebJarLib>> candidates = new HashMap<>();
+
+    /**
+     * The resolution of each path, i.e. the resource from the first library providing it.
+     */
+    private final ConcurrentMap<String, Resolution> paths = new ConcurrentHashMap<>();
+
+    /**
+     * The libraries by name and version ({@literal name/version}).
+     */
+    private final ConcurrentMap<String, WebJarLib> versions = new ConcurrentHashMap<>();
+
+    /**
+     * The libraries by name, sorted using {@link #order}. The lists are immutable.
+     */
+    private final ConcurrentMap<String, List<WebJarLib>> names = new ConcurrentHashMap<>();
+
+    /**
+     * The resolutions of the paths not found in {@link #paths}.
+     */
+    private final Cache<String, Resolution> resolutions = CacheBuilder.newBuilder()
+            .maximumSize(RESOLUTION_CACHE_SIZE).build();
+
+    /**
+     * The paths that cannot be resolved. Values are meaningless.
+     */
+    private final Cache<String, Boolean> missing = CacheBuilder.newBuilder()
+            .maximumSize(MISSING_CACHE_SIZE).build();
+
+    /**
+     * Incremented on every update, so resolutions computed concurrently with an update are not cached.
+     */
+    private volatile long generation;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param order the order used to choose a library when several provide the same path
+     */
+    WebJarIndex(Comparator<WebJarLib> order) {
+        this.order = order;
+    }
+
+    /**
+     * Adds libraries to the index.
+     *
+     * @param libs the libraries
+     */
+    synchronized void add(Collection<? extends WebJarLib> libs) {
+        for (WebJarLib lib : libs) {
+            for (String path : lib.names()) {
+                List<WebJarLib> list = candidates.get(path);
+                if (list == null) {
+                    list = new ArrayList<>(1);
+                    candidates.put(path, list);
+                }
+                list.add(lib);
+                Collections.sort(list, order);
+                elect(path, list);
+            }
+            versions.put(lib.name + "/" + lib.version, lib);
+            List<WebJarLib> named = names.get(lib.name);
+            List<WebJarLib> updated = named == null ? new ArrayList<WebJarLib>() : new ArrayList<>(named);
+            updated.add(lib);
+            Collections.sort(updated, order);
+            names.put(lib.name, ImmutableList.copyOf(updated));
+        }
+        changed();
+    }
+
+    /**
+     * Removes libraries from the index.
+     *
+     * @param libs the libraries
+     */
+    synchronized void remove(Collection<? extends WebJarLib> libs) {
+        for (WebJarLib lib : libs) {
+            for (String path : lib.names()) {
+                List<WebJarLib> list = candidates.get(path);
+                if (list == null) {
+                    continue;
+                }
+                removeFrom(list, lib);
+                if (list.isEmpty()) {
+                    candidates.remove(path);
+                    paths.remove(path);
+                } else {
+                    elect(path, list);
+                }
+            }
+            String key = lib.name + "/" + lib.version;
+            WebJarLib indexed = versions.get(key);
+            if (indexed != null && order.compare(indexed, lib) == 0) {
+                versions.remove(key);
+            }
+            List<WebJarLib> named = names.get(lib.name);
+            if (named != null) {
+                List<WebJarLib> updated = new ArrayList<>(named);
+                removeFrom(updated, lib);
+                if (updated.isEmpty()) {
+                    names.remove(lib.name);
+                } else {
+                    names.put(lib.name, ImmutableList.copyOf(updated));
+                }
+            }
+        }
+        changed();
+    }
+
+    /**
+     * Removes all the libraries.
+     */
+    synchronized void clear() {
+        candidates.clear();
+        paths.clear();
+        versions.clear();
+        names.clear();
+        changed();
+    }
+
+    private void changed() {
+        // The generation must be incremented before clearing the caches, see resolve(String).
+        generation++;
+        resolutions.invalidateAll();
+        missing.invalidateAll();
+    }
+
+    /**
+     * Removes the given library from the list. Libraries are compared using the {@link #order}, as the controller
+     * does not hold two libraries considered as equal by this order.
+     */
+    private void removeFrom(List<WebJarLib> list, WebJarLib lib) {
+        Iterator<WebJarLib> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            if (order.compare(iterator.next(), lib) == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void elect(String path, List<WebJarLib> list) {
+        WebJarLib winner = list.get(0);
+        if (list.size() > 1) {
+            LOGGER.debug("{} WebJars provide '{}' - the one from {}-{} is used", list.size(), path, winner.name,
+                    winner.version);
+        }
+        paths.put(path, new Resolution(winner, path, winner.get(path)));
+    }
+
+    /**
+     * Resolves the given path. The following forms are supported:
+     * <ol>
+     * <li>path</li>
+     * <li>name/version/path</li>
+     * <li>name/path</li>
+     * </ol>
+     *
+     * @param path the path
+     * @return the resolution, {@literal null} if the path cannot be resolved
+     */
+    Resolution resolve(String path) {
+        Resolution resolution = paths.get(path);
+        if (resolution != null) {
+            return resolution;
+        }
+        resolution = resolutions.getIfPresent(path);
+        if (resolution != null || missing.getIfPresent(path) != null) {
+            return resolution;
+        }
+        long current = generation;
+        resolution = lookup(path);
+        if (current == generation) {
+            if (resolution == null) {
+                missing.put(path, Boolean.TRUE);
+            } else {
+                resolutions.put(path, resolution);
+            }
+            // An update may have cleared the caches between the check and the put, drop the stale resolution.
+            if (current != generation) {
+                resolutions.invalidate(path);
+                missing.invalidate(path);
+            }
+        }
+        return resolution;
+    }
+
+    private Resolution lookup(String path) {
+        Matcher matcher = WebJarController.PATTERN.matcher(path);
+        if (!matcher.matches()) {
+            return null;
+        }
+        final String name = matcher.group(1);
+        final String version = matcher.group(3);
+        String rel = matcher.group(4);
+        if (version != null) {
+            // We have a name and a version, try to find the matching library
+            WebJarLib lib = versions.get(name + "/" + version);
+            if (lib != null && lib.contains(rel)) {
+                return new Resolution(lib, rel, lib.get(rel));
+            }
+            // If not found, it may be because the version is not really the version but a segment of the path.
+            rel = version + "/" + rel;
+        }
+
+        List<WebJarLib> libs = names.get(name);
+        if (libs == null) {
+            return null;
+        }
+        for (WebJarLib lib : libs) {
+            if (lib.contains(rel)) {
+                if (libs.size() > 1) {
+                    LOGGER.warn("{} WebJars match the request '{}' - returning the resource from {}-{}",
+                            libs.size(), path, lib.name, lib.version);
+                }
+                return new Resolution(lib, rel, lib.get(rel));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of indexed paths.
+     */
+    int size() {
+        return paths.size();
+    }
+
+    /**
+     * The result of the resolution of a path.
+     */
+    static final class Resolution {
+        /**
+         * The library providing the resource.
+         */
+        final WebJarLib lib;
+
+        /**
+         * The path of the resource in the library.
+         */
+        final String path;
+
+        /**
+         * The resource (file or url).
+         */
+        final Object resource;
+
+        /**
+         * The asset served for this resolution, with its precomputed metadata. It is created on the first request,
+         * and created again when the library is modified.
+         */
+        volatile IndexedAsset<?> asset;
+
+        Resolution(WebJarLib lib, String path, Object resource) {
+            this.lib = lib;
+            this.path = path;
+            this.resource = resource;
+        }
+    }
+}
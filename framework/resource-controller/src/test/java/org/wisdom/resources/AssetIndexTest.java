@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.resources;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.mockito.stubbing.Answer;
+import org.wisdom.api.asset.Asset;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.crypto.Crypto;
+import org.wisdom.api.utils.DateUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the asset index.
+ */
+public class AssetIndexTest {
+
+    private File root = new File("target/wisdom-test/index");
+    private ApplicationConfiguration configuration;
+    private Crypto crypto;
+    private AssetIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        root.mkdirs();
+        FileUtils.write(new File(root, "css/style.css"), "body { color: red; }");
+        configuration = mock(ApplicationConfiguration.class);
+        Answer<Object> defaultValue = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return invocation.getArguments()[1];
+            }
+        };
+        when(configuration.getLongWithDefault(anyString(), anyLong())).thenAnswer(defaultValue);
+        when(configuration.getBooleanWithDefault(anyString(), anyBoolean())).thenAnswer(defaultValue);
+        crypto = mock(Crypto.class);
+        when(crypto.hexSHA1(anyString())).thenReturn("etag");
+        index = new AssetIndex(root, null, configuration, crypto);
+    }
+
+    @After
+    public void tearDown() {
+        index.stop();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testMetadataAreComputedOnce() {
+        index.start(true);
+        assertThat(index.size()).isEqualTo(1);
+        verify(crypto, times(1)).hexSHA1(anyString());
+
+        File file = new File(root, "css/style.css");
+        for (int i = 0; i < 10; i++) {
+            Asset<?> asset = index.get("css/style.css");
+            assertThat(asset).isInstanceOf(IndexedAsset.class);
+            assertThat(asset.getContent()).isEqualTo(file);
+            assertThat(asset.getEtag()).isEqualTo("etag");
+            IndexedAsset<?> indexed = (IndexedAsset<?>) asset;
+            assertThat(indexed.getMimeType()).isEqualTo("text/css");
+            assertThat(indexed.getLength()).isEqualTo(file.length());
+            assertThat(indexed.getLastModifiedHeader()).isEqualTo(DateUtil.formatForHttpHeader(file.lastModified()));
+        }
+        verify(crypto, times(1)).hexSHA1(anyString());
+    }
+
+    @Test
+    public void testMissingAssetsAreIndexed() throws IOException {
+        index.start(true);
+        assertThat(index.get("js/missing.js")).isNull();
+        assertThat(index.get("js/missing.js")).isNull();
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.missingSize()).isEqualTo(1);
+
+        // The file is created, the watcher notifies the index.
+        File file = new File(root, "js/missing.js");
+        FileUtils.write(file, "var a = 1;");
+        index.onFileCreate(file);
+        assertThat(index.get("js/missing.js").getContent()).isEqualTo(file);
+        assertThat(index.missingSize()).isEqualTo(0);
+
+        // And deleted.
+        FileUtils.deleteQuietly(file);
+        index.onFileDelete(file);
+        assertThat(index.get("js/missing.js")).isNull();
+    }
+
+    @Test
+    public void testMissingAssetsDoNotEvictIndexedAssets() {
+        index.start(true);
+        Asset<?> style = index.get("css/style.css");
+        for (int i = 0; i < 2 * AssetIndex.DEFAULT_INDEX_SIZE; i++) {
+            assertThat(index.get("missing/" + i + ".js")).isNull();
+        }
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.missingSize()).isLessThanOrEqualTo(AssetIndex.DEFAULT_MISSING_INDEX_SIZE);
+        assertThat(index.get("css/style.css")).isSameAs(style);
+        verify(crypto, times(1)).hexSHA1(anyString());
+    }
+
+    @Test
+    public void testResolutionsConcurrentWithAnUpdateAreNotIndexed() {
+        BundleContext context = mock(BundleContext.class);
+        final Bundle bundle = mock(Bundle.class);
+        when(context.getBundles()).thenReturn(new Bundle[]{mock(Bundle.class), bundle});
+        final AssetIndex index = new AssetIndex(root, context, configuration, crypto);
+        when(bundle.getResource("/assets/js/late.js")).thenAnswer(new Answer<URL>() {
+            @Override
+            public URL answer(InvocationOnMock invocation) throws Throwable {
+                // The bundle providing the asset starts while the path is resolved.
+                index.addingBundle(bundle, null);
+                return null;
+            }
+        });
+
+        assertThat(index.get("js/late.js")).isNull();
+        // The missing path is not recorded, it would hide the asset from the new bundle.
+        assertThat(index.missingSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testUnwatchedDirectory() throws IOException, InterruptedException {
+        index.start(false);
+        assertThat(index.get("js/script.js")).isNull();
+
+        File file = new File(root, "js/script.js");
+        FileUtils.write(file, "var a = 1;");
+        assertThat(index.get("js/script.js").getContent()).isEqualTo(file);
+
+        long lastModified = index.get("js/script.js").getLastModified();
+        assertThat(file.setLastModified(lastModified + 2000)).isTrue();
+        assertThat(index.get("js/script.js").getLastModified()).isEqualTo(lastModified + 2000);
+
+        FileUtils.deleteQuietly(file);
+        assertThat(index.get("js/script.js")).isNull();
+    }
+
+    @Test
+    public void testAccept() {
+        assertThat(index.accept(new File(root, "css/style.css"))).isTrue();
+        assertThat(index.accept(new File("target/wisdom-test/other.css"))).isFalse();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.resources;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wisdom.api.asset.Asset;
+import org.wisdom.api.asset.DefaultAsset;
+import org.wisdom.api.configuration.ApplicationConfiguration;
+import org.wisdom.api.http.Context;
+import org.wisdom.api.http.HeaderNames;
+import org.wisdom.api.http.Result;
+import org.wisdom.test.parents.Invocation;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.wisdom.test.parents.Action.action;
+
+/**
+ * Checks the compressed variants of the assets.
+ */
+public class CompressedVariantsTest {
+
+    private File root = new File("target/wisdom-test/variants");
+    private CompressedVariants variants;
+    private String content;
+
+    @Before
+    public void setUp() throws IOException {
+        root.mkdirs();
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        Answer<Object> defaultValue = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return invocation.getArguments()[1];
+            }
+        };
+        when(configuration.getLongWithDefault(anyString(), anyLong())).thenAnswer(defaultValue);
+        when(configuration.getBooleanWithDefault(anyString(), anyBoolean())).thenAnswer(defaultValue);
+        when(configuration.getWithDefault(anyString(), anyString())).thenAnswer(defaultValue);
+        variants = new CompressedVariants(configuration);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("var i").append(i).append(" = ").append(i).append(";\n");
+        }
+        content = builder.toString();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    private Result serve(final Asset<?> asset, String acceptEncoding) {
+        return action(new Invocation() {
+            @Override
+            public Result invoke() throws Throwable {
+                return variants.serve(Context.CONTEXT.get(), asset);
+            }
+        }).header(HeaderNames.ACCEPT_ENCODING, acceptEncoding).invoke().getResult();
+    }
+
+    private Asset<File> asset(File file) {
+        return new DefaultAsset<>("/assets/" + file.getName(), file, file.getAbsolutePath(), file.lastModified(),
+                "etag");
+    }
+
+    @Test
+    public void testCompressedInMemory() throws IOException {
+        File file = new File(root, "script.js");
+        FileUtils.write(file, content);
+
+        Result result = serve(asset(file), "gzip, deflate");
+        assertThat(result.getStatusCode()).isEqualTo(200);
+        assertThat(result.getHeaders().get(HeaderNames.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(result.getHeaders().get(HeaderNames.VARY)).isEqualTo(HeaderNames.ACCEPT_ENCODING);
+        assertThat(result.getHeaders().get(HeaderNames.ETAG)).isEqualTo("etag-gzip");
+        assertThat(result.getContentType()).isEqualTo("application/javascript");
+        byte[] bytes = (byte[]) result.getRenderable().content();
+        assertThat(IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(bytes)))).isEqualTo(content);
+
+        // The second request reuses the variant.
+        Result second = serve(asset(file), "gzip");
+        assertThat(second.getRenderable().content()).isSameAs(bytes);
+        assertThat(variants.size()).isEqualTo(1);
+
+        // When the file changes, a new variant is built.
+        FileUtils.write(file, content + "// modified");
+        file.setLastModified(file.lastModified() + 2000);
+        Result third = serve(asset(file), "gzip");
+        assertThat(third.getRenderable().content()).isNotSameAs(bytes);
+    }
+
+    @Test
+    public void testPrecompressedSiblings() throws IOException {
+        File file = new File(root, "style.css");
+        FileUtils.write(file, content);
+        File gz = new File(root, "style.css.gz");
+        FileUtils.write(gz, "gzip");
+        File br = new File(root, "style.css.br");
+        FileUtils.write(br, "brotli");
+
+        Result result = serve(asset(file), "gzip, br");
+        assertThat(result.getHeaders().get(HeaderNames.CONTENT_ENCODING)).isEqualTo("br");
+        assertThat(result.getRenderable().content()).isEqualTo(br);
+        assertThat(result.getContentType()).isEqualTo("text/css");
+
+        result = serve(asset(file), "gzip, br;q=0");
+        assertThat(result.getHeaders().get(HeaderNames.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(result.getRenderable().content()).isEqualTo(gz);
+    }
+
+    @Test
+    public void testNotCompressed() throws IOException {
+        File file = new File(root, "script.js");
+        FileUtils.write(file, content);
+
+        // The client does not support compression.
+        Result result = serve(asset(file), "identity");
+        assertThat(result.getHeaders().get(HeaderNames.CONTENT_ENCODING)).isNull();
+        assertThat(result.getHeaders().get(HeaderNames.VARY)).isEqualTo(HeaderNames.ACCEPT_ENCODING);
+        assertThat(result.getRenderable().content()).isEqualTo(file);
+
+        // Already compressed content.
+        File image = new File(root, "image.png");
+        FileUtils.write(image, content);
+        result = serve(asset(image), "gzip");
+        assertThat(result.getHeaders().get(HeaderNames.CONTENT_ENCODING)).isNull();
+        assertThat(result.getHeaders().get(HeaderNames.VARY)).isNull();
+
+        // Too small.
+        File small = new File(root, "small.js");
+        FileUtils.write(small, "var i = 0;");
+        result = serve(asset(small), "gzip");
+        assertThat(result.getHeaders().get(HeaderNames.CONTENT_ENCODING)).isNull();
+    }
+
+    @Test
+    public void testAcceptedEncodings() {
+        assertThat(CompressedVariants.accepted(null)).isEmpty();
+        assertThat(CompressedVariants.accepted("gzip, deflate, br")).containsExactly("gzip", "deflate", "br");
+        assertThat(CompressedVariants.accepted("gzip;q=0, br;q=0.5")).containsExactly("br");
+    }
+}
@@ -30,11 +30,13 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.osgi.framework.Bundle;
+import org.wisdom.api.asset.Asset;
 import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.crypto.Crypto;
 import org.wisdom.api.crypto.Hash;
 import org.wisdom.api.http.Context;
 import org.wisdom.api.http.Result;
+import org.wisdom.api.utils.DateUtil;
 import org.wisdom.test.parents.Action;
 import org.wisdom.test.parents.Invocation;
 
@@ -49,6 +51,8 @@ import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.wisdom.test.parents.Action.action;
 
@@ -290,6 +294,74 @@ public class WebJarControllerTest {
         assertThat(FileUtils.readFileToString((File) result.getResult().getRenderable().content())).contains("0.8.2-1");
     }
 
+    @Test
+    public void testIndexIsUpdatedIncrementally() throws IOException {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        Crypto crypto = mock(Crypto.class);
+        root = new File("target/wisdom-test");
+        when(configuration.getBaseDir()).thenReturn(root);
+
+        final WebJarController controller = new WebJarController(crypto, configuration, "assets/libs");
+        assertThat(controller.assetAt("autobahn.min.js")).isNull();
+        assertThat(controller.assetAt("autobahnjs/autobahn.min.js")).isNull();
+
+        FileWebJarLib v1 = new FileWebJarLib("autobahnjs", "0.8.2",
+                new File("target/test-classes/autobahnjs/0.8.2"));
+        FileWebJarLib v2 = new FileWebJarLib("autobahnjs", "0.8.2-1",
+                new File("target/test-classes/autobahnjs/0.8.2-1"));
+        controller.addWebJarLibs(ImmutableList.of(v2));
+        assertThat(controller.assetAt("autobahn.min.js").getPath())
+                .isEqualTo("/libs/autobahnjs/0.8.2-1/autobahn.min.js");
+
+        // The conflict is resolved using the library order.
+        controller.addWebJarLibs(ImmutableList.of(v1));
+        assertThat(controller.assetAt("autobahn.min.js").getPath())
+                .isEqualTo("/libs/autobahnjs/0.8.2/autobahn.min.js");
+        assertThat(controller.assetAt("autobahnjs/autobahn.min.js").getPath())
+                .isEqualTo("/libs/autobahnjs/0.8.2/autobahn.min.js");
+        assertThat(controller.assetAt("autobahnjs/0.8.2-1/autobahn.min.js").getPath())
+                .isEqualTo("/libs/autobahnjs/0.8.2-1/autobahn.min.js");
+        assertThat(controller.assetAt("autobahnjs/0.8.2-1/missing.js")).isNull();
+
+        // Cached resolutions are dropped on removal.
+        controller.removeWebJarLibs(ImmutableList.of(v1));
+        assertThat(controller.assetAt("autobahn.min.js").getPath())
+                .isEqualTo("/libs/autobahnjs/0.8.2-1/autobahn.min.js");
+        assertThat(controller.assetAt("autobahnjs/autobahn.min.js").getPath())
+                .isEqualTo("/libs/autobahnjs/0.8.2-1/autobahn.min.js");
+        assertThat(controller.assetAt("autobahnjs/0.8.2/autobahn.min.js")).isNull();
+
+        controller.removeWebJarLibs(ImmutableList.of(v2));
+        assertThat(controller.assetAt("autobahn.min.js")).isNull();
+        assertThat(controller.assetAt("autobahnjs/autobahn.min.js")).isNull();
+    }
+
+    @Test
+    public void testMetadataAreComputedOnceAndMissesDoNotEvictResolutions() throws IOException {
+        ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
+        when(configuration.getBooleanWithDefault(CacheUtils.HTTP_USE_ETAG,
+                CacheUtils.HTTP_USE_ETAG_DEFAULT)).thenReturn(true);
+        Crypto crypto = mock(Crypto.class);
+        when(crypto.hexSHA1(anyString())).thenReturn("etag");
+        root = new File("target/wisdom-test");
+        when(configuration.getBaseDir()).thenReturn(root);
+
+        final WebJarController controller = new WebJarController(crypto, configuration, "assets/libs");
+        controller.addWebJarLibs(ImmutableList.of(new FileWebJarLib("autobahnjs", "0.8.2",
+                new File("target/test-classes/autobahnjs/0.8.2"))));
+
+        Asset<?> asset = controller.assetAt("autobahnjs/autobahn.min.js");
+        assertThat(asset.getEtag()).isEqualTo("etag");
+        assertThat(((IndexedAsset<?>) asset).getLastModifiedHeader())
+                .isEqualTo(DateUtil.formatForHttpHeader(asset.getLastModified()));
+        for (int i = 0; i < 2 * WebJarIndex.RESOLUTION_CACHE_SIZE; i++) {
+            assertThat(controller.assetAt("autobahnjs/missing-" + i + ".js")).isNull();
+        }
+        // The resolution is still cached, with its asset.
+        assertThat(controller.assetAt("autobahnjs/autobahn.min.js")).isSameAs(asset);
+        verify(crypto, times(1)).hexSHA1(anyString());
+    }
+
     @Test
     public void testOnFolderWithTwoLibraries() throws Exception {
         ApplicationConfiguration configuration = mock(ApplicationConfiguration.class);
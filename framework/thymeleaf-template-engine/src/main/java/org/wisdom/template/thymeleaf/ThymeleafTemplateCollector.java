@@ -19,13 +19,16 @@
  */
 package org.wisdom.template.thymeleaf;
 
+import ognl.ClassCache;
 import ognl.OgnlRuntime;
 import org.apache.felix.ipojo.annotations.*;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.thymeleaf.cache.ICache;
 import org.thymeleaf.messageresolver.IMessageResolver;
 import org.thymeleaf.templateresolver.TemplateResolver;
 import org.wisdom.api.asset.Assets;
@@ -33,17 +36,18 @@ import org.wisdom.api.configuration.ApplicationConfiguration;
 import org.wisdom.api.router.Router;
 import org.wisdom.api.templates.Template;
 import org.wisdom.api.templates.TemplateEngine;
+import org.wisdom.template.thymeleaf.impl.TemplateDependencies;
 import org.wisdom.template.thymeleaf.impl.ThymeLeafTemplateImplementation;
 import org.wisdom.template.thymeleaf.impl.WisdomTemplateEngine;
 import org.wisdom.template.thymeleaf.impl.WisdomURLResourceResolver;
 
 import java.io.File;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -76,6 +80,7 @@ public class ThymeleafTemplateCollector implements TemplateEngine {
     private static final Logger LOGGER = LoggerFactory.getLogger(ThymeleafTemplateCollector.class.getName());
 
     private Map<ThymeLeafTemplateImplementation, ServiceRegistration<Template>> registrations = new ConcurrentHashMap<>();
+    private final TemplateDependencies dependencies = new TemplateDependencies(this);
     private WisdomTemplateEngine engine;
 
     @Requires
@@ -226,12 +231,15 @@ public class ThymeleafTemplateCollector implements TemplateEngine {
 
         // Initiate the template resolver.
         TemplateResolver resolver = new TemplateResolver();
-        resolver.setResourceResolver(new WisdomURLResourceResolver(this));
+        resolver.setResourceResolver(new WisdomURLResourceResolver(this, dependencies));
         resolver.setTemplateMode(mode);
         resolver.setCacheTTLMs((long) ttl);
         engine.setTemplateResolver(resolver);
 
         engine.setMessageResolver(messageResolver);
+        // In dev mode, render the pages in the actions, so template errors are displayed by the error page.
+        engine.setStreaming(configuration.getBooleanWithDefault("application.template.thymeleaf.streaming",
+                !configuration.isDev()));
         engine.initialize();
     }
 
@@ -282,21 +290,29 @@ public class ThymeleafTemplateCollector implements TemplateEngine {
     }
 
     /**
-     * Clears the cache for the given template.
+     * Clears the cache for the given template. Only the cache entries of this template and of the templates using
+     * it (as layout or fragment) are evicted.
      *
      * @param template the template
      */
     public void updatedTemplate(ThymeLeafTemplateImplementation template) {
-        engine.getCacheManager().clearAllCaches();
+        evict(template);
     }
 
     /**
-     * Deletes the given template. The service is unregistered, and the cache is cleared.
+     * Deletes the given template. The service is unregistered, and the cache entries of this template and of the
+     * templates using it are evicted.
      *
      * @param template the template
      */
     public void deleteTemplate(ThymeLeafTemplateImplementation template) {
-        // 1 - unregister the service
+        // 1 - evict the template and the templates using it from the cache. This must be done while the template is
+        // still registered, as the references are resolved against the registered templates. Expressions are kept,
+        // they do not depend on the template content.
+        evict(template);
+        dependencies.remove(template);
+
+        // 2 - unregister the service
         try {
             ServiceRegistration reg = registrations.remove(template);
             if (reg != null) {
@@ -305,31 +321,135 @@ public class ThymeleafTemplateCollector implements TemplateEngine {
         } catch (Exception e) { //NOSONAR
             // May already have been unregistered during the shutdown sequence.
         }
+    }
 
-        // 2 - as templates can have dependencies, and expressions kept in memory, we clear all caches.
-        // Despite this may really impact performance, it should not happen too often on real systems.
-        engine.getCacheManager().clearAllCaches();
-        OgnlRuntime.clearCache();
-        // Unfortunately, the previous method do not clear the get and set method cache
-        // (ognl.OgnlRuntime.cacheGetMethod and ognl.OgnlRuntime.cacheSetMethod)
-        clearMethodCaches();
+    /**
+     * Evicts the given template and the templates using it from the Thymeleaf template cache.
+     *
+     * @param template the template
+     */
+    private void evict(ThymeLeafTemplateImplementation template) {
+        Set<String> names = dependencies.invalidate(template);
+        if (engine == null || engine.getCacheManager() == null) {
+            return;
+        }
+        ICache<String, org.thymeleaf.Template> cache = engine.getCacheManager().getTemplateCache();
+        if (cache == null) {
+            return;
+        }
+        for (String name : names) {
+            LOGGER.debug("Evicting {} from the Thymeleaf template cache", name);
+            cache.clearKey(name);
+        }
     }
 
-    private void clearMethodCaches() {
-        try {
-            final Field cacheGetMethod = OgnlRuntime.class.getDeclaredField("cacheGetMethod");
-            final Field cacheSetMethod = OgnlRuntime.class.getDeclaredField("cacheSetMethod");
-            if (! cacheGetMethod.isAccessible()) {
-                cacheGetMethod.setAccessible(true);
+    /**
+     * Clears the OGNL caches (accessors, methods, properties...) for the classes loaded by the given bundle. This
+     * method is called when a bundle providing templates leaves, as the expressions may have been evaluated on
+     * objects from this bundle. The entries related to the classes from other bundles are kept.
+     * <p>
+     * OGNL does not provide a way to evict a class from its caches, so the caches are cleaned using reflection. If
+     * a cache cannot be cleaned this way, it is cleared entirely.
+     *
+     * @param bundle the bundle
+     */
+    public void clearClassCaches(Bundle bundle) {
+        for (Field field : OgnlRuntime.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                continue;
             }
-            if (! cacheSetMethod.isAccessible()) {
-                cacheSetMethod.setAccessible(true);
+            try {
+                if (!field.isAccessible()) {
+                    field.setAccessible(true);
+                }
+                purge(field.get(null), bundle);
+            } catch (SecurityException | IllegalAccessException e) {
+                LOGGER.error("Cannot clean the OGNL cache {}, this may introduce leaks", field.getName(), e);
             }
-            ((Map) cacheGetMethod.get(null)).clear();
-            ((Map) cacheSetMethod.get(null)).clear();
-        } catch (NoSuchFieldException | SecurityException | IllegalAccessException e) {
-            LOGGER.error("Cannot clean Thymeleaf cache, an exception has been thrown while clearing the Method " +
-                    "caches, this may introduce leaks", e);
         }
     }
+
+    private static void purge(Object cache, Bundle bundle) {
+        if (cache instanceof Map) {
+            purgeMap((Map) cache, bundle);
+        } else if (cache instanceof ClassCache) {
+            purgeClassCache((ClassCache) cache, bundle);
+        } else if (cache instanceof Object[]) {
+            for (Object element : (Object[]) cache) {
+                purge(element, bundle);
+            }
+        }
+    }
+
+    private static void purgeMap(Map<?, ?> map, Bundle bundle) {
+        synchronized (map) {
+            Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<?, ?> entry = iterator.next();
+                if (refersTo(entry.getKey(), bundle) || refersTo(entry.getValue(), bundle)) {
+                    iterator.remove();
+                } else if (entry.getValue() instanceof Map) {
+                    purgeMap((Map) entry.getValue(), bundle);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the entries related to the given bundle from the OGNL class cache. As the cache has no eviction
+     * method, the entries are read from the internal table, and the cache is rebuilt with the entries to keep.
+     */
+    private static void purgeClassCache(ClassCache cache, Bundle bundle) {
+        synchronized (cache) {
+            try {
+                Map<Class, Object> kept = new LinkedHashMap<>();
+                boolean purged = false;
+                Field table = cache.getClass().getDeclaredField("_table");
+                table.setAccessible(true);
+                for (Object entry : (Object[]) table.get(cache)) {
+                    while (entry != null) {
+                        Class key = (Class) read(entry, "key");
+                        Object value = read(entry, "value");
+                        if (refersTo(key, bundle) || refersTo(value, bundle)) {
+                            purged = true;
+                        } else {
+                            kept.put(key, value);
+                        }
+                        entry = read(entry, "next");
+                    }
+                }
+                if (purged) {
+                    cache.clear();
+                    for (Map.Entry<Class, Object> entry : kept.entrySet()) {
+                        cache.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            } catch (NoSuchFieldException | IllegalAccessException | ClassCastException e) { //NOSONAR
+                // Unknown structure, clear the cache entirely.
+                cache.clear();
+            }
+        }
+    }
+
+    private static Object read(Object object, String name) throws NoSuchFieldException, IllegalAccessException {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    /**
+     * Checks whether the given cache key or value is a class (or a member of a class) loaded by the given bundle.
+     */
+    private static boolean refersTo(Object object, Bundle bundle) {
+        Class clazz;
+        if (object instanceof Class) {
+            clazz = (Class) object;
+        } else if (object instanceof Member) {
+            clazz = ((Member) object).getDeclaringClass();
+        } else {
+            return false;
+        }
+        Bundle origin = FrameworkUtil.getBundle(clazz);
+        return origin != null && origin.getBundleId() == bundle.getBundleId();
+    }
 }
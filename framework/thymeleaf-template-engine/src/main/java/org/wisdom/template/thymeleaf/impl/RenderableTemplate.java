@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.template.thymeleaf.impl;
+
+import com.google.common.base.Charsets;
+import org.thymeleaf.context.IContext;
+import org.wisdom.api.http.*;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * The result of a template rendering. When streamed, the template is processed when the response is written:
+ * engines supporting {@link StreamingRenderable} let Thymeleaf write the page directly into the response, so the
+ * page is never entirely held in memory. Otherwise, or when the content is requested using {@link #content()},
+ * the page is rendered into a String.
+ * <p>
+ * As the headers of a streamed page are sent before the template is processed, a processing error can only close
+ * the connection. Templates that are not streamed (in development mode, or when
+ * {@literal application.template.thymeleaf.streaming} is {@literal false}) are rendered by the action, so errors are
+ * reported by the error handler.
+ */
+public class RenderableTemplate implements Renderable<String>, StreamingRenderable {
+
+    private final WisdomTemplateEngine engine;
+
+    private final String template;
+
+    private final IContext context;
+
+    /**
+     * The HTTP context of the request having triggered the rendering.
+     */
+    private final Context http;
+
+    /**
+     * Whether or not the page is streamed into the response.
+     */
+    private final boolean streamed;
+
+    /**
+     * The rendered page, computed on demand.
+     */
+    private String rendered;
+
+    /**
+     * Creates a new renderable template.
+     *
+     * @param engine   the engine
+     * @param template the template full name
+     * @param context  the Thymeleaf context
+     * @param http     the HTTP context of the request having triggered the rendering, may be {@literal null}
+     */
+    public RenderableTemplate(WisdomTemplateEngine engine, String template, IContext context, Context http) {
+        this(engine, template, context, http, true);
+    }
+
+    /**
+     * Creates a new renderable template.
+     *
+     * @param engine   the engine
+     * @param template the template full name
+     * @param context  the Thymeleaf context
+     * @param http     the HTTP context of the request having triggered the rendering, may be {@literal null}
+     * @param streamed whether or not the page is streamed into the response. If not, the page is rendered into a
+     *                 String, and sent with its length.
+     */
+    public RenderableTemplate(WisdomTemplateEngine engine, String template, IContext context, Context http,
+                              boolean streamed) {
+        this.engine = engine;
+        this.template = template;
+        this.context = context;
+        this.http = http;
+        this.streamed = streamed;
+    }
+
+    /**
+     * Renders the template into a String, and returns a stream on the encoded String.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @return the stream
+     * @throws RenderableException if the template cannot be rendered
+     */
+    @Override
+    public InputStream render(Context context, Result result) throws RenderableException {
+        return new ByteArrayInputStream(content(context).getBytes(charset(result)));
+    }
+
+    /**
+     * Renders the template directly into the given stream.
+     *
+     * @param context the HTTP context
+     * @param result  the result having built this renderable object
+     * @param out     the stream receiving the content
+     * @throws RenderableException if the template cannot be rendered
+     */
+    @Override
+    public void renderTo(Context context, Result result, OutputStream out) throws RenderableException {
+        Writer writer = new OutputStreamWriter(out, charset(result));
+        try {
+            if (rendered != null) {
+                writer.write(rendered);
+            } else {
+                process(context, writer);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new RenderableException("Cannot write the template " + template, e);
+        }
+    }
+
+    private Charset charset(Result result) {
+        if (result == null) {
+            return Charsets.UTF_8;
+        }
+        if (result.getCharset() == null) {
+            result.with(Charsets.UTF_8);
+        }
+        return result.getCharset();
+    }
+
+    private synchronized String content(Context http) {
+        if (rendered == null) {
+            StringWriter writer = new StringWriter();
+            process(http, writer);
+            rendered = writer.toString();
+        }
+        return rendered;
+    }
+
+    /**
+     * Processes the template. The template may be processed from a thread not holding the HTTP context (for
+     * instance, when the response is written after an asynchronous processing), so the context is attached to the
+     * current thread during the processing.
+     */
+    private void process(Context current, Writer writer) {
+        Context previous = Context.CONTEXT.get();
+        Context ctx = current == null ? http : current;
+        if (ctx != null) {
+            Context.CONTEXT.set(ctx);
+        }
+        try {
+            engine.render(template, context, writer);
+        } finally {
+            if (previous == null) {
+                Context.CONTEXT.remove();
+            } else {
+                Context.CONTEXT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the Thymeleaf context used to render the template
+     */
+    IContext context() {
+        return context;
+    }
+
+    /**
+     * @return {@literal -1}, as the length is unknown until the template is rendered.
+     */
+    @Override
+    public long length() {
+        return -1;
+    }
+
+    /**
+     * @return the HTML mime type.
+     */
+    @Override
+    public String mimetype() {
+        return MimeTypes.HTML;
+    }
+
+    /**
+     * Renders the template (if not already done), and returns the rendered page.
+     *
+     * @return the rendered page
+     */
+    @Override
+    public String content() {
+        return content(Context.CONTEXT.get());
+    }
+
+    /**
+     * @return {@literal false}, as no external processing is required.
+     */
+    @Override
+    public boolean requireSerializer() {
+        return false;
+    }
+
+    @Override
+    public void setSerializedForm(String serialized) {
+        // Nothing because serialization is not supported for this renderable class.
+    }
+
+    /**
+     * @return {@literal true} if the page is streamed, so sent chunk by chunk.
+     */
+    @Override
+    public boolean mustBeChunked() {
+        return streamed;
+    }
+}
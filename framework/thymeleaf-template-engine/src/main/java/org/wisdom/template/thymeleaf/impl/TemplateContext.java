@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.template.thymeleaf.impl;
+
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.context.VariablesMap;
+
+import java.util.Locale;
+
+/**
+ * The Thymeleaf context used to render Wisdom templates. Its variables are resolved lazily (see
+ * {@link TemplateVariables}).
+ */
+public class TemplateContext implements IContext {
+
+    private final TemplateVariables variables;
+
+    private final Locale locale;
+
+    /**
+     * Creates a new context using the default locale.
+     *
+     * @param variables the variables
+     */
+    public TemplateContext(TemplateVariables variables) {
+        this.variables = variables;
+        this.locale = Locale.getDefault();
+    }
+
+    @Override
+    public VariablesMap<String, Object> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Adds the execution info variable ({@literal #execInfo}), computed by a regular Thymeleaf context.
+     *
+     * @param templateName the template name
+     */
+    @Override
+    public void addContextExecutionInfo(String templateName) {
+        Context info = new Context(locale);
+        info.addContextExecutionInfo(templateName);
+        // Only contains the execution info.
+        variables.putAll(info.getVariables());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.template.thymeleaf.impl;
+
+import com.google.common.base.Charsets;
+import org.wisdom.template.thymeleaf.ThymeleafTemplateCollector;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of the names under which templates are cached by Thymeleaf, and of the templates they use (layout
+ * decorators, included or replaced fragments). This information is collected when Thymeleaf loads a template, and
+ * is used to compute the set of cache entries to evict when a template is updated or deleted: the template itself
+ * and the templates using it, directly or not.
+ * <p>
+ * Templates using a dynamic reference (computed by an expression) may use any template, so they are evicted on every
+ * change.
+ */
+public class TemplateDependencies {
+
+    /**
+     * Matches the attributes referencing another template, and captures the reference.
+     */
+    private static final Pattern REFERENCE = Pattern.compile(
+            "(?:th:|data-th-|layout:|data-layout-)(?:include|replace|insert|substituteby|decorator|decorate)" +
+                    "\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+    /**
+     * Separates the template name from the fragment selector.
+     */
+    private static final String FRAGMENT_SEPARATOR = "::";
+
+    private final ThymeleafTemplateCollector collector;
+
+    private final ConcurrentMap<ThymeLeafTemplateImplementation, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param collector the collector used to resolve the template references
+     */
+    public TemplateDependencies(ThymeleafTemplateCollector collector) {
+        this.collector = collector;
+    }
+
+    /**
+     * Records that Thymeleaf has loaded the given template.
+     *
+     * @param template the template
+     * @param name     the template name, used as key in the Thymeleaf template cache
+     * @param content  the template content
+     */
+    public void loaded(ThymeLeafTemplateImplementation template, String name, byte[] content) {
+        Entry entry = entry(template);
+        entry.names.add(name);
+        Set<String> references = new HashSet<>();
+        boolean dynamic = false;
+        // References are ASCII, so any single byte encoding finds them, whatever the template encoding.
+        Matcher matcher = REFERENCE.matcher(new String(content, Charsets.ISO_8859_1));
+        while (matcher.find()) {
+            String value = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            int separator = value.indexOf(FRAGMENT_SEPARATOR);
+            String reference = (separator == -1 ? value : value.substring(0, separator)).trim();
+            if (reference.contains("{")) {
+                dynamic = true;
+            } else if (!reference.isEmpty() && !"this".equals(reference)) {
+                references.add(reference);
+            }
+        }
+        entry.references = Collections.unmodifiableSet(references);
+        entry.dynamic = dynamic;
+    }
+
+    /**
+     * Computes the names of the cache entries to evict when the given template changes. The returned set contains
+     * the names of the template and of all the templates using it. These names are forgotten, as they will be
+     * recorded again when the templates are reloaded.
+     *
+     * @param template the template
+     * @return the names to evict from the cache
+     */
+    public Set<String> invalidate(ThymeLeafTemplateImplementation template) {
+        Set<String> names = new LinkedHashSet<>();
+        Set<ThymeLeafTemplateImplementation> visited = new HashSet<>();
+        Deque<ThymeLeafTemplateImplementation> queue = new ArrayDeque<>();
+        queue.add(template);
+        while (!queue.isEmpty()) {
+            ThymeLeafTemplateImplementation current = queue.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            Entry entry = entries.get(current);
+            if (entry != null) {
+                names.addAll(entry.names);
+                entry.names.clear();
+            }
+            for (Map.Entry<ThymeLeafTemplateImplementation, Entry> candidate : entries.entrySet()) {
+                if (!visited.contains(candidate.getKey()) && candidate.getValue().uses(current, collector)) {
+                    queue.add(candidate.getKey());
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Forgets the given template.
+     *
+     * @param template the template
+     */
+    public void remove(ThymeLeafTemplateImplementation template) {
+        entries.remove(template);
+    }
+
+    /**
+     * Gets the names of the templates used by the given template.
+     *
+     * @param template the template
+     * @return the references, empty if the template has not been loaded yet
+     */
+    public Set<String> references(ThymeLeafTemplateImplementation template) {
+        Entry entry = entries.get(template);
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        return entry.references;
+    }
+
+    private Entry entry(ThymeLeafTemplateImplementation template) {
+        Entry entry = entries.get(template);
+        if (entry == null) {
+            entry = new Entry();
+            Entry existing = entries.putIfAbsent(template, entry);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * The information collected about a template.
+     */
+    private static class Entry {
+        private final Set<String> names = new CopyOnWriteArraySet<>();
+        private volatile Set<String> references = Collections.emptySet();
+        private volatile boolean dynamic;
+
+        private boolean uses(ThymeLeafTemplateImplementation template, ThymeleafTemplateCollector collector) {
+            if (dynamic) {
+                return true;
+            }
+            for (String reference : references) {
+                if (collector.getTemplateByResourceName(reference) == template) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.template.thymeleaf.impl;
+
+import org.thymeleaf.context.VariablesMap;
+import org.wisdom.api.http.Context;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The variables of a template rendering. Instead of copying the session, flash, request parameters and request
+ * scope into the Thymeleaf context before each rendering, these variables are looked up when the template uses them.
+ * <p>
+ * The lookup order reproduces the precedence of the variables: the variables set in this map (such as the routes)
+ * first, then the template parameters, the request scope, the request parameters, the outgoing flash,
+ * the current flash and finally the session.
+ * <p>
+ * Operations requiring the whole content (iteration, size...) copy all the variables into the map once. They are
+ * not used when a template just accesses a few variables by name.
+ */
+public class TemplateVariables extends VariablesMap<String, Object> {
+
+    private final transient Map<String, Object> parameters;
+
+    private final transient Context http;
+
+    private boolean materialized;
+
+    /**
+     * Creates the variables of a rendering.
+     *
+     * @param parameters the template parameters, not copied
+     * @param http       the HTTP context, {@literal null} if the rendering is not done within a request
+     */
+    public TemplateVariables(Map<String, Object> parameters, Context http) {
+        super();
+        this.parameters = parameters;
+        this.http = http;
+        this.materialized = http == null && parameters.isEmpty();
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (materialized || super.containsKey(key)) {
+            return super.get(key);
+        }
+        if (parameters.containsKey(key)) {
+            return parameters.get(key);
+        }
+        return lookup(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return super.containsKey(key) || !materialized && (parameters.containsKey(key) || lookup(key) != null);
+    }
+
+    /**
+     * Looks for the variable in the HTTP context.
+     *
+     * @param key the name of the variable
+     * @return the value, {@literal null} if not found
+     */
+    private Object lookup(Object key) {
+        if (http == null || !(key instanceof String)) {
+            return null;
+        }
+        String name = (String) key;
+        Object value = http.request().data().get(name);
+        if (value != null) {
+            return value;
+        }
+        List<String> values = http.parameterMultipleValues(name);
+        if (values != null && !values.isEmpty()) {
+            return flatten(values);
+        }
+        value = http.flash().getOutgoingFlashCookieData().get(name);
+        if (value != null) {
+            return value;
+        }
+        value = http.flash().getCurrentFlashCookieData().get(name);
+        if (value != null) {
+            return value;
+        }
+        return http.session().getData().get(name);
+    }
+
+    private static Object flatten(List<String> values) {
+        if (values.size() == 1) {
+            return values.get(0);
+        }
+        return values;
+    }
+
+    /**
+     * Copies all the variables into the map, without overriding the variables already set. Sources are therefore
+     * copied from the highest precedence to the lowest.
+     */
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+        materialized = true;
+        copy(parameters);
+        if (http != null) {
+            copy(http.request().data());
+            for (Map.Entry<String, List<String>> entry : http.parameters().entrySet()) {
+                if (!super.containsKey(entry.getKey()) && !entry.getValue().isEmpty()) {
+                    super.put(entry.getKey(), flatten(entry.getValue()));
+                }
+            }
+            copy(http.flash().getOutgoingFlashCookieData());
+            copy(http.flash().getCurrentFlashCookieData());
+            copy(http.session().getData());
+        }
+    }
+
+    private void copy(Map<String, ?> source) {
+        for (Map.Entry<String, ?> entry : source.entrySet()) {
+            if (!super.containsKey(entry.getKey())) {
+                super.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        materialize();
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialized = true;
+        super.clear();
+    }
+
+    @Override
+    public int size() {
+        materialize();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        materialize();
+        return super.isEmpty();
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        materialize();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        materialize();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        materialize();
+        return super.entrySet();
+    }
+
+    @Override
+    public TemplateVariables clone() { //NOSONAR
+        materialize();
+        return (TemplateVariables) super.clone();
+    }
+}
@@ -28,7 +28,6 @@ import org.wisdom.api.http.Renderable;
 import org.wisdom.api.router.Router;
 import org.wisdom.api.templates.Template;
 import org.wisdom.template.thymeleaf.ThymeleafTemplateCollector;
-import org.wisdom.template.thymeleaf.dialect.ExtendedOGNLExpressionEvaluator;
 
 import java.io.File;
 import java.net.MalformedURLException;
@@ -137,11 +136,7 @@ public class ThymeLeafTemplateImplementation implements Template {
      */
     @Override
     public Renderable<?> render(Controller controller, Map<String, Object> variables) {
-        HashMap<String, Object> map = new HashMap<>(variables);
-        if (!map.containsKey(ExtendedOGNLExpressionEvaluator.BUNDLE_VAR_KEY)) {
-            map.put(ExtendedOGNLExpressionEvaluator.BUNDLE_VAR_KEY, bundle);
-        }
-        return templateEngine.process(this, controller, router, assets, map);
+        return templateEngine.process(this, controller, router, assets, variables, bundle);
     }
 
     /**
@@ -20,20 +20,21 @@
 package org.wisdom.template.thymeleaf.impl;
 
 import nz.net.ultraq.thymeleaf.LayoutDialect;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.osgi.framework.Bundle;
 import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IContext;
 import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.wisdom.api.Controller;
 import org.wisdom.api.asset.Assets;
-import org.wisdom.api.bodies.RenderableString;
-import org.wisdom.api.http.MimeTypes;
 import org.wisdom.api.router.Router;
 import org.wisdom.api.templates.Template;
+import org.wisdom.template.thymeleaf.dialect.ExtendedOGNLExpressionEvaluator;
 import org.wisdom.template.thymeleaf.dialect.Routes;
 import org.wisdom.template.thymeleaf.dialect.WisdomStandardDialect;
 
-import java.io.StringWriter;
-import java.util.List;
+import java.io.Writer;
 import java.util.Map;
 
 /**
@@ -49,6 +50,34 @@ public class WisdomTemplateEngine extends TemplateEngine {
         addDialect(new LayoutDialect());
     }
 
+    /**
+     * The routes helpers, one per controller. They are immutable, so shared by all the renderings requested by the
+     * same controller. Values are softly referenced as they hold the controller (the key).
+     */
+    private final Cache<Controller, Routes> routes = CacheBuilder.newBuilder().weakKeys().softValues().build();
+
+    /**
+     * The services used by the cached routes helpers. The cache is cleared when they change.
+     */
+    private Router cachedRouter;
+    private Assets cachedAssets;
+
+    /**
+     * Whether or not the pages are streamed into the responses.
+     */
+    private volatile boolean streaming = true;
+
+    /**
+     * Sets whether the pages are streamed into the responses, or rendered by the action. As the headers of a
+     * streamed page are sent before the template is processed, processing errors cannot be reported by the error
+     * handler, the connection is closed instead.
+     *
+     * @param streaming {@literal true} to stream the pages (default)
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     /**
      * Renders the given template.
      * <p>
@@ -58,38 +87,73 @@ public class WisdomTemplateEngine extends TemplateEngine {
      * @param controller the template asking for the rendering
      * @param router     the router service
      * @param variables  the template parameters
-     * @return the rendered HTML page
+     * @return the renderable object rendering the HTML page when the response is written
      */
-    public RenderableString process(Template template, Controller controller, Router router, Assets assets, Map<String,
+    public RenderableTemplate process(Template template, Controller controller, Router router, Assets assets, Map<String,
             Object> variables) {
-        Context ctx = new Context();
-        // Add session
+        return process(template, controller, router, assets, variables, null);
+    }
+
+    /**
+     * Renders the given template.
+     * <p>
+     * Variables from the session, flash and request parameters are made available to the template. They are not
+     * copied, but looked up when the template uses them.
+     *
+     * @param template   the template
+     * @param controller the template asking for the rendering
+     * @param router     the router service
+     * @param variables  the template parameters, not copied, so must not be modified until the template is rendered
+     * @param bundle     the bundle used to load classes from the template, if not set in the parameters,
+     *                   may be {@literal null}
+     * @return the renderable object rendering the HTML page when the response is written
+     */
+    public RenderableTemplate process(Template template, Controller controller, Router router, Assets assets,
+                                      Map<String, Object> variables, Bundle bundle) {
         final org.wisdom.api.http.Context http = org.wisdom.api.http.Context.CONTEXT.get();
-        ctx.setVariables(http.session().getData());
-        // Add flash
-        ctx.setVariables(http.flash().getCurrentFlashCookieData());
-        ctx.setVariables(http.flash().getOutgoingFlashCookieData());
+        TemplateVariables vars = new TemplateVariables(variables, http);
+        if (bundle != null && !variables.containsKey(ExtendedOGNLExpressionEvaluator.BUNDLE_VAR_KEY)) {
+            vars.put(ExtendedOGNLExpressionEvaluator.BUNDLE_VAR_KEY, bundle);
+        }
+        vars.put(Routes.ROUTES_VAR, routes(router, assets, controller));
+        RenderableTemplate renderable = new RenderableTemplate(this, template.fullName(), new TemplateContext(vars),
+                http, streaming);
+        if (!streaming) {
+            // Render the page now, so processing errors are thrown by the action.
+            renderable.content();
+        }
+        return renderable;
+    }
 
-        // Add parameter from request, flattened
-        for (Map.Entry<String, List<String>> entry : http.parameters().entrySet()) {
-            if (entry.getValue().size() == 1) {
-                ctx.setVariable(entry.getKey(), entry.getValue().get(0));
-            } else {
-                ctx.setVariable(entry.getKey(), entry.getValue());
+    private Routes routes(Router router, Assets assets, Controller controller) {
+        if (controller == null) {
+            return new Routes(router, assets, null);
+        }
+        synchronized (this) {
+            if (router != cachedRouter || assets != cachedAssets) {
+                routes.invalidateAll();
+                cachedRouter = router;
+                cachedAssets = assets;
             }
         }
-
-        // Add request scope
-        for (Map.Entry<String, Object> entry : http.request().data().entrySet()) {
-            ctx.setVariable(entry.getKey(), entry.getValue());
+        Routes cached = routes.getIfPresent(controller);
+        if (cached == null) {
+            cached = new Routes(router, assets, controller);
+            routes.put(controller, cached);
         }
+        return cached;
+    }
 
-        // Add variable.
-        ctx.setVariables(variables);
-        ctx.setVariable(Routes.ROUTES_VAR, new Routes(router, assets, controller));
-        StringWriter writer = new StringWriter();
+    /**
+     * Processes the given template, and writes the result to the given writer.
+     *
+     * @param template the template full name
+     * @param context  the Thymeleaf context
+     * @param writer   the writer
+     */
+    void render(String template, IContext context, Writer writer) {
         try {
-            this.process(template.fullName(), ctx, writer);
+            this.process(template, context, writer);
         } catch (TemplateProcessingException e) {
             // If we have a nested cause having a nested cause, heuristics say that it's the useful message.
             // Rebuild an exception using this data.
@@ -102,7 +166,6 @@ public class WisdomTemplateEngine extends TemplateEngine {
                 throw e;
             }
         }
-        return new RenderableString(writer, MimeTypes.HTML);
     }
 
 }
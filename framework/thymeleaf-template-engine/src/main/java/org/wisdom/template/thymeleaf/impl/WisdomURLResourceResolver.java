@@ -19,11 +19,13 @@
  */
 package org.wisdom.template.thymeleaf.impl;
 
+import org.apache.commons.io.IOUtils;
 import org.wisdom.template.thymeleaf.ThymeleafTemplateCollector;
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.TemplateProcessingParameters;
 import org.thymeleaf.resourceresolver.IResourceResolver;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -34,9 +36,21 @@ import java.io.InputStream;
 public class WisdomURLResourceResolver implements IResourceResolver {
     public static final String THYMELEAF_FILE_RESOLVER = "THYMELEAF_FILE_RESOLVER";
     private final ThymeleafTemplateCollector engine;
+    private final TemplateDependencies dependencies;
 
     public WisdomURLResourceResolver(ThymeleafTemplateCollector engine) {
+        this(engine, null);
+    }
+
+    /**
+     * Creates a resolver recording the loaded templates and their dependencies.
+     *
+     * @param engine       the collector
+     * @param dependencies the dependencies, may be {@literal null}
+     */
+    public WisdomURLResourceResolver(ThymeleafTemplateCollector engine, TemplateDependencies dependencies) {
         this.engine = engine;
+        this.dependencies = dependencies;
     }
 
     @Override
@@ -56,7 +70,15 @@ public class WisdomURLResourceResolver implements IResourceResolver {
                     resourceName, resourceName, resourceName);
         } else {
             try {
-                return template.getURL().openStream();
+                if (dependencies == null) {
+                    return template.getURL().openStream();
+                }
+                byte[] content;
+                try (InputStream stream = template.getURL().openStream()) {
+                    content = IOUtils.toByteArray(stream);
+                }
+                dependencies.loaded(template, templateProcessingParameters.getTemplateName(), content);
+                return new ByteArrayInputStream(content);
             } catch (IOException e) {
                 LoggerFactory.getLogger(this.getClass()).error("Cannot resolve the template {} ({}): cannot open the " +
                         "file.", resourceName, template.getURL().toExternalForm(), e);
@@ -108,5 +108,9 @@ public class TemplateTracker implements BundleTrackerCustomizer<List<ThymeLeafTe
                 engine.deleteTemplate(template);
             }
         }
+        // The classes from the bundle may have been used by expressions, release them.
+        if (engine != null && !o.isEmpty()) {
+            engine.clearClassCaches(bundle);
+        }
     }
 }
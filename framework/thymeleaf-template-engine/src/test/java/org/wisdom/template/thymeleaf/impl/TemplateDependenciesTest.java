@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * Wisdom-Framework
+ * %%
+ * Copyright (C) 2013 - 2014 Wisdom Framework
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.wisdom.template.thymeleaf.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wisdom.template.thymeleaf.ThymeleafTemplateCollector;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the dependency tracking used to evict templates from the cache.
+ */
+public class TemplateDependenciesTest {
+
+    private ThymeleafTemplateCollector collector;
+    private ThymeLeafTemplateImplementation layout;
+    private ThymeLeafTemplateImplementation footer;
+    private ThymeLeafTemplateImplementation page;
+    private ThymeLeafTemplateImplementation other;
+    private TemplateDependencies dependencies;
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        collector = mock(ThymeleafTemplateCollector.class);
+        layout = template("layout");
+        footer = template("footer");
+        page = template("page");
+        other = template("other");
+        when(collector.getTemplateByResourceName("layout")).thenReturn(layout);
+        when(collector.getTemplateByResourceName("footer")).thenReturn(footer);
+        dependencies = new TemplateDependencies(collector);
+    }
+
+    private ThymeLeafTemplateImplementation template(String name) throws MalformedURLException {
+        return new ThymeLeafTemplateImplementation(null, new URL("file://38.0:0/templates/" + name + ".thl.html"),
+                null, null, null);
+    }
+
+    @Test
+    public void testReferences() {
+        dependencies.loaded(page, "page", ("<html layout:decorator=\"layout\">" +
+                "<div th:include=\"footer :: copy\"></div>" +
+                "<div th:replace='::local'></div></html>").getBytes());
+        assertThat(dependencies.references(page)).containsOnly("layout", "footer");
+        assertThat(dependencies.references(other)).isEmpty();
+    }
+
+    @Test
+    public void testInvalidationFollowsDependents() {
+        dependencies.loaded(layout, "layout", "<html><div th:include=\"footer :: copy\"></div></html>".getBytes());
+        dependencies.loaded(footer, "footer", "<html><div th:fragment=\"copy\"></div></html>".getBytes());
+        dependencies.loaded(page, "page", "<html layout:decorator=\"layout\"></html>".getBytes());
+        dependencies.loaded(other, "other", "<html></html>".getBytes());
+
+        assertThat(dependencies.invalidate(footer)).containsOnly("footer", "layout", "page");
+        // Names are recorded again when the templates are reloaded.
+        assertThat(dependencies.invalidate(footer)).isEmpty();
+
+        dependencies.loaded(page, "page", "<html layout:decorator=\"layout\"></html>".getBytes());
+        dependencies.loaded(other, "other", "<html></html>".getBytes());
+        assertThat(dependencies.invalidate(other)).containsOnly("other");
+    }
+
+    @Test
+    public void testDynamicReferences() {
+        dependencies.loaded(page, "page", "<html><div th:include=\"${name} :: copy\"></div></html>".getBytes());
+        dependencies.loaded(other, "other", "<html></html>".getBytes());
+        assertThat(dependencies.invalidate(other)).containsOnly("other", "page");
+    }
+}
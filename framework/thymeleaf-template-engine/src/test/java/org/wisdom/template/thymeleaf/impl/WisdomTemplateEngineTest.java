@@ -19,12 +19,14 @@
  */
 package org.wisdom.template.thymeleaf.impl;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
 import nz.net.ultraq.thymeleaf.LayoutDialect;
 import org.junit.After;
 import org.junit.Test;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
+import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 import org.wisdom.api.Controller;
 import org.wisdom.api.asset.Assets;
@@ -36,6 +38,8 @@ import org.wisdom.test.parents.Action;
 import org.wisdom.test.parents.FakeContext;
 import org.wisdom.test.parents.Invocation;
 
+import java.io.ByteArrayOutputStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -146,6 +150,50 @@ public class WisdomTemplateEngineTest {
                 .contains("<span>KEY2</span> = <span>ongoing</span>");
     }
 
+    @Test
+    public void testLazyVariables() {
+        FakeContext http = new FakeContext();
+        http.session().put("key", "session");
+        http.session().put("key2", "session");
+        http.flash().put("key2", "flash");
+        http.request().data().put("key3", "request");
+        http.setParameter("key3", "param");
+
+        TemplateVariables variables = new TemplateVariables(ImmutableMap.<String, Object>of("key4", "variable"), http);
+        assertThat(variables.get("key")).isEqualTo("session");
+        assertThat(variables.get("key2")).isEqualTo("flash");
+        assertThat(variables.get("key3")).isEqualTo("request");
+        assertThat(variables.get("key4")).isEqualTo("variable");
+        assertThat(variables.containsKey("missing")).isFalse();
+
+        // Iteration sees the same values.
+        assertThat(variables).hasSize(4)
+                .containsEntry("key", "session")
+                .containsEntry("key2", "flash")
+                .containsEntry("key3", "request")
+                .containsEntry("key4", "variable");
+    }
+
+    @Test
+    public void testRoutesAreSharedByRenderings() {
+        org.wisdom.api.http.Context.CONTEXT.set(new FakeContext());
+        WisdomTemplateEngine engine = createWisdomEngine();
+        Template template = mock(Template.class);
+        when(template.fullName()).thenReturn("templates/var.thl.html");
+        FakeRouter router = new FakeRouter();
+        Controller controller = new FakeController();
+        router.addController(controller);
+        Assets assets = mock(Assets.class);
+
+        RenderableTemplate first = engine.process(template, controller, router, assets,
+                ImmutableMap.<String, Object>of());
+        RenderableTemplate second = engine.process(template, controller, router, assets,
+                ImmutableMap.<String, Object>of());
+        assertThat(first.context().getVariables().get(Routes.ROUTES_VAR))
+                .isNotNull()
+                .isSameAs(second.context().getVariables().get(Routes.ROUTES_VAR));
+    }
+
     @After
     public void tearDown() {
         org.wisdom.api.http.Context.CONTEXT.remove();
@@ -179,6 +227,74 @@ public class WisdomTemplateEngineTest {
                 .contains("<span>request</span>");
     }
 
+    @Test
+    public void testStreamedRendering() throws Exception {
+        final WisdomTemplateEngine engine = createWisdomEngine();
+        final Template template = mock(Template.class);
+        when(template.fullName()).thenReturn("templates/var.thl.html");
+
+        final FakeRouter router = new FakeRouter();
+        final Controller controller = new FakeController();
+        router.addController(controller);
+        final Assets assets = mock(Assets.class);
+
+        FakeContext http = new FakeContext().addToSession("key2", "session");
+        org.wisdom.api.http.Context.CONTEXT.set(http);
+        RenderableTemplate renderable = engine.process(template, controller, router, assets,
+                ImmutableMap.<String, Object>of("key", "test"));
+        org.wisdom.api.http.Context.CONTEXT.remove();
+
+        // The template is rendered when the response is written.
+        Result result = ok(renderable);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderable.renderTo(http, result, out);
+        assertThat(result.getCharset()).isEqualTo(Charsets.UTF_8);
+        assertThat(new String(out.toByteArray(), Charsets.UTF_8))
+                .contains("<span>KEY</span> = <span>test</span>")
+                .contains("<span>KEY2</span> = <span>session</span>");
+        assertThat(renderable.mustBeChunked()).isTrue();
+        assertThat(renderable.length()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testBufferedRendering() throws Exception {
+        final WisdomTemplateEngine engine = createWisdomEngine();
+        engine.setStreaming(false);
+        final Template template = mock(Template.class);
+        when(template.fullName()).thenReturn("templates/var.thl.html");
+
+        final FakeRouter router = new FakeRouter();
+        final Controller controller = new FakeController();
+        router.addController(controller);
+        final Assets assets = mock(Assets.class);
+
+        FakeContext http = new FakeContext().addToSession("key2", "session");
+        org.wisdom.api.http.Context.CONTEXT.set(http);
+        RenderableTemplate renderable = engine.process(template, controller, router, assets,
+                ImmutableMap.<String, Object>of("key", "test"));
+        org.wisdom.api.http.Context.CONTEXT.remove();
+
+        // The template has been rendered by the action.
+        assertThat(renderable.mustBeChunked()).isFalse();
+        assertThat(renderable.content())
+                .contains("<span>KEY</span> = <span>test</span>")
+                .contains("<span>KEY2</span> = <span>session</span>");
+    }
+
+    @Test(expected = TemplateProcessingException.class)
+    public void testBufferedRenderingReportsErrorsToTheAction() throws Exception {
+        final WisdomTemplateEngine engine = createWisdomEngine();
+        engine.setStreaming(false);
+        final Template template = mock(Template.class);
+        when(template.fullName()).thenReturn("templates/missing.thl.html");
+
+        final FakeRouter router = new FakeRouter();
+        final Controller controller = new FakeController();
+        router.addController(controller);
+
+        engine.process(template, controller, router, mock(Assets.class), ImmutableMap.<String, Object>of());
+    }
+
     private WisdomTemplateEngine createWisdomEngine() {
         WisdomTemplateEngine engine = new WisdomTemplateEngine();
         engine.setTemplateResolver(new ClassLoaderTemplateResolver());
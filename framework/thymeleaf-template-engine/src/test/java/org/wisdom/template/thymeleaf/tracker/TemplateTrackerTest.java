@@ -81,5 +81,6 @@ public class TemplateTrackerTest {
         list.add(mock(ThymeLeafTemplateImplementation.class));
         tracker.removedBundle(bundle, null, list);
         verify(tracker.engine, times(1)).deleteTemplate(any(ThymeLeafTemplateImplementation.class));
+        verify(tracker.engine, times(1)).clearClassCaches(bundle);
     }
 }